@@ -0,0 +1,32 @@
+package com.collab.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for "mvn exec:exec". Accepts the usual JMH command line
+ * (include regex, -f, -wi, -i, -prof ...) and always writes a JSON result file
+ * so runs can be diffed against each other; -rff overrides the location.
+ */
+public class BenchmarkRunner {
+
+    static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        if (cmd.getResult().hasValue()) {
+            options.resultFormat(cmd.getResultFormat().orElse(ResultFormatType.JSON));
+        } else {
+            options.result(DEFAULT_RESULT_FILE).resultFormat(ResultFormatType.JSON);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
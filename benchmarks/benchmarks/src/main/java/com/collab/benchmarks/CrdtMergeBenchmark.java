@@ -0,0 +1,87 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.crdt.CrdtCodec;
+import com.collab.docservice.crdt.CrdtUpdate;
+import com.collab.docservice.crdt.RgaDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of CRDT mode (CrdtDocumentRegistry) on a document of documentLength characters.
+ *
+ * merge:     integrating another replica's keystroke-sized updates (a word typed or a few chars
+ *            deleted at a random spot) arriving in wire format; reported per update.
+ * diff:      what a reconnecting replica that missed those updates is sent.
+ * loadState: decoding the stored state, i.e. what a document costs to bring into memory. Run with
+ *            -prof gc: gc.alloc.rate.norm / documentLength is the heap cost per character, since
+ *            nearly everything decoding allocates is retained by the document.
+ *
+ * A tenth of the document is tombstones, as after a while of editing with peers still offline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class CrdtMergeBenchmark {
+
+    private static final int UPDATES = 1_000;
+
+    @Param({"10000", "100000", "1000000"})
+    int documentLength;
+
+    private byte[] baseState;
+    private List<byte[]> remoteUpdates;
+    private RgaDocument base;
+    private RgaDocument remote;
+    private RgaDocument target;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        base = RgaDocument.of("lorem ipsum ".repeat(documentLength / 12 + 1).substring(0, documentLength));
+        // 5 of every 50 characters, front to back
+        for (int position = 45; position + 5 <= base.length(); position += 45) {
+            base.delete(1, position, 5);
+        }
+        baseState = CrdtCodec.encodeState(base);
+
+        remote = CrdtCodec.decodeState(baseState);
+        remoteUpdates = new ArrayList<>(UPDATES);
+        for (int i = 0; i < UPDATES; i++) {
+            CrdtUpdate update = i % 4 == 3
+                    ? remote.delete(2, random.nextInt(remote.length() - 3), 3)
+                    : remote.insert(2, random.nextInt(remote.length() + 1), "word ");
+            remoteUpdates.add(CrdtCodec.encodeUpdate(update));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void freshTarget() {
+        target = CrdtCodec.decodeState(baseState);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public RgaDocument merge() {
+        for (byte[] update : remoteUpdates) {
+            target.apply(CrdtCodec.decodeUpdate(update));
+        }
+        return target;
+    }
+
+    @Benchmark
+    public byte[] diff() {
+        return CrdtCodec.encodeUpdate(remote.diff(base.stateVector()));
+    }
+
+    @Benchmark
+    public RgaDocument loadState() {
+        return CrdtCodec.decodeState(baseState);
+    }
+}
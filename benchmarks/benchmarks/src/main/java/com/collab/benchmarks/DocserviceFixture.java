@@ -0,0 +1,54 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.DocserviceApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots docservice against an in-memory H2 database in PostgreSQL mode, the same
+ * setup the functional tests use (application-test.yml), so benchmarks run offline.
+ *
+ * spring.config.name points at a file that does not exist: the benchmark classpath
+ * carries every service jar and each one ships its own application.yaml.
+ * Spring Security is on that classpath too (from userservice) but docservice does not
+ * use it, so its auto-configuration is switched off.
+ */
+public final class DocserviceFixture {
+
+    private static final String SECURITY_AUTO_CONFIGURATION = String.join(",",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.SecurityFilterAutoConfiguration",
+            "org.springframework.boot.autoconfigure.security.servlet.UserDetailsServiceAutoConfiguration",
+            "org.springframework.boot.actuate.autoconfigure.security.servlet.ManagementWebSecurityAutoConfiguration");
+
+    private DocserviceFixture() {
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.config.name=benchmark",
+                "--spring.main.banner-mode=off",
+                "--spring.autoconfigure.exclude=" + SECURITY_AUTO_CONFIGURATION,
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.open-in-view=false",
+                "--internal.secret=bench",
+                "--logging.level.root=WARN"));
+        // a repeated --name=value would be joined into "a,b", so extra args must not repeat the defaults
+        args.addAll(List.of(extraArgs));
+        return SpringApplication.run(DocserviceApplication.class, args.toArray(String[]::new));
+    }
+
+    public static String baseUrl(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+}
@@ -0,0 +1,75 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.model.Document;
+import com.collab.docservice.repo.DocumentRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository calls behind the document REST endpoints, against H2 in PostgreSQL mode.
+ * The dataset is documentCount documents owned by ten users, each shared with two others.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DocumentRepositoryBenchmark {
+
+    private static final int USERS = 10;
+
+    @Param({"100", "1000"})
+    int documentCount;
+
+    private ConfigurableApplicationContext context;
+    private DocumentRepository repo;
+    private UUID docId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = DocserviceFixture.start("repository_bench");
+        repo = context.getBean(DocumentRepository.class);
+
+        for (int i = 0; i < documentCount; i++) {
+            Document doc = new Document();
+            doc.setTitle("Doc " + i);
+            doc.setContent("content of document " + i);
+            doc.setOwnerUsername(user(i));
+            doc.setCollaborators(Set.of(user(i + 1), user(i + 2)));
+            docId = repo.save(doc).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Document> findById() {
+        return repo.findById(docId);
+    }
+
+    @Benchmark
+    public List<Document> findVisibleDocuments() {
+        return repo.findVisibleDocuments(user(0));
+    }
+
+    @Benchmark
+    public Document saveContent() {
+        Document doc = repo.findById(docId).orElseThrow();
+        doc.setContent("content " + System.nanoTime());
+        return repo.save(doc);
+    }
+
+    private static String user(int i) {
+        return "user" + (i % USERS);
+    }
+}
@@ -0,0 +1,125 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.codec.DocEditMessageCodec;
+import com.collab.docservice.dto.DocEditMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Bytes on the wire per broadcast EDIT frame, and the CPU cost of producing it.
+ *
+ * Replays a typing session (one character appended per EDIT, the full text in every
+ * frame, as EditorPage.jsx does) and encodes each broadcast as a complete STOMP MESSAGE
+ * frame in JSON or the binary codec, optionally run through permessage-deflate:
+ * "deflate" keeps the compression window across frames (context takeover, the default),
+ * "deflate-reset" starts every frame fresh (no_context_takeover).
+ *
+ * Bytes per edit = wireBytes / score; both are rates in the same unit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EditFrameSizeBenchmark {
+
+    private static final int SESSION_EDITS = 1_000;
+
+    @Param({"json", "binary"})
+    String encoding;
+
+    @Param({"none", "deflate", "deflate-reset"})
+    String compression;
+
+    @Param({"1000", "20000"})
+    int documentLength;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class WireBytes {
+        public long wireBytes;
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final StompEncoder stompEncoder = new StompEncoder();
+    private final byte[] deflateBuffer = new byte[256 * 1024];
+    private Deflater deflater;
+    private StringBuilder text;
+    private int edit;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        text = new StringBuilder("lorem ipsum ".repeat(documentLength / 12 + 1).substring(0, documentLength));
+        edit = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        deflater.end();
+    }
+
+    @Benchmark
+    public int broadcastEdit(WireBytes counters) throws Exception {
+        // keep the document size stable over the iteration: restart the typing session periodically
+        if (++edit % SESSION_EDITS == 0) {
+            text.setLength(documentLength);
+        }
+        text.append((char) ('a' + edit % 26));
+
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = "EDIT";
+        m.content = text.toString();
+        m.cursorPosition = text.length();
+        m.traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        m.clientSentAt = 1_700_000_000_000L + edit;
+        m.serverReceivedAt = m.clientSentAt + 2;
+        m.serverBroadcastAt = m.clientSentAt + 5;
+
+        boolean binary = "binary".equals(encoding);
+        byte[] payload = binary ? DocEditMessageCodec.encode(m) : mapper.writeValueAsBytes(m);
+        byte[] frame = stompFrame(payload, binary ? MimeTypeUtils.APPLICATION_OCTET_STREAM : MimeTypeUtils.APPLICATION_JSON);
+
+        int size = switch (compression) {
+            case "deflate" -> deflate(frame, false);
+            case "deflate-reset" -> deflate(frame, true);
+            default -> frame.length;
+        };
+        counters.wireBytes += size;
+        return size;
+    }
+
+    private byte[] stompFrame(byte[] payload, MimeType contentType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/doc/3f2b9c0e-5f7d-4a57-9a43-2f8f6f0c1d11");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setMessageId("a1b2c3d4-1");
+        accessor.setContentType(contentType);
+        return stompEncoder.encode(accessor.getMessageHeaders(), payload);
+    }
+
+    // permessage-deflate: raw deflate, sync flush, trailing 00 00 ff ff dropped (RFC 7692 7.2.1)
+    private int deflate(byte[] frame, boolean reset) {
+        if (reset) {
+            deflater.reset();
+        }
+        deflater.setInput(frame);
+        int total = 0;
+        int n;
+        do {
+            n = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+            total += n;
+        } while (n == deflateBuffer.length);
+        return total - 4;
+    }
+}
@@ -0,0 +1,95 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.dto.DocResponse;
+import com.collab.versionservice.model.Version;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips for the payloads on the hot paths: the STOMP edit frame
+ * (sent whole on every keystroke), the document REST response and a version snapshot.
+ * The mapper is configured like Spring Boot's default one (java.time as ISO strings).
+ * DocResponse is only ever written by the services, so it has no read benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    // document size in characters; the editor sends the full text with every EDIT
+    @Param({"100", "10000", "100000"})
+    int contentLength;
+
+    private ObjectMapper mapper;
+    private DocEditMessage editMessage;
+    private DocResponse docResponse;
+    private Version version;
+    private byte[] editMessageJson;
+    private byte[] versionJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        String content = "lorem ipsum ".repeat(contentLength / 12 + 1).substring(0, contentLength);
+
+        editMessage = new DocEditMessage();
+        editMessage.sender = "alice";
+        editMessage.type = "EDIT";
+        editMessage.content = content;
+        editMessage.cursorPosition = contentLength / 2;
+        editMessage.traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        editMessage.clientSentAt = System.currentTimeMillis();
+
+        docResponse = new DocResponse(UUID.randomUUID(), "Benchmark", content, "alice",
+                List.of("bob", "carol"), Instant.now(), Instant.now());
+
+        version = new Version();
+        version.setId(42L);
+        version.setDocumentId(UUID.randomUUID());
+        version.setAuthorUsername("alice");
+        version.setContent(content);
+        version.setCreatedAt(LocalDateTime.now());
+
+        editMessageJson = mapper.writeValueAsBytes(editMessage);
+        versionJson = mapper.writeValueAsBytes(version);
+    }
+
+    @Benchmark
+    public byte[] writeEditMessage() throws Exception {
+        return mapper.writeValueAsBytes(editMessage);
+    }
+
+    @Benchmark
+    public DocEditMessage readEditMessage() throws Exception {
+        return mapper.readValue(editMessageJson, DocEditMessage.class);
+    }
+
+    @Benchmark
+    public byte[] writeDocResponse() throws Exception {
+        return mapper.writeValueAsBytes(docResponse);
+    }
+
+    @Benchmark
+    public byte[] writeVersion() throws Exception {
+        return mapper.writeValueAsBytes(version);
+    }
+
+    @Benchmark
+    public Version readVersion() throws Exception {
+        return mapper.readValue(versionJson, Version.class);
+    }
+}
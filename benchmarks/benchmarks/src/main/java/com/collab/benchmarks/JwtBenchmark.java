@@ -0,0 +1,37 @@
+package com.collab.benchmarks;
+
+import com.collab.userservice.security.JwtUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validation runs on every authenticated userservice request; issuing runs on login.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        token = jwtUtils.generateToken("alice");
+    }
+
+    @Benchmark
+    public String validateAndGetUsername() {
+        return jwtUtils.validateAndGetUsername(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateToken("alice");
+    }
+}
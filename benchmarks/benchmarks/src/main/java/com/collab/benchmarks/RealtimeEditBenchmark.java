@@ -0,0 +1,72 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.controller.DocRealtimeController;
+import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.repo.DocumentRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DocRealtimeController.streamEdit called through the Spring proxy, so the
+ * @Transactional boundary, the metrics and the H2 write are all included.
+ * STOMP decoding and broker fan-out are not; the load generator covers those.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RealtimeEditBenchmark {
+
+    @Param({"100", "10000"})
+    int contentLength;
+
+    private ConfigurableApplicationContext context;
+    private DocRealtimeController controller;
+    private UUID docId;
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = DocserviceFixture.start("realtime_bench");
+        controller = context.getBean(DocRealtimeController.class);
+
+        Document doc = new Document();
+        doc.setTitle("Benchmark");
+        doc.setOwnerUsername("alice");
+        docId = context.getBean(DocumentRepository.class).save(doc).getId();
+
+        content = "x".repeat(contentLength);
+        controller.streamEdit(docId, message("JOIN", null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public DocEditMessage edit() {
+        return controller.streamEdit(docId, message("EDIT", content));
+    }
+
+    @Benchmark
+    public DocEditMessage cursor() {
+        return controller.streamEdit(docId, message("CURSOR", null));
+    }
+
+    private static DocEditMessage message(String type, String content) {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = type;
+        m.content = content;
+        m.cursorPosition = 0;
+        m.clientSentAt = System.currentTimeMillis();
+        return m;
+    }
+}
@@ -0,0 +1,62 @@
+package com.collab.benchmarks;
+
+import com.collab.docservice.text.Rope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying one keystroke-sized edit to a document held in memory:
+ * the Rope used by ActiveDocumentRegistry versus an immutable String rebuilt with concatenation.
+ *
+ * Each invocation inserts a short string at a random offset and deletes the same number of
+ * characters at another, so the document size stays at documentLength for the whole run.
+ * ropeToString is the price the Rope pays instead, once per flush or version snapshot rather than per edit.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class RopeEditBenchmark {
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    int documentLength;
+
+    private SplittableRandom random;
+    private Rope rope;
+    private String string;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        random = new SplittableRandom(42);
+        String text = "lorem ipsum ".repeat(documentLength / 12 + 1).substring(0, documentLength);
+        rope = Rope.of(text);
+        string = text;
+    }
+
+    @Benchmark
+    public Rope rope() {
+        int insertAt = random.nextInt(documentLength + 1);
+        rope = rope.insert(insertAt, "abc");
+        rope = rope.delete(random.nextInt(documentLength), 3);
+        return rope;
+    }
+
+    @Benchmark
+    public String stringConcat() {
+        int insertAt = random.nextInt(documentLength + 1);
+        string = string.substring(0, insertAt) + "abc" + string.substring(insertAt);
+        int deleteAt = random.nextInt(documentLength);
+        string = string.substring(0, deleteAt) + string.substring(deleteAt + 3);
+        return string;
+    }
+
+    // flush / version capture: materializing the current text once
+    @Benchmark
+    public String ropeToString() {
+        return rope.toString();
+    }
+}
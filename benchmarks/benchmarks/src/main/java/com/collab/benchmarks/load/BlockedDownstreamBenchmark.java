@@ -0,0 +1,197 @@
+package com.collab.benchmarks.load;
+
+import com.collab.benchmarks.DocserviceFixture;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Platform vs virtual request threads when every request blocks on a slow downstream.
+ *
+ * docservice runs in-process with services.versionservice.baseUrl pointing at a stub
+ * that answers after --downstream-delay without holding a thread. The client keeps
+ * --concurrency GET /docs/{id}/versions requests in flight (one versionservice call each)
+ * until --requests have completed, sampling platform thread count and heap meanwhile.
+ *
+ * Run each mode in its own JVM so thread and heap numbers are not mixed:
+ *   mvn -o -Pjava21,blocked-downstream compile exec:exec -Dload.args="--virtual=false"
+ *   mvn -o -Pjava21,blocked-downstream compile exec:exec -Dload.args="--virtual=true"
+ * --virtual=true only takes effect on a Java 21+ runtime; the report says which mode was active.
+ */
+public class BlockedDownstreamBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        boolean virtual = Boolean.parseBoolean(options.getOrDefault("virtual", "false"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "20000"));
+        Duration delay = DurationStyle.detectAndParse(options.getOrDefault("downstream-delay", "200ms"));
+        String out = options.getOrDefault("out", "target/blocked-downstream-" + (virtual ? "virtual" : "platform") + ".json");
+
+        HttpServer downstream = slowDownstream(delay);
+        ConfigurableApplicationContext docservice = DocserviceFixture.start("blocked_downstream",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--services.versionservice.baseUrl=http://localhost:" + downstream.getAddress().getPort());
+        try {
+            String baseUrl = DocserviceFixture.baseUrl(docservice);
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("javaVersion", Runtime.version().toString());
+            report.put("virtualThreadsRequested", virtual);
+            report.put("virtualThreadsActive", Threading.VIRTUAL.isActive(docservice.getEnvironment()));
+            report.put("concurrency", concurrency);
+            report.put("requests", requests);
+            report.put("downstreamDelayMillis", delay.toMillis());
+            report.putAll(run(baseUrl, createDocument(baseUrl), concurrency, requests));
+
+            ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            System.out.println(mapper.writeValueAsString(report));
+            File file = new File(out);
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            mapper.writeValue(file, report);
+            System.out.println("Results written to " + file.getAbsolutePath());
+        } finally {
+            docservice.close();
+            downstream.stop(0);
+        }
+    }
+
+    private static Map<String, Object> run(String baseUrl, String docId, int concurrency, int requests)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newFixedThreadPool(4))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/docs/" + docId + "/versions"))
+                .header("X-User", "bench-owner")
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+
+        Timer latency = Timer.builder("blocked.latency")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .percentilePrecision(2)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(new SimpleMeterRegistry());
+        LongAdder errors = new LongAdder();
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicLong peakHeap = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        threads.resetPeakThreadCount();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 50, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                latency.record(System.nanoTime() - sent, TimeUnit.NANOSECONDS);
+                if (failure != null || response.statusCode() != 200) {
+                    errors.increment();
+                }
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        sampler.shutdownNow();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("elapsedSeconds", seconds);
+        result.put("throughputPerSecond", requests / seconds);
+        result.put("errors", errors.sum());
+        Map<String, Object> latencyMillis = new LinkedHashMap<>();
+        latencyMillis.put("mean", latency.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile p : latency.takeSnapshot().percentileValues()) {
+            latencyMillis.put("p" + new DecimalFormat("0.#").format(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS));
+        }
+        latencyMillis.put("max", latency.max(TimeUnit.MILLISECONDS));
+        result.put("latencyMillis", latencyMillis);
+        // virtual threads are not counted here, only the platform threads carrying them
+        result.put("peakPlatformThreads", threads.getPeakThreadCount());
+        result.put("peakHeapUsedMb", peakHeap.get() / (1024 * 1024));
+        return result;
+    }
+
+    /** Stand-in for versionservice: answers [] after the delay, parking the exchange rather than a thread. */
+    private static HttpServer slowDownstream(Duration delay) throws IOException {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "downstream-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.createContext("/", exchange -> timer.schedule(() -> respond(exchange), delay.toMillis(), TimeUnit.MILLISECONDS));
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange) {
+        byte[] body = "[]".getBytes(StandardCharsets.UTF_8);
+        try (exchange) {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException ignored) {
+            // client went away
+        }
+    }
+
+    private static String createDocument(String baseUrl) throws IOException, InterruptedException {
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/docs"))
+                        .header("X-User", "bench-owner")
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"blocked downstream\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        return String.valueOf(new ObjectMapper().readValue(response.body(), Map.class).get("id"));
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            for (String token : arg.trim().split("\\s+")) {
+                int eq = token.indexOf('=');
+                if (token.startsWith("--") && eq > 2) {
+                    values.put(token.substring(2, eq), token.substring(eq + 1));
+                }
+            }
+        }
+        return values;
+    }
+}
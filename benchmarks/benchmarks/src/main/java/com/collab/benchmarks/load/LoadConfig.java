@@ -0,0 +1,65 @@
+package com.collab.benchmarks.load;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load generator settings, parsed from --name=value arguments.
+ * Rates are per simulated client; durations accept Spring Boot's format (500ms, 30s, 2m).
+ */
+record LoadConfig(
+        String url,             // docservice base URL; blank starts a local docservice on H2
+        int documents,
+        int clientsPerDocument,
+        double editRate,
+        double cursorRate,
+        int contentSize,
+        Duration duration,
+        Duration lateThreshold,
+        Duration drain,
+        int threads,
+        String out) {
+
+    static LoadConfig parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            // exec:exec hands -Dload.args over as one argument
+            for (String token : arg.trim().split("\\s+")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (!token.startsWith("--") || !token.contains("=")) {
+                    throw new IllegalArgumentException("Expected --name=value, got: " + token);
+                }
+                int eq = token.indexOf('=');
+                values.put(token.substring(2, eq), token.substring(eq + 1));
+            }
+        }
+
+        LoadConfig config = new LoadConfig(
+                values.getOrDefault("url", ""),
+                Integer.parseInt(values.getOrDefault("docs", "5")),
+                Integer.parseInt(values.getOrDefault("clients-per-doc", "10")),
+                Double.parseDouble(values.getOrDefault("edit-rate", "2")),
+                Double.parseDouble(values.getOrDefault("cursor-rate", "5")),
+                Integer.parseInt(values.getOrDefault("content-size", "2000")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "30s")),
+                DurationStyle.detectAndParse(values.getOrDefault("late-threshold", "250ms")),
+                DurationStyle.detectAndParse(values.getOrDefault("drain", "5s")),
+                Integer.parseInt(values.getOrDefault("threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors() * 2))),
+                values.getOrDefault("out", "target/load-result.json"));
+
+        if (config.documents < 1 || config.clientsPerDocument < 1) {
+            throw new IllegalArgumentException("--docs and --clients-per-doc must be at least 1");
+        }
+        return config;
+    }
+
+    int totalClients() {
+        return documents * clientsPerDocument;
+    }
+}
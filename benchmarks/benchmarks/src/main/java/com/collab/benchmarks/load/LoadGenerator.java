@@ -0,0 +1,151 @@
+package com.collab.benchmarks.load;
+
+import com.collab.benchmarks.DocserviceFixture;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Replays collaborative editing load against /ws-docs over STOMP/SockJS.
+ *
+ * M documents are created over REST, N clients join each one, then every client sends
+ * EDIT and CURSOR frames at the configured rates until the run ends, and LEAVEs.
+ * The report (throughput, fan-out latency percentiles, late and dropped deliveries)
+ * is printed and written as JSON.
+ *
+ * Without --url a docservice is started in this JVM on H2, which shares the CPU with the
+ * clients; point --url at a separately started docservice for numbers closer to production.
+ *
+ *   mvn -o compile exec:exec -Pload -Dload.args="--docs=10 --clients-per-doc=20 --duration=60s"
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.parse(args);
+
+        ConfigurableApplicationContext local = null;
+        String baseUrl = config.url();
+        if (baseUrl.isBlank()) {
+            local = DocserviceFixture.start("load");
+            baseUrl = DocserviceFixture.baseUrl(local);
+        }
+
+        try {
+            Map<String, Object> report = run(config, baseUrl);
+            ObjectMapper mapper = new ObjectMapper().findAndRegisterModules()
+                    .enable(SerializationFeature.INDENT_OUTPUT)
+                    .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS);
+
+            System.out.println(mapper.writeValueAsString(report));
+            File out = new File(config.out());
+            if (out.getParentFile() != null) {
+                out.getParentFile().mkdirs();
+            }
+            mapper.writeValue(out, report);
+            System.out.println("Results written to " + out.getAbsolutePath());
+        } finally {
+            if (local != null) {
+                local.close();
+            }
+        }
+    }
+
+    static Map<String, Object> run(LoadConfig config, String baseUrl) throws Exception {
+        LoadStats stats = new LoadStats(config.lateThreshold());
+        List<UUID> docs = createDocuments(baseUrl, config.documents());
+
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setInboundMessageSizeLimit(Math.max(64 * 1024, config.contentSize() * 4));
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(config.threads());
+        scheduler.setThreadNamePrefix("load-");
+        scheduler.initialize();
+
+        List<SimulatedClient> clients = new ArrayList<>();
+        List<ScheduledFuture<?>> tasks = new ArrayList<>();
+        try {
+            int id = 0;
+            for (UUID docId : docs) {
+                for (int i = 0; i < config.clientsPerDocument(); i++) {
+                    SimulatedClient client = new SimulatedClient(id++, docId, stats);
+                    client.connect(stompClient, baseUrl + "/ws-docs");
+                    clients.add(client);
+                }
+            }
+            System.out.printf("%d clients joined %d documents, running for %s%n",
+                    clients.size(), docs.size(), config.duration());
+
+            long start = System.nanoTime();
+            for (SimulatedClient client : clients) {
+                schedule(scheduler, tasks, config.editRate(), () -> client.sendEdit(
+                        randomContent(config.contentSize()), config.clientsPerDocument()));
+                schedule(scheduler, tasks, config.cursorRate(), () -> client.sendCursor(
+                        ThreadLocalRandom.current().nextInt(config.contentSize() + 1), config.clientsPerDocument()));
+            }
+
+            Thread.sleep(config.duration().toMillis());
+            tasks.forEach(t -> t.cancel(false));
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            // anything not delivered by the end of the drain period counts as dropped
+            Thread.sleep(config.drain().toMillis());
+            return stats.report(config, elapsed);
+        } finally {
+            clients.forEach(SimulatedClient::leave);
+            scheduler.shutdown();
+            stompClient.stop();
+        }
+    }
+
+    private static void schedule(ThreadPoolTaskScheduler scheduler, List<ScheduledFuture<?>> tasks,
+                                 double ratePerSecond, Runnable task) {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        long periodMicros = (long) (1_000_000 / ratePerSecond);
+        // spread clients over the period so they do not all fire on the same tick
+        long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+        tasks.add(scheduler.getScheduledExecutor().scheduleAtFixedRate(
+                task, initialDelay, periodMicros, TimeUnit.MICROSECONDS));
+    }
+
+    private static List<UUID> createDocuments(String baseUrl, int count) {
+        RestTemplate rest = new RestTemplate();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-User", "load-owner");
+
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, String> body = Map.of("title", "Load test " + i, "content", "");
+            Map<?, ?> created = rest.postForObject(baseUrl + "/docs", new HttpEntity<>(body, headers), Map.class);
+            ids.add(UUID.fromString(String.valueOf(created.get("id"))));
+        }
+        return ids;
+    }
+
+    private static String randomContent(int size) {
+        char[] chars = new char[size];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,131 @@
+package com.collab.benchmarks.load;
+
+import com.collab.docservice.dto.DocEditMessage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.text.DecimalFormat;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bookkeeping for one load run.
+ *
+ * Every EDIT/CURSOR carries a unique traceparent, which docservice echoes back as
+ * DocEditMessage.traceId, so each delivery can be matched to its send. A message is
+ * expected once by every client subscribed to its document (the sender included).
+ * Deliveries slower than the late threshold are counted as late; expected deliveries
+ * that never arrive before the drain period ends are counted as dropped.
+ */
+class LoadStats {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private record Pending(String type, int expected, AtomicInteger received) {
+    }
+
+    private final long lateThresholdMillis;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> sent = new ConcurrentHashMap<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final LongAdder sendErrors = new LongAdder();
+
+    private final Timer endToEnd;
+    private final Timer fanOut;
+
+    LoadStats(Duration lateThreshold) {
+        this.lateThresholdMillis = lateThreshold.toMillis();
+
+        // one long statistics window so the percentiles cover the whole run
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        this.endToEnd = latencyTimer("load.latency.end_to_end", registry);
+        this.fanOut = latencyTimer("load.latency.fan_out", registry);
+    }
+
+    void onSent(String traceId, String type, int expectedReceivers) {
+        pending.put(traceId, new Pending(type, expectedReceivers, new AtomicInteger()));
+        sent.computeIfAbsent(type, t -> new LongAdder()).increment();
+    }
+
+    void onSendError() {
+        sendErrors.increment();
+    }
+
+    void onReceived(DocEditMessage message, long receivedAt) {
+        Pending p = message.traceId == null ? null : pending.get(message.traceId);
+        if (p == null) {
+            // JOIN/LEAVE presence updates, or an echo of a message we did not track
+            unmatched.increment();
+            return;
+        }
+        p.received.incrementAndGet();
+        delivered.increment();
+
+        long latency = receivedAt - message.clientSentAt;
+        endToEnd.record(Math.max(0, latency), TimeUnit.MILLISECONDS);
+        if (message.serverBroadcastAt != null) {
+            fanOut.record(Math.max(0, receivedAt - message.serverBroadcastAt), TimeUnit.MILLISECONDS);
+        }
+        if (latency > lateThresholdMillis) {
+            late.increment();
+        }
+    }
+
+    Map<String, Object> report(LoadConfig config, Duration elapsed) {
+        double seconds = elapsed.toMillis() / 1000.0;
+        long totalSent = sent.values().stream().mapToLong(LongAdder::sum).sum();
+        long expected = pending.values().stream().mapToLong(Pending::expected).sum();
+        long dropped = pending.values().stream()
+                .mapToLong(p -> Math.max(0, p.expected - p.received.get()))
+                .sum();
+
+        Map<String, Object> sentByType = new LinkedHashMap<>();
+        sent.forEach((type, count) -> sentByType.put(type, count.sum()));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("elapsedSeconds", seconds);
+        report.put("sent", totalSent);
+        report.put("sentByType", sentByType);
+        report.put("sendErrors", sendErrors.sum());
+        report.put("sendThroughputPerSecond", totalSent / seconds);
+        report.put("expectedDeliveries", expected);
+        report.put("delivered", delivered.sum());
+        report.put("deliveryThroughputPerSecond", delivered.sum() / seconds);
+        report.put("dropped", dropped);
+        report.put("late", late.sum());
+        report.put("lateThresholdMillis", lateThresholdMillis);
+        report.put("unmatchedFrames", unmatched.sum());
+        report.put("endToEndLatencyMillis", latencySummary(endToEnd));
+        report.put("fanOutLatencyMillis", latencySummary(fanOut));
+        return report;
+    }
+
+    private static Map<String, Object> latencySummary(Timer timer) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", timer.count());
+        summary.put("mean", timer.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile p : timer.takeSnapshot().percentileValues()) {
+            summary.put("p" + new DecimalFormat("0.#").format(p.percentile() * 100), p.value(TimeUnit.MILLISECONDS));
+        }
+        summary.put("max", timer.max(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+
+    private static Timer latencyTimer(String name, SimpleMeterRegistry registry) {
+        return Timer.builder(name)
+                .publishPercentiles(PERCENTILES)
+                .percentilePrecision(2)
+                .distributionStatisticExpiry(Duration.ofDays(1))
+                .distributionStatisticBufferLength(1)
+                .register(registry);
+    }
+}
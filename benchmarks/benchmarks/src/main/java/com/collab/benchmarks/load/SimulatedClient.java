@@ -0,0 +1,124 @@
+package com.collab.benchmarks.load;
+
+import com.collab.docservice.dto.DocEditMessage;
+import org.springframework.messaging.simp.stomp.*;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One editor tab: a STOMP session subscribed to /topic/doc/{docId} that publishes
+ * to /app/edit/{docId} the same frames EditorPage.jsx sends.
+ */
+class SimulatedClient {
+
+    private static final int JOIN_ATTEMPTS = 3;
+
+    private final int id;
+    private final String username;
+    private final UUID docId;
+    private final LoadStats stats;
+    private final AtomicLong sequence = new AtomicLong();
+    private final CountDownLatch joined = new CountDownLatch(1);
+
+    private StompSession session;
+
+    SimulatedClient(int id, UUID docId, LoadStats stats) {
+        this.id = id;
+        this.username = "load-user-" + id;
+        this.docId = docId;
+        this.stats = stats;
+    }
+
+    /**
+     * Connects, subscribes and sends JOIN. Returns once our own JOIN has come back on the
+     * topic, which proves the subscription is live; SUBSCRIBE and SEND may be handled
+     * out of order by the inbound executor, so JOIN is retried if its echo was missed.
+     */
+    void connect(WebSocketStompClient stompClient, String wsUrl) throws Exception {
+        session = stompClient.connectAsync(wsUrl, new StompSessionHandlerAdapter() {
+            @Override
+            public void handleTransportError(StompSession s, Throwable exception) {
+                stats.onSendError();
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        session.subscribe("/topic/doc/" + docId, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return DocEditMessage.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                onFrame((DocEditMessage) payload);
+            }
+        });
+
+        for (int attempt = 0; attempt < JOIN_ATTEMPTS; attempt++) {
+            send(message("JOIN", null, 0), null);
+            if (joined.await(2, TimeUnit.SECONDS)) {
+                return;
+            }
+        }
+        throw new IllegalStateException(username + " did not receive its JOIN echo");
+    }
+
+    void sendEdit(String content, int expectedReceivers) {
+        sendTracked(message("EDIT", content, content.length()), expectedReceivers);
+    }
+
+    void sendCursor(int position, int expectedReceivers) {
+        sendTracked(message("CURSOR", null, position), expectedReceivers);
+    }
+
+    void leave() {
+        if (session != null && session.isConnected()) {
+            send(message("LEAVE", null, 0), null);
+            session.disconnect();
+        }
+    }
+
+    private void onFrame(DocEditMessage message) {
+        long now = System.currentTimeMillis();
+        if ("JOIN".equals(message.type) && username.equals(message.sender)) {
+            joined.countDown();
+        }
+        stats.onReceived(message, now);
+    }
+
+    private void sendTracked(DocEditMessage message, int expectedReceivers) {
+        // the trace id comes back on the broadcast and identifies the message in LoadStats
+        String traceId = String.format("%016x%016x", id, sequence.incrementAndGet());
+        stats.onSent(traceId, message.type, expectedReceivers);
+        send(message, "00-" + traceId + "-" + traceId.substring(16) + "-01");
+    }
+
+    // a WebSocket session does not allow concurrent sends, and EDIT and CURSOR run on separate timers
+    private synchronized void send(DocEditMessage message, String traceparent) {
+        try {
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination("/app/edit/" + docId);
+            if (traceparent != null) {
+                headers.set("traceparent", traceparent);
+            }
+            message.clientSentAt = System.currentTimeMillis();
+            session.send(headers, message);
+        } catch (RuntimeException e) {
+            stats.onSendError();
+        }
+    }
+
+    private DocEditMessage message(String type, String content, int cursorPosition) {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = username;
+        m.type = type;
+        m.content = content;
+        m.cursorPosition = cursorPosition;
+        return m;
+    }
+}
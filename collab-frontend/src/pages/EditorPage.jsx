@@ -5,6 +5,14 @@ import SockJS from "sockjs-client";
 import Stomp from "stompjs";
 import Toast from "../Toast";
 
+// ops are offsets into the same text (see docservice TextSplicer); apply from the end so earlier offsets stay valid
+function applySplices(text, ops) {
+  return [...ops]
+    .reverse()
+    .sort((a, b) => b.offset - a.offset)
+    .reduce((t, op) => t.slice(0, op.offset) + (op.insert || "") + t.slice(op.offset + op.deleteCount), text);
+}
+
 export default function EditorPage({ auth }) {
   const { id } = useParams();
   const nav = useNavigate();
@@ -21,6 +29,35 @@ export default function EditorPage({ auth }) {
 
   const stompClient = useRef(null);
   const saveTimer = useRef(null);
+  // round-trip times (ms) of our own edits, SEND -> broadcast back to us
+  const editLatencies = useRef([]);
+  // seq of the last change applied from the server; lets a resync fetch only what was missed
+  const lastSeq = useRef(null);
+  // text typed while the connection was down, not yet sent
+  const offlineContent = useRef(null);
+
+  function recordEditLatency(ms) {
+    const samples = editLatencies.current;
+    samples.push(ms);
+    if (samples.length === 100) {
+      const sorted = [...samples].sort((a, b) => a - b);
+      console.debug(`edit latency p50=${sorted[49]}ms p99=${sorted[98]}ms`);
+      editLatencies.current = [];
+    }
+  }
+
+  function sendEdit(client, content) {
+    client.send(
+      `/app/edit/${id}`,
+      {},
+      JSON.stringify({
+        sender: auth.username,
+        content,
+        type: "EDIT",
+        clientSentAt: Date.now(),
+      })
+    );
+  }
 
   function pushToast(message, type = "success") {
     const id = Date.now() + Math.random();
@@ -52,6 +89,7 @@ export default function EditorPage({ auth }) {
             sender: auth.username,
             content: version.content,
             type: "EDIT",
+            clientSentAt: Date.now(),
           })
         );
       }
@@ -81,51 +119,112 @@ export default function EditorPage({ auth }) {
         if (!res.ok) throw new Error("Document not found");
         return res.json();
       })
-      .then((data) => setDoc(data))
+      // the text from a sync that already answered is newer than this one
+      .then((data) => setDoc((prev) => (lastSeq.current != null ? { ...data, content: prev.content } : data)))
       .catch(() => nav("/dashboard"));
 
     loadHistory();
 
-    const socket = new SockJS(`${API_BASE}/ws-docs?token=${auth.token}`);
-    const client = Stomp.over(socket);
-    stompClient.current = client;
-    client.debug = null;
-
-    client.connect(
-      {},
-      () => {
-        setStatus("Live");
-
-        client.subscribe(`/topic/doc/${id}`, (message) => {
-          const body = JSON.parse(message.body);
+    // set once the page goes away, so a dropped connection is not reopened after that
+    let closed = false;
+    let reconnectTimer = null;
+    let attempts = 0;
+
+    // asks for what changed since lastSeq (the whole text if nothing was applied yet or we are too far
+    // behind); buffered broadcasts keep applying on top since the reply carries the seq it is current to
+    function resync(client) {
+      const sync = client.subscribe(
+        `/app/sync/${id}`,
+        (reply) => {
+          const res = JSON.parse(reply.body);
+          sync.unsubscribe();
+          lastSeq.current = res.seq;
+          const typedOffline = offlineContent.current;
+          offlineContent.current = null;
+          if (typedOffline != null) {
+            // what was typed while disconnected wins, like any other full-text EDIT
+            setDoc((prev) => ({ ...prev, content: typedOffline }));
+            sendEdit(client, typedOffline);
+            return;
+          }
+          setDoc((prev) => ({
+            ...prev,
+            content:
+              res.content != null
+                ? res.content
+                : res.missed.reduce((text, m) => applySplices(text, m.ops), prev.content),
+          }));
+        },
+        lastSeq.current != null ? { since: String(lastSeq.current) } : {}
+      );
+    }
 
-          if (body.type === "EDIT") {
-            if (body.sender !== auth.username) {
-              setDoc((prev) => ({ ...prev, content: body.content }));
+    function connect() {
+      const socket = new SockJS(`${API_BASE}/ws-docs?token=${auth.token}`);
+      const client = Stomp.over(socket);
+      stompClient.current = client;
+      client.debug = null;
+
+      client.connect(
+        {},
+        () => {
+          if (attempts > 0) pushToast("Realtime connection restored");
+          attempts = 0;
+          setStatus("Live");
+
+          client.subscribe(`/topic/doc/${id}`, (message) => {
+            const body = JSON.parse(message.body);
+            if (body.seq != null) lastSeq.current = body.seq;
+
+            if (body.type === "EDIT") {
+              if (body.sender !== auth.username) {
+                setDoc((prev) => ({ ...prev, content: body.content }));
+              } else if (body.clientSentAt) {
+                recordEditLatency(Date.now() - body.clientSentAt);
+              }
+            } else if (body.type === "JOIN" || body.type === "LEAVE") {
+              const usersFromServer = body.content.split(",").filter((u) => u !== "");
+              setActiveUsers(usersFromServer);
+            } else if (body.type === "SPLICE") {
+              if (body.sender !== auth.username) {
+                setDoc((prev) => ({ ...prev, content: applySplices(prev.content, body.ops) }));
+              }
+            } else if (body.type === "RESYNC") {
+              // the server dropped updates while this tab was lagging
+              resync(client);
             }
-          } else if (body.type === "JOIN" || body.type === "LEAVE") {
-            const usersFromServer = body.content.split(",").filter((u) => u !== "");
-            setActiveUsers(usersFromServer);
-          }
-        });
+          });
+
+          client.send(
+            `/app/edit/${id}`,
+            {},
+            JSON.stringify({
+              sender: auth.username,
+              type: "JOIN",
+              content: "",
+            })
+          );
+
+          // catches up on whatever happened between the REST load (or the dropped connection) and now
+          resync(client);
+        },
+        () => {
+          if (closed) return;
+          // the server releases the document when the session drops; reopen and resync from lastSeq
+          if (attempts === 0) pushToast("Realtime connection lost, reconnecting...", "error");
+          setStatus("Reconnecting...");
+          const delay = Math.min(1000 * 2 ** attempts, 30000);
+          attempts++;
+          reconnectTimer = setTimeout(connect, delay);
+        }
+      );
+    }
 
-        client.send(
-          `/app/edit/${id}`,
-          {},
-          JSON.stringify({
-            sender: auth.username,
-            type: "JOIN",
-            content: "",
-          })
-        );
-      },
-      () => {
-        setStatus("Offline Mode");
-        pushToast("Realtime connection lost (Offline Mode)", "error");
-      }
-    );
+    connect();
 
     return () => {
+      closed = true;
+      if (reconnectTimer) clearTimeout(reconnectTimer);
       if (saveTimer.current) clearTimeout(saveTimer.current);
 
       if (stompClient.current && stompClient.current.connected) {
@@ -150,15 +249,10 @@ export default function EditorPage({ auth }) {
     if (saveTimer.current) clearTimeout(saveTimer.current);
     saveTimer.current = setTimeout(() => {
       if (stompClient.current && stompClient.current.connected) {
-        stompClient.current.send(
-          `/app/edit/${id}`,
-          {},
-          JSON.stringify({
-            sender: auth.username,
-            content: newContent,
-            type: "EDIT",
-          })
-        );
+        sendEdit(stompClient.current, newContent);
+      } else {
+        // sent once the connection is back
+        offlineContent.current = newContent;
       }
     }, 500);
   };
@@ -0,0 +1,118 @@
+package com.collab.docservice.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Answers "does this user exist" against userservice, with a short-lived cache.
+ * Negative answers expire sooner than positive ones because a user can register
+ * at any time and userservice does not notify us.
+ * Any failure to reach userservice is thrown to the caller.
+ */
+@Component
+public class UserDirectoryClient {
+
+    private final RestTemplate restTemplate;
+    private final Cache<String, Boolean> existsCache;
+
+    @Value("${services.userservice.baseUrl:http://localhost:8081}")
+    private String userserviceBaseUrl;
+
+    public UserDirectoryClient(RestTemplate restTemplate,
+                               @Value("${services.userservice.exists-cache.positive-ttl:60s}") Duration positiveTtl,
+                               @Value("${services.userservice.exists-cache.negative-ttl:5s}") Duration negativeTtl) {
+        this.restTemplate = restTemplate;
+        this.existsCache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfter(expiry(positiveTtl, negativeTtl))
+                .build();
+    }
+
+    public boolean exists(String username) {
+        Boolean cached = existsCache.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+
+        ResponseEntity<Boolean> response = restTemplate.getForEntity(
+                userserviceBaseUrl + "/users/exists/" + username,
+                Boolean.class
+        );
+
+        boolean exists = Boolean.TRUE.equals(response.getBody());
+        existsCache.put(username, exists);
+        return exists;
+    }
+
+    /**
+     * Returns the usernames (in input order) that do not exist.
+     * Uncached usernames are resolved with a single batch call.
+     */
+    public List<String> findMissing(Collection<String> usernames) {
+        Map<String, Boolean> known = new HashMap<>(existsCache.getAllPresent(usernames));
+
+        List<String> unknown = usernames.stream()
+                .filter(u -> !known.containsKey(u))
+                .distinct()
+                .toList();
+
+        if (!unknown.isEmpty()) {
+            ResponseEntity<Map<String, Boolean>> response = restTemplate.exchange(
+                    userserviceBaseUrl + "/users/exists",
+                    HttpMethod.POST,
+                    new HttpEntity<>(unknown),
+                    new ParameterizedTypeReference<Map<String, Boolean>>() {}
+            );
+
+            Map<String, Boolean> body = response.getBody() == null ? Map.of() : response.getBody();
+            for (String username : unknown) {
+                boolean exists = Boolean.TRUE.equals(body.get(username));
+                existsCache.put(username, exists);
+                known.put(username, exists);
+            }
+        }
+
+        return usernames.stream()
+                .filter(u -> !known.get(u))
+                .distinct()
+                .toList();
+    }
+
+    public void evict(String username) {
+        existsCache.invalidate(username);
+    }
+
+    public void evictAll() {
+        existsCache.invalidateAll();
+    }
+
+    private static Expiry<String, Boolean> expiry(Duration positiveTtl, Duration negativeTtl) {
+        return new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String username, Boolean exists, long currentTime) {
+                return (exists ? positiveTtl : negativeTtl).toNanos();
+            }
+
+            @Override
+            public long expireAfterUpdate(String username, Boolean exists, long currentTime, long currentDuration) {
+                return expireAfterCreate(username, exists, currentTime);
+            }
+
+            @Override
+            public long expireAfterRead(String username, Boolean exists, long currentTime, long currentDuration) {
+                return currentDuration;
+            }
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package com.collab.docservice.client;
+
+import com.collab.docservice.dto.VersionSnapshotRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Best-effort versionservice calls that nobody waits for.
+ * Failures are logged and swallowed, as they were when these calls ran inline.
+ */
+@Component
+public class VersionServiceClient {
+
+    private final RestTemplate restTemplate;
+
+    @Value("${services.versionservice.baseUrl:http://localhost:8083}")
+    private String versionserviceBaseUrl;
+
+    public VersionServiceClient(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    @Async
+    public void saveSnapshotInBackground(UUID docId, String authorUsername, String content) {
+        try {
+            VersionSnapshotRequest payload =
+                    new VersionSnapshotRequest(docId, authorUsername, content == null ? "" : content);
+
+            restTemplate.postForEntity(versionserviceBaseUrl + "/api/versions", payload, Object.class);
+        } catch (Exception e) {
+            System.err.println("Version snapshot failed: " + e.getMessage());
+        }
+    }
+
+    @Async
+    public void deleteHistoriesInBackground(Collection<UUID> docIds) {
+        for (UUID docId : docIds) {
+            try {
+                restTemplate.delete(versionserviceBaseUrl + "/api/versions/doc/" + docId);
+            } catch (Exception e) {
+                System.err.println("Version cleanup failed for doc " + docId + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.collab.docservice.codec;
+
+import com.collab.docservice.dto.DocEditMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-connection negotiation of the binary DocEditMessage encoding.
+ *
+ * A client opts in with a "collab-encoding: binary" header on its STOMP CONNECT frame.
+ * Only connections made on the native endpoint qualify: SockJS can only carry text.
+ * Broadcasts are converted to JSON once by the broker; on the outbound channel the
+ * frames going to opted-in sessions are re-encoded, once per broadcast rather than once
+ * per subscriber, because the broker hands every subscriber the same payload array.
+ *
+ * Register the same instance on the client inbound and outbound channels.
+ */
+public class BinaryEncodingInterceptor implements ChannelInterceptor {
+
+    public static final String ENCODING_HEADER = "collab-encoding";
+    public static final String BINARY = "binary";
+
+    /** Session attribute set by the native endpoint's handshake interceptor. */
+    public static final String NATIVE_TRANSPORT_ATTRIBUTE = "collab.nativeTransport";
+
+    private final ObjectMapper objectMapper;
+    private final Set<String> binarySessions = ConcurrentHashMap.newKeySet();
+
+    // keyed by payload identity (weak keys compare with ==)
+    private final Cache<byte[], byte[]> encoded = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(1_000)
+            .build();
+
+    public BinaryEncodingInterceptor(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (type == null || sessionId == null) {
+            return message;
+        }
+
+        switch (type) {
+            case CONNECT -> {
+                if (wantsBinary(message)) {
+                    binarySessions.add(sessionId);
+                }
+            }
+            case DISCONNECT -> binarySessions.remove(sessionId);
+            case MESSAGE -> {
+                if (binarySessions.contains(sessionId) && message.getPayload() instanceof byte[] json) {
+                    return toBinary(message, json);
+                }
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private static boolean wantsBinary(Message<?> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        return BINARY.equals(accessor.getFirstNativeHeader(ENCODING_HEADER))
+                && attributes != null
+                && Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT_ATTRIBUTE));
+    }
+
+    private Message<?> toBinary(Message<?> message, byte[] json) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (accessor.getContentType() == null
+                || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(accessor.getContentType())) {
+            return message;
+        }
+
+        byte[] binary = encoded.get(json, this::reencode);
+        if (binary == null) {
+            return message;
+        }
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(ENCODING_HEADER, BINARY);
+        accessor.removeNativeHeader(StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER);
+        return MessageBuilder.createMessage(binary, accessor.getMessageHeaders());
+    }
+
+    // null (not cached) when the payload is not a DocEditMessage; the frame then goes out as JSON
+    private byte[] reencode(byte[] json) {
+        try {
+            return DocEditMessageCodec.encode(objectMapper.readValue(json, DocEditMessage.class));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
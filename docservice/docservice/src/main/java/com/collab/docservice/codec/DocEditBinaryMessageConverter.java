@@ -0,0 +1,37 @@
+package com.collab.docservice.codec;
+
+import com.collab.docservice.dto.DocEditMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Reads and writes DocEditMessage in the DocEditMessageCodec format.
+ *
+ * The content type is application/octet-stream because that is what makes
+ * StompSubProtocolHandler send a binary WebSocket frame. Matching is strict, so
+ * payloads without a content type (e.g. @SendTo return values) still go to JSON.
+ */
+public class DocEditBinaryMessageConverter extends AbstractMessageConverter {
+
+    public DocEditBinaryMessageConverter() {
+        super(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return DocEditMessage.class == clazz;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        return message.getPayload() instanceof byte[] bytes ? DocEditMessageCodec.decode(bytes) : null;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return DocEditMessageCodec.encode((DocEditMessage) payload);
+    }
+}
@@ -0,0 +1,252 @@
+package com.collab.docservice.codec;
+
+import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.dto.SpliceOp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Compact binary form of DocEditMessage, used on native WebSocket connections
+ * that ask for it (see BinaryEncodingInterceptor).
+ *
+ * Layout: version byte, type byte, presence bitmap, cursorPosition, then the present
+ * fields in bitmap order. Integers are zig-zag varints, strings are a varint byte
+ * length followed by UTF-8. Types other than JOIN/LEAVE/EDIT/CURSOR/SPLICE/SYNC/CRDT_* are written as a string.
+ * ops are a varint count followed by offset, deleteCount and insert for each op.
+ * The EXTENDED bit is followed by a second bitmap (replica, update, stateVector, seq, missed) and
+ * those fields. Byte arrays are a varint length followed by the raw bytes. missed is a varint count
+ * followed by each message encoded the same way, as a byte array.
+ */
+public final class DocEditMessageCodec {
+
+    static final byte VERSION = 1;
+
+    private static final String[] TYPES = {"JOIN", "LEAVE", "EDIT", "CURSOR", "SPLICE",
+            "CRDT_UPDATE", "CRDT_SYNC", "CRDT_ACK", "SYNC"};
+    private static final byte TYPE_NULL = (byte) 0xFE;
+    private static final byte TYPE_OTHER = (byte) 0xFF;
+
+    private static final int SENDER = 1;
+    private static final int CONTENT = 1 << 1;
+    private static final int TRACE_ID = 1 << 2;
+    private static final int CLIENT_SENT_AT = 1 << 3;
+    private static final int SERVER_RECEIVED_AT = 1 << 4;
+    private static final int SERVER_BROADCAST_AT = 1 << 5;
+    private static final int OPS = 1 << 6;
+    private static final int EXTENDED = 1 << 7;
+
+    private static final int REPLICA = 1;
+    private static final int UPDATE = 1 << 1;
+    private static final int STATE_VECTOR = 1 << 2;
+    private static final int SEQ = 1 << 3;
+    private static final int MISSED = 1 << 4;
+
+    private DocEditMessageCodec() {
+    }
+
+    public static byte[] encode(DocEditMessage m) {
+        int contentLength = (m.content == null ? 0 : m.content.length()) + (m.update == null ? 0 : m.update.length);
+        Writer out = new Writer(32 + contentLength);
+
+        out.write(VERSION);
+        byte typeCode = typeCode(m.type);
+        out.write(typeCode);
+        if (typeCode == TYPE_OTHER) {
+            out.writeString(m.type);
+        }
+
+        int present = (m.sender != null ? SENDER : 0)
+                | (m.content != null ? CONTENT : 0)
+                | (m.traceId != null ? TRACE_ID : 0)
+                | (m.clientSentAt != null ? CLIENT_SENT_AT : 0)
+                | (m.serverReceivedAt != null ? SERVER_RECEIVED_AT : 0)
+                | (m.serverBroadcastAt != null ? SERVER_BROADCAST_AT : 0)
+                | (m.ops != null ? OPS : 0)
+                | (m.replica != null || m.update != null || m.stateVector != null || m.seq != null
+                        || m.missed != null ? EXTENDED : 0);
+        out.write(present);
+        out.writeVarLong(m.cursorPosition);
+
+        if (m.sender != null) out.writeString(m.sender);
+        if (m.content != null) out.writeString(m.content);
+        if (m.traceId != null) out.writeString(m.traceId);
+        if (m.clientSentAt != null) out.writeVarLong(m.clientSentAt);
+        if (m.serverReceivedAt != null) out.writeVarLong(m.serverReceivedAt);
+        if (m.serverBroadcastAt != null) out.writeVarLong(m.serverBroadcastAt);
+        if (m.ops != null) {
+            out.writeVarLong(m.ops.size());
+            for (SpliceOp op : m.ops) {
+                out.writeVarLong(op.offset);
+                out.writeVarLong(op.deleteCount);
+                out.writeString(op.insert == null ? "" : op.insert);
+            }
+        }
+        if ((present & EXTENDED) != 0) {
+            out.write((m.replica != null ? REPLICA : 0)
+                    | (m.update != null ? UPDATE : 0)
+                    | (m.stateVector != null ? STATE_VECTOR : 0)
+                    | (m.seq != null ? SEQ : 0)
+                    | (m.missed != null ? MISSED : 0));
+            if (m.replica != null) out.writeVarLong(m.replica);
+            if (m.update != null) out.writeByteArray(m.update);
+            if (m.stateVector != null) out.writeByteArray(m.stateVector);
+            if (m.seq != null) out.writeVarLong(m.seq);
+            if (m.missed != null) {
+                out.writeVarLong(m.missed.size());
+                for (DocEditMessage nested : m.missed) {
+                    out.writeByteArray(encode(nested));
+                }
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static DocEditMessage decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.read() != VERSION) {
+            throw new IllegalArgumentException("Unsupported DocEditMessage encoding version");
+        }
+
+        DocEditMessage m = new DocEditMessage();
+        byte typeCode = (byte) in.read();
+        if (typeCode == TYPE_OTHER) {
+            m.type = in.readString();
+        } else if (typeCode != TYPE_NULL) {
+            if (typeCode < 0 || typeCode >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown DocEditMessage type code " + typeCode);
+            }
+            m.type = TYPES[typeCode];
+        }
+
+        int present = in.read();
+        m.cursorPosition = (int) in.readVarLong();
+
+        if ((present & SENDER) != 0) m.sender = in.readString();
+        if ((present & CONTENT) != 0) m.content = in.readString();
+        if ((present & TRACE_ID) != 0) m.traceId = in.readString();
+        if ((present & CLIENT_SENT_AT) != 0) m.clientSentAt = in.readVarLong();
+        if ((present & SERVER_RECEIVED_AT) != 0) m.serverReceivedAt = in.readVarLong();
+        if ((present & SERVER_BROADCAST_AT) != 0) m.serverBroadcastAt = in.readVarLong();
+        if ((present & OPS) != 0) {
+            long count = in.readVarLong();
+            // every op takes at least 3 bytes; rejects absurd counts before allocating
+            if (count < 0 || count > bytes.length / 3) {
+                throw new IllegalArgumentException("Truncated DocEditMessage");
+            }
+            m.ops = new ArrayList<>((int) count);
+            for (int i = 0; i < count; i++) {
+                m.ops.add(new SpliceOp((int) in.readVarLong(), (int) in.readVarLong(), in.readString()));
+            }
+        }
+        if ((present & EXTENDED) != 0) {
+            int extended = in.read();
+            if ((extended & REPLICA) != 0) m.replica = (int) in.readVarLong();
+            if ((extended & UPDATE) != 0) m.update = in.readBytes();
+            if ((extended & STATE_VECTOR) != 0) m.stateVector = in.readBytes();
+            if ((extended & SEQ) != 0) m.seq = in.readVarLong();
+            if ((extended & MISSED) != 0) {
+                long count = in.readVarLong();
+                // every nested message takes at least 5 bytes
+                if (count < 0 || count > bytes.length / 5) {
+                    throw new IllegalArgumentException("Truncated DocEditMessage");
+                }
+                m.missed = new ArrayList<>((int) count);
+                for (int i = 0; i < count; i++) {
+                    m.missed.add(decode(in.readBytes()));
+                }
+            }
+        }
+        return m;
+    }
+
+    private static byte typeCode(String type) {
+        if (type == null) {
+            return TYPE_NULL;
+        }
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return (byte) i;
+            }
+        }
+        return TYPE_OTHER;
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeVarLong(long value) {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void writeString(String s) {
+            writeByteArray(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeByteArray(byte[] b) {
+            writeVarLong(b.length);
+            write(b, 0, b.length);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int pos;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            if (pos >= bytes.length) {
+                throw new IllegalArgumentException("Truncated DocEditMessage");
+            }
+            return bytes[pos++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in DocEditMessage");
+        }
+
+        String readString() {
+            int length = readLength();
+            String s = new String(bytes, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return s;
+        }
+
+        byte[] readBytes() {
+            int length = readLength();
+            byte[] b = Arrays.copyOfRange(bytes, pos, pos + length);
+            pos += length;
+            return b;
+        }
+
+        private int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > bytes.length - pos) {
+                throw new IllegalArgumentException("Truncated DocEditMessage");
+            }
+            return (int) length;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.collab.docservice.config;
+
+import com.collab.docservice.trace.TraceContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * @Async work runs on Boot's applicationTaskExecutor: a thread pool by default,
+ * a virtual thread per task when spring.threads.virtual.enabled is on (Java 21).
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    // Boot applies a TaskDecorator bean to applicationTaskExecutor; keeps versionservice calls in the caller's trace
+    @Bean
+    public TaskDecorator traceContextTaskDecorator() {
+        return task -> {
+            TraceContext context = TraceContext.current();
+            if (context == null) {
+                return task;
+            }
+            return () -> {
+                TraceContext.open(context);
+                try {
+                    task.run();
+                } finally {
+                    TraceContext.close();
+                }
+            };
+        };
+    }
+}
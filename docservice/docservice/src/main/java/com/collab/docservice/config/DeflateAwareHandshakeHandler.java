@@ -0,0 +1,36 @@
+package com.collab.docservice.config;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
+
+/**
+ * Accepts permessage-deflate when the client offers it (Tomcat implements it),
+ * unless switched off with docservice.websocket.permessage-deflate=false.
+ * Full-content EDIT frames compress well, but deflate costs CPU per frame and per session.
+ */
+public class DeflateAwareHandshakeHandler extends DefaultHandshakeHandler {
+
+    static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean deflateEnabled;
+
+    public DeflateAwareHandshakeHandler(boolean deflateEnabled) {
+        this.deflateEnabled = deflateEnabled;
+    }
+
+    @Override
+    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                 List<WebSocketExtension> requested,
+                                                                 List<WebSocketExtension> supported) {
+        List<WebSocketExtension> accepted = super.filterRequestedExtensions(request, requested, supported);
+        if (deflateEnabled) {
+            return accepted;
+        }
+        return accepted.stream()
+                .filter(e -> !PERMESSAGE_DEFLATE.equalsIgnoreCase(e.getName()))
+                .toList();
+    }
+}
@@ -0,0 +1,12 @@
+package com.collab.docservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs (ActiveDocumentRegistry write-back) run on Boot's taskScheduler.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,19 +1,60 @@
 package com.collab.docservice.config;
 
+import com.collab.docservice.codec.BinaryEncodingInterceptor;
+import com.collab.docservice.codec.DocEditBinaryMessageConverter;
+import com.collab.docservice.codec.NativeTransportHandshakeInterceptor;
+import com.collab.docservice.trace.StompTraceInterceptor;
+import com.collab.docservice.transport.SlowConsumerMonitor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.server.ServerContainer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
+import org.springframework.web.context.ServletContextAware;
 import org.springframework.web.socket.config.annotation.*;
 
+import java.util.List;
+
 @Configuration
 @EnableWebSocketMessageBroker
-public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+@EnableConfigurationProperties(WebSocketProperties.class)
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer, ServletContextAware {
+
+    private final WebSocketProperties properties;
+    private final SlowConsumerMonitor slowConsumers;
+    private final BinaryEncodingInterceptor binaryEncoding;
+    private final DeflateAwareHandshakeHandler handshakeHandler;
+    private final boolean virtualThreads;
+
+    public WebSocketConfig(ObjectMapper objectMapper, WebSocketProperties properties, SlowConsumerMonitor slowConsumers,
+                           Environment environment) {
+        this.properties = properties;
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        this.slowConsumers = slowConsumers;
+        this.binaryEncoding = new BinaryEncodingInterceptor(objectMapper);
+        this.handshakeHandler = new DeflateAwareHandshakeHandler(properties.isPermessageDeflate());
+    }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws-docs")
                 // Use setAllowedOriginPatterns("*") to allow everything for testing
                 .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(handshakeHandler)
                 .withSockJS();
+
+        // Plain WebSocket, no SockJS framing or fallbacks; the only endpoint that can negotiate binary frames
+        registry.addEndpoint("/ws-docs-native")
+                .setAllowedOriginPatterns("*")
+                .setHandshakeHandler(handshakeHandler)
+                .addInterceptors(new NativeTransportHandshakeInterceptor());
     }
 
     @Override
@@ -22,5 +63,73 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         config.setApplicationDestinationPrefixes("/app");
         // Messages starting with /topic are sent directly to the clients
         config.enableSimpleBroker("/topic");
+        config.setPreservePublishOrder(properties.isPreservePublishOrder());
+
+        if (properties.getBroker().isConfigured()) {
+            apply(config.configureBrokerChannel().taskExecutor(), properties.getBroker());
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, properties.getInbound(), "ws-inbound-");
+        // stamps arrival time and opens the client's trace context around @MessageMapping handlers;
+        // records which sessions asked for binary frames on CONNECT
+        registration.interceptors(new StompTraceInterceptor(), binaryEncoding);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureExecutor(registration, properties.getOutbound(), "ws-outbound-");
+        // slow-consumer check first so dropped frames are not re-encoded
+        registration.interceptors(slowConsumers, binaryEncoding);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(Math.toIntExact(properties.getMessageSizeLimit().toBytes()))
+                .setSendBufferSizeLimit(Math.toIntExact(properties.getSendBufferSizeLimit().toBytes()))
+                .setSendTimeLimit(Math.toIntExact(properties.getSendTimeLimit().toMillis()))
+                .addDecoratorFactory(slowConsumers);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // binary SEND frames (content-type application/octet-stream); the default JSON converters follow
+        messageConverters.add(new DocEditBinaryMessageConverter());
+        return true;
+    }
+
+    /**
+     * Tomcat buffers a whole WebSocket message before handing it to STOMP (8 KB by default)
+     * and closes the connection on anything bigger, so raise it to the STOMP message size limit.
+     * The container is absent in mock servlet environments (tests).
+     */
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        if (servletContext.getAttribute(ServerContainer.class.getName()) instanceof ServerContainer container) {
+            int limit = Math.toIntExact(properties.getMessageSizeLimit().toBytes());
+            container.setDefaultMaxTextMessageBufferSize(Math.max(limit, container.getDefaultMaxTextMessageBufferSize()));
+            container.setDefaultMaxBinaryMessageBufferSize(Math.max(limit, container.getDefaultMaxBinaryMessageBufferSize()));
+        }
+    }
+
+    /**
+     * Explicit pool settings win; otherwise a virtual thread per message when virtual threads
+     * are on (Java 21 build), so a handler blocked on JDBC does not hold a pool thread.
+     */
+    private void configureExecutor(ChannelRegistration registration, WebSocketProperties.Pool pool, String threadPrefix) {
+        if (pool.isConfigured()) {
+            apply(registration.taskExecutor(), pool);
+        } else if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor(threadPrefix));
+        }
+    }
+
+    private static void apply(TaskExecutorRegistration executor, WebSocketProperties.Pool pool) {
+        if (pool.getCorePoolSize() != null) executor.corePoolSize(pool.getCorePoolSize());
+        if (pool.getMaxPoolSize() != null) executor.maxPoolSize(pool.getMaxPoolSize());
+        if (pool.getQueueCapacity() != null) executor.queueCapacity(pool.getQueueCapacity());
+        if (pool.getKeepAliveSeconds() != null) executor.keepAliveSeconds(pool.getKeepAliveSeconds());
     }
-}
\ No newline at end of file
+}
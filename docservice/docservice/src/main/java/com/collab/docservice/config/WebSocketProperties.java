@@ -0,0 +1,79 @@
+package com.collab.docservice.config;
+
+import com.collab.docservice.transport.SlowConsumerMonitor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * STOMP/WebSocket tuning under docservice.websocket.
+ * Pool settings left unset keep Spring's defaults (2 x cores threads, unbounded queue).
+ */
+@ConfigurationProperties("docservice.websocket")
+public class WebSocketProperties {
+
+    private boolean permessageDeflate = true;
+
+    // Largest inbound STOMP message; EDIT frames carry the full document text
+    private DataSize messageSizeLimit = DataSize.ofKilobytes(512);
+
+    // Per-session outbound buffer and blocking-send limits; a session over either is closed by Spring
+    private DataSize sendBufferSizeLimit = DataSize.ofMegabytes(1);
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+    // Keep broadcasts to one session in order; an older full-content EDIT must not overwrite a newer one
+    private boolean preservePublishOrder = true;
+
+    private final Pool inbound = new Pool();
+    private final Pool outbound = new Pool();
+    private final Pool broker = new Pool();
+    private final SlowConsumer slowConsumer = new SlowConsumer();
+
+    public boolean isPermessageDeflate() { return permessageDeflate; }
+    public void setPermessageDeflate(boolean permessageDeflate) { this.permessageDeflate = permessageDeflate; }
+    public DataSize getMessageSizeLimit() { return messageSizeLimit; }
+    public void setMessageSizeLimit(DataSize messageSizeLimit) { this.messageSizeLimit = messageSizeLimit; }
+    public DataSize getSendBufferSizeLimit() { return sendBufferSizeLimit; }
+    public void setSendBufferSizeLimit(DataSize sendBufferSizeLimit) { this.sendBufferSizeLimit = sendBufferSizeLimit; }
+    public Duration getSendTimeLimit() { return sendTimeLimit; }
+    public void setSendTimeLimit(Duration sendTimeLimit) { this.sendTimeLimit = sendTimeLimit; }
+    public boolean isPreservePublishOrder() { return preservePublishOrder; }
+    public void setPreservePublishOrder(boolean preservePublishOrder) { this.preservePublishOrder = preservePublishOrder; }
+    public Pool getInbound() { return inbound; }
+    public Pool getOutbound() { return outbound; }
+    public Pool getBroker() { return broker; }
+    public SlowConsumer getSlowConsumer() { return slowConsumer; }
+
+    public static class Pool {
+        private Integer corePoolSize;
+        private Integer maxPoolSize;
+        private Integer queueCapacity;
+        private Integer keepAliveSeconds;
+
+        public boolean isConfigured() {
+            return corePoolSize != null || maxPoolSize != null || queueCapacity != null || keepAliveSeconds != null;
+        }
+
+        public Integer getCorePoolSize() { return corePoolSize; }
+        public void setCorePoolSize(Integer corePoolSize) { this.corePoolSize = corePoolSize; }
+        public Integer getMaxPoolSize() { return maxPoolSize; }
+        public void setMaxPoolSize(Integer maxPoolSize) { this.maxPoolSize = maxPoolSize; }
+        public Integer getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(Integer queueCapacity) { this.queueCapacity = queueCapacity; }
+        public Integer getKeepAliveSeconds() { return keepAliveSeconds; }
+        public void setKeepAliveSeconds(Integer keepAliveSeconds) { this.keepAliveSeconds = keepAliveSeconds; }
+    }
+
+    public static class SlowConsumer {
+        private SlowConsumerMonitor.Policy policy = SlowConsumerMonitor.Policy.RESYNC;
+
+        // MESSAGE frames accepted for a session but not yet written to its socket
+        private int maxPendingMessages = 100;
+
+        public SlowConsumerMonitor.Policy getPolicy() { return policy; }
+        public void setPolicy(SlowConsumerMonitor.Policy policy) { this.policy = policy; }
+        public int getMaxPendingMessages() { return maxPendingMessages; }
+        public void setMaxPendingMessages(int maxPendingMessages) { this.maxPendingMessages = maxPendingMessages; }
+    }
+}
@@ -1,30 +1,62 @@
 package com.collab.docservice.controller;
 
+import com.collab.docservice.client.UserDirectoryClient;
+import com.collab.docservice.client.VersionServiceClient;
 import com.collab.docservice.dto.*;
 import com.collab.docservice.model.Document;
+import com.collab.docservice.model.DocumentOperation;
 import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.search.DocumentSearch;
+import com.collab.docservice.service.ActiveDocumentRegistry;
+import com.collab.docservice.service.CrdtDocumentRegistry;
+import com.collab.docservice.service.DocumentContentReader;
+import com.collab.docservice.service.OperationLog;
+import com.collab.docservice.service.SnapshotPolicy;
+import com.collab.docservice.service.TextSplicer;
+import com.collab.docservice.text.Rope;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.UriUtils;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 @RestController
 @RequestMapping("/docs")
 public class DocController {
 
+    static final String CRDT_STATE_VECTOR_HEADER = "X-Crdt-State-Vector";
+
     private final DocumentRepository repo;
     private final RestTemplate restTemplate;
-
-    @Value("${services.userservice.baseUrl:http://localhost:8081}")
-    private String userserviceBaseUrl;
+    private final UserDirectoryClient userDirectory;
+    private final VersionServiceClient versionService;
+    private final DocumentContentReader contentReader;
+    private final ActiveDocumentRegistry activeDocuments;
+    private final CrdtDocumentRegistry crdtDocuments;
+    private final SimpMessageSendingOperations messaging;
+    private final OperationLog operationLog;
+    private final SnapshotPolicy snapshotPolicy;
+    private final DocumentSearch search;
 
     @Value("${services.versionservice.baseUrl:http://localhost:8083}")
     private String versionserviceBaseUrl;
@@ -32,9 +64,22 @@ public class DocController {
     @Value("${internal.secret}")
     private String internalSecret;
 
-    public DocController(DocumentRepository repo, RestTemplate restTemplate) {
+    public DocController(DocumentRepository repo, RestTemplate restTemplate, UserDirectoryClient userDirectory,
+                         VersionServiceClient versionService, DocumentContentReader contentReader,
+                         ActiveDocumentRegistry activeDocuments, CrdtDocumentRegistry crdtDocuments,
+                         SimpMessageSendingOperations messaging, OperationLog operationLog,
+                         SnapshotPolicy snapshotPolicy, DocumentSearch search) {
         this.repo = repo;
         this.restTemplate = restTemplate;
+        this.userDirectory = userDirectory;
+        this.versionService = versionService;
+        this.contentReader = contentReader;
+        this.activeDocuments = activeDocuments;
+        this.crdtDocuments = crdtDocuments;
+        this.messaging = messaging;
+        this.operationLog = operationLog;
+        this.snapshotPolicy = snapshotPolicy;
+        this.search = search;
     }
 
     /* -----------------------------
@@ -68,19 +113,105 @@ public class DocController {
        Get one doc
     ------------------------------ */
     @GetMapping("/{id}")
-    public DocResponse getOne(@PathVariable UUID id, HttpServletRequest request) {
+    public ResponseEntity<DocResponse> getOne(@PathVariable UUID id, HttpServletRequest request,
+                                              WebRequest webRequest) {
         String username = requireUser(request);
         Document d = getDocWithPermission(id, username);
 
-        return new DocResponse(
-                d.getId(),
-                d.getTitle(),
-                d.getContent(),
-                d.getOwnerUsername(),
-                new ArrayList<>(d.getCollaborators()),
-                d.getCreatedAt(),
-                d.getUpdatedAt()
-        );
+        // unchanged since the client's copy: 304 without the body
+        if (webRequest.checkNotModified(etagOf(d))) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etagOf(d))
+                .body(new DocResponse(
+                        d.getId(),
+                        d.getTitle(),
+                        d.getContent(),
+                        d.getOwnerUsername(),
+                        new ArrayList<>(d.getCollaborators()),
+                        d.getCreatedAt(),
+                        d.getUpdatedAt()
+                ));
+    }
+
+    /* -----------------------------
+       Metadata only (no content is read)
+    ------------------------------ */
+    @GetMapping("/{id}/meta")
+    public ResponseEntity<DocMetaResponse> meta(@PathVariable UUID id, HttpServletRequest request,
+                                                WebRequest webRequest) {
+        String username = requireUser(request);
+        ReadAccess access = requireReadAccess(id, username);
+        DocumentRepository.DocumentMeta m = access.meta();
+
+        if (webRequest.checkNotModified(etagOf(m.getRevision()))) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etagOf(m.getRevision()))
+                .body(new DocMetaResponse(
+                        m.getId(),
+                        m.getTitle(),
+                        m.getOwnerUsername(),
+                        access.collaborators(),
+                        m.getCreatedAt(),
+                        m.getUpdatedAt(),
+                        m.getRevision(),
+                        m.getContentLength()
+                ));
+    }
+
+    /* -----------------------------
+       Range read of the content
+       ?offset=&length=      code points, offset 0-based
+       ?fromLine=&lineCount= lines, fromLine 1-based
+    ------------------------------ */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<DocContentResponse> content(@PathVariable UUID id,
+                                                      @RequestParam(required = false) Integer offset,
+                                                      @RequestParam(required = false) Integer length,
+                                                      @RequestParam(required = false) Integer fromLine,
+                                                      @RequestParam(required = false) Integer lineCount,
+                                                      HttpServletRequest request,
+                                                      WebRequest webRequest) {
+        String username = requireUser(request);
+        ReadAccess access = requireReadAccess(id, username);
+
+        if (webRequest.checkNotModified(etagOf(access.meta().getRevision()))) {
+            return null;
+        }
+
+        DocContentResponse slice;
+        if (fromLine != null || lineCount != null) {
+            if (offset != null || length != null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Use either offset/length or fromLine/lineCount");
+            }
+            slice = contentReader.readLines(id, fromLine == null ? 1 : fromLine, lineCount == null ? 1 : lineCount);
+        } else {
+            slice = contentReader.readChars(id, offset == null ? 0 : offset, length);
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etagOf(slice.revision))
+                .body(slice);
+    }
+
+    private record ReadAccess(DocumentRepository.DocumentMeta meta, List<String> collaborators) {}
+
+    // same rules as getDocWithPermission, without loading the document's content
+    private ReadAccess requireReadAccess(UUID id, String username) {
+        DocumentRepository.DocumentMeta meta = repo.findMetaById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Doc not found"));
+        List<String> collaborators = repo.findCollaborators(id);
+
+        if (!meta.getOwnerUsername().equals(username) && !collaborators.contains(username)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Access denied");
+        }
+        return new ReadAccess(meta, collaborators);
     }
 
     /* -----------------------------
@@ -100,7 +231,9 @@ public class DocController {
 
         // ✅ Keep or remove this depending on your preference:
         // If you want Version 1 when doc is created, keep it.
-        saveVersionSnapshotSafe(d.getId(), username, d.getContent());
+        // Runs after the response is sent; creating a doc doesn't wait on versionservice.
+        versionService.saveSnapshotInBackground(d.getId(), username, d.getContent());
+        snapshotPolicy.snapshotTaken(d.getId());
 
         return new DocResponse(
                 d.getId(),
@@ -133,32 +266,258 @@ public class DocController {
                 .toList();
     }
 
+    /* -----------------------------
+       Full-text search over title and content of the docs the caller can see (owner or collaborator)
+       Best matches first; pages are counted from 0 and hasMore says whether the next one has results
+    ------------------------------ */
+    @GetMapping("/search")
+    public DocSearchResponse search(@RequestParam String q,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size,
+                                    HttpServletRequest request) {
+        String username = requireUser(request);
+
+        if (q.isBlank() || q.length() > 500) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must be between 1 and 500 characters");
+        }
+        if (page < 0 || size < 1 || size > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "page must be >= 0 and size between 1 and 100");
+        }
+
+        // one extra hit tells whether there is a next page
+        List<DocSearchHit> hits = search.search(username, q.trim(), page * size, size + 1);
+        boolean hasMore = hits.size() > size;
+        return new DocSearchResponse(hasMore ? hits.subList(0, size) : hits, page, size, hasMore);
+    }
+
     /* -----------------------------
        Update doc content/title
        IMPORTANT: no snapshots here anymore
     ------------------------------ */
     @PutMapping("/{id}")
-    public DocResponse update(@PathVariable UUID id,
-                              @RequestBody CreateDocRequest req,
-                              HttpServletRequest request) {
+    public ResponseEntity<DocResponse> update(@PathVariable UUID id,
+                                              @RequestBody CreateDocRequest req,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              HttpServletRequest request) {
         String username = requireUser(request);
 
-        Document doc = getDocWithPermission(id, username);
-        doc.setTitle(req.title);
-        doc.setContent(req.content == null ? "" : req.content);
+        // live SPLICE edits are written back first, so If-Match and the new ETag account for them
+        Document doc = activeDocuments.writeThrough(id, () -> {
+            Document current = getDocWithPermission(id, username);
 
-        doc = repo.save(doc);
+            // If-Match is optional; without it the save is last-writer-wins as before
+            if (ifMatch != null && !matches(ifMatch, etagOf(current))) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Document was modified");
+            }
+
+            String content = req.content == null ? "" : req.content;
+            String previous = current.getContent();
+            boolean contentChanged = !content.equals(previous);
+            current.setTitle(req.title);
+            current.setContent(content);
+            if (contentChanged) {
+                current.setAppliedSeq(operationLog.nextSeq(id));
+            }
+
+            Document saved;
+            try {
+                saved = repo.save(current);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // modified between our read and our write (realtime edit or another PUT)
+                throw new ResponseStatusException(
+                        ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT, "Document was modified");
+            }
+            if (contentChanged) {
+                operationLog.recordEdit(id, saved.getAppliedSeq(), username, content);
+                snapshotPolicy.recordEdit(id, username, SnapshotPolicy.changedChars(previous, content));
+            }
+            return saved;
+        });
 
         // ❌ DO NOT snapshot here (prevents version-per-keystroke)
-        return new DocResponse(
-                doc.getId(),
-                doc.getTitle(),
-                doc.getContent(),
-                doc.getOwnerUsername(),
-                new ArrayList<>(doc.getCollaborators()),
-                doc.getCreatedAt(),
-                doc.getUpdatedAt()
-        );
+        return ResponseEntity.ok()
+                .eTag(etagOf(doc))
+                .body(new DocResponse(
+                        doc.getId(),
+                        doc.getTitle(),
+                        doc.getContent(),
+                        doc.getOwnerUsername(),
+                        new ArrayList<>(doc.getCollaborators()),
+                        doc.getCreatedAt(),
+                        doc.getUpdatedAt()
+                ));
+    }
+
+    /* -----------------------------
+       Patch doc content with splice ops against a base revision
+       Only the ops travel; the response carries metadata, not the new content.
+    ------------------------------ */
+    @PatchMapping("/{id}")
+    public ResponseEntity<DocMetaResponse> patch(@PathVariable UUID id,
+                                                 @Valid @RequestBody PatchDocRequest req,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                 HttpServletRequest request) {
+        String username = requireUser(request);
+
+        if (req.baseRevision == null && ifMatch == null) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED,
+                    "baseRevision or If-Match is required");
+        }
+
+        // live SPLICE edits are written back first; a base revision from before them no longer matches
+        Document doc = activeDocuments.writeThrough(id, () -> {
+            Document current = getDocWithPermission(id, username);
+
+            // the ops are offsets into the base text, so they only apply to exactly that revision
+            boolean baseMatches = req.baseRevision != null
+                    ? req.baseRevision == current.getRevision()
+                    : matches(ifMatch, etagOf(current)) && !ifMatch.trim().equals("*");
+            if (!baseMatches) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Document was modified");
+            }
+
+            operationLog.ensureBase(id, current.getAppliedSeq(), current.getContent());
+            current.setContent(TextSplicer.apply(current.getContent(), req.ops));
+            current.setAppliedSeq(operationLog.nextSeq(id));
+            if (req.title != null && !req.title.isBlank()) {
+                current.setTitle(req.title);
+            }
+
+            Document saved;
+            try {
+                saved = repo.save(current);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Document was modified");
+            }
+            operationLog.recordSplice(id, saved.getAppliedSeq(), username, req.ops);
+            return saved;
+        });
+        snapshotPolicy.recordEdit(id, username, SnapshotPolicy.changedChars(req.ops));
+
+        return ResponseEntity.ok()
+                .eTag(etagOf(doc))
+                .body(new DocMetaResponse(
+                        doc.getId(),
+                        doc.getTitle(),
+                        doc.getOwnerUsername(),
+                        new ArrayList<>(doc.getCollaborators()),
+                        doc.getCreatedAt(),
+                        doc.getUpdatedAt(),
+                        doc.getRevision(),
+                        doc.getContent().length()
+                ));
+    }
+
+    /* -----------------------------
+       Operation log: every accepted edit, oldest first
+       ?after= is the last seq the client has, limit caps the page (at most 1000)
+    ------------------------------ */
+    @GetMapping("/{id}/operations")
+    public List<DocOperationResponse> operations(@PathVariable UUID id,
+                                                 @RequestParam(defaultValue = "0") long after,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 HttpServletRequest request) {
+        String username = requireUser(request);
+        requireReadAccess(id, username);
+
+        if (limit < 1 || limit > 1000) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and 1000");
+        }
+
+        return operationLog.history(id, after, limit).stream()
+                .map(op -> DocumentOperation.SPLICE.equals(op.getType())
+                        ? new DocOperationResponse(op.getSeq(), op.getType(), op.getAuthor(), op.getCreatedAt(),
+                                operationLog.spliceOps(op), null)
+                        : new DocOperationResponse(op.getSeq(), op.getType(), op.getAuthor(), op.getCreatedAt(),
+                                null, op.getPayload()))
+                .toList();
+    }
+
+    /* -----------------------------
+       Content as of an operation (replayed from the nearest checkpoint)
+       410 once compaction has folded that seq away
+    ------------------------------ */
+    @GetMapping(value = "/{id}/operations/{seq}/content", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String contentAt(@PathVariable UUID id, @PathVariable long seq, HttpServletRequest request) {
+        String username = requireUser(request);
+        requireReadAccess(id, username);
+
+        return operationLog.contentAt(id, seq)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.GONE, "No history at seq " + seq));
+    }
+
+    /* -----------------------------
+       CRDT sync for offline clients and other nodes
+       GET returns what a replica with the given state vector is missing (a diff, or the full state
+       for a replica not seen before); POST merges an update and relays it to live subscribers.
+       Both answer with the server's state vector in X-Crdt-State-Vector (base64url).
+    ------------------------------ */
+    @GetMapping(value = "/{id}/crdt", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> crdtSync(@PathVariable UUID id,
+                                           @RequestParam int replica,
+                                           @RequestParam(required = false) String stateVector,
+                                           HttpServletRequest request) {
+        String username = requireUser(request);
+        requireReadAccess(id, username);
+
+        byte[] body = crdtDocuments.sync(id, replica, stateVector == null ? null : decodeBase64Url(stateVector));
+        return ResponseEntity.ok()
+                .header(CRDT_STATE_VECTOR_HEADER, encodeBase64Url(crdtDocuments.stateVector(id)))
+                .body(body);
+    }
+
+    @PostMapping(value = "/{id}/crdt", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> crdtMerge(@PathVariable UUID id,
+                                          @RequestBody byte[] update,
+                                          HttpServletRequest request) {
+        String username = requireUser(request);
+        requireReadAccess(id, username);
+
+        if (crdtDocuments.apply(id, update)) {
+            snapshotPolicy.recordEdit(id, username, update.length);
+            DocEditMessage relay = new DocEditMessage();
+            relay.type = "CRDT_UPDATE";
+            relay.sender = username;
+            relay.update = update;
+            relay.serverBroadcastAt = System.currentTimeMillis();
+            messaging.convertAndSend("/topic/doc/" + id, relay);
+        }
+        return ResponseEntity.noContent()
+                .header(CRDT_STATE_VECTOR_HEADER, encodeBase64Url(crdtDocuments.stateVector(id)))
+                .build();
+    }
+
+    private static byte[] decodeBase64Url(String value) {
+        try {
+            return Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed state vector");
+        }
+    }
+
+    private static String encodeBase64Url(byte[] value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+
+    /* -----------------------------
+       ETag helpers (strong, from the revision)
+    ------------------------------ */
+    static String etagOf(Document doc) {
+        return etagOf(doc.getRevision());
+    }
+
+    static String etagOf(long revision) {
+        return "\"r" + revision + "\"";
+    }
+
+    private static boolean matches(String ifMatch, String etag) {
+        for (String candidate : ifMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*") || c.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /* -----------------------------
@@ -180,29 +539,63 @@ public class DocController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You cannot share a document with yourself");
         }
 
-        // check user exists in userservice
+        // check user exists in userservice (cached)
+        boolean exists;
         try {
-            ResponseEntity<Boolean> response = restTemplate.getForEntity(
-                    userserviceBaseUrl + "/users/exists/" + req.collaboratorUsername,
-                    Boolean.class
-            );
-
-            if (response.getBody() == null || !response.getBody()) {
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        "User '" + req.collaboratorUsername + "' does not exist");
-            }
-        } catch (ResponseStatusException e) {
-            throw e;
+            exists = userDirectory.exists(req.collaboratorUsername);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "User service check failed");
         }
 
+        if (!exists) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "User '" + req.collaboratorUsername + "' does not exist");
+        }
+
         if (!doc.getCollaborators().contains(req.collaboratorUsername)) {
             doc.getCollaborators().add(req.collaboratorUsername);
             repo.save(doc);
         }
     }
 
+    /* -----------------------------
+       Bulk share (owner only)
+       All usernames are checked with one userservice call;
+       nothing is shared unless every user exists.
+    ------------------------------ */
+    @PostMapping("/{id}/share/bulk")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void shareBulk(@PathVariable UUID id,
+                          @Valid @RequestBody BulkShareRequest req,
+                          HttpServletRequest request) {
+        String username = requireUser(request);
+        Document doc = getDocWithPermission(id, username);
+
+        if (!doc.getOwnerUsername().equals(username)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the owner can share this document");
+        }
+
+        if (req.collaboratorUsernames.contains(username)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You cannot share a document with yourself");
+        }
+
+        List<String> missing;
+        try {
+            missing = userDirectory.findMissing(req.collaboratorUsernames);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "User service check failed");
+        }
+
+        if (!missing.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Users do not exist: " + String.join(", ", missing));
+        }
+
+        if (doc.getCollaborators().addAll(req.collaboratorUsernames)) {
+            repo.save(doc);
+        }
+    }
+
     /* -----------------------------
        Delete doc (owner only)
     ------------------------------ */
@@ -223,9 +616,18 @@ public class DocController {
             System.err.println("Version cleanup failed: " + e.getMessage());
         }
 
+        forgetLiveState(id);
         repo.delete(doc);
     }
 
+    // in-memory text, CRDT state, operation log and snapshot bookkeeping of a document being deleted
+    private void forgetLiveState(UUID id) {
+        activeDocuments.discard(id);
+        crdtDocuments.discard(id);
+        operationLog.discard(id);
+        snapshotPolicy.forget(id);
+    }
+
     /* -----------------------------
        Revoke access (owner only)
     ------------------------------ */
@@ -251,46 +653,104 @@ public class DocController {
 
     /* -----------------------------
        Versions proxy
+       The permission check runs on the request thread; the versionservice body is then
+       copied through as-is on an async thread, so large histories are neither buffered
+       nor re-serialized here.
     ------------------------------ */
     @GetMapping("/{id}/versions")
-    public List<VersionResponse> versions(@PathVariable UUID id, HttpServletRequest request) {
+    public ResponseEntity<StreamingResponseBody> versions(@PathVariable UUID id, HttpServletRequest request) {
         String username = requireUser(request);
 
         // permission check
         getDocWithPermission(id, username);
 
-        try {
-            ResponseEntity<List<VersionResponse>> response =
-                    restTemplate.exchange(
-                            versionserviceBaseUrl + "/api/versions/doc/" + id,
-                            HttpMethod.GET,
-                            null,
-                            new ParameterizedTypeReference<List<VersionResponse>>() {}
-                    );
-
-            return response.getBody() == null ? List.of() : response.getBody();
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Version service unavailable");
-        }
+        return streamFromVersionService("/api/versions/doc/" + id);
     }
 
     @GetMapping("/{id}/versions/{versionId}")
-    public VersionResponse versionById(@PathVariable UUID id,
-                                       @PathVariable Long versionId,
-                                       HttpServletRequest request) {
+    public ResponseEntity<StreamingResponseBody> versionById(@PathVariable UUID id,
+                                                             @PathVariable Long versionId,
+                                                             HttpServletRequest request) {
         String username = requireUser(request);
 
         // permission check
         getDocWithPermission(id, username);
 
+        // scoped to the document, so access to one doc doesn't expose another doc's versions
+        return streamFromVersionService("/api/versions/doc/" + id + "/" + versionId);
+    }
+
+    // the patch between two versions, diffed (and cached) by versionservice
+    @GetMapping("/{id}/versions/{fromVersionId}/diff/{toVersionId}")
+    public ResponseEntity<StreamingResponseBody> versionDiff(@PathVariable UUID id,
+                                                             @PathVariable Long fromVersionId,
+                                                             @PathVariable Long toVersionId,
+                                                             @RequestParam(defaultValue = "line") String granularity,
+                                                             HttpServletRequest request) {
+        String username = requireUser(request);
+
+        if (!granularity.equals("line") && !granularity.equals("word")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "granularity must be line or word");
+        }
+
+        // permission check
+        getDocWithPermission(id, username);
+
+        return streamFromVersionService("/api/versions/doc/" + id + "/" + fromVersionId + "/diff/" + toVersionId
+                + "?granularity=" + granularity);
+    }
+
+    // who changed how much in the document; versionservice keeps the totals as versions are saved
+    @GetMapping("/{id}/versions/contributions")
+    public ResponseEntity<StreamingResponseBody> contributions(@PathVariable UUID id, HttpServletRequest request) {
+        String username = requireUser(request);
+
+        // permission check
+        getDocWithPermission(id, username);
+
+        return streamFromVersionService("/api/versions/doc/" + id + "/contributions");
+    }
+
+    // the caller's own totals, across every document they have versions in
+    @GetMapping("/contributions/me")
+    public ResponseEntity<StreamingResponseBody> myContributions(HttpServletRequest request) {
+        String username = requireUser(request);
+
+        return streamFromVersionService("/api/versions/user/" + UriUtils.encodePathSegment(username, StandardCharsets.UTF_8)
+                + "/contributions");
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamFromVersionService(String path) {
+        ClientHttpResponse response;
+        HttpStatusCode status;
         try {
-            return restTemplate.getForObject(
-                    versionserviceBaseUrl + "/api/versions/" + versionId,
-                    VersionResponse.class
-            );
-        } catch (Exception e) {
+            // getRequestFactory() applies the RestTemplate's interceptors (trace propagation)
+            ClientHttpRequest downstream = restTemplate.getRequestFactory()
+                    .createRequest(URI.create(versionserviceBaseUrl + path), HttpMethod.GET);
+            downstream.getHeaders().setAccept(List.of(MediaType.APPLICATION_JSON));
+            response = downstream.execute();
+            status = response.getStatusCode();
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Version service unavailable");
+        }
+
+        if (!status.is2xxSuccessful()) {
+            response.close();
+            if (status.value() == HttpStatus.NOT_FOUND.value()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Version not found");
+            }
             throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Version service unavailable");
         }
+
+        MediaType contentType = response.getHeaders().getContentType();
+        StreamingResponseBody body = out -> {
+            try (response) {
+                StreamUtils.copy(response.getBody(), out);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(contentType != null ? contentType : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     /* -----------------------------
@@ -307,16 +767,31 @@ public class DocController {
 
         List<Document> owned = repo.findByOwnerUsername(username);
 
-        // cleanup versions (best-effort)
-        for (Document d : owned) {
-            try {
-                restTemplate.delete(versionserviceBaseUrl + "/api/versions/doc/" + d.getId());
-            } catch (Exception e) {
-                System.err.println("Version cleanup failed for doc " + d.getId() + ": " + e.getMessage());
-            }
+        owned.forEach(d -> forgetLiveState(d.getId()));
+        repo.deleteAll(owned);
+
+        // cleanup versions (best-effort, in the background: one versionservice call per document)
+        versionService.deleteHistoriesInBackground(owned.stream().map(Document::getId).toList());
+
+        // the account is going away; don't keep answering "exists" for it
+        userDirectory.evict(username);
+    }
+
+    /* -----------------------------
+       INTERNAL: access list of a doc
+       Used by the gateway to authorize version reads it routes straight to versionservice
+    ------------------------------ */
+    @GetMapping("/internal/{id}/acl")
+    public DocAclResponse acl(@PathVariable UUID id,
+                              @RequestHeader(value = "X-Internal-Secret", required = false) String secret) {
+        if (secret == null || !secret.equals(internalSecret)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Forbidden");
         }
 
-        repo.deleteAll(owned);
+        Document d = repo.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Doc not found"));
+
+        return new DocAclResponse(d.getId(), d.getOwnerUsername(), new ArrayList<>(d.getCollaborators()));
     }
 
     /* -----------------------------
@@ -329,8 +804,14 @@ public class DocController {
 
         Document doc = getDocWithPermission(id, username);
 
-        // ✅ Only save versions when user explicitly triggers snapshot
-        saveVersionSnapshotSafe(doc.getId(), username, doc.getContent());
+        // live SPLICE/CRDT edits may not be flushed yet; the in-memory text is the current one
+        String content = crdtDocuments.text(id)
+                .or(() -> activeDocuments.snapshot(id).map(Rope::toString))
+                .orElse(doc.getContent());
+
+        // ✅ Explicit snapshot; automatic ones (SnapshotPolicy) count their thresholds from here
+        saveVersionSnapshotSafe(doc.getId(), username, content);
+        snapshotPolicy.snapshotTaken(id);
     }
 
     /* -----------------------------
@@ -2,21 +2,46 @@ package com.collab.docservice.controller;
 
 import com.collab.docservice.dto.DocEditMessage;
 import com.collab.docservice.dto.VersionSnapshotRequest;
+import com.collab.docservice.metrics.RealtimeMetrics;
 import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.service.ActiveDocumentRegistry;
+import com.collab.docservice.service.CrdtDocumentRegistry;
+import com.collab.docservice.service.OperationLog;
+import com.collab.docservice.service.SnapshotPolicy;
+import com.collab.docservice.trace.TraceContext;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.handler.annotation.*;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Controller
 public class DocRealtimeController {
 
+    private static final String TOPIC_PREFIX = "/topic/doc/";
+    // subscriptions that hold a document in memory, or tell us someone is watching it
+    private static final List<String> DOCUMENT_DESTINATIONS = List.of(TOPIC_PREFIX, "/app/sync/", "/app/crdt/");
+
     private final DocumentRepository repo;
     private final RestTemplate restTemplate;
+    private final RealtimeMetrics metrics;
+    private final ActiveDocumentRegistry activeDocuments;
+    private final CrdtDocumentRegistry crdtDocuments;
+    private final OperationLog operationLog;
+    private final SnapshotPolicy snapshotPolicy;
+    private final SimpMessageSendingOperations messaging;
 
     @Value("${services.versionservice.baseUrl:http://localhost:8083}")
     private String versionserviceBaseUrl;
@@ -24,36 +49,113 @@ public class DocRealtimeController {
     // Tracks active users per document ID
     private final Map<UUID, Set<String>> activeUsers = new ConcurrentHashMap<>();
 
-    public DocRealtimeController(DocumentRepository repo, RestTemplate restTemplate) {
+    // sessionId -> documents it subscribed to -> users it JOINed them as (empty if it only subscribed)
+    private final Map<String, Map<UUID, Set<String>>> sessions = new ConcurrentHashMap<>();
+
+    public DocRealtimeController(DocumentRepository repo, RestTemplate restTemplate, RealtimeMetrics metrics,
+                                 ActiveDocumentRegistry activeDocuments, CrdtDocumentRegistry crdtDocuments,
+                                 OperationLog operationLog, SnapshotPolicy snapshotPolicy,
+                                 SimpMessageSendingOperations messaging) {
         this.repo = repo;
         this.restTemplate = restTemplate;
+        this.metrics = metrics;
+        this.activeDocuments = activeDocuments;
+        this.crdtDocuments = crdtDocuments;
+        this.operationLog = operationLog;
+        this.snapshotPolicy = snapshotPolicy;
+        this.messaging = messaging;
+        metrics.bindActiveUsers(activeUsers);
     }
 
     @Transactional
     @MessageMapping("/edit/{docId}")
     @SendTo("/topic/doc/{docId}")
-    public DocEditMessage streamEdit(@DestinationVariable UUID docId, @Payload DocEditMessage message) {
+    public DocEditMessage streamEdit(@DestinationVariable UUID docId, @Payload DocEditMessage message,
+                                     @Header(name = SimpMessageHeaderAccessor.SESSION_ID_HEADER, required = false)
+                                     String sessionId) {
+        Timer.Sample sample = metrics.startHandling();
+        try {
+            return handle(docId, message, sessionId);
+        } finally {
+            metrics.recordHandled(message, sample);
+        }
+    }
+
+    /** A message from outside any STOMP session (tests); its JOINs are not released on disconnect. */
+    public DocEditMessage streamEdit(UUID docId, DocEditMessage message) {
+        return streamEdit(docId, message, null);
+    }
+
+    private DocEditMessage handle(UUID docId, DocEditMessage message, String sessionId) {
+        // trace context is opened by StompTraceInterceptor; absent when called directly (tests)
+        TraceContext trace = TraceContext.current();
+        message.traceId = trace != null ? trace.traceId() : null;
+        message.serverReceivedAt = trace != null ? trace.receivedAt() : System.currentTimeMillis();
 
         switch (message.type) {
             case "JOIN" -> {
                 activeUsers.computeIfAbsent(docId, k -> ConcurrentHashMap.newKeySet()).add(message.sender);
+                if (sessionId != null) {
+                    usersOf(sessionId, docId).add(message.sender);
+                }
                 message.content = String.join(",", activeUsers.get(docId));
             }
 
             case "LEAVE" -> {
+                if (sessionId != null) {
+                    usersOf(sessionId, docId).remove(message.sender);
+                }
                 if (activeUsers.containsKey(docId)) {
                     activeUsers.get(docId).remove(message.sender);
                     message.content = String.join(",", activeUsers.get(docId));
+                    if (activeUsers.get(docId).isEmpty()) {
+                        release(docId);
+                    }
                 }
             }
 
             case "EDIT" -> {
-                repo.findById(docId).ifPresent(doc -> {
-                    doc.setContent(message.content == null ? "" : message.content);
-                    repo.save(doc);
+                String content = message.content == null ? "" : message.content;
+                // while the doc is held in memory for SPLICEs, the full text goes there too (flushed with it);
+                // otherwise it is written like a PUT, refused while the doc is in CRDT mode
+                String previous = activeDocuments.replaceIfActive(docId, message.sender, content)
+                        .map(replaced -> {
+                            message.seq = replaced.seq();
+                            // the rope is immutable; materialized outside the registry's lock
+                            return replaced.previous().toString();
+                        })
+                        .orElseGet(() -> activeDocuments.writeThrough(docId, () -> {
+                            String stored = repo.findContentById(docId).orElse("");
+                            long next = operationLog.nextSeq(docId);
+                            operationLog.recordEdit(docId, next, message.sender, content);
+                            repo.updateContent(docId, content, Instant.now(), next);
+                            message.seq = next;
+                            return stored;
+                        }));
+                snapshotPolicy.recordEdit(docId, message.sender, SnapshotPolicy.changedChars(previous, content));
+            }
+
+            case "SPLICE" -> {
+                // applied to the in-memory rope; subscribers get the ops, not the whole document
+                message.seq = activeDocuments.splice(docId, message.sender, message.ops);
+                message.content = null;
+                snapshotPolicy.recordEdit(docId, message.sender, SnapshotPolicy.changedChars(message.ops));
+            }
 
+            case "CRDT_UPDATE" -> {
+                // merged into the document's CRDT; subscribers merge the same update, in whatever order it arrives
+                if (crdtDocuments.apply(docId, message.update)) {
+                    snapshotPolicy.recordEdit(docId, message.sender, message.update.length);
+                }
+                message.content = null;
+            }
 
-                });
+            case "CRDT_ACK" -> {
+                // how far this replica has caught up; only tombstone collection needs it, so nothing is broadcast
+                if (message.replica != null) {
+                    crdtDocuments.acknowledge(docId, message.replica, message.stateVector);
+                }
+                return null;
             }
 
             case "CURSOR" -> {
@@ -61,9 +163,123 @@ public class DocRealtimeController {
             }
         }
 
+        message.serverBroadcastAt = System.currentTimeMillis();
+        metrics.recordServerLatency(message.serverBroadcastAt - message.serverReceivedAt);
         return message;
     }
 
+    /**
+     * Reconnect without reloading the document, answered to the subscribing session only. A client
+     * subscribes to /topic/doc/{docId} and sends JOIN first, buffering what arrives, then subscribes
+     * here with the last seq it applied in a "since" header. The SYNC reply carries the SPLICEs it
+     * missed, or the whole text if since is absent or older than the op log. Either way, buffered
+     * broadcasts with a seq above the reply's seq are applied after it.
+     */
+    @SubscribeMapping("/sync/{docId}")
+    public DocEditMessage sync(@DestinationVariable UUID docId,
+                               @Header(name = "since", required = false) Long since) {
+        ActiveDocumentRegistry.Sync sync = activeDocuments.sync(docId, since);
+        DocEditMessage reply = new DocEditMessage();
+        reply.type = "SYNC";
+        reply.seq = sync.seq();
+        reply.content = sync.content();
+        reply.missed = sync.missed();
+        return reply;
+    }
+
+    /**
+     * State-vector sync for CRDT mode, answered to the subscribing session only. A client
+     * subscribes to /topic/doc/{docId} and sends JOIN first, then subscribes here with a "replica"
+     * header and its state vector (base64 CrdtCodec) in "state-vector". It gets back what it is
+     * missing, plus the server's state vector so it can send a CRDT_UPDATE with the edits the
+     * server lacks.
+     */
+    @SubscribeMapping("/crdt/{docId}")
+    public DocEditMessage syncCrdt(@DestinationVariable UUID docId,
+                                   @Header("replica") int replica,
+                                   @Header(name = "state-vector", required = false) String stateVector) {
+        DocEditMessage sync = new DocEditMessage();
+        sync.type = "CRDT_SYNC";
+        sync.replica = replica;
+        sync.update = crdtDocuments.sync(docId, replica,
+                stateVector == null ? null : Base64.getDecoder().decode(stateVector));
+        sync.stateVector = crdtDocuments.stateVector(docId);
+        return sync;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (accessor.getSessionId() == null || destination == null) {
+            return;
+        }
+        for (String prefix : DOCUMENT_DESTINATIONS) {
+            if (destination.startsWith(prefix)) {
+                try {
+                    usersOf(accessor.getSessionId(), UUID.fromString(destination.substring(prefix.length())));
+                } catch (IllegalArgumentException e) {
+                    // not a document id; the subscription fails on its own
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * A session that goes away without a LEAVE (closed tab, dropped network, heartbeat timeout) counts
+     * as having left every document it JOINed. A document nobody is in any more, and that no other
+     * session subscribes to, is released like after the last LEAVE - including one that was only
+     * loaded by a sync subscription.
+     */
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<UUID, Set<String>> docs = sessions.remove(event.getSessionId());
+        if (docs == null) {
+            return;
+        }
+        docs.forEach((docId, users) -> {
+            Set<String> present = activeUsers.get(docId);
+            if (present != null) {
+                for (String user : users) {
+                    // the same user may still be in the document from another tab
+                    if (!joinedElsewhere(docId, user) && present.remove(user)) {
+                        DocEditMessage leave = new DocEditMessage();
+                        leave.type = "LEAVE";
+                        leave.sender = user;
+                        leave.content = String.join(",", present);
+                        leave.serverReceivedAt = System.currentTimeMillis();
+                        leave.serverBroadcastAt = leave.serverReceivedAt;
+                        messaging.convertAndSend(TOPIC_PREFIX + docId, leave);
+                    }
+                }
+            }
+            if ((present == null || present.isEmpty()) && !watchedElsewhere(docId)) {
+                release(docId);
+            }
+        });
+    }
+
+    // last one out writes back the in-memory text
+    private void release(UUID docId) {
+        activeDocuments.release(docId);
+        crdtDocuments.release(docId);
+        snapshotPolicy.sessionEnded(docId);
+    }
+
+    private Set<String> usersOf(String sessionId, UUID docId) {
+        return sessions.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(docId, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    private boolean joinedElsewhere(UUID docId, String user) {
+        return sessions.values().stream().anyMatch(docs -> docs.getOrDefault(docId, Set.of()).contains(user));
+    }
+
+    private boolean watchedElsewhere(UUID docId) {
+        return sessions.values().stream().anyMatch(docs -> docs.containsKey(docId));
+    }
+
     private void saveVersionSnapshotSafe(UUID docId, String authorUsername, String content) {
         try {
             VersionSnapshotRequest payload =
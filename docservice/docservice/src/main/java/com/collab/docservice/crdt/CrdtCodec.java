@@ -0,0 +1,288 @@
+package com.collab.docservice.crdt;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+/**
+ * Binary forms of CRDT updates, state vectors and full document state.
+ *
+ * All integers are unsigned varints. Text is a varint char count followed by one varint per UTF-16
+ * char, so ASCII costs a byte per character. Items are single chars, so a surrogate pair can be
+ * split across items without breaking the encoding.
+ *
+ * Update: KIND_UPDATE, insert run count, then per run replica, clock, origin replica,
+ *         origin clock and text; delete run count, then per run replica, clock, target replica,
+ *         target clock and count.
+ * State:  KIND_STATE, max clock, state vector, collected watermarks, peer count with each
+ *         peer's replica and state vector, then the items in document order. Items are grouped
+ *         into runs that share a replica, consecutive clocks, an origin chain and a delete op.
+ *         Each run is replica, clock, origin replica, origin clock, deleting replica + 1
+ *         (0 = live), deleting clock if deleted, and text.
+ *         A replica that has never synced loads this directly instead of integrating a diff.
+ *         Diff inserts may name origins that garbage collection has already removed.
+ */
+public final class CrdtCodec {
+
+    public static final int KIND_UPDATE = 1;
+    public static final int KIND_STATE = 2;
+
+    private CrdtCodec() {
+    }
+
+    public static int kind(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty CRDT payload");
+        }
+        return bytes[0];
+    }
+
+    public static byte[] encodeUpdate(CrdtUpdate update) {
+        Writer out = new Writer(16);
+        out.write(KIND_UPDATE);
+        out.writeVarInt(update.inserts().size());
+        for (CrdtUpdate.InsertRun run : update.inserts()) {
+            out.writeVarInt(run.replica());
+            out.writeVarInt(run.clock());
+            out.writeVarInt(run.originReplica());
+            out.writeVarInt(run.originClock());
+            out.writeText(run.text());
+        }
+        out.writeVarInt(update.deletes().size());
+        for (CrdtUpdate.DeleteRun run : update.deletes()) {
+            out.writeVarInt(run.replica());
+            out.writeVarInt(run.clock());
+            out.writeVarInt(run.targetReplica());
+            out.writeVarInt(run.targetClock());
+            out.writeVarInt(run.count());
+        }
+        return out.toByteArray();
+    }
+
+    public static CrdtUpdate decodeUpdate(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.read() != KIND_UPDATE) {
+            throw new IllegalArgumentException("Not a CRDT update");
+        }
+        // every insert run takes at least 5 bytes and every delete run 5; rejects absurd counts before allocating
+        int inserts = in.readCount(5);
+        List<CrdtUpdate.InsertRun> insertRuns = new ArrayList<>(inserts);
+        for (int i = 0; i < inserts; i++) {
+            insertRuns.add(new CrdtUpdate.InsertRun(in.readVarInt(), in.readVarInt(), in.readVarInt(),
+                    in.readVarInt(), in.readText()));
+        }
+        int deletes = in.readCount(5);
+        List<CrdtUpdate.DeleteRun> deleteRuns = new ArrayList<>(deletes);
+        for (int i = 0; i < deletes; i++) {
+            deleteRuns.add(new CrdtUpdate.DeleteRun(in.readVarInt(), in.readVarInt(), in.readVarInt(),
+                    in.readVarInt(), in.readVarInt()));
+        }
+        in.expectEnd();
+        return new CrdtUpdate(insertRuns, deleteRuns);
+    }
+
+    public static byte[] encodeStateVector(Map<Integer, Integer> stateVector) {
+        Writer out = new Writer(4 + stateVector.size() * 4);
+        writeVector(out, stateVector);
+        return out.toByteArray();
+    }
+
+    public static Map<Integer, Integer> decodeStateVector(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        Map<Integer, Integer> sv = readVector(in);
+        in.expectEnd();
+        return sv;
+    }
+
+    public static byte[] encodeState(RgaDocument doc) {
+        Writer out = new Writer(64 + doc.length() + doc.tombstones());
+        out.write(KIND_STATE);
+        out.writeVarInt(doc.maxClock());
+        writeVector(out, doc.stateVector());
+        writeVector(out, doc.collected());
+        out.writeVarInt(doc.peerVectors().size());
+        doc.peerVectors().forEach((replica, sv) -> {
+            out.writeVarInt(replica);
+            writeVector(out, sv);
+        });
+
+        List<RgaDocument.Item> run = new ArrayList<>();
+        int runs = 0;
+        Writer items = new Writer(doc.length() + doc.tombstones());
+        for (RgaDocument.Item it = doc.head().next; it != null; it = it.next) {
+            if (!run.isEmpty() && !continuesRun(run.get(run.size() - 1), it)) {
+                writeRun(items, run);
+                runs++;
+                run.clear();
+            }
+            run.add(it);
+        }
+        if (!run.isEmpty()) {
+            writeRun(items, run);
+            runs++;
+        }
+        out.writeVarInt(runs);
+        items.writeTo(out);
+        return out.toByteArray();
+    }
+
+    public static RgaDocument decodeState(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.read() != KIND_STATE) {
+            throw new IllegalArgumentException("Not a CRDT state");
+        }
+        RgaDocument doc = new RgaDocument();
+        int maxClock = in.readVarInt();
+        Map<Integer, Integer> sv = readVector(in);
+        Map<Integer, Integer> collected = readVector(in);
+        doc.restoreClocks(maxClock, sv, collected);
+
+        int peers = in.readCount(2);
+        for (int i = 0; i < peers; i++) {
+            int replica = in.readVarInt();
+            doc.acknowledge(replica, readVector(in));
+        }
+
+        int runs = in.readCount(6);
+        for (int i = 0; i < runs; i++) {
+            int replica = in.readVarInt();
+            int clock = in.readVarInt();
+            int originReplica = in.readVarInt();
+            int originClock = in.readVarInt();
+            int delReplica = in.readVarInt() - 1;
+            int delClock = delReplica >= 0 ? in.readVarInt() : 0;
+            String text = in.readText();
+            for (int c = 0; c < text.length(); c++) {
+                RgaDocument.Item it = c == 0
+                        ? new RgaDocument.Item(replica, clock, originReplica, originClock, text.charAt(c))
+                        : new RgaDocument.Item(replica, clock + c, replica, clock + c - 1, text.charAt(c));
+                it.delReplica = delReplica;
+                it.delClock = delClock;
+                doc.restore(it);
+            }
+        }
+        in.expectEnd();
+        return doc;
+    }
+
+    private static boolean continuesRun(RgaDocument.Item last, RgaDocument.Item it) {
+        return it.replica == last.replica && it.clock == last.clock + 1
+                && it.originReplica == last.replica && it.originClock == last.clock
+                && it.delReplica == last.delReplica && it.delClock == last.delClock;
+    }
+
+    private static void writeRun(Writer out, List<RgaDocument.Item> run) {
+        RgaDocument.Item first = run.get(0);
+        out.writeVarInt(first.replica);
+        out.writeVarInt(first.clock);
+        out.writeVarInt(first.originReplica);
+        out.writeVarInt(first.originClock);
+        out.writeVarInt(first.delReplica + 1);
+        if (first.deleted()) {
+            out.writeVarInt(first.delClock);
+        }
+        out.writeVarInt(run.size());
+        for (RgaDocument.Item it : run) {
+            out.writeVarInt(it.ch);
+        }
+    }
+
+    private static void writeVector(Writer out, Map<Integer, Integer> vector) {
+        out.writeVarInt(vector.size());
+        vector.forEach((replica, clock) -> {
+            out.writeVarInt(replica);
+            out.writeVarInt(clock);
+        });
+    }
+
+    private static Map<Integer, Integer> readVector(Reader in) {
+        int size = in.readCount(2);
+        Map<Integer, Integer> vector = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            vector.put(in.readVarInt(), in.readVarInt());
+        }
+        return vector;
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer(int size) {
+            super(size);
+        }
+
+        void writeVarInt(int value) {
+            int v = value;
+            while ((v & ~0x7F) != 0) {
+                write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write(v);
+        }
+
+        void writeText(String s) {
+            writeVarInt(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                writeVarInt(s.charAt(i));
+            }
+        }
+
+        void writeTo(Writer other) {
+            other.write(buf, 0, count);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int pos;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            if (pos >= bytes.length) {
+                throw new IllegalArgumentException("Truncated CRDT payload");
+            }
+            return bytes[pos++] & 0xFF;
+        }
+
+        int readVarInt() {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = read();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint in CRDT payload");
+        }
+
+        int readCount(int minBytesEach) {
+            int count = readVarInt();
+            if (count < 0 || count > (bytes.length - pos) / minBytesEach) {
+                throw new IllegalArgumentException("Truncated CRDT payload");
+            }
+            return count;
+        }
+
+        String readText() {
+            int length = readCount(1);
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                int c = readVarInt();
+                if (c < 0 || c > Character.MAX_VALUE) {
+                    throw new IllegalArgumentException("Malformed char in CRDT payload");
+                }
+                chars[i] = (char) c;
+            }
+            return new String(chars);
+        }
+
+        void expectEnd() {
+            if (pos != bytes.length) {
+                throw new IllegalArgumentException("Trailing bytes in CRDT payload");
+            }
+        }
+    }
+}
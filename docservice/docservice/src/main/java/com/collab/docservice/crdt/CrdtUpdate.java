@@ -0,0 +1,23 @@
+package com.collab.docservice.crdt;
+
+import java.util.List;
+
+/**
+ * A batch of CRDT operations, as exchanged between replicas.
+ *
+ * An InsertRun gives its characters the ids (replica, clock), (replica, clock + 1), ...; the first
+ * character goes right after the origin item and each following one after its predecessor.
+ * A DeleteRun, itself stamped (replica, clock), deletes the target ids (targetReplica, targetClock)
+ * up to (targetReplica, targetClock + count - 1).
+ * Applying an update twice, or out of order with others, gives the same document.
+ */
+public record CrdtUpdate(List<InsertRun> inserts, List<DeleteRun> deletes) {
+
+    public record InsertRun(int replica, int clock, int originReplica, int originClock, String text) {}
+
+    public record DeleteRun(int replica, int clock, int targetReplica, int targetClock, int count) {}
+
+    public boolean isEmpty() {
+        return inserts.isEmpty() && deletes.isEmpty();
+    }
+}
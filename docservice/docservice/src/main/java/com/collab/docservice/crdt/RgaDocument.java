@@ -0,0 +1,496 @@
+package com.collab.docservice.crdt;
+
+import java.util.*;
+
+/**
+ * Replicated growable array (RGA) over characters.
+ *
+ * Every character is an item with a unique id (replica, clock). Clocks are Lamport clocks, so an
+ * item always has a larger clock than the items its replica had seen when it was created. An
+ * insert names its origin, which is the item to its left when it was made. Integration starts
+ * right after the origin and moves past any item with a larger id. Concurrent inserts at the same
+ * spot therefore end up in the same order on every replica, whatever order they arrive in.
+ * Deleted items stay in the list as tombstones. That lets later inserts and deletes still find
+ * them, until {@link #collectGarbage()} removes the ones every known peer has seen deleted.
+ *
+ * Id (0, 0) is the head of the list. Content that existed before the document went CRDT is
+ * loaded as replica 0 with clocks 1..n ({@link #of}). Nodes that initialise from the same text
+ * therefore agree on ids without talking to each other.
+ *
+ * Not thread-safe; callers serialise access per document.
+ */
+public final class RgaDocument {
+
+    public static final int INITIAL_REPLICA = 0;
+
+    static final class Item {
+        final int replica;
+        final int clock;
+        final int originReplica;
+        final int originClock;
+        final char ch;
+        int delReplica = -1;
+        int delClock;
+        Item prev;
+        Item next;
+
+        Item(int replica, int clock, int originReplica, int originClock, char ch) {
+            this.replica = replica;
+            this.clock = clock;
+            this.originReplica = originReplica;
+            this.originClock = originClock;
+            this.ch = ch;
+        }
+
+        boolean deleted() {
+            return delReplica >= 0;
+        }
+    }
+
+    private final Item head = new Item(INITIAL_REPLICA, 0, INITIAL_REPLICA, 0, '\0');
+    private final Map<Long, Item> index = new HashMap<>();
+    private final Map<Integer, Integer> stateVector = new HashMap<>();
+    private final Map<Integer, Map<Integer, Integer>> peers = new HashMap<>();
+    // highest clock per replica that garbage collection has removed; anything at or below it has been seen
+    private final Map<Integer, Integer> collected = new HashMap<>();
+    private final List<CrdtUpdate.InsertRun> pendingInserts = new ArrayList<>();
+    private final Map<Long, Long> pendingDeletes = new HashMap<>();
+    private Item tail = head;
+    private int maxClock;
+    private int length;
+    private int tombstones;
+    private long dropped;
+    // last position resolved by a local edit; typing usually continues right there
+    private Item cursor;
+    private int cursorPos;
+
+    public RgaDocument() {
+        index.put(key(head.replica, head.clock), head);
+    }
+
+    public static RgaDocument of(String text) {
+        RgaDocument doc = new RgaDocument();
+        if (!text.isEmpty()) {
+            doc.apply(new CrdtUpdate(
+                    List.of(new CrdtUpdate.InsertRun(INITIAL_REPLICA, 1, INITIAL_REPLICA, 0, text)),
+                    List.of()));
+        }
+        return doc;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int tombstones() {
+        return tombstones;
+    }
+
+    /** Highest clock integrated per replica, covering both inserts and deletes. */
+    public Map<Integer, Integer> stateVector() {
+        return Collections.unmodifiableMap(stateVector);
+    }
+
+    /** Characters discarded because their origin had already been garbage collected. */
+    public long dropped() {
+        return dropped;
+    }
+
+    public boolean hasPending() {
+        return !pendingInserts.isEmpty() || !pendingDeletes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length);
+        for (Item it = head.next; it != null; it = it.next) {
+            if (!it.deleted()) {
+                sb.append(it.ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Local insert on behalf of a replica. Returns the update to send to the others. */
+    public CrdtUpdate insert(int replica, int position, String text) {
+        if (position < 0 || position > length) {
+            throw new IndexOutOfBoundsException("position " + position + " outside [0, " + length + "]");
+        }
+        Item origin = position == 0 ? head : visibleAt(position - 1);
+        CrdtUpdate update = new CrdtUpdate(
+                List.of(new CrdtUpdate.InsertRun(replica, maxClock + 1, origin.replica, origin.clock, text)),
+                List.of());
+        apply(update);
+        if (!text.isEmpty()) {
+            cursor = index.get(key(replica, maxClock));
+            cursorPos = position + text.length() - 1;
+        }
+        return update;
+    }
+
+    /** Local delete on behalf of a replica. Returns the update to send to the others. */
+    public CrdtUpdate delete(int replica, int position, int count) {
+        if (position < 0 || count < 0 || (long) position + count > length) {
+            throw new IndexOutOfBoundsException("range [" + position + ", " + (position + count)
+                    + ") outside [0, " + length + "]");
+        }
+        List<CrdtUpdate.DeleteRun> runs = new ArrayList<>();
+        Item before = position == 0 ? null : visibleAt(position - 1);
+        Item it = count == 0 ? null : visibleAt(position);
+        int clock = maxClock;
+        int remaining = count;
+        while (remaining > 0) {
+            // consecutive ids from one replica collapse into a single run
+            int start = it.clock;
+            int n = 1;
+            remaining--;
+            Item last = it;
+            it = nextVisible(it);
+            while (remaining > 0 && it.replica == last.replica && it.clock == last.clock + 1) {
+                n++;
+                remaining--;
+                last = it;
+                it = nextVisible(it);
+            }
+            runs.add(new CrdtUpdate.DeleteRun(replica, ++clock, last.replica, start, n));
+        }
+        CrdtUpdate update = new CrdtUpdate(List.of(), runs);
+        apply(update);
+        if (before != null) {
+            cursor = before;
+            cursorPos = position - 1;
+        }
+        return update;
+    }
+
+    /**
+     * Integrates a remote (or local) update. Already known items and deletes are skipped. Items
+     * whose origin has not arrived yet wait until it does.
+     *
+     * @return true if the update changed anything
+     */
+    public boolean apply(CrdtUpdate update) {
+        cursor = null;
+        boolean changed = false;
+        for (CrdtUpdate.InsertRun run : update.inserts()) {
+            changed |= integrate(run);
+        }
+        for (CrdtUpdate.DeleteRun run : update.deletes()) {
+            changed |= applyDelete(run);
+        }
+        if (changed && !pendingInserts.isEmpty()) {
+            retryPending();
+        }
+        return changed;
+    }
+
+    /**
+     * Everything a replica with the given state vector is missing: items with a newer clock than
+     * the vector holds for their replica, and deletes likewise. Runs are listed in clock order, so
+     * each origin precedes the items that refer to it.
+     */
+    public CrdtUpdate diff(Map<Integer, Integer> since) {
+        List<CrdtUpdate.InsertRun> inserts = new ArrayList<>();
+        Map<Long, List<Item>> deletedBy = new LinkedHashMap<>();
+
+        StringBuilder text = new StringBuilder();
+        Item runStart = null;
+        Item runLast = null;
+        for (Item it = head.next; it != null; it = it.next) {
+            if (it.clock > since.getOrDefault(it.replica, 0)) {
+                boolean continues = runLast != null && it.replica == runLast.replica && it.clock == runLast.clock + 1
+                        && it.originReplica == runLast.replica && it.originClock == runLast.clock;
+                if (!continues) {
+                    flushRun(inserts, runStart, text);
+                    runStart = it;
+                }
+                text.append(it.ch);
+                runLast = it;
+            } else {
+                flushRun(inserts, runStart, text);
+                runStart = null;
+                runLast = null;
+            }
+            if (it.deleted() && it.delClock > since.getOrDefault(it.delReplica, 0)) {
+                deletedBy.computeIfAbsent(key(it.delReplica, it.delClock), k -> new ArrayList<>()).add(it);
+            }
+        }
+        flushRun(inserts, runStart, text);
+        // origins always carry a smaller clock, so clock order lets the receiver integrate without waiting
+        inserts.sort(Comparator.comparingInt(CrdtUpdate.InsertRun::clock));
+
+        List<CrdtUpdate.DeleteRun> deletes = new ArrayList<>();
+        deletedBy.forEach((op, items) -> {
+            items.sort(Comparator.comparingInt((Item i) -> i.replica).thenComparingInt(i -> i.clock));
+            int i = 0;
+            while (i < items.size()) {
+                Item first = items.get(i);
+                int n = 1;
+                while (i + n < items.size() && items.get(i + n).replica == first.replica
+                        && items.get(i + n).clock == first.clock + n) {
+                    n++;
+                }
+                deletes.add(new CrdtUpdate.DeleteRun(first.delReplica, first.delClock, first.replica, first.clock, n));
+                i += n;
+            }
+        });
+        pendingDeletes.forEach((target, op) -> deletes.add(new CrdtUpdate.DeleteRun(
+                replicaOf(op), clockOf(op), replicaOf(target), clockOf(target), 1)));
+        return new CrdtUpdate(inserts, deletes);
+    }
+
+    /** Records the state vector a peer has acknowledged; tombstone collection waits for every known peer. */
+    public void acknowledge(int replica, Map<Integer, Integer> peerStateVector) {
+        peers.merge(replica, new HashMap<>(peerStateVector), (old, sv) -> {
+            sv.forEach((r, c) -> old.merge(r, c, Math::max));
+            return old;
+        });
+    }
+
+    /**
+     * Stops waiting for a peer before collecting tombstones. If the peer comes back it must sync
+     * from the full state. Inserts it made offline next to text deleted meanwhile may be dropped.
+     */
+    public void forgetPeer(int replica) {
+        peers.remove(replica);
+    }
+
+    public Set<Integer> peers() {
+        return Collections.unmodifiableSet(peers.keySet());
+    }
+
+    /**
+     * Unlinks tombstones whose delete every known peer has acknowledged. Such a peer will not
+     * produce new operations that refer to them, and a late duplicate of a collected item is
+     * recognised by its clock and dropped. Peers that were never acknowledged must sync from
+     * the full state rather than from a diff (see {@link CrdtCodec#encodeState}).
+     *
+     * @return the number of tombstones removed
+     */
+    public int collectGarbage() {
+        if (peers.isEmpty() || hasPending()) {
+            return 0;
+        }
+        int removed = 0;
+        for (Item it = head.next; it != null; ) {
+            Item next = it.next;
+            if (it.deleted() && stable(it.delReplica, it.delClock)) {
+                unlink(it);
+                index.remove(key(it.replica, it.clock));
+                collected.merge(it.replica, it.clock, Math::max);
+                removed++;
+            }
+            it = next;
+        }
+        tombstones -= removed;
+        return removed;
+    }
+
+    // --- package-private access for CrdtCodec -------------------------------------------------
+
+    Item head() {
+        return head;
+    }
+
+    int maxClock() {
+        return maxClock;
+    }
+
+    Map<Integer, Map<Integer, Integer>> peerVectors() {
+        return peers;
+    }
+
+    Map<Integer, Integer> collected() {
+        return collected;
+    }
+
+    /** Appends an item as-is while decoding a full state; no integration rule is applied. */
+    void restore(Item it) {
+        it.prev = tail;
+        tail.next = it;
+        tail = it;
+        index.put(key(it.replica, it.clock), it);
+        if (it.deleted()) {
+            tombstones++;
+        } else {
+            length++;
+        }
+    }
+
+    void restoreClocks(int maxClock, Map<Integer, Integer> stateVector, Map<Integer, Integer> collected) {
+        this.maxClock = maxClock;
+        this.stateVector.putAll(stateVector);
+        this.collected.putAll(collected);
+    }
+
+    // --- integration ----------------------------------------------------------------------------
+
+    private boolean integrate(CrdtUpdate.InsertRun run) {
+        boolean changed = false;
+        String text = run.text();
+        for (int i = 0; i < text.length(); i++) {
+            int clock = run.clock() + i;
+            if (index.containsKey(key(run.replica(), clock)) || clock <= collected.getOrDefault(run.replica(), 0)) {
+                continue;
+            }
+            int originReplica = i == 0 ? run.originReplica() : run.replica();
+            int originClock = i == 0 ? run.originClock() : clock - 1;
+            Item origin = index.get(key(originReplica, originClock));
+            if (origin == null && originClock <= collected.getOrDefault(originReplica, 0)) {
+                // anchored in text collected while its replica was forgotten (see forgetPeer); cannot be placed
+                dropped += text.length() - i;
+                return changed;
+            }
+            if (origin == null) {
+                pendingInserts.add(new CrdtUpdate.InsertRun(run.replica(), clock, originReplica, originClock,
+                        text.substring(i)));
+                return changed;
+            }
+
+            Item it = new Item(run.replica(), clock, originReplica, originClock, text.charAt(i));
+            Item left = origin;
+            while (left.next != null && greater(left.next, it)) {
+                left = left.next;
+            }
+            linkAfter(left, it);
+            index.put(key(it.replica, it.clock), it);
+            observe(it.replica, it.clock);
+            length++;
+
+            Long op = pendingDeletes.remove(key(it.replica, it.clock));
+            if (op != null) {
+                markDeleted(it, replicaOf(op), clockOf(op));
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean applyDelete(CrdtUpdate.DeleteRun run) {
+        boolean changed = false;
+        for (int k = 0; k < run.count(); k++) {
+            long target = key(run.targetReplica(), run.targetClock() + k);
+            Item it = index.get(target);
+            if (it == null) {
+                if (run.targetClock() + k > collected.getOrDefault(run.targetReplica(), 0)) {
+                    // target not arrived yet
+                    changed |= pendingDeletes.putIfAbsent(target, key(run.replica(), run.clock())) == null;
+                }
+            } else if (!it.deleted()) {
+                markDeleted(it, run.replica(), run.clock());
+                changed = true;
+            }
+        }
+        observe(run.replica(), run.clock());
+        return changed;
+    }
+
+    private void retryPending() {
+        boolean progress = true;
+        while (progress && !pendingInserts.isEmpty()) {
+            List<CrdtUpdate.InsertRun> waiting = new ArrayList<>(pendingInserts);
+            pendingInserts.clear();
+            progress = false;
+            for (CrdtUpdate.InsertRun run : waiting) {
+                progress |= integrate(run);
+            }
+        }
+    }
+
+    private void markDeleted(Item it, int replica, int clock) {
+        it.delReplica = replica;
+        it.delClock = clock;
+        length--;
+        tombstones++;
+    }
+
+    private void observe(int replica, int clock) {
+        stateVector.merge(replica, clock, Math::max);
+        maxClock = Math.max(maxClock, clock);
+    }
+
+    private boolean stable(int replica, int clock) {
+        for (Map<Integer, Integer> sv : peers.values()) {
+            if (sv.getOrDefault(replica, 0) < clock) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean greater(Item a, Item b) {
+        return a.clock != b.clock ? a.clock > b.clock : a.replica > b.replica;
+    }
+
+    private void linkAfter(Item left, Item it) {
+        it.prev = left;
+        it.next = left.next;
+        if (left.next != null) {
+            left.next.prev = it;
+        } else {
+            tail = it;
+        }
+        left.next = it;
+    }
+
+    private void unlink(Item it) {
+        it.prev.next = it.next;
+        if (it.next != null) {
+            it.next.prev = it.prev;
+        } else {
+            tail = it.prev;
+        }
+    }
+
+    private Item visibleAt(int position) {
+        Item it = head;
+        int pos = -1;
+        if (cursor != null && Math.abs(position - cursorPos) < position) {
+            it = cursor;
+            pos = cursorPos;
+        }
+        while (pos > position) {
+            it = it.prev;
+            if (!it.deleted()) {
+                pos--;
+            }
+        }
+        while (pos < position || it.deleted() || it == head) {
+            it = it.next;
+            if (!it.deleted()) {
+                pos++;
+            }
+        }
+        cursor = it;
+        cursorPos = position;
+        return it;
+    }
+
+    private static Item nextVisible(Item it) {
+        Item n = it.next;
+        while (n != null && n.deleted()) {
+            n = n.next;
+        }
+        return n;
+    }
+
+    private static void flushRun(List<CrdtUpdate.InsertRun> inserts, Item start, StringBuilder text) {
+        if (start != null && !text.isEmpty()) {
+            inserts.add(new CrdtUpdate.InsertRun(start.replica, start.clock, start.originReplica, start.originClock,
+                    text.toString()));
+        }
+        text.setLength(0);
+    }
+
+    static long key(int replica, int clock) {
+        return ((long) replica << 32) | (clock & 0xffffffffL);
+    }
+
+    private static int replicaOf(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private static int clockOf(long key) {
+        return (int) key;
+    }
+}
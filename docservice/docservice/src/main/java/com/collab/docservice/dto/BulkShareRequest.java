@@ -0,0 +1,13 @@
+package com.collab.docservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BulkShareRequest {
+    @NotEmpty
+    @Size(max = 500)
+    public List<@NotBlank String> collaboratorUsernames;
+}
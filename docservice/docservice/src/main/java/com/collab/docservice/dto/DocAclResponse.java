@@ -0,0 +1,20 @@
+package com.collab.docservice.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Who may read a document: the owner plus its collaborators.
+ * Served to the gateway so it can authorize version reads without going through docservice.
+ */
+public class DocAclResponse {
+    public UUID id;
+    public String ownerUsername;
+    public List<String> collaborators;
+
+    public DocAclResponse(UUID id, String ownerUsername, List<String> collaborators) {
+        this.id = id;
+        this.ownerUsername = ownerUsername;
+        this.collaborators = collaborators;
+    }
+}
@@ -0,0 +1,30 @@
+package com.collab.docservice.dto;
+
+import java.util.UUID;
+
+/**
+ * A slice of a document's content.
+ * offset is 0-based in Unicode code points (not UTF-16 units as in SPLICE/PATCH ops); for line
+ * reads fromLine/lineCount echo the request and offset is where fromLine starts. totalLength
+ * (also in code points) and revision describe the whole document.
+ */
+public class DocContentResponse {
+    public UUID id;
+    public long revision;
+    public int totalLength;
+    public int offset;
+    public Integer fromLine;
+    public Integer lineCount;
+    public String content;
+
+    public DocContentResponse(UUID id, long revision, int totalLength, int offset,
+                              Integer fromLine, Integer lineCount, String content) {
+        this.id = id;
+        this.revision = revision;
+        this.totalLength = totalLength;
+        this.offset = offset;
+        this.fromLine = fromLine;
+        this.lineCount = lineCount;
+        this.content = content;
+    }
+}
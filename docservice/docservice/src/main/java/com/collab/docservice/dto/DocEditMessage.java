@@ -1,8 +1,33 @@
 package com.collab.docservice.dto;
 
+import java.util.List;
+
 public class DocEditMessage {
     public String sender;
     public String content;
-    public String type; // "EDIT", "JOIN", "CURSOR"
+    public String type; // "EDIT", "JOIN", "CURSOR", "SPLICE", "SYNC", "CRDT_UPDATE", "CRDT_SYNC", "CRDT_ACK"
     public int cursorPosition; // The index of the cursor in the text
+
+    // SPLICE only: changes against the server's current text, broadcast as-is instead of the full content
+    public List<SpliceOp> ops;
+
+    // Position in the document's change stream (its OperationLog seq), stamped on SPLICE/EDIT broadcasts.
+    // A reconnecting client presents the last one it saw; the SYNC reply carries the SPLICEs it missed
+    // in missed, or the whole text in content if it was too far behind.
+    public Long seq;
+    public List<DocEditMessage> missed;
+
+    // CRDT mode (see CrdtCodec): the sender's replica id, an encoded update or state, and a state vector.
+    // CRDT_UPDATE carries update; CRDT_ACK carries stateVector; CRDT_SYNC (server to one subscriber) carries both.
+    // byte[] is base64 in JSON and raw bytes in the binary encoding.
+    public Integer replica;
+    public byte[] update;
+    public byte[] stateVector;
+
+    // Latency tracing: clientSentAt is set by the sender, the rest is stamped by the server on broadcast.
+    // Subscribers compute propagation latency as (receive time - clientSentAt); all values are epoch millis.
+    public String traceId;
+    public Long clientSentAt;
+    public Long serverReceivedAt;
+    public Long serverBroadcastAt;
 }
\ No newline at end of file
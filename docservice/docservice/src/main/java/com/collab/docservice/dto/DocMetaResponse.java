@@ -0,0 +1,32 @@
+package com.collab.docservice.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Everything about a document except its content; contentLength (in code points, the unit of
+ * /docs/{id}/content offsets) lets an editor plan range reads of /docs/{id}/content.
+ */
+public class DocMetaResponse {
+    public UUID id;
+    public String title;
+    public String ownerUsername;
+    public List<String> collaborators;
+    public Instant createdAt;
+    public Instant updatedAt;
+    public long revision;
+    public int contentLength;
+
+    public DocMetaResponse(UUID id, String title, String ownerUsername, List<String> collaborators,
+                           Instant createdAt, Instant updatedAt, long revision, int contentLength) {
+        this.id = id;
+        this.title = title;
+        this.ownerUsername = ownerUsername;
+        this.collaborators = collaborators;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.revision = revision;
+        this.contentLength = contentLength;
+    }
+}
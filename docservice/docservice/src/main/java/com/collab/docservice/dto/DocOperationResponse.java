@@ -0,0 +1,27 @@
+package com.collab.docservice.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One entry of a document's operation log: SPLICE carries ops (offsets into the text as of the
+ * previous entry), EDIT carries the whole new content.
+ */
+public class DocOperationResponse {
+    public long seq;
+    public String type;
+    public String author;
+    public Instant createdAt;
+    public List<SpliceOp> ops;
+    public String content;
+
+    public DocOperationResponse(long seq, String type, String author, Instant createdAt,
+                                List<SpliceOp> ops, String content) {
+        this.seq = seq;
+        this.type = type;
+        this.author = author;
+        this.createdAt = createdAt;
+        this.ops = ops;
+        this.content = content;
+    }
+}
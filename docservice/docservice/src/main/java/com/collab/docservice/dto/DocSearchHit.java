@@ -0,0 +1,23 @@
+package com.collab.docservice.dto;
+
+import java.util.UUID;
+
+/**
+ * One search result. snippet is HTML: the surrounding text is escaped and every match is wrapped
+ * in <mark>, so it can be inserted as-is.
+ */
+public class DocSearchHit {
+    public UUID id;
+    public String title;
+    public String ownerUsername;
+    public String snippet;
+    public double score;
+
+    public DocSearchHit(UUID id, String title, String ownerUsername, String snippet, double score) {
+        this.id = id;
+        this.title = title;
+        this.ownerUsername = ownerUsername;
+        this.snippet = snippet;
+        this.score = score;
+    }
+}
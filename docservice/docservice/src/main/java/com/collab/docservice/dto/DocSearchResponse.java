@@ -0,0 +1,18 @@
+package com.collab.docservice.dto;
+
+import java.util.List;
+
+public class DocSearchResponse {
+    public List<DocSearchHit> hits;
+    public int page;
+    public int size;
+    // whether page + 1 has results; the total is not counted
+    public boolean hasMore;
+
+    public DocSearchResponse(List<DocSearchHit> hits, int page, int size, boolean hasMore) {
+        this.hits = hits;
+        this.page = page;
+        this.size = size;
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,19 @@
+package com.collab.docservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class PatchDocRequest {
+    // revision the ops were computed against; may be given as If-Match instead
+    public Long baseRevision;
+
+    // optional; the title is left alone when null
+    public String title;
+
+    @NotNull
+    @Size(max = 10_000)
+    public List<@Valid @NotNull SpliceOp> ops;
+}
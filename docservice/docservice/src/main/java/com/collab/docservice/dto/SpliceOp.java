@@ -0,0 +1,25 @@
+package com.collab.docservice.dto;
+
+import jakarta.validation.constraints.PositiveOrZero;
+
+/**
+ * Replace deleteCount characters at offset with insert.
+ * Offsets refer to the base text the patch was made against, not to the result of earlier ops.
+ */
+public class SpliceOp {
+    @PositiveOrZero
+    public int offset;
+
+    @PositiveOrZero
+    public int deleteCount;
+
+    public String insert = "";
+
+    public SpliceOp() {}
+
+    public SpliceOp(int offset, int deleteCount, String insert) {
+        this.offset = offset;
+        this.deleteCount = deleteCount;
+        this.insert = insert;
+    }
+}
@@ -0,0 +1,93 @@
+package com.collab.docservice.metrics;
+
+import com.collab.docservice.dto.DocEditMessage;
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the STOMP edit hot path (DocRealtimeController.streamEdit).
+ *
+ * docservice.realtime.messages{type}   - messages handled
+ * docservice.realtime.handle{type}     - time spent in streamEdit, including the DB write for EDIT
+ * docservice.realtime.content.size     - length of DocEditMessage.content for EDIT messages
+ * docservice.realtime.server.latency   - frame arrival to broadcast, including the inbound queue wait
+ * docservice.realtime.documents.active - documents with at least one joined user
+ * docservice.realtime.users.active     - joined users summed over documents
+ */
+@Component
+public class RealtimeMetrics {
+
+    // message.type comes from the client; anything else is folded into OTHER to keep tag cardinality bounded
+    private static final Set<String> KNOWN_TYPES = Set.of("JOIN", "LEAVE", "EDIT", "CURSOR", "SPLICE",
+            "CRDT_UPDATE", "CRDT_ACK");
+
+    private final MeterRegistry registry;
+    private final DistributionSummary contentSize;
+    private final Timer serverLatency;
+    private final Map<String, Counter> messageCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> handleTimers = new ConcurrentHashMap<>();
+
+    public RealtimeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.contentSize = DistributionSummary.builder("docservice.realtime.content.size")
+                .description("Length of the content carried by EDIT messages")
+                .baseUnit("chars")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.serverLatency = Timer.builder("docservice.realtime.server.latency")
+                .description("Time from STOMP frame arrival to broadcast of the edit")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public Timer.Sample startHandling() {
+        return Timer.start(registry);
+    }
+
+    public void recordHandled(DocEditMessage message, Timer.Sample sample) {
+        String type = typeTag(message.type);
+
+        messageCounters.computeIfAbsent(type, t -> Counter.builder("docservice.realtime.messages")
+                .description("STOMP edit messages handled, by type")
+                .tag("type", t)
+                .register(registry)).increment();
+
+        sample.stop(handleTimers.computeIfAbsent(type, t -> Timer.builder("docservice.realtime.handle")
+                .description("Time spent handling one STOMP edit message")
+                .tag("type", t)
+                .register(registry)));
+
+        if ("EDIT".equals(type) && message.content != null) {
+            contentSize.record(message.content.length());
+        }
+    }
+
+    public void recordServerLatency(long millis) {
+        serverLatency.record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers gauges over the controller's presence map. The map is only read, never copied.
+     */
+    public void bindActiveUsers(Map<UUID, Set<String>> activeUsers) {
+        Gauge.builder("docservice.realtime.documents.active", activeUsers,
+                        m -> m.values().stream().filter(s -> !s.isEmpty()).count())
+                .description("Documents with at least one joined user")
+                .register(registry);
+
+        Gauge.builder("docservice.realtime.users.active", activeUsers,
+                        m -> m.values().stream().mapToInt(Set::size).sum())
+                .description("Joined users, summed over documents")
+                .register(registry);
+    }
+
+    private static String typeTag(String type) {
+        return type != null && KNOWN_TYPES.contains(type) ? type : "OTHER";
+    }
+}
@@ -0,0 +1,58 @@
+package com.collab.docservice.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Queue depth and busy threads of the three STOMP channel executors.
+ * A growing clientInbound queue means streamEdit cannot keep up;
+ * a growing clientOutbound queue means subscribers are slow to drain.
+ *
+ * docservice.stomp.executor.queued{channel} - tasks waiting in the executor queue
+ * docservice.stomp.executor.active{channel} - threads currently running a task
+ */
+@Component
+public class StompExecutorMetrics implements MeterBinder {
+
+    private static final Map<String, String> EXECUTOR_BEANS = Map.of(
+            "clientInbound", "clientInboundChannelExecutor",
+            "clientOutbound", "clientOutboundChannelExecutor",
+            "broker", "brokerChannelExecutor"
+    );
+
+    private final BeanFactory beanFactory;
+
+    public StompExecutorMetrics(BeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        EXECUTOR_BEANS.forEach((channel, beanName) -> {
+            if (!beanFactory.containsBean(beanName)) {
+                return;
+            }
+            // executors configured with something other than a thread pool have no queue to report
+            if (!(beanFactory.getBean(beanName) instanceof ThreadPoolTaskExecutor executor)) {
+                return;
+            }
+
+            Gauge.builder("docservice.stomp.executor.queued", executor,
+                            e -> e.getThreadPoolExecutor().getQueue().size())
+                    .description("Tasks waiting in the STOMP channel executor queue")
+                    .tag("channel", channel)
+                    .register(registry);
+
+            Gauge.builder("docservice.stomp.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .description("Threads busy in the STOMP channel executor")
+                    .tag("channel", channel)
+                    .register(registry);
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.collab.docservice.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks connected STOMP sessions and their subscriptions from Spring's session events.
+ *
+ * docservice.stomp.sessions      - connected STOMP sessions
+ * docservice.stomp.subscriptions - active subscriptions over all sessions
+ */
+@Component
+public class StompSessionMetrics {
+
+    // sessionId -> subscription ids
+    private final Map<String, Set<String>> sessions = new ConcurrentHashMap<>();
+
+    public StompSessionMetrics(MeterRegistry registry) {
+        Gauge.builder("docservice.stomp.sessions", sessions, Map::size)
+                .description("Connected STOMP sessions")
+                .register(registry);
+
+        Gauge.builder("docservice.stomp.subscriptions", sessions,
+                        m -> m.values().stream().mapToInt(Set::size).sum())
+                .description("Active STOMP subscriptions")
+                .register(registry);
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        if (sessionId != null) {
+            sessions.putIfAbsent(sessionId, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+            sessions.computeIfAbsent(accessor.getSessionId(), k -> ConcurrentHashMap.newKeySet())
+                    .add(accessor.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Set<String> subscriptions = accessor.getSessionId() == null ? null : sessions.get(accessor.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.remove(accessor.getSubscriptionId());
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+}
@@ -35,6 +35,16 @@ public class Document {
     @Column(nullable = false)
     private Instant updatedAt;
 
+    // Bumped by Hibernate on every entity update (and by DocumentRepository.updateContent);
+    // exposed as the ETag. The default lets ddl-auto add the column to existing rows.
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long revision;
+
+    // Last operation log seq that content includes; later operations are replayed on load (see OperationLog)
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long appliedSeq;
+
     @PrePersist
     void onCreate() {
         createdAt = Instant.now();
@@ -60,4 +70,8 @@ public class Document {
     public void setCollaborators(Set<String> collaborators) { this.collaborators = collaborators; }
     public Instant getCreatedAt() { return createdAt; }
     public Instant getUpdatedAt() { return updatedAt; }
+    public long getRevision() { return revision; }
+    public void setRevision(long revision) { this.revision = revision; }
+    public long getAppliedSeq() { return appliedSeq; }
+    public void setAppliedSeq(long appliedSeq) { this.appliedSeq = appliedSeq; }
 }
\ No newline at end of file
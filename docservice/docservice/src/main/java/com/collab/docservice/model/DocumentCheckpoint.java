@@ -0,0 +1,68 @@
+package com.collab.docservice.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A document's text as of an operation log seq. Replay to a seq starts from the newest
+ * checkpoint at or before it; compaction folds expired operations into one.
+ */
+@Entity
+@Table(name = "document_checkpoints")
+@IdClass(DocumentCheckpoint.Key.class)
+public class DocumentCheckpoint {
+
+    public static class Key implements Serializable {
+        private UUID documentId;
+        private long seq;
+
+        protected Key() {
+        }
+
+        public Key(UUID documentId, long seq) {
+            this.documentId = documentId;
+            this.seq = seq;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && seq == k.seq && Objects.equals(documentId, k.documentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, seq);
+        }
+    }
+
+    @Id
+    private UUID documentId;
+
+    @Id
+    private long seq;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    protected DocumentCheckpoint() {
+    }
+
+    public DocumentCheckpoint(UUID documentId, long seq, String content, Instant createdAt) {
+        this.documentId = documentId;
+        this.seq = seq;
+        this.content = content;
+        this.createdAt = createdAt;
+    }
+
+    public UUID getDocumentId() { return documentId; }
+    public long getSeq() { return seq; }
+    public String getContent() { return content; }
+    public Instant getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,38 @@
+package com.collab.docservice.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Persisted CRDT state of a document edited in CRDT mode (see CrdtDocumentRegistry).
+ * The document's plain content is still written alongside it, so REST reads and versions do not
+ * need to know about the CRDT.
+ */
+@Entity
+@Table(name = "document_crdt_state")
+public class DocumentCrdtState {
+
+    @Id
+    private UUID documentId;
+
+    // CrdtCodec.encodeState; roughly one byte per live or tombstoned ASCII character
+    @Column(nullable = false, length = 256 * 1024 * 1024)
+    private byte[] state;
+
+    @Column(nullable = false)
+    private Instant updatedAt;
+
+    protected DocumentCrdtState() {
+    }
+
+    public DocumentCrdtState(UUID documentId, byte[] state, Instant updatedAt) {
+        this.documentId = documentId;
+        this.state = state;
+        this.updatedAt = updatedAt;
+    }
+
+    public UUID getDocumentId() { return documentId; }
+    public byte[] getState() { return state; }
+    public Instant getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,99 @@
+package com.collab.docservice.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * One accepted edit in a document's operation log (see OperationLog), keyed by its seq.
+ * Rows are only ever inserted, in batches, and deleted by compaction; the primary key doubles as
+ * the (document_id, seq) index that replay scans.
+ */
+@Entity
+@Table(name = "document_operations")
+@IdClass(DocumentOperation.Key.class)
+public class DocumentOperation implements Persistable<DocumentOperation.Key> {
+
+    public static final String SPLICE = "SPLICE";
+    public static final String EDIT = "EDIT";
+
+    public static class Key implements Serializable {
+        private UUID documentId;
+        private long seq;
+
+        protected Key() {
+        }
+
+        public Key(UUID documentId, long seq) {
+            this.documentId = documentId;
+            this.seq = seq;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && seq == k.seq && Objects.equals(documentId, k.documentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(documentId, seq);
+        }
+    }
+
+    @Id
+    private UUID documentId;
+
+    @Id
+    private long seq;
+
+    @Column(nullable = false, length = 16)
+    private String type;
+
+    // null for edits merged from CRDT replicas
+    private String author;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // SPLICE: the ops as JSON, offsets into the text as of the previous op; EDIT: the whole text
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    // ids are assigned, so tell Spring Data these are inserts; saveAll then batches them without a SELECT each
+    @Transient
+    private boolean persisted;
+
+    protected DocumentOperation() {
+    }
+
+    public DocumentOperation(UUID documentId, long seq, String type, String author, Instant createdAt, String payload) {
+        this.documentId = documentId;
+        this.seq = seq;
+        this.type = type;
+        this.author = author;
+        this.createdAt = createdAt;
+        this.payload = payload;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Override
+    public Key getId() { return new Key(documentId, seq); }
+    @Override
+    public boolean isNew() { return !persisted; }
+
+    public UUID getDocumentId() { return documentId; }
+    public long getSeq() { return seq; }
+    public String getType() { return type; }
+    public String getAuthor() { return author; }
+    public Instant getCreatedAt() { return createdAt; }
+    public String getPayload() { return payload; }
+}
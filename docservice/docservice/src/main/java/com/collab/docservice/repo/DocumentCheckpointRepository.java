@@ -0,0 +1,30 @@
+package com.collab.docservice.repo;
+
+import com.collab.docservice.model.DocumentCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DocumentCheckpointRepository extends JpaRepository<DocumentCheckpoint, DocumentCheckpoint.Key> {
+
+    Optional<DocumentCheckpoint> findFirstByDocumentIdAndSeqLessThanEqualOrderBySeqDesc(UUID documentId, long seq);
+
+    Optional<DocumentCheckpoint> findFirstByDocumentIdOrderBySeqDesc(UUID documentId);
+
+    boolean existsByDocumentId(UUID documentId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentCheckpoint c WHERE c.documentId = :id AND c.seq < :seq")
+    int deleteBefore(@Param("id") UUID id, @Param("seq") long seq);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentCheckpoint c WHERE c.documentId = :id")
+    int deleteAllOf(@Param("id") UUID id);
+}
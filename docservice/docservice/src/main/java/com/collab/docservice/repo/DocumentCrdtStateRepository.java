@@ -0,0 +1,9 @@
+package com.collab.docservice.repo;
+
+import com.collab.docservice.model.DocumentCrdtState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface DocumentCrdtStateRepository extends JpaRepository<DocumentCrdtState, UUID> {
+}
@@ -0,0 +1,44 @@
+package com.collab.docservice.repo;
+
+import com.collab.docservice.model.DocumentOperation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface DocumentOperationRepository extends JpaRepository<DocumentOperation, DocumentOperation.Key> {
+
+    @Query("SELECT COALESCE(MAX(o.seq), 0) FROM DocumentOperation o WHERE o.documentId = :id")
+    long findMaxSeq(@Param("id") UUID id);
+
+    List<DocumentOperation> findByDocumentIdAndSeqGreaterThanOrderBySeq(UUID documentId, long seq);
+
+    List<DocumentOperation> findByDocumentIdAndSeqGreaterThanOrderBySeq(UUID documentId, long seq, Limit limit);
+
+    List<DocumentOperation> findByDocumentIdAndSeqBetweenOrderBySeq(UUID documentId, long from, long to);
+
+    long countByDocumentIdAndSeqGreaterThan(UUID documentId, long seq);
+
+    @Query("SELECT DISTINCT o.documentId FROM DocumentOperation o WHERE o.createdAt < :cutoff")
+    List<UUID> findDocumentsWithOperationsBefore(@Param("cutoff") Instant cutoff);
+
+    @Query("SELECT MAX(o.seq) FROM DocumentOperation o WHERE o.documentId = :id AND o.createdAt < :cutoff")
+    Optional<Long> findLastSeqBefore(@Param("id") UUID id, @Param("cutoff") Instant cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentOperation o WHERE o.documentId = :id AND o.seq <= :seq")
+    int deleteThrough(@Param("id") UUID id, @Param("seq") long seq);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentOperation o WHERE o.documentId = :id")
+    int deleteAllOf(@Param("id") UUID id);
+}
@@ -1,19 +1,118 @@
 package com.collab.docservice.repo;
 
 import com.collab.docservice.model.Document;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface DocumentRepository extends JpaRepository<Document, UUID> {
 
+    // collaborators are read after the query returns (permission checks, DocResponse); open-in-view is off
+    @Override
+    @EntityGraph(attributePaths = "collaborators")
+    Optional<Document> findById(UUID id);
+
+    // no DISTINCT: Hibernate 6 returns each root entity once when a collection is fetched, and in SQL it
+    // would make the database compare whole rows, content included
+    @EntityGraph(attributePaths = "collaborators")
     @Query("SELECT d FROM Document d LEFT JOIN d.collaborators c " +
             "WHERE d.ownerUsername = :username OR c = :username " +
             "ORDER BY d.updatedAt DESC")
     List<Document> findVisibleDocuments(@Param("username") String username);
 
     List<Document> findByOwnerUsername(String ownerUsername);
+
+    @Query("SELECT DISTINCT d.id FROM Document d LEFT JOIN d.collaborators c " +
+            "WHERE d.ownerUsername = :username OR c = :username")
+    List<UUID> findVisibleDocumentIds(@Param("username") String username);
+
+    // documents written since a point in time (LuceneDocumentSearch catching up)
+    List<Document> findByUpdatedAtGreaterThanEqual(Instant since);
+
+    /* -----------------------------
+       Reads that never pull the full content column into the JVM
+    ------------------------------ */
+    interface DocumentMeta {
+        UUID getId();
+        String getTitle();
+        String getOwnerUsername();
+        Instant getCreatedAt();
+        Instant getUpdatedAt();
+        long getRevision();
+        int getContentLength();
+    }
+
+    interface ContentSlice {
+        long getRevision();
+        int getContentLength();
+        String getContent();
+    }
+
+    @Query("SELECT d.id AS id, d.title AS title, d.ownerUsername AS ownerUsername, d.createdAt AS createdAt, " +
+            "d.updatedAt AS updatedAt, d.revision AS revision, LENGTH(d.content) AS contentLength " +
+            "FROM Document d WHERE d.id = :id")
+    Optional<DocumentMeta> findMetaById(@Param("id") UUID id);
+
+    @Query("SELECT c FROM Document d JOIN d.collaborators c WHERE d.id = :id")
+    List<String> findCollaborators(@Param("id") UUID id);
+
+    // start is 1-based (SQL SUBSTRING); the slice is cut by the database
+    @Query("SELECT d.revision AS revision, LENGTH(d.content) AS contentLength, " +
+            "SUBSTRING(d.content, :start, :length) AS content " +
+            "FROM Document d WHERE d.id = :id")
+    Optional<ContentSlice> findContentSlice(@Param("id") UUID id,
+                                            @Param("start") int start,
+                                            @Param("length") int length);
+
+    // the text a realtime EDIT replaces, without the collaborators findById fetches
+    @Query("SELECT d.content FROM Document d WHERE d.id = :id")
+    Optional<String> findContentById(@Param("id") UUID id);
+
+    // Realtime edits (and ActiveDocumentRegistry flushes) are last-writer-wins: one UPDATE, no read,
+    // never fails on a stale revision.
+    // The revision is still bumped so REST clients holding an older ETag get 412 on PUT.
+    // appliedSeq is the last operation log seq the content includes (see OperationLog).
+    @Transactional
+    @Modifying
+    @Query("UPDATE Document d SET d.content = :content, d.updatedAt = :now, d.revision = d.revision + 1, " +
+            "d.appliedSeq = :appliedSeq WHERE d.id = :id")
+    int updateContent(@Param("id") UUID id, @Param("content") String content, @Param("now") Instant now,
+                      @Param("appliedSeq") long appliedSeq);
+
+    /* -----------------------------
+       Full-text search (Postgres only: search_vector and its GIN index come from schema-postgresql.sql)
+       The page is ranked and cut first; ts_headline, which reads the content, only runs for its rows.
+    ------------------------------ */
+    interface SearchRow {
+        UUID getId();
+        String getTitle();
+        String getOwnerUsername();
+        Double getScore();
+        String getSnippet();
+    }
+
+    @Query(value = "SELECT p.id AS \"id\", p.title AS \"title\", p.owner_username AS \"ownerUsername\", " +
+            "p.score AS \"score\", ts_headline('english', left(d.content, 262144), " +
+            "websearch_to_tsquery('english', :query), " +
+            "'StartSel=' || chr(57344) || ', StopSel=' || chr(57345) || " +
+            "', MaxFragments=2, MaxWords=24, MinWords=8, FragmentDelimiter=\" ... \"') AS \"snippet\" " +
+            "FROM (SELECT d.id, d.title, d.owner_username, " +
+            "      CAST(ts_rank(d.search_vector, q) AS double precision) AS score " +
+            "      FROM documents d, websearch_to_tsquery('english', :query) q " +
+            "      WHERE d.search_vector @@ q AND (d.owner_username = :username OR EXISTS " +
+            "        (SELECT 1 FROM document_collaborators c WHERE c.document_id = d.id AND c.username = :username)) " +
+            "      ORDER BY score DESC, d.id LIMIT :limit OFFSET :offset) p " +
+            "JOIN documents d ON d.id = p.id " +
+            "ORDER BY p.score DESC, p.id",
+            nativeQuery = true)
+    List<SearchRow> searchVisible(@Param("username") String username, @Param("query") String query,
+                                  @Param("offset") int offset, @Param("limit") int limit);
 }
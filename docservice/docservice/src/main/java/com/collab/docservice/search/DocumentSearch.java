@@ -0,0 +1,31 @@
+package com.collab.docservice.search;
+
+import com.collab.docservice.dto.DocSearchHit;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.List;
+
+/**
+ * Full-text search over document titles and content, restricted to the documents a user owns or
+ * collaborates on. docservice.search.backend picks the implementation: postgres (a tsvector column
+ * with a GIN index) or lucene (an in-memory index, for H2 and tests).
+ */
+public interface DocumentSearch {
+
+    // around each match in the raw snippets backends produce; private-use characters, so never in real text
+    char MATCH_START = '\uE000';
+    char MATCH_END = '\uE001';
+
+    /**
+     * Best matches first, skipping offset; query is user input in web-search syntax (words,
+     * "quoted phrases", -excluded).
+     */
+    List<DocSearchHit> search(String username, String query, int offset, int limit);
+
+    /** A raw snippet as HTML: everything escaped, matches in <mark>. */
+    static String highlight(String marked) {
+        return HtmlUtils.htmlEscape(marked)
+                .replace(String.valueOf(MATCH_START), "<mark>")
+                .replace(String.valueOf(MATCH_END), "</mark>");
+    }
+}
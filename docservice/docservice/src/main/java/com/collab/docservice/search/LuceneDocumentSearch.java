@@ -0,0 +1,156 @@
+package com.collab.docservice.search;
+
+import com.collab.docservice.dto.DocSearchHit;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.repo.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.*;
+import org.apache.lucene.search.highlight.Highlighter;
+import org.apache.lucene.search.highlight.InvalidTokenOffsetsException;
+import org.apache.lucene.search.highlight.QueryScorer;
+import org.apache.lucene.search.highlight.SimpleHTMLFormatter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Search on an in-memory Lucene index, for databases without Postgres full-text search (H2, tests).
+ *
+ * The index follows writes incrementally: every pass (and every search) re-indexes only the
+ * documents whose updatedAt moved since the previous pass, which every write path bumps. Access is
+ * not indexed; each search filters on the ids the user can see right now, so sharing and deleting
+ * take effect immediately.
+ */
+@Component
+@ConditionalOnProperty(name = "docservice.search.backend", havingValue = "lucene")
+public class LuceneDocumentSearch implements DocumentSearch {
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String CONTENT = "content";
+    private static final String OWNER = "owner";
+    // same as the Postgres index
+    private static final int INDEXED_CHARS = 262_144;
+    // writes that commit after a pass started may carry an updatedAt just before it
+    private static final Duration OVERLAP = Duration.ofSeconds(5);
+
+    private final DocumentRepository repo;
+    private final Analyzer analyzer = new EnglishAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+
+    // guarded by this
+    private Instant syncedUpTo = Instant.EPOCH;
+
+    public LuceneDocumentSearch(DocumentRepository repo) throws IOException {
+        this.repo = repo;
+        this.writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(analyzer));
+        this.searchers = new SearcherManager(writer, null);
+    }
+
+    @Scheduled(fixedDelayString = "${docservice.search.refresh-interval:1s}")
+    public synchronized void catchUp() {
+        Instant started = Instant.now();
+        try {
+            for (Document d : repo.findByUpdatedAtGreaterThanEqual(syncedUpTo.minus(OVERLAP))) {
+                writer.updateDocument(new Term(ID, d.getId().toString()), toLucene(d));
+            }
+            searchers.maybeRefreshBlocking();
+            syncedUpTo = started;
+        } catch (IOException e) {
+            System.err.println("Updating the search index failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<DocSearchHit> search(String username, String query, int offset, int limit) {
+        catchUp();
+        List<BytesRef> visible = repo.findVisibleDocumentIds(username).stream()
+                .map(id -> new BytesRef(id.toString()))
+                .toList();
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, Map.of(TITLE, 2f, CONTENT, 1f));
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query text = parser.parse(query);
+        if (visible.isEmpty() || text == null || text instanceof MatchNoDocsQuery) {
+            return List.of();
+        }
+        Query visibleMatches = new BooleanQuery.Builder()
+                .add(text, BooleanClause.Occur.MUST)
+                .add(new TermInSetQuery(ID, visible), BooleanClause.Occur.FILTER)
+                .build();
+
+        try {
+            IndexSearcher searcher = searchers.acquire();
+            try {
+                TopDocs top = searcher.search(visibleMatches, offset + limit);
+                Highlighter highlighter = new Highlighter(
+                        new SimpleHTMLFormatter(String.valueOf(MATCH_START), String.valueOf(MATCH_END)),
+                        new QueryScorer(text, CONTENT));
+                highlighter.setMaxDocCharsToAnalyze(INDEXED_CHARS);
+
+                List<DocSearchHit> hits = new ArrayList<>();
+                for (int i = offset; i < top.scoreDocs.length; i++) {
+                    ScoreDoc scoreDoc = top.scoreDocs[i];
+                    org.apache.lucene.document.Document doc = searcher.storedFields().document(scoreDoc.doc);
+                    hits.add(new DocSearchHit(UUID.fromString(doc.get(ID)), doc.get(TITLE), doc.get(OWNER),
+                            DocumentSearch.highlight(snippet(highlighter, doc.get(CONTENT))), scoreDoc.score));
+                }
+                return hits;
+            } finally {
+                searchers.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        searchers.close();
+        writer.close();
+    }
+
+    private static org.apache.lucene.document.Document toLucene(Document d) {
+        String content = d.getContent() == null ? "" : d.getContent();
+        org.apache.lucene.document.Document doc = new org.apache.lucene.document.Document();
+        doc.add(new StringField(ID, d.getId().toString(), Field.Store.YES));
+        doc.add(new TextField(TITLE, d.getTitle() == null ? "" : d.getTitle(), Field.Store.YES));
+        doc.add(new TextField(CONTENT, content.substring(0, Math.min(content.length(), INDEXED_CHARS)), Field.Store.YES));
+        doc.add(new StoredField(OWNER, d.getOwnerUsername()));
+        return doc;
+    }
+
+    // the best two fragments with their matches marked, or the start of the text if only the title matched
+    private String snippet(Highlighter highlighter, String content) throws IOException {
+        try {
+            String[] fragments = highlighter.getBestFragments(analyzer, CONTENT, content, 2);
+            if (fragments.length > 0) {
+                return String.join(" ... ", fragments);
+            }
+        } catch (InvalidTokenOffsetsException e) {
+            // fall through to the plain start of the text
+        }
+        return content.substring(0, Math.min(content.length(), 200));
+    }
+}
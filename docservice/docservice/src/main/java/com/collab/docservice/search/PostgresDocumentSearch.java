@@ -0,0 +1,33 @@
+package com.collab.docservice.search;
+
+import com.collab.docservice.dto.DocSearchHit;
+import com.collab.docservice.repo.DocumentRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Search on the documents.search_vector column (schema-postgresql.sql): weighted title and content
+ * lexemes that Postgres keeps current on every write, looked up through a GIN index and ranked with
+ * ts_rank. The visibility check is part of the same query.
+ */
+@Component
+@ConditionalOnProperty(name = "docservice.search.backend", havingValue = "postgres", matchIfMissing = true)
+public class PostgresDocumentSearch implements DocumentSearch {
+
+    private final DocumentRepository repo;
+
+    public PostgresDocumentSearch(DocumentRepository repo) {
+        this.repo = repo;
+    }
+
+    @Override
+    public List<DocSearchHit> search(String username, String query, int offset, int limit) {
+        return repo.searchVisible(username, query, offset, limit).stream()
+                .map(row -> new DocSearchHit(row.getId(), row.getTitle(), row.getOwnerUsername(),
+                        DocumentSearch.highlight(row.getSnippet() == null ? "" : row.getSnippet()),
+                        row.getScore() == null ? 0 : row.getScore()))
+                .toList();
+    }
+}
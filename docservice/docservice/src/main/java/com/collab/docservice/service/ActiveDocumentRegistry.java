@@ -0,0 +1,448 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.model.DocumentOperation;
+import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.text.Rope;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory text of documents that are being edited with SPLICE messages.
+ *
+ * A document is loaded into a Rope on its first SPLICE and dropped when its last user leaves.
+ * Splices are applied to the Rope only; the content is written back on a fixed delay (and on
+ * release/shutdown), so a burst of keystrokes costs one full-content UPDATE instead of one per
+ * keystroke. REST reads may therefore lag live edits by up to the flush interval.
+ * Snapshots are the immutable Rope itself, so capturing a version never copies under the lock.
+ *
+ * Every change gets a sequence number, and the last SPLICEs are kept in a bounded op log, so a
+ * client that reconnects with the last seq it saw gets only what it missed ({@link #sync}).
+ * An EDIT replaces the whole text and clears the log. Sequence numbers come from the durable
+ * OperationLog, which records every change as well; the content is written back together with the
+ * seq it includes, and anything logged after that is replayed when the document is loaded again.
+ *
+ * REST writes go through {@link #writeThrough}: the document is written back and dropped first, and
+ * cannot be loaded again until the write is done, so a later flush never overwrites it and a reload
+ * never replays SPLICEs onto text they were not made against.
+ *
+ * Database reads and writes never run inside the map: a document's entry goes in empty and is loaded,
+ * written back and written through under its own writeLock, so a slow document only holds up its own
+ * users, not the others that share its map bin.
+ *
+ * A document is in one mode at a time: while CrdtDocumentRegistry holds it (between
+ * {@link #beginCrdtMode} and {@link #endCrdtMode}) it is not loaded here and REST writes and EDITs
+ * are refused with 409, and it cannot enter CRDT mode while it has an entry here. Both checks run
+ * under the document's map bin. Documents nobody touched for idle-timeout are written back and
+ * dropped, so a client that went away without a LEAVE does not pin one.
+ */
+@Component
+public class ActiveDocumentRegistry {
+
+    /**
+     * What a reconnecting client needs: either the ops it missed (content is null) or, if it is
+     * too far behind, the whole text. Either way seq is the position it is now at.
+     */
+    public record Sync(long seq, String content, List<DocEditMessage> missed) {}
+
+    /** A full-content EDIT applied to the in-memory text: its seq and the text it replaced. */
+    public record Replacement(long seq, Rope previous) {}
+
+    private static final class ActiveDocument {
+        // guarded by this; null until loaded
+        Rope text;
+        boolean dirty;
+        long seq;
+        // the latest SPLICEs, oldest first; nothing was left out between them and seq
+        final ArrayDeque<DocEditMessage> log = new ArrayDeque<>();
+        long logChars;
+        // no change is accepted once set; whoever sees it waits for the writer and loads the document again
+        boolean released;
+        Instant lastUsed = Instant.now();
+        // held across load, take-and-write and REST writes, so a slower flush can never overwrite a newer one
+        final Object writeLock = new Object();
+    }
+
+    public static final long NOT_ACTIVE = -1;
+
+    private final DocumentRepository repo;
+    private final OperationLog operationLog;
+    private final int opLogMaxOps;
+    private final long opLogMaxChars;
+    private final Duration idleTimeout;
+    private final Map<UUID, ActiveDocument> documents = new ConcurrentHashMap<>();
+    // held by CrdtDocumentRegistry; changed under the document's bin in documents
+    private final Set<UUID> inCrdtMode = ConcurrentHashMap.newKeySet();
+
+    public ActiveDocumentRegistry(DocumentRepository repo, OperationLog operationLog,
+                                  @Value("${docservice.active-documents.op-log.max-ops:1000}") int opLogMaxOps,
+                                  @Value("${docservice.active-documents.op-log.max-chars:1000000}") long opLogMaxChars,
+                                  @Value("${docservice.active-documents.idle-timeout:10m}") Duration idleTimeout) {
+        this.repo = repo;
+        this.operationLog = operationLog;
+        this.opLogMaxOps = opLogMaxOps;
+        this.opLogMaxChars = opLogMaxChars;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Applies ops (offsets into the current text), logs them and returns their seq.
+     */
+    public long splice(UUID docId, String sender, List<SpliceOp> ops) {
+        while (true) {
+            ActiveDocument doc = loaded(docId);
+            synchronized (doc) {
+                if (!doc.released) {
+                    return splice(docId, doc, sender, ops);
+                }
+            }
+            awaitDropped(doc);
+        }
+    }
+
+    private long splice(UUID docId, ActiveDocument doc, String sender, List<SpliceOp> ops) {
+        doc.lastUsed = Instant.now();
+        if (ops == null || ops.isEmpty()) {
+            return doc.seq;
+        }
+        // nextSeq may refuse the edit, so nothing changes before it
+        Rope text = TextSplicer.apply(doc.text, ops);
+        long seq = operationLog.nextSeq(docId);
+        operationLog.recordSplice(docId, seq, sender, ops);
+        doc.text = text;
+        doc.dirty = true;
+        doc.seq = seq;
+
+        DocEditMessage logged = new DocEditMessage();
+        logged.type = "SPLICE";
+        logged.sender = sender;
+        logged.ops = List.copyOf(ops);
+        logged.seq = doc.seq;
+        doc.log.addLast(logged);
+        doc.logChars += opChars(ops);
+        while (doc.log.size() > opLogMaxOps || doc.logChars > opLogMaxChars) {
+            doc.logChars -= opChars(doc.log.removeFirst().ops);
+        }
+        return doc.seq;
+    }
+
+    /**
+     * Full-content EDIT for a document that is active: becomes the in-memory text and is flushed
+     * with it. Empty if the document is not active, in which case the caller persists it.
+     */
+    public Optional<Replacement> replaceIfActive(UUID docId, String sender, String content) {
+        ActiveDocument doc = documents.get(docId);
+        if (doc == null) {
+            return Optional.empty();
+        }
+        synchronized (doc) {
+            if (doc.released || doc.text == null) {
+                // being loaded, or written back by a REST write or the last LEAVE; the caller writes after it
+                return Optional.empty();
+            }
+            long seq = operationLog.nextSeq(docId);
+            operationLog.recordEdit(docId, seq, sender, content);
+            Rope previous = doc.text;
+            doc.text = Rope.of(content);
+            doc.dirty = true;
+            doc.lastUsed = Instant.now();
+            // earlier ops do not lead to this text; anyone behind it needs the text itself
+            doc.log.clear();
+            doc.logChars = 0;
+            doc.seq = seq;
+            return Optional.of(new Replacement(seq, previous));
+        }
+    }
+
+    /**
+     * Brings a client that last saw {@code since} up to date, loading the document if needed.
+     * A null, future or too old since gets the whole text.
+     */
+    public Sync sync(UUID docId, Long since) {
+        while (true) {
+            ActiveDocument doc = loaded(docId);
+            Rope text;
+            long seq;
+            synchronized (doc) {
+                if (doc.released) {
+                    text = null;
+                    seq = NOT_ACTIVE;
+                } else {
+                    doc.lastUsed = Instant.now();
+                    seq = doc.seq;
+                    long oldestResumable = doc.log.isEmpty() ? doc.seq : doc.log.peekFirst().seq - 1;
+                    if (since != null && since >= oldestResumable && since <= doc.seq) {
+                        List<DocEditMessage> missed = new ArrayList<>((int) (doc.seq - since));
+                        for (DocEditMessage op : doc.log) {
+                            if (op.seq > since) {
+                                missed.add(op);
+                            }
+                        }
+                        return new Sync(seq, null, missed);
+                    }
+                    text = doc.text;
+                }
+            }
+            if (text != null) {
+                // the rope is immutable; materialize it outside the lock
+                return new Sync(seq, text.toString(), List.of());
+            }
+            awaitDropped(doc);
+        }
+    }
+
+    public Optional<Rope> snapshot(UUID docId) {
+        ActiveDocument doc = documents.get(docId);
+        if (doc == null) {
+            return Optional.empty();
+        }
+        synchronized (doc) {
+            return Optional.ofNullable(doc.text);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${docservice.active-documents.flush-interval:1s}")
+    public void flush() {
+        documents.forEach((docId, doc) -> flush(docId, doc, false));
+    }
+
+    /**
+     * Writes back and forgets the document; called when its last user leaves.
+     */
+    public void release(UUID docId) {
+        ActiveDocument doc = documents.get(docId);
+        if (doc != null) {
+            writeBackAndDrop(docId, doc);
+        }
+    }
+
+    /** Drops the in-memory text of a document that is being deleted, without writing it back. */
+    public void discard(UUID docId) {
+        ActiveDocument doc = documents.get(docId);
+        if (doc != null) {
+            synchronized (doc) {
+                doc.released = true;
+                doc.dirty = false;
+            }
+            documents.remove(docId, doc);
+        }
+    }
+
+    /** Writes back and drops documents with no SPLICE, EDIT or sync for idle-timeout. */
+    @Scheduled(fixedDelayString = "${docservice.active-documents.idle-check-interval:1m}")
+    public void evictIdle() {
+        Instant cutoff = Instant.now().minus(idleTimeout);
+        documents.forEach((docId, doc) -> {
+            synchronized (doc.writeLock) {
+                synchronized (doc) {
+                    if (doc.lastUsed.isAfter(cutoff)) {
+                        return;
+                    }
+                }
+                writeBackAndDrop(docId, doc);
+            }
+        });
+    }
+
+    /**
+     * Called by CrdtDocumentRegistry before it loads a document; refused with 409 while the document
+     * is active (or being loaded or written through) here.
+     */
+    public void beginCrdtMode(UUID docId) {
+        documents.compute(docId, (id, active) -> {
+            if (active != null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Document is being edited live; sync again later");
+            }
+            inCrdtMode.add(id);
+            return null;
+        });
+    }
+
+    /** Called by CrdtDocumentRegistry once it has written the document back and dropped it. */
+    public void endCrdtMode(UUID docId) {
+        inCrdtMode.remove(docId);
+    }
+
+    /**
+     * Runs a REST write (PUT, PATCH) of the stored content. An active document is written back and
+     * dropped first, so write reads its live edits; until write returns the document cannot be
+     * loaded again, so SPLICEs arriving meanwhile wait and then apply to what write stored.
+     * If the live text cannot be written back nothing is written and the document stays active (503).
+     */
+    public <T> T writeThrough(UUID docId, Supplier<T> write) {
+        while (true) {
+            ActiveDocument doc = entry(docId);
+            synchronized (doc.writeLock) {
+                if (!flush(docId, doc, true)) {
+                    synchronized (doc) {
+                        doc.released = false;
+                    }
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                            "Live edits could not be saved; try again");
+                }
+                if (documents.get(docId) != doc) {
+                    // dropped by someone else while we waited; write under the entry that replaced it
+                    continue;
+                }
+                // dropped even if write fails: the stored text is current, the next splice loads it
+                try {
+                    return write.get();
+                } finally {
+                    documents.remove(docId, doc);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    // with release, no change is accepted after the text taken here; false if the write failed
+    private boolean flush(UUID docId, ActiveDocument doc, boolean release) {
+        synchronized (doc.writeLock) {
+            Rope text;
+            long seq;
+            synchronized (doc) {
+                doc.released |= release;
+                if (!doc.dirty) {
+                    return true;
+                }
+                text = doc.text;
+                seq = doc.seq;
+                doc.dirty = false;
+            }
+            try {
+                // toString and the UPDATE run outside the text lock; splices keep going meanwhile
+                repo.updateContent(docId, text.toString(), Instant.now(), seq);
+                return true;
+            } catch (RuntimeException e) {
+                synchronized (doc) {
+                    doc.dirty = true;
+                }
+                System.err.println("Flushing document " + docId + " failed: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // leaves the map once written back; a load right after reads the flushed text.
+    // Kept (and usable again) if the write fails; the next release or idle check retries.
+    private void writeBackAndDrop(UUID docId, ActiveDocument doc) {
+        synchronized (doc.writeLock) {
+            if (documents.get(docId) != doc) {
+                // already dropped
+                return;
+            }
+            if (flush(docId, doc, true)) {
+                documents.remove(docId, doc);
+                return;
+            }
+            synchronized (doc) {
+                doc.released = false;
+            }
+        }
+    }
+
+    // the document's entry, added empty if it has none; refused while the document is in CRDT mode
+    private ActiveDocument entry(UUID docId) {
+        return documents.computeIfAbsent(docId, id -> {
+            requireNotInCrdtMode(id);
+            return new ActiveDocument();
+        });
+    }
+
+    // the document's entry with its text loaded; the caller still checks released under its lock
+    private ActiveDocument loaded(UUID docId) {
+        while (true) {
+            ActiveDocument doc = entry(docId);
+            synchronized (doc) {
+                if (doc.text != null || doc.released) {
+                    return doc;
+                }
+            }
+            synchronized (doc.writeLock) {
+                // whoever held it has loaded, dropped or given up on the document meanwhile
+                if (load(docId, doc)) {
+                    return doc;
+                }
+            }
+        }
+    }
+
+    private void requireNotInCrdtMode(UUID docId) {
+        if (inCrdtMode.contains(docId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Document is being edited in CRDT mode");
+        }
+    }
+
+    // a released document leaves the map once whoever released it is done; that happens under its writeLock
+    private static void awaitDropped(ActiveDocument doc) {
+        synchronized (doc.writeLock) {
+            // acquiring it is the wait
+        }
+    }
+
+    private static long opChars(List<SpliceOp> ops) {
+        long chars = 0;
+        for (SpliceOp op : ops) {
+            chars += 1 + (op.insert == null ? 0 : op.insert.length());
+        }
+        return chars;
+    }
+
+    // under active.writeLock; false if the entry was dropped, true once it holds the text
+    private boolean load(UUID docId, ActiveDocument active) {
+        synchronized (active) {
+            if (active.released || active.text != null) {
+                return !active.released;
+            }
+        }
+        Rope text;
+        long seq;
+        Document doc;
+        try {
+            doc = repo.findById(docId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Doc not found"));
+            operationLog.ensureBase(docId, doc.getAppliedSeq(), doc.getContent());
+
+            // edits logged after the content was last written back (e.g. before a crash)
+            text = Rope.of(doc.getContent());
+            seq = doc.getAppliedSeq();
+            for (DocumentOperation op : operationLog.after(docId, seq)) {
+                text = operationLog.replay(text, op);
+                seq = op.getSeq();
+            }
+        } catch (RuntimeException e) {
+            synchronized (active) {
+                active.released = true;
+            }
+            documents.remove(docId, active);
+            throw e;
+        }
+        synchronized (active) {
+            if (active.released) {
+                // discarded while loading
+                return false;
+            }
+            active.text = text;
+            active.seq = seq;
+            active.dirty = seq != doc.getAppliedSeq();
+            active.lastUsed = Instant.now();
+            return true;
+        }
+    }
+}
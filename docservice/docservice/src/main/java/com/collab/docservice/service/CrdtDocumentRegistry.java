@@ -0,0 +1,327 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.crdt.CrdtCodec;
+import com.collab.docservice.crdt.CrdtUpdate;
+import com.collab.docservice.crdt.RgaDocument;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.model.DocumentCrdtState;
+import com.collab.docservice.repo.DocumentCrdtStateRepository;
+import com.collab.docservice.repo.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Documents edited in CRDT mode (CRDT_UPDATE messages and /docs/{id}/crdt).
+ *
+ * A document switches to CRDT mode the first time a replica syncs or sends an update. It starts
+ * from its current content and its RGA state is kept in document_crdt_state. Replicas exchange
+ * updates that merge in any order, so offline clients and other docservice nodes can reconcile
+ * later without a base revision.
+ * Like ActiveDocumentRegistry, the state and the plain content are written back on a fixed delay
+ * and when the last user leaves. Tombstones are collected at flush time once every peer that
+ * acknowledged a state vector within peer-ttl has seen the delete.
+ * If the plain content was changed outside CRDT mode (PUT, PATCH, EDIT) since the state was
+ * saved, the change is folded in as an edit by replica 0 when the state is loaded.
+ * Merged edits reach the OperationLog as one whole-text EDIT per flush, without an author.
+ *
+ * While a document is held here those plain-text writes are refused with 409 (see
+ * ActiveDocumentRegistry, which also keeps the two modes apart), so nothing overwrites merged edits.
+ * A document nobody synced or updated for idle-timeout is written back and dropped; offline clients
+ * that only use /docs/{id}/crdt never send the LEAVE that would release it.
+ */
+@Component
+public class CrdtDocumentRegistry {
+
+    private static final class CrdtDocument {
+        // guarded by this
+        final RgaDocument rga;
+        final Map<Integer, Instant> peerSeen = new HashMap<>();
+        boolean dirty;
+        // no change is accepted once set; whoever sees it waits for the writer and loads the document again
+        boolean released;
+        Instant lastUsed = Instant.now();
+        // held across encode-and-write, so a slower flush can never overwrite a newer one
+        final Object writeLock = new Object();
+
+        CrdtDocument(RgaDocument rga) {
+            this.rga = rga;
+            Instant now = Instant.now();
+            // peers restored from storage get a full TTL from load time
+            rga.peers().forEach(p -> peerSeen.put(p, now));
+        }
+    }
+
+    private final DocumentRepository repo;
+    private final DocumentCrdtStateRepository stateRepo;
+    private final OperationLog operationLog;
+    private final ActiveDocumentRegistry activeDocuments;
+    private final Duration peerTtl;
+    private final Duration idleTimeout;
+    private final Map<UUID, CrdtDocument> documents = new ConcurrentHashMap<>();
+
+    public CrdtDocumentRegistry(DocumentRepository repo, DocumentCrdtStateRepository stateRepo,
+                                OperationLog operationLog, ActiveDocumentRegistry activeDocuments,
+                                @Value("${docservice.crdt.peer-ttl:7d}") Duration peerTtl,
+                                @Value("${docservice.crdt.idle-timeout:10m}") Duration idleTimeout) {
+        this.repo = repo;
+        this.stateRepo = stateRepo;
+        this.operationLog = operationLog;
+        this.activeDocuments = activeDocuments;
+        this.peerTtl = peerTtl;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Integrates an encoded update. Returns false if it held nothing new, in which case there is
+     * nothing to broadcast.
+     */
+    public boolean apply(UUID docId, byte[] update) {
+        CrdtUpdate decoded = decode(update);
+        return withDocument(docId, doc -> {
+            boolean changed = doc.rga.apply(decoded);
+            doc.dirty |= changed;
+            return changed;
+        });
+    }
+
+    /**
+     * What the replica is missing: a diff against its state vector if it is a known peer, the full
+     * state otherwise (CrdtCodec.kind tells them apart). Also counts as an acknowledgement.
+     */
+    public byte[] sync(UUID docId, int replica, byte[] stateVector) {
+        Map<Integer, Integer> sv = decodeStateVector(stateVector);
+        return withDocument(docId, doc -> {
+            boolean known = doc.rga.peers().contains(replica);
+            acknowledge(doc, replica, sv);
+            return known && !sv.isEmpty()
+                    ? CrdtCodec.encodeUpdate(doc.rga.diff(sv))
+                    : CrdtCodec.encodeState(doc.rga);
+        });
+    }
+
+    /** Records how far a replica has caught up; tombstone collection waits for it. */
+    public void acknowledge(UUID docId, int replica, byte[] stateVector) {
+        Map<Integer, Integer> sv = decodeStateVector(stateVector);
+        withDocument(docId, doc -> {
+            acknowledge(doc, replica, sv);
+            return null;
+        });
+    }
+
+    public byte[] stateVector(UUID docId) {
+        return withDocument(docId, doc -> CrdtCodec.encodeStateVector(doc.rga.stateVector()));
+    }
+
+    /** Current text of a document held in CRDT mode on this node. */
+    public Optional<String> text(UUID docId) {
+        CrdtDocument doc = documents.get(docId);
+        if (doc == null) {
+            return Optional.empty();
+        }
+        synchronized (doc) {
+            return Optional.of(doc.rga.toString());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${docservice.active-documents.flush-interval:1s}")
+    public void flush() {
+        documents.forEach((docId, doc) -> flush(docId, doc, false));
+    }
+
+    /**
+     * Writes back and forgets the document; called when its last user leaves.
+     */
+    public void release(UUID docId) {
+        documents.computeIfPresent(docId, this::writeBackAndDrop);
+    }
+
+    /** Writes back and drops documents nobody synced or updated for idle-timeout. */
+    @Scheduled(fixedDelayString = "${docservice.crdt.idle-check-interval:1m}")
+    public void evictIdle() {
+        Instant cutoff = Instant.now().minus(idleTimeout);
+        for (UUID docId : documents.keySet()) {
+            documents.computeIfPresent(docId, (id, doc) -> {
+                synchronized (doc) {
+                    if (doc.lastUsed.isAfter(cutoff)) {
+                        return doc;
+                    }
+                }
+                return writeBackAndDrop(id, doc);
+            });
+        }
+    }
+
+    /** Drops the CRDT state of a document that is being deleted. */
+    public void discard(UUID docId) {
+        documents.computeIfPresent(docId, (id, doc) -> {
+            synchronized (doc) {
+                doc.released = true;
+            }
+            return null;
+        });
+        activeDocuments.endCrdtMode(docId);
+        if (stateRepo.existsById(docId)) {
+            stateRepo.deleteById(docId);
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void acknowledge(CrdtDocument doc, int replica, Map<Integer, Integer> sv) {
+        // not marked dirty: acknowledgements alone are not worth a write, they are saved with the next change
+        doc.rga.acknowledge(replica, sv);
+        doc.peerSeen.put(replica, Instant.now());
+    }
+
+    // runs action on the loaded document under its lock; retried if it was released while we waited
+    private <T> T withDocument(UUID docId, Function<CrdtDocument, T> action) {
+        while (true) {
+            CrdtDocument doc = documents.computeIfAbsent(docId, this::load);
+            synchronized (doc) {
+                if (!doc.released) {
+                    doc.lastUsed = Instant.now();
+                    return action.apply(doc);
+                }
+            }
+            // a released document leaves the map once whoever released it is done; that happens under its writeLock
+            synchronized (doc.writeLock) {
+                // acquiring it is the wait
+            }
+        }
+    }
+
+    // null once written back, so it leaves the map and the document can leave CRDT mode.
+    // Kept (and usable again) if the write fails; merged edits exist nowhere else, the idle check retries.
+    private CrdtDocument writeBackAndDrop(UUID docId, CrdtDocument doc) {
+        if (flush(docId, doc, true)) {
+            activeDocuments.endCrdtMode(docId);
+            return null;
+        }
+        synchronized (doc) {
+            doc.released = false;
+        }
+        return doc;
+    }
+
+    // with release, no change is accepted after the state taken here; false if the write failed
+    private boolean flush(UUID docId, CrdtDocument doc, boolean release) {
+        synchronized (doc.writeLock) {
+            byte[] state;
+            String text;
+            synchronized (doc) {
+                doc.released |= release;
+                if (!doc.dirty) {
+                    return true;
+                }
+                Instant cutoff = Instant.now().minus(peerTtl);
+                doc.peerSeen.entrySet().removeIf(e -> {
+                    boolean stale = e.getValue().isBefore(cutoff);
+                    if (stale) {
+                        doc.rga.forgetPeer(e.getKey());
+                    }
+                    return stale;
+                });
+                doc.rga.collectGarbage();
+                // the list is mutable, so encoding happens under the lock; it is one linear pass
+                state = CrdtCodec.encodeState(doc.rga);
+                text = doc.rga.toString();
+                doc.dirty = false;
+            }
+            try {
+                Instant now = Instant.now();
+                long seq = operationLog.nextSeq(docId);
+                operationLog.recordEdit(docId, seq, null, text);
+                stateRepo.save(new DocumentCrdtState(docId, state, now));
+                repo.updateContent(docId, text, now, seq);
+                return true;
+            } catch (RuntimeException e) {
+                synchronized (doc) {
+                    doc.dirty = true;
+                }
+                System.err.println("Flushing CRDT document " + docId + " failed: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private CrdtDocument load(UUID docId) {
+        // 409 while the document is held for SPLICEs; from here on plain-text writes to it are refused
+        activeDocuments.beginCrdtMode(docId);
+        try {
+            return loadState(docId);
+        } catch (RuntimeException e) {
+            activeDocuments.endCrdtMode(docId);
+            throw e;
+        }
+    }
+
+    private CrdtDocument loadState(UUID docId) {
+        Document document = repo.findById(docId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Doc not found"));
+        String content = document.getContent() == null ? "" : document.getContent();
+
+        Optional<DocumentCrdtState> saved = stateRepo.findById(docId);
+        if (saved.isEmpty()) {
+            CrdtDocument doc = new CrdtDocument(RgaDocument.of(content));
+            doc.dirty = true;
+            return doc;
+        }
+
+        CrdtDocument doc = new CrdtDocument(CrdtCodec.decodeState(saved.get().getState()));
+        doc.dirty = reconcile(doc.rga, content);
+        return doc;
+    }
+
+    // folds a plain-text change into the CRDT as one delete and one insert around the common prefix/suffix
+    private static boolean reconcile(RgaDocument rga, String content) {
+        String current = rga.toString();
+        if (current.equals(content)) {
+            return false;
+        }
+        int prefix = 0;
+        int max = Math.min(current.length(), content.length());
+        while (prefix < max && current.charAt(prefix) == content.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && current.charAt(current.length() - 1 - suffix) == content.charAt(content.length() - 1 - suffix)) {
+            suffix++;
+        }
+        rga.delete(RgaDocument.INITIAL_REPLICA, prefix, current.length() - prefix - suffix);
+        rga.insert(RgaDocument.INITIAL_REPLICA, prefix, content.substring(prefix, content.length() - suffix));
+        return true;
+    }
+
+    private static CrdtUpdate decode(byte[] update) {
+        try {
+            return CrdtCodec.decodeUpdate(update);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed CRDT update");
+        }
+    }
+
+    private static Map<Integer, Integer> decodeStateVector(byte[] stateVector) {
+        if (stateVector == null || stateVector.length == 0) {
+            return Map.of();
+        }
+        try {
+            return CrdtCodec.decodeStateVector(stateVector);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed state vector");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.DocContentResponse;
+import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.repo.DocumentRepository.ContentSlice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.UUID;
+
+/**
+ * Range reads of document content. Slices are cut with SUBSTRING in the database, so only the
+ * requested characters cross the wire; line reads scan forward in fixed-size chunks and stop
+ * at the last requested line. Both run in one repeatable-read transaction so every chunk
+ * comes from the same revision.
+ *
+ * Offsets and lengths here count Unicode code points, as the database's SUBSTRING and LENGTH do,
+ * not the UTF-16 units of SPLICE and PATCH offsets; the two differ only for characters outside the
+ * Basic Multilingual Plane (emoji and the like), each of which is one code point but two units.
+ */
+@Service
+public class DocumentContentReader {
+
+    private final DocumentRepository repo;
+    private final int maxSliceChars;
+    private final int scanChunkChars;
+
+    public DocumentContentReader(DocumentRepository repo,
+                                 @Value("${docservice.content.max-slice-chars:1048576}") int maxSliceChars,
+                                 @Value("${docservice.content.scan-chunk-chars:65536}") int scanChunkChars) {
+        this.repo = repo;
+        this.maxSliceChars = maxSliceChars;
+        this.scanChunkChars = scanChunkChars;
+    }
+
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public DocContentResponse readChars(UUID id, int offset, Integer length) {
+        if (offset < 0 || (length != null && length < 0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "offset and length must not be negative");
+        }
+        int n = length == null ? maxSliceChars : Math.min(length, maxSliceChars);
+
+        ContentSlice slice = slice(id, offset, n);
+        return new DocContentResponse(id, slice.getRevision(), slice.getContentLength(), offset,
+                null, null, nullToEmpty(slice.getContent()));
+    }
+
+    /**
+     * Lines fromLine (1-based) to fromLine + lineCount - 1; a line includes its trailing '\n'.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public DocContentResponse readLines(UUID id, int fromLine, int lineCount) {
+        if (fromLine < 1 || lineCount < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fromLine and lineCount must be positive");
+        }
+
+        StringBuilder out = new StringBuilder();
+        int line = 1;
+        int position = 0;       // offset of the next chunk
+        int startOffset = -1;   // offset where fromLine begins
+        long revision;
+        int totalLength;
+
+        while (true) {
+            ContentSlice chunk = slice(id, position, scanChunkChars);
+            revision = chunk.getRevision();
+            totalLength = chunk.getContentLength();
+            String text = nullToEmpty(chunk.getContent());
+
+            int i = 0;
+            while (i < text.length() && line < fromLine) {
+                if (text.charAt(i++) == '\n') {
+                    line++;
+                }
+            }
+            if (line >= fromLine) {
+                if (startOffset < 0) {
+                    startOffset = position + text.codePointCount(0, i);
+                }
+                int end = i;
+                while (end < text.length() && line < fromLine + lineCount) {
+                    if (text.charAt(end++) == '\n') {
+                        line++;
+                    }
+                }
+                out.append(text, i, end);
+                if (out.length() > maxSliceChars) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                            "Requested lines exceed " + maxSliceChars + " characters");
+                }
+            }
+
+            // the next chunk starts after this one's code points, not its UTF-16 length
+            position += text.codePointCount(0, text.length());
+            if (line >= fromLine + lineCount || position >= totalLength || text.isEmpty()) {
+                break;
+            }
+        }
+
+        return new DocContentResponse(id, revision, totalLength, startOffset < 0 ? totalLength : startOffset,
+                fromLine, lineCount, out.toString());
+    }
+
+    private ContentSlice slice(UUID id, int offset, int length) {
+        return repo.findContentSlice(id, offset + 1, length)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Doc not found"));
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,297 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.model.DocumentCheckpoint;
+import com.collab.docservice.model.DocumentOperation;
+import com.collab.docservice.repo.DocumentCheckpointRepository;
+import com.collab.docservice.repo.DocumentOperationRepository;
+import com.collab.docservice.text.Rope;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of every accepted edit (SPLICE ops or a whole-text EDIT) per document, in
+ * document_operations.
+ *
+ * Each edit gets the next seq of its document from here, so seqs stay increasing across reloads
+ * and nodes restarting. The counter is per node, seeded from the table, so it assumes one writer
+ * per document: with several nodes, a document's edits must all reach the same one (e.g. routing
+ * by document id). Rows whose (document_id, seq) is taken anyway are dead-lettered, see below.
+ *
+ * Records are queued and written in batches of batch-size on a short fixed delay, never by the
+ * thread that records them (which may hold a document lock), so a keystroke costs no database
+ * round trip of its own. If a batch fails it is retried row by row: rows the database rejects for
+ * good are logged and dropped (dead-lettered), and on any other failure the unwritten rows go back
+ * to the front of the queue. While more than max-pending records wait, nextSeq refuses new edits
+ * with 503, so a database outage turns into rejected edits rather than unbounded memory.
+ * Documents carry the last seq their content includes (Document.appliedSeq); ActiveDocumentRegistry
+ * replays anything newer on load, which recovers live edits whose content flush was lost in a crash.
+ * Only a crash within the batch delay loses edits.
+ *
+ * The text as of any seq is rebuilt from the newest checkpoint at or before it. Compaction writes a
+ * checkpoint every checkpoint-every operations, and folds operations older than retention into
+ * one, so history further back than that is gone.
+ */
+@Component
+public class OperationLog {
+
+    private static final TypeReference<List<SpliceOp>> SPLICE_OPS = new TypeReference<>() {};
+
+    private final DocumentOperationRepository operations;
+    private final DocumentCheckpointRepository checkpoints;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxPending;
+    private final int checkpointEvery;
+    private final Duration retention;
+
+    private final Map<UUID, AtomicLong> lastSeq = new ConcurrentHashMap<>();
+    // documents known to have a checkpoint or logged operations
+    private final Set<UUID> based = ConcurrentHashMap.newKeySet();
+    // documents logged to since the last compaction
+    private final Set<UUID> touched = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedDeque<DocumentOperation> pending = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final Object flushLock = new Object();
+
+    public OperationLog(DocumentOperationRepository operations,
+                        DocumentCheckpointRepository checkpoints,
+                        ObjectMapper objectMapper,
+                        @Value("${docservice.op-log.batch-size:500}") int batchSize,
+                        @Value("${docservice.op-log.max-pending:100000}") int maxPending,
+                        @Value("${docservice.op-log.checkpoint-every:500}") int checkpointEvery,
+                        @Value("${docservice.op-log.retention:30d}") Duration retention) {
+        this.operations = operations;
+        this.checkpoints = checkpoints;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.checkpointEvery = checkpointEvery;
+        this.retention = retention;
+    }
+
+    /** Call before changing anything: refused (503) while the queue is full. */
+    public long nextSeq(UUID docId) {
+        if (pendingCount.get() >= maxPending) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Edit history is backed up; try again");
+        }
+        return lastSeq.computeIfAbsent(docId, this::loadLastSeq).incrementAndGet();
+    }
+
+    /**
+     * Makes sure replay has a starting point before the first SPLICE of a document is logged:
+     * content is its text as of seq. A no-op once the document has any history.
+     */
+    public void ensureBase(UUID docId, long seq, String content) {
+        if (based.contains(docId)) {
+            return;
+        }
+        flush();
+        if (!checkpoints.existsByDocumentId(docId) && operations.findMaxSeq(docId) == 0) {
+            checkpoints.save(new DocumentCheckpoint(docId, seq, content == null ? "" : content, Instant.now()));
+        }
+        based.add(docId);
+    }
+
+    public void recordSplice(UUID docId, long seq, String author, List<SpliceOp> ops) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(ops);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize splice ops", e);
+        }
+        enqueue(new DocumentOperation(docId, seq, DocumentOperation.SPLICE, author, Instant.now(), payload));
+    }
+
+    public void recordEdit(UUID docId, long seq, String author, String content) {
+        enqueue(new DocumentOperation(docId, seq, DocumentOperation.EDIT, author, Instant.now(),
+                content == null ? "" : content));
+    }
+
+    /** Operations after seq, oldest first, including ones not written yet. */
+    public List<DocumentOperation> after(UUID docId, long seq) {
+        flush();
+        return operations.findByDocumentIdAndSeqGreaterThanOrderBySeq(docId, seq);
+    }
+
+    public List<DocumentOperation> history(UUID docId, long afterSeq, int limit) {
+        flush();
+        return operations.findByDocumentIdAndSeqGreaterThanOrderBySeq(docId, afterSeq, Limit.of(limit));
+    }
+
+    /**
+     * The text right after operation seq, or empty if compaction has already dropped that far
+     * back (or the document has no history yet).
+     */
+    public Optional<String> contentAt(UUID docId, long seq) {
+        flush();
+        Optional<DocumentCheckpoint> checkpoint =
+                checkpoints.findFirstByDocumentIdAndSeqLessThanEqualOrderBySeqDesc(docId, seq);
+        long from = checkpoint.map(DocumentCheckpoint::getSeq).orElse(0L);
+        Rope text = checkpoint.map(c -> Rope.of(c.getContent())).orElse(null);
+        for (DocumentOperation op : operations.findByDocumentIdAndSeqBetweenOrderBySeq(docId, from + 1, seq)) {
+            if (text == null && !DocumentOperation.EDIT.equals(op.getType())) {
+                // ops with nothing to apply them to; a later EDIT may still give a starting point
+                continue;
+            }
+            text = replay(text, op);
+        }
+        return Optional.ofNullable(text).map(Rope::toString);
+    }
+
+    /** Applies one logged operation to the text before it. */
+    public Rope replay(Rope text, DocumentOperation op) {
+        if (DocumentOperation.EDIT.equals(op.getType())) {
+            return Rope.of(op.getPayload());
+        }
+        return TextSplicer.apply(text, spliceOps(op));
+    }
+
+    public List<SpliceOp> spliceOps(DocumentOperation op) {
+        try {
+            return objectMapper.readValue(op.getPayload(), SPLICE_OPS);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt splice ops at seq " + op.getSeq(), e);
+        }
+    }
+
+    /** Drops the history of a document that is being deleted. */
+    public void discard(UUID docId) {
+        flush();
+        operations.deleteAllOf(docId);
+        checkpoints.deleteAllOf(docId);
+        lastSeq.remove(docId);
+        based.remove(docId);
+        touched.remove(docId);
+    }
+
+    @Scheduled(fixedDelayString = "${docservice.op-log.flush-interval:200ms}")
+    public void flush() {
+        synchronized (flushLock) {
+            List<DocumentOperation> batch = new ArrayList<>(Math.min(batchSize, pendingCount.get()));
+            DocumentOperation op;
+            while ((op = pending.pollFirst()) != null) {
+                pendingCount.decrementAndGet();
+                batch.add(op);
+                if (batch.size() == batchSize) {
+                    if (!write(batch)) {
+                        return;
+                    }
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+
+    /** Records the database rejected for good since startup. */
+    public long deadLettered() {
+        return deadLettered.get();
+    }
+
+    @Scheduled(fixedDelayString = "${docservice.op-log.compact-interval:10m}")
+    public void compact() {
+        flush();
+        Instant cutoff = Instant.now().minus(retention);
+        Set<UUID> candidates = new HashSet<>(operations.findDocumentsWithOperationsBefore(cutoff));
+        for (Iterator<UUID> it = touched.iterator(); it.hasNext(); ) {
+            candidates.add(it.next());
+            it.remove();
+        }
+        for (UUID docId : candidates) {
+            try {
+                compact(docId, cutoff);
+            } catch (RuntimeException e) {
+                System.err.println("Compacting operation log of " + docId + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private void compact(UUID docId, Instant cutoff) {
+        Optional<Long> expired = operations.findLastSeqBefore(docId, cutoff);
+        if (expired.isPresent()) {
+            long seq = expired.get();
+            contentAt(docId, seq).ifPresent(content ->
+                    checkpoints.save(new DocumentCheckpoint(docId, seq, content, Instant.now())));
+            operations.deleteThrough(docId, seq);
+            checkpoints.deleteBefore(docId, seq);
+        }
+
+        long base = checkpoints.findFirstByDocumentIdOrderBySeqDesc(docId).map(DocumentCheckpoint::getSeq).orElse(0L);
+        if (operations.countByDocumentIdAndSeqGreaterThan(docId, base) >= checkpointEvery) {
+            long latest = operations.findMaxSeq(docId);
+            contentAt(docId, latest).ifPresent(content ->
+                    checkpoints.save(new DocumentCheckpoint(docId, latest, content, Instant.now())));
+        }
+    }
+
+    private void enqueue(DocumentOperation op) {
+        pending.addLast(op);
+        pendingCount.incrementAndGet();
+        touched.add(op.getDocumentId());
+    }
+
+    // false if rows went back to the queue, in which case the flush stops until the next one
+    private boolean write(List<DocumentOperation> batch) {
+        try {
+            operations.saveAll(batch);
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("Writing " + batch.size() + " logged operations failed, retrying one by one: "
+                    + e.getMessage());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            DocumentOperation op = batch.get(i);
+            try {
+                // a fresh copy: the failed batch may have marked it persisted, and a merge would overwrite a taken seq
+                operations.save(new DocumentOperation(op.getDocumentId(), op.getSeq(), op.getType(), op.getAuthor(),
+                        op.getCreatedAt(), op.getPayload()));
+            } catch (DataIntegrityViolationException e) {
+                // most likely another node wrote this seq (see the single-writer note above)
+                deadLettered.incrementAndGet();
+                System.err.println("Dropped logged " + op.getType() + " of " + op.getDocumentId() + " at seq "
+                        + op.getSeq() + " by " + op.getAuthor() + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                for (int j = batch.size() - 1; j >= i; j--) {
+                    pending.addFirst(batch.get(j));
+                    pendingCount.incrementAndGet();
+                }
+                System.err.println("Writing logged operations failed, " + (batch.size() - i) + " requeued: "
+                        + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AtomicLong loadLastSeq(UUID docId) {
+        long latest = Math.max(operations.findMaxSeq(docId),
+                checkpoints.findFirstByDocumentIdOrderBySeqDesc(docId).map(DocumentCheckpoint::getSeq).orElse(0L));
+        return new AtomicLong(latest);
+    }
+}
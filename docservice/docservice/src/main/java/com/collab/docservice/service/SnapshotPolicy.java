@@ -0,0 +1,267 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.client.VersionServiceClient;
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.text.Rope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides when a document gets an automatic version in versionservice.
+ *
+ * A snapshot is due once the edits since the last one reach volume-chars changed characters or
+ * volume-ops operations, once the document has been idle for idle-after following a burst, or when
+ * its last user leaves, but never sooner than min-interval after the previous one (manual and
+ * creation snapshots included). Whole-text EDITs and PUTs count the span that differs from the text
+ * they replace (see {@link #changedChars(String, String)}); CRDT updates count their encoded size.
+ *
+ * Edits only update the document's counters and, at most, queue one check with its deadline;
+ * nothing scans all documents. The scheduled runner takes the checks that are due, reads the text
+ * and hands it to versionservice asynchronously, so no edit or request ever waits on a snapshot.
+ * Documents without unsnapshotted edits are forgotten once min-interval has passed.
+ */
+@Component
+public class SnapshotPolicy {
+
+    private static final class State {
+        // guarded by this
+        long chars;
+        int ops;
+        String author;
+        Instant lastEditAt;
+        Instant lastSnapshotAt;
+        boolean sessionEnded;
+        // deadline of the live queued check, null if none
+        Instant checkAt;
+        // removed from states; edits that raced with the removal start a new State
+        boolean forgotten;
+    }
+
+    private record Check(UUID docId, Instant at) {}
+
+    private final DocumentRepository repo;
+    private final ActiveDocumentRegistry activeDocuments;
+    private final CrdtDocumentRegistry crdtDocuments;
+    private final VersionServiceClient versionService;
+    private final long volumeChars;
+    private final int volumeOps;
+    private final Duration idleAfter;
+    private final Duration minInterval;
+
+    private final Map<UUID, State> states = new ConcurrentHashMap<>();
+    // guarded by itself
+    private final PriorityQueue<Check> checks = new PriorityQueue<>(Comparator.comparing(Check::at));
+
+    public SnapshotPolicy(DocumentRepository repo, ActiveDocumentRegistry activeDocuments,
+                          CrdtDocumentRegistry crdtDocuments, VersionServiceClient versionService,
+                          @Value("${docservice.snapshots.volume-chars:2000}") long volumeChars,
+                          @Value("${docservice.snapshots.volume-ops:500}") int volumeOps,
+                          @Value("${docservice.snapshots.idle-after:2m}") Duration idleAfter,
+                          @Value("${docservice.snapshots.min-interval:5m}") Duration minInterval) {
+        this.repo = repo;
+        this.activeDocuments = activeDocuments;
+        this.crdtDocuments = crdtDocuments;
+        this.versionService = versionService;
+        this.volumeChars = volumeChars;
+        this.volumeOps = volumeOps;
+        this.idleAfter = idleAfter;
+        this.minInterval = minInterval;
+    }
+
+    /** Characters a SPLICE changes: everything it deletes plus everything it inserts. */
+    public static long changedChars(List<SpliceOp> ops) {
+        long chars = 0;
+        if (ops != null) {
+            for (SpliceOp op : ops) {
+                chars += op.deleteCount + (op.insert == null ? 0 : op.insert.length());
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Characters a full-text replacement changes: what differs between the two texts once their
+     * common prefix and suffix are set aside, counted on both sides like a SPLICE's delete and insert.
+     */
+    public static long changedChars(String before, String after) {
+        String a = before == null ? "" : before;
+        String b = after == null ? "" : after;
+        int shorter = Math.min(a.length(), b.length());
+        int prefix = 0;
+        while (prefix < shorter && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < shorter - prefix
+                && a.charAt(a.length() - 1 - suffix) == b.charAt(b.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return (a.length() - prefix - suffix) + (b.length() - prefix - suffix);
+    }
+
+    public void recordEdit(UUID docId, String author, long changedChars) {
+        Instant now = Instant.now();
+        while (true) {
+            State s = states.computeIfAbsent(docId, k -> new State());
+            synchronized (s) {
+                if (s.forgotten) {
+                    continue;
+                }
+                s.chars += changedChars;
+                s.ops++;
+                if (author != null) {
+                    s.author = author;
+                }
+                s.lastEditAt = now;
+                boolean volumeReached = s.chars >= volumeChars || s.ops >= volumeOps;
+                schedule(docId, s, notBeforeAllowed(s, volumeReached ? now : now.plus(idleAfter)));
+                return;
+            }
+        }
+    }
+
+    /** The last user left; whatever they changed gets a version. */
+    public void sessionEnded(UUID docId) {
+        State s = states.get(docId);
+        if (s == null) {
+            return;
+        }
+        synchronized (s) {
+            if (s.ops > 0) {
+                s.sessionEnded = true;
+                schedule(docId, s, notBeforeAllowed(s, Instant.now()));
+            }
+        }
+    }
+
+    /** A version was saved some other way (manual snapshot, creation); counting starts over. */
+    public void snapshotTaken(UUID docId) {
+        Instant now = Instant.now();
+        while (true) {
+            State s = states.computeIfAbsent(docId, k -> new State());
+            synchronized (s) {
+                if (s.forgotten) {
+                    continue;
+                }
+                reset(s, now);
+                schedule(docId, s, now.plus(minInterval));
+                return;
+            }
+        }
+    }
+
+    public void forget(UUID docId) {
+        State s = states.remove(docId);
+        if (s != null) {
+            synchronized (s) {
+                s.forgotten = true;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${docservice.snapshots.check-interval:1s}")
+    public void runDueChecks() {
+        runDueChecks(Instant.now());
+    }
+
+    void runDueChecks(Instant now) {
+        Check check;
+        while ((check = pollDue(now)) != null) {
+            try {
+                evaluate(check, now);
+            } catch (RuntimeException e) {
+                System.err.println("Automatic snapshot of " + check.docId() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void evaluate(Check check, Instant now) {
+        UUID docId = check.docId();
+        State s = states.get(docId);
+        if (s == null) {
+            return;
+        }
+        String author;
+        synchronized (s) {
+            if (!check.at().equals(s.checkAt)) {
+                return; // superseded by an earlier deadline
+            }
+            s.checkAt = null;
+            Instant allowedAt = s.lastSnapshotAt == null ? now : s.lastSnapshotAt.plus(minInterval);
+
+            if (s.ops == 0) {
+                if (!now.isBefore(allowedAt)) {
+                    states.remove(docId, s);
+                    s.forgotten = true;
+                } else {
+                    schedule(docId, s, allowedAt);
+                }
+                return;
+            }
+
+            Instant idleAt = s.lastEditAt.plus(idleAfter);
+            boolean due = s.chars >= volumeChars || s.ops >= volumeOps || s.sessionEnded || !now.isBefore(idleAt);
+            if (!due) {
+                schedule(docId, s, idleAt);
+                return;
+            }
+            if (now.isBefore(allowedAt)) {
+                schedule(docId, s, allowedAt);
+                return;
+            }
+            author = s.author;
+            reset(s, now);
+            schedule(docId, s, now.plus(minInterval));
+        }
+        // outside the lock: edits keep counting towards the next one meanwhile
+        currentContent(docId).ifPresent(content -> versionService.saveSnapshotInBackground(docId, author, content));
+    }
+
+    // live SPLICE/CRDT text is newer than the database until it is flushed
+    private Optional<String> currentContent(UUID docId) {
+        Optional<String> live = crdtDocuments.text(docId).or(() -> activeDocuments.snapshot(docId).map(Rope::toString));
+        return live.isPresent() ? live : repo.findById(docId).map(Document::getContent);
+    }
+
+    // later edits keep pushing the deadline, but a check before min-interval is up would only be deferred
+    private Instant notBeforeAllowed(State s, Instant at) {
+        if (s.lastSnapshotAt == null) {
+            return at;
+        }
+        Instant allowedAt = s.lastSnapshotAt.plus(minInterval);
+        return at.isBefore(allowedAt) ? allowedAt : at;
+    }
+
+    private static void reset(State s, Instant now) {
+        s.chars = 0;
+        s.ops = 0;
+        s.sessionEnded = false;
+        s.lastSnapshotAt = now;
+    }
+
+    // called holding s; keeps at most one live check per document, the earliest one
+    private void schedule(UUID docId, State s, Instant at) {
+        if (s.checkAt != null && !at.isBefore(s.checkAt)) {
+            return;
+        }
+        s.checkAt = at;
+        synchronized (checks) {
+            checks.add(new Check(docId, at));
+        }
+    }
+
+    private Check pollDue(Instant now) {
+        synchronized (checks) {
+            Check next = checks.peek();
+            return next != null && !next.at().isAfter(now) ? checks.poll() : null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.text.Rope;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Applies splice ops to a base text (a String in one pass, or a Rope).
+ * Ops may come in any order but must not overlap; two inserts at the same offset keep their
+ * request order. Anything out of range or overlapping is rejected as 400.
+ */
+public final class TextSplicer {
+
+    private TextSplicer() {}
+
+    public static String apply(String base, List<SpliceOp> ops) {
+        List<SpliceOp> sorted = sortedAndChecked(ops, base.length());
+
+        StringBuilder out = new StringBuilder(base.length() + insertedLength(sorted));
+        int copied = 0;
+        for (SpliceOp op : sorted) {
+            out.append(base, copied, op.offset);
+            if (op.insert != null) {
+                out.append(op.insert);
+            }
+            copied = op.offset + op.deleteCount;
+        }
+        out.append(base, copied, base.length());
+        return out.toString();
+    }
+
+    /**
+     * Same ops on a Rope: applied last-offset-first so every offset still refers to the base text.
+     * Costs O(ops * log n) and shares all untouched text with base.
+     */
+    public static Rope apply(Rope base, List<SpliceOp> ops) {
+        List<SpliceOp> sorted = sortedAndChecked(ops, base.length());
+
+        Rope out = base;
+        for (int i = sorted.size() - 1; i >= 0; i--) {
+            SpliceOp op = sorted.get(i);
+            out = out.splice(op.offset, op.deleteCount, op.insert);
+        }
+        return out;
+    }
+
+    private static List<SpliceOp> sortedAndChecked(List<SpliceOp> ops, int baseLength) {
+        List<SpliceOp> sorted = ops.stream()
+                .sorted(Comparator.comparingInt(op -> op.offset))
+                .toList();
+
+        int end = 0;
+        for (SpliceOp op : sorted) {
+            if (op.offset < 0 || op.deleteCount < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Negative splice offset or length");
+            }
+            if (op.offset < end) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Overlapping splice at offset " + op.offset);
+            }
+            if ((long) op.offset + op.deleteCount > baseLength) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Splice at offset " + op.offset + " runs past the end of the document");
+            }
+            end = op.offset + op.deleteCount;
+        }
+        return sorted;
+    }
+
+    private static int insertedLength(List<SpliceOp> ops) {
+        int n = 0;
+        for (SpliceOp op : ops) {
+            n += op.insert == null ? 0 : op.insert.length();
+        }
+        return n;
+    }
+}
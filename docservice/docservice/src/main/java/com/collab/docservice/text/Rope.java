@@ -0,0 +1,225 @@
+package com.collab.docservice.text;
+
+/**
+ * Immutable, height-balanced rope.
+ *
+ * Text lives in leaves of at most MAX_LEAF characters; inner nodes only cache length and height.
+ * insert, delete, splice and substring split and re-join O(log n) nodes and share everything
+ * else with the original, so an edit to a multi-megabyte document allocates a few hundred bytes
+ * and the previous Rope stays valid as a snapshot. Small neighbouring leaves are merged on join,
+ * so a stream of single-character inserts does not fragment the tree.
+ */
+public final class Rope {
+
+    static final int MAX_LEAF = 1024;
+
+    private static final Rope EMPTY = new Rope(new Leaf(""));
+
+    private final Node root;
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    public static Rope empty() {
+        return EMPTY;
+    }
+
+    public static Rope of(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        return new Rope(build(text, 0, text.length()));
+    }
+
+    public int length() {
+        return root.length();
+    }
+
+    public char charAt(int index) {
+        checkIndex(index, length());
+        Node n = root;
+        while (n instanceof Inner inner) {
+            if (index < inner.left.length()) {
+                n = inner.left;
+            } else {
+                index -= inner.left.length();
+                n = inner.right;
+            }
+        }
+        return ((Leaf) n).text.charAt(index);
+    }
+
+    public Rope insert(int offset, String text) {
+        return splice(offset, 0, text);
+    }
+
+    public Rope delete(int offset, int count) {
+        return splice(offset, count, "");
+    }
+
+    /**
+     * Replaces count characters at offset with text.
+     */
+    public Rope splice(int offset, int count, String text) {
+        checkRange(offset, count, length());
+        if (count == 0 && (text == null || text.isEmpty())) {
+            return this;
+        }
+        Node[] head = split(root, offset);
+        Node[] tail = split(head[1], count);
+        Node middle = text == null || text.isEmpty() ? null : build(text, 0, text.length());
+        return new Rope(orEmpty(join(join(head[0], middle), tail[1])));
+    }
+
+    public String substring(int start, int end) {
+        checkRange(start, end - start, length());
+        StringBuilder sb = new StringBuilder(end - start);
+        appendRange(root, start, end, sb);
+        return sb.toString();
+    }
+
+    // for tests: the tree stays within AVL bounds
+    int height() {
+        return root.height();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        appendRange(root, 0, length(), sb);
+        return sb.toString();
+    }
+
+    /* -----------------------------
+       Tree
+    ------------------------------ */
+
+    private sealed interface Node permits Leaf, Inner {
+        int length();
+        int height();
+    }
+
+    private record Leaf(String text) implements Node {
+        public int length() { return text.length(); }
+        public int height() { return 0; }
+    }
+
+    private record Inner(Node left, Node right, int length, int height) implements Node {
+        Inner(Node left, Node right) {
+            this(left, right, left.length() + right.length(), Math.max(left.height(), right.height()) + 1);
+        }
+    }
+
+    private static Node build(String text, int start, int end) {
+        if (end - start <= MAX_LEAF) {
+            return new Leaf(text.substring(start, end));
+        }
+        int mid = start + (end - start) / 2;
+        return new Inner(build(text, start, mid), build(text, mid, end));
+    }
+
+    private static Node orEmpty(Node n) {
+        return n == null ? EMPTY.root : n;
+    }
+
+    /**
+     * Concatenates two balanced trees; either may be null. Cost is proportional to their height difference.
+     */
+    private static Node join(Node a, Node b) {
+        if (a == null || a.length() == 0) return b;
+        if (b == null || b.length() == 0) return a;
+
+        if (a instanceof Leaf la && b instanceof Leaf lb && la.length() + lb.length() <= MAX_LEAF) {
+            return new Leaf(la.text + lb.text);
+        }
+
+        int diff = a.height() - b.height();
+        if (diff > 1) {
+            Inner ia = (Inner) a;
+            return balance(ia.left, join(ia.right, b));
+        }
+        if (diff < -1) {
+            Inner ib = (Inner) b;
+            return balance(join(a, ib.left), ib.right);
+        }
+        return new Inner(a, b);
+    }
+
+    // left and right are balanced and their heights differ by at most 2
+    private static Node balance(Node left, Node right) {
+        int diff = left.height() - right.height();
+        if (diff > 1) {
+            Inner l = (Inner) left;
+            if (l.left.height() >= l.right.height()) {
+                return new Inner(l.left, new Inner(l.right, right));
+            }
+            Inner lr = (Inner) l.right;
+            return new Inner(new Inner(l.left, lr.left), new Inner(lr.right, right));
+        }
+        if (diff < -1) {
+            Inner r = (Inner) right;
+            if (r.right.height() >= r.left.height()) {
+                return new Inner(new Inner(left, r.left), r.right);
+            }
+            Inner rl = (Inner) r.left;
+            return new Inner(new Inner(left, rl.left), new Inner(rl.right, r.right));
+        }
+        return new Inner(left, right);
+    }
+
+    // [0, at) and [at, length); either side may be null
+    private static Node[] split(Node n, int at) {
+        if (n == null) {
+            return new Node[]{null, null};
+        }
+        if (at <= 0) {
+            return new Node[]{null, n};
+        }
+        if (at >= n.length()) {
+            return new Node[]{n, null};
+        }
+        if (n instanceof Leaf leaf) {
+            return new Node[]{new Leaf(leaf.text.substring(0, at)), new Leaf(leaf.text.substring(at))};
+        }
+        Inner inner = (Inner) n;
+        int leftLength = inner.left.length();
+        if (at < leftLength) {
+            Node[] parts = split(inner.left, at);
+            return new Node[]{parts[0], join(parts[1], inner.right)};
+        }
+        Node[] parts = split(inner.right, at - leftLength);
+        return new Node[]{join(inner.left, parts[0]), parts[1]};
+    }
+
+    private static void appendRange(Node n, int start, int end, StringBuilder sb) {
+        if (start >= end) {
+            return;
+        }
+        if (n instanceof Leaf leaf) {
+            sb.append(leaf.text, start, end);
+            return;
+        }
+        Inner inner = (Inner) n;
+        int leftLength = inner.left.length();
+        if (start < leftLength) {
+            appendRange(inner.left, start, Math.min(end, leftLength), sb);
+        }
+        if (end > leftLength) {
+            appendRange(inner.right, Math.max(0, start - leftLength), end - leftLength, sb);
+        }
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+    }
+
+    private static void checkRange(int offset, int count, int length) {
+        if (offset < 0 || count < 0 || (long) offset + count > length) {
+            throw new IndexOutOfBoundsException("range [" + offset + ", " + ((long) offset + count)
+                    + ") outside length " + length);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.collab.docservice.trace;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+/**
+ * clientInboundChannel interceptor that carries trace context into @MessageMapping handlers.
+ *
+ * preSend runs on the WebSocket thread as soon as the frame is decoded and stamps the arrival time,
+ * so the executor queue wait is counted as server time. beforeHandle/afterMessageHandled
+ * run on the executor thread around the handler and open/close the TraceContext
+ * from the client's traceparent STOMP header.
+ */
+public class StompTraceInterceptor implements ExecutorChannelInterceptor {
+
+    static final String RECEIVED_AT_HEADER = "collab.receivedAt";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+
+        long now = System.currentTimeMillis();
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor != null && accessor.isMutable()) {
+            accessor.setHeader(RECEIVED_AT_HEADER, now);
+            return message;
+        }
+        return MessageBuilder.fromMessage(message).setHeader(RECEIVED_AT_HEADER, now).build();
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        Long receivedAt = message.getHeaders().get(RECEIVED_AT_HEADER, Long.class);
+
+        TraceContext.open(TraceContext.fromHeader(
+                accessor.getFirstNativeHeader(TraceContext.HEADER),
+                receivedAt != null ? receivedAt : System.currentTimeMillis()));
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        TraceContext.close();
+    }
+}
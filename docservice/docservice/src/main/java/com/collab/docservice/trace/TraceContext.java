@@ -0,0 +1,81 @@
+package com.collab.docservice.trace;
+
+import org.slf4j.MDC;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * W3C trace context (traceparent header) for the request or STOMP message
+ * being handled on the current thread.
+ *
+ * The gateway starts a trace for every request; we continue it here and pass it on
+ * to userservice/versionservice calls and to subscribers of edit broadcasts.
+ */
+public final class TraceContext {
+
+    public static final String HEADER = "traceparent";
+
+    private static final Pattern TRACEPARENT = Pattern.compile("00-[0-9a-f]{32}-[0-9a-f]{16}-[0-9a-f]{2}");
+    private static final ThreadLocal<TraceContext> CURRENT = new ThreadLocal<>();
+
+    private final String traceId;
+    private final String spanId;
+    private final long receivedAt;
+
+    private TraceContext(String traceId, String spanId, long receivedAt) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Continues the caller's trace with a new span, or starts a new trace
+     * when the header is missing or malformed.
+     */
+    public static TraceContext fromHeader(String traceparent, long receivedAt) {
+        String traceId = traceparent != null && TRACEPARENT.matcher(traceparent).matches()
+                ? traceparent.substring(3, 35)
+                : randomHex(32);
+        return new TraceContext(traceId, randomHex(16), receivedAt);
+    }
+
+    public static TraceContext current() {
+        return CURRENT.get();
+    }
+
+    public static void open(TraceContext context) {
+        CURRENT.set(context);
+        MDC.put("traceId", context.traceId);
+        MDC.put("spanId", context.spanId);
+    }
+
+    public static void close() {
+        CURRENT.remove();
+        MDC.remove("traceId");
+        MDC.remove("spanId");
+    }
+
+    public String traceId() { return traceId; }
+
+    /** Epoch millis at which the request/frame reached this service. */
+    public long receivedAt() { return receivedAt; }
+
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+
+    /** traceparent to send on an outgoing call made while handling this context. */
+    public String childTraceparent() {
+        return "00-" + traceId + "-" + randomHex(16) + "-01";
+    }
+
+    private static String randomHex(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return sb.toString();
+    }
+}
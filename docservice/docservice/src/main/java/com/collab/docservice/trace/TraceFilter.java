@@ -0,0 +1,34 @@
+package com.collab.docservice.trace;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Opens a TraceContext for every HTTP request from the incoming traceparent header
+ * and echoes the trace id back as X-Trace-Id.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TraceFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        TraceContext context = TraceContext.fromHeader(request.getHeader(TraceContext.HEADER), System.currentTimeMillis());
+        TraceContext.open(context);
+        try {
+            response.setHeader("X-Trace-Id", context.traceId());
+            chain.doFilter(request, response);
+        } finally {
+            TraceContext.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.collab.docservice.trace;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Adds a child traceparent to outgoing RestTemplate calls (userservice, versionservice)
+ * when they are made while handling a traced request or STOMP frame.
+ */
+public class TracePropagationInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        TraceContext context = TraceContext.current();
+        if (context != null && !request.getHeaders().containsKey(TraceContext.HEADER)) {
+            request.getHeaders().set(TraceContext.HEADER, context.childTraceparent());
+        }
+        return execution.execute(request, body);
+    }
+}
@@ -0,0 +1,274 @@
+package com.collab.docservice.transport;
+
+import com.collab.docservice.config.WebSocketProperties;
+import com.collab.docservice.dto.DocEditMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps one slow subscriber from holding up a busy document.
+ *
+ * For every session it counts MESSAGE frames accepted on the clientOutbound channel
+ * but not yet written to the socket (executor queue plus Spring's per-session send buffer).
+ * Once a session has max-pending-messages outstanding, new broadcasts to it are handled
+ * by the configured policy:
+ *
+ * NONE       - keep queueing; Spring closes the session at send-buffer-size-limit / send-time-limit
+ * DROP       - drop the frame
+ * RESYNC     - drop the frame and, once the session has drained to half the limit, send a single
+ *              {"type":"RESYNC"} on each subscription that lost frames so the client resyncs
+ *              (/app/sync/{docId} with the last seq it saw)
+ * DISCONNECT - close the session (1011 session not reliable)
+ *
+ * docservice.stomp.outbound.pending            - frames outstanding over all sessions
+ * docservice.stomp.sessions.lagging            - sessions at or over the limit
+ * docservice.stomp.slow_consumer.actions{action} - frames dropped, resyncs sent, sessions closed
+ */
+@Component
+public class SlowConsumerMonitor implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    public enum Policy { NONE, DROP, RESYNC, DISCONNECT }
+
+    public static final String RESYNC_TYPE = "RESYNC";
+
+    // marks our own RESYNC frames so they are never dropped
+    private static final String RESYNC_HEADER = "collab.resync";
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Policy policy;
+    private final int maxPending;
+    private final ObjectMapper objectMapper;
+    private final MessageChannel clientOutboundChannel;
+    private final Map<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+
+    private final Counter dropped;
+    private final Counter resyncs;
+    private final Counter disconnects;
+
+    public SlowConsumerMonitor(WebSocketProperties properties,
+                               MeterRegistry registry,
+                               ObjectMapper objectMapper,
+                               @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.policy = properties.getSlowConsumer().getPolicy();
+        this.maxPending = properties.getSlowConsumer().getMaxPendingMessages();
+        this.objectMapper = objectMapper;
+        this.clientOutboundChannel = clientOutboundChannel;
+
+        Gauge.builder("docservice.stomp.outbound.pending", sessions,
+                        m -> m.values().stream().mapToInt(s -> s.pending.get()).sum())
+                .description("MESSAGE frames accepted for delivery but not yet written to a socket")
+                .register(registry);
+        Gauge.builder("docservice.stomp.sessions.lagging", sessions,
+                        m -> m.values().stream().filter(s -> s.pending.get() >= maxPending).count())
+                .description("Sessions with max-pending-messages or more frames outstanding")
+                .register(registry);
+
+        this.dropped = action(registry, "dropped");
+        this.resyncs = action(registry, "resync");
+        this.disconnects = action(registry, "disconnect");
+    }
+
+    /* -----------------------------
+       clientOutbound channel
+    ------------------------------ */
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        TrackedSession session = sessionFor(message);
+        if (session == null) {
+            return message;
+        }
+
+        if (policy != Policy.NONE
+                && session.pending.get() >= maxPending
+                && message.getHeaders().get(RESYNC_HEADER) == null) {
+            onLagging(session, message);
+            return null;
+        }
+        session.pending.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        // the frame never reached the socket
+        if (ex != null && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            TrackedSession session = sessionFor(message);
+            if (session != null) {
+                session.pending.decrementAndGet();
+            }
+        }
+    }
+
+    /* -----------------------------
+       WebSocket transport
+    ------------------------------ */
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                TrackedSession tracked = new TrackedSession(session);
+                sessions.put(session.getId(), tracked);
+                super.afterConnectionEstablished(tracked);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private TrackedSession sessionFor(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        return sessionId == null ? null : sessions.get(sessionId);
+    }
+
+    private void onLagging(TrackedSession session, Message<?> message) {
+        switch (policy) {
+            case DROP -> dropped.increment();
+            case RESYNC -> {
+                dropped.increment();
+                String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+                String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                if (subscriptionId != null && destination != null) {
+                    session.resyncNeeded.put(subscriptionId, destination);
+                }
+            }
+            case DISCONNECT -> session.closeAsUnreliable();
+            default -> {
+            }
+        }
+    }
+
+    private void sendResync(TrackedSession session) {
+        for (String subscriptionId : session.resyncNeeded.keySet()) {
+            String destination = session.resyncNeeded.remove(subscriptionId);
+            if (destination == null) {
+                continue; // another thread sent it
+            }
+
+            DocEditMessage resync = new DocEditMessage();
+            resync.type = RESYNC_TYPE;
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(session.getId());
+            accessor.setSubscriptionId(subscriptionId);
+            accessor.setDestination(destination);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            accessor.setHeader(RESYNC_HEADER, Boolean.TRUE);
+
+            clientOutboundChannel.send(MessageBuilder.createMessage(toJson(resync), accessor.getMessageHeaders()));
+            resyncs.increment();
+        }
+    }
+
+    private byte[] toJson(DocEditMessage message) {
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        ByteBuffer bytes;
+        if (message instanceof TextMessage text) {
+            bytes = ByteBuffer.wrap(text.asBytes());
+        } else if (message instanceof BinaryMessage binary) {
+            bytes = binary.getPayload().duplicate();
+        } else {
+            return false;
+        }
+        if (bytes.remaining() < MESSAGE_COMMAND.length) {
+            return false;
+        }
+        for (byte b : MESSAGE_COMMAND) {
+            if (bytes.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Counter action(MeterRegistry registry, String action) {
+        return Counter.builder("docservice.stomp.slow_consumer.actions")
+                .description("Slow-consumer actions taken on lagging sessions")
+                .tag("action", action)
+                .register(registry);
+    }
+
+    /**
+     * Sits below Spring's ConcurrentWebSocketSessionDecorator, so sendMessage
+     * returns only once a frame has actually been written.
+     */
+    private final class TrackedSession extends WebSocketSessionDecorator {
+
+        final AtomicInteger pending = new AtomicInteger();
+
+        // subscriptionId -> destination for subscriptions that lost frames since the last resync
+        final Map<String, String> resyncNeeded = new ConcurrentHashMap<>();
+
+        private final AtomicBoolean closing = new AtomicBoolean();
+
+        TrackedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+            } finally {
+                if (isMessageFrame(message)) {
+                    pending.decrementAndGet();
+                }
+                if (!resyncNeeded.isEmpty() && pending.get() <= maxPending / 2) {
+                    sendResync(this);
+                }
+            }
+        }
+
+        void closeAsUnreliable() {
+            if (closing.compareAndSet(false, true)) {
+                disconnects.increment();
+                try {
+                    close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException ignored) {
+                    // the transport is already gone; afterConnectionClosed cleans up
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+-- Runs after Hibernate's ddl-auto (spring.jpa.defer-datasource-initialization) on every start; idempotent.
+
+-- Keep large document bodies out-of-line but uncompressed, so SUBSTRING range reads
+-- (DocumentRepository.findContentSlice) fetch only the TOAST chunks they need.
+ALTER TABLE documents ALTER COLUMN content SET STORAGE EXTERNAL;
+
+-- Full-text search (PostgresDocumentSearch). Postgres recomputes the vector whenever a row's title or
+-- content changes, so the index follows every save without a reindex. Only the first 256K characters
+-- of the content are indexed: a tsvector cannot exceed 1MB, and a write must never fail over search.
+ALTER TABLE documents ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('english', left(coalesce(content, ''), 262144)), 'B')
+    ) STORED;
+CREATE INDEX IF NOT EXISTS idx_documents_search ON documents USING GIN (search_vector);
@@ -0,0 +1,94 @@
+package com.collab.docservice.codec;
+
+import com.collab.docservice.dto.DocEditMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryEncodingInterceptorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BinaryEncodingInterceptor interceptor = new BinaryEncodingInterceptor(objectMapper);
+
+    @Test
+    void nativeSessionThatAskedForBinary_getsBinaryBroadcasts() throws Exception {
+        interceptor.preSend(connect("s1", true, true), null);
+
+        Message<?> out = interceptor.preSend(broadcast("s1", edit()), null);
+
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(out);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, accessor.getContentType());
+        assertEquals("binary", accessor.getFirstNativeHeader(BinaryEncodingInterceptor.ENCODING_HEADER));
+        assertEquals("hello", DocEditMessageCodec.decode((byte[]) out.getPayload()).content);
+    }
+
+    @Test
+    void sockJsSession_staysOnJson() throws Exception {
+        interceptor.preSend(connect("s2", true, false), null);
+
+        Message<?> in = broadcast("s2", edit());
+        assertSame(in, interceptor.preSend(in, null));
+    }
+
+    @Test
+    void sessionThatDidNotAsk_staysOnJson() throws Exception {
+        interceptor.preSend(connect("s3", false, true), null);
+
+        Message<?> in = broadcast("s3", edit());
+        assertSame(in, interceptor.preSend(in, null));
+    }
+
+    @Test
+    void disconnect_forgetsSession() throws Exception {
+        interceptor.preSend(connect("s4", true, true), null);
+
+        SimpMessageHeaderAccessor disconnect = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        disconnect.setSessionId("s4");
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], disconnect.getMessageHeaders()), null);
+
+        Message<?> in = broadcast("s4", edit());
+        assertSame(in, interceptor.preSend(in, null));
+    }
+
+    private static DocEditMessage edit() {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = "EDIT";
+        m.content = "hello";
+        return m;
+    }
+
+    private static Message<byte[]> connect(String sessionId, boolean askBinary, boolean nativeTransport) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        if (askBinary) {
+            accessor.setNativeHeader(BinaryEncodingInterceptor.ENCODING_HEADER, BinaryEncodingInterceptor.BINARY);
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        if (nativeTransport) {
+            attributes.put(BinaryEncodingInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, true);
+        }
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Message<byte[]> broadcast(String sessionId, DocEditMessage payload) throws Exception {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/doc/1");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(objectMapper.writeValueAsBytes(payload), accessor.getMessageHeaders());
+    }
+}
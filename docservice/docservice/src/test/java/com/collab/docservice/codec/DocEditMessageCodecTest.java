@@ -0,0 +1,138 @@
+package com.collab.docservice.codec;
+
+import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.dto.SpliceOp;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocEditMessageCodecTest {
+
+    @Test
+    void roundTrip_keepsAllFields() {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = "EDIT";
+        m.content = "héllo wörld ✓";
+        m.cursorPosition = 7;
+        m.traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        m.clientSentAt = 1_700_000_000_000L;
+        m.serverReceivedAt = 1_700_000_000_004L;
+        m.serverBroadcastAt = 1_700_000_000_009L;
+
+        DocEditMessage out = DocEditMessageCodec.decode(DocEditMessageCodec.encode(m));
+
+        assertEquals("alice", out.sender);
+        assertEquals("EDIT", out.type);
+        assertEquals("héllo wörld ✓", out.content);
+        assertEquals(7, out.cursorPosition);
+        assertEquals(m.traceId, out.traceId);
+        assertEquals(m.clientSentAt, out.clientSentAt);
+        assertEquals(m.serverReceivedAt, out.serverReceivedAt);
+        assertEquals(m.serverBroadcastAt, out.serverBroadcastAt);
+    }
+
+    @Test
+    void roundTrip_keepsSpliceOps() {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = "SPLICE";
+        m.ops = List.of(new SpliceOp(6, 5, "thére"), new SpliceOp(0, 1, ""));
+
+        DocEditMessage out = DocEditMessageCodec.decode(DocEditMessageCodec.encode(m));
+
+        assertEquals("SPLICE", out.type);
+        assertEquals(2, out.ops.size());
+        assertEquals(6, out.ops.get(0).offset);
+        assertEquals(5, out.ops.get(0).deleteCount);
+        assertEquals("thére", out.ops.get(0).insert);
+        assertEquals("", out.ops.get(1).insert);
+        assertNull(out.content);
+    }
+
+    @Test
+    void roundTrip_keepsCrdtFieldsAsRawBytes() {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = "CRDT_SYNC";
+        m.replica = 123_456;
+        m.update = new byte[]{1, 0, (byte) 0xFF, 42};
+        m.stateVector = new byte[0];
+
+        byte[] bytes = DocEditMessageCodec.encode(m);
+        DocEditMessage out = DocEditMessageCodec.decode(bytes);
+
+        assertEquals("CRDT_SYNC", out.type);
+        assertEquals(123_456, out.replica);
+        assertArrayEquals(m.update, out.update);
+        assertArrayEquals(m.stateVector, out.stateVector);
+        assertNull(out.ops);
+        // not base64: type, bitmaps, sender, replica and 4 + 0 bytes plus their lengths
+        assertTrue(bytes.length < 24, "encoded size " + bytes.length);
+    }
+
+    @Test
+    void roundTrip_keepsSeqAndMissedMessages() {
+        DocEditMessage missed = new DocEditMessage();
+        missed.type = "SPLICE";
+        missed.sender = "bob";
+        missed.seq = 1_700_000_000_000_001L;
+        missed.ops = List.of(new SpliceOp(0, 0, "x"));
+
+        DocEditMessage m = new DocEditMessage();
+        m.type = "SYNC";
+        m.seq = 1_700_000_000_000_002L;
+        m.missed = List.of(missed);
+
+        DocEditMessage out = DocEditMessageCodec.decode(DocEditMessageCodec.encode(m));
+
+        assertEquals("SYNC", out.type);
+        assertEquals(m.seq, out.seq);
+        assertEquals(1, out.missed.size());
+        assertEquals("bob", out.missed.get(0).sender);
+        assertEquals(missed.seq, out.missed.get(0).seq);
+        assertEquals("x", out.missed.get(0).ops.get(0).insert);
+        assertNull(out.content);
+    }
+
+    @Test
+    void roundTrip_keepsNullsAndUnknownTypes() {
+        DocEditMessage m = new DocEditMessage();
+        m.type = "PING";
+        m.cursorPosition = -1;
+
+        DocEditMessage out = DocEditMessageCodec.decode(DocEditMessageCodec.encode(m));
+
+        assertEquals("PING", out.type);
+        assertEquals(-1, out.cursorPosition);
+        assertNull(out.sender);
+        assertNull(out.content);
+        assertNull(out.clientSentAt);
+    }
+
+    @Test
+    void cursorFrame_isSmall() {
+        DocEditMessage m = new DocEditMessage();
+        m.sender = "alice";
+        m.type = "CURSOR";
+        m.cursorPosition = 120;
+        m.clientSentAt = 1_700_000_000_000L;
+
+        // version + type + bitmap + cursor(2) + sender(6) + timestamp(6)
+        assertTrue(DocEditMessageCodec.encode(m).length <= 17);
+    }
+
+    @Test
+    void decode_rejectsTruncatedInput() {
+        DocEditMessage m = new DocEditMessage();
+        m.type = "EDIT";
+        m.content = "some content";
+        byte[] bytes = DocEditMessageCodec.encode(m);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> DocEditMessageCodec.decode(Arrays.copyOf(bytes, bytes.length - 3)));
+    }
+}
@@ -1,28 +1,48 @@
 package com.collab.docservice.controller;
 
+import com.collab.docservice.client.UserDirectoryClient;
+import com.collab.docservice.client.VersionServiceClient;
 import com.collab.docservice.dto.CreateDocRequest;
+import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.dto.DocSearchHit;
 import com.collab.docservice.dto.ShareRequest;
+import com.collab.docservice.dto.SpliceOp;
 import com.collab.docservice.model.Document;
+import com.collab.docservice.model.DocumentOperation;
 import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.repo.DocumentRepository.ContentSlice;
+import com.collab.docservice.repo.DocumentRepository.DocumentMeta;
+import com.collab.docservice.search.DocumentSearch;
+import com.collab.docservice.service.ActiveDocumentRegistry;
+import com.collab.docservice.service.CrdtDocumentRegistry;
+import com.collab.docservice.service.DocumentContentReader;
+import com.collab.docservice.service.OperationLog;
+import com.collab.docservice.service.SnapshotPolicy;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.*;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.client.RestTemplate;
 import org.mockito.ArgumentCaptor;
-import com.collab.docservice.dto.VersionResponse;
-import org.springframework.core.ParameterizedTypeReference;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.isNull;
-
-
+import org.mockito.InOrder;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.net.URI;
 import java.time.Instant;
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
@@ -32,6 +52,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @WebMvcTest(controllers = DocController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import({UserDirectoryClient.class, VersionServiceClient.class, DocumentContentReader.class, ActiveDocumentRegistry.class})
 class DocControllerTest {
 
     @Autowired
@@ -43,6 +64,33 @@ class DocControllerTest {
     @MockBean
     RestTemplate restTemplate;
 
+    @MockBean
+    CrdtDocumentRegistry crdtDocuments;
+
+    @MockBean
+    SimpMessageSendingOperations messaging;
+
+    @MockBean
+    OperationLog operationLog;
+
+    @MockBean
+    SnapshotPolicy snapshotPolicy;
+
+    @MockBean
+    DocumentSearch search;
+
+    @Autowired
+    UserDirectoryClient userDirectory;
+
+    @Autowired
+    ActiveDocumentRegistry activeDocuments;
+
+    @BeforeEach
+    void clearUserCache() {
+        // the client is a singleton in the cached test context
+        userDirectory.evictAll();
+    }
+
     // ---------- Helpers ----------
     private static Document doc(UUID id, String owner, String title, String content, String... collaborators) {
         Document d = new Document();
@@ -134,6 +182,176 @@ class DocControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void getOne_returnsRevisionETag_andMatchingIfNoneMatchReturns304() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document d = doc(id, "owner", "t", "hello");
+        d.setRevision(7);
+
+        when(repo.findById(id)).thenReturn(Optional.of(d));
+
+        mvc.perform(get("/docs/" + id).header("X-User", "owner"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"r7\""));
+
+        mvc.perform(get("/docs/" + id).header("X-User", "owner").header("If-None-Match", "\"r7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getOne_staleIfNoneMatch_returnsBody() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document d = doc(id, "owner", "t", "hello");
+        d.setRevision(8);
+
+        when(repo.findById(id)).thenReturn(Optional.of(d));
+
+        mvc.perform(get("/docs/" + id).header("X-User", "owner").header("If-None-Match", "\"r7\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("hello"));
+    }
+
+    // ---------- Meta + range reads ----------
+
+    private static DocumentMeta meta(UUID id, String owner, long revision, int contentLength) {
+        DocumentMeta m = mock(DocumentMeta.class);
+        when(m.getId()).thenReturn(id);
+        when(m.getTitle()).thenReturn("t");
+        when(m.getOwnerUsername()).thenReturn(owner);
+        when(m.getRevision()).thenReturn(revision);
+        when(m.getContentLength()).thenReturn(contentLength);
+        return m;
+    }
+
+    @Test
+    void meta_returnsLengthWithoutContent() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 5_000_000)));
+        when(repo.findCollaborators(id)).thenReturn(List.of("alice"));
+
+        mvc.perform(get("/docs/" + id + "/meta").header("X-User", "alice"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"r2\""))
+                .andExpect(jsonPath("$.contentLength").value(5_000_000))
+                .andExpect(jsonPath("$.content").doesNotExist());
+
+        verify(repo, never()).findById(any());
+    }
+
+    @Test
+    void content_byOffset_returnsSliceFromDatabase() throws Exception {
+        UUID id = UUID.randomUUID();
+        ContentSlice slice = mock(ContentSlice.class);
+        when(slice.getRevision()).thenReturn(2L);
+        when(slice.getContentLength()).thenReturn(11);
+        when(slice.getContent()).thenReturn("world");
+
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of());
+        when(repo.findContentSlice(id, 7, 5)).thenReturn(Optional.of(slice));
+
+        mvc.perform(get("/docs/" + id + "/content?offset=6&length=5").header("X-User", "owner"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("world"))
+                .andExpect(jsonPath("$.offset").value(6))
+                .andExpect(jsonPath("$.totalLength").value(11));
+
+        verify(repo, never()).findById(any());
+    }
+
+    @Test
+    void content_notOwnerNorCollaborator_returns403() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of("alice"));
+
+        mvc.perform(get("/docs/" + id + "/content?offset=0&length=5").header("X-User", "mallory"))
+                .andExpect(status().isForbidden());
+
+        verify(repo, never()).findContentSlice(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void content_mixingOffsetAndLines_returns400() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of());
+
+        mvc.perform(get("/docs/" + id + "/content?offset=0&fromLine=1").header("X-User", "owner"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void crdtMerge_relaysNewUpdatesToLiveSubscribers() throws Exception {
+        UUID id = UUID.randomUUID();
+        byte[] update = {1, 1, 5, 7, 0, 0, 1, 'x', 0};
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of("alice"));
+        when(crdtDocuments.apply(id, update)).thenReturn(true);
+        when(crdtDocuments.stateVector(id)).thenReturn(new byte[]{1, 5, 7});
+
+        mvc.perform(post("/docs/" + id + "/crdt")
+                        .header("X-User", "alice")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(update))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("X-Crdt-State-Vector", "AQUH"));
+
+        ArgumentCaptor<DocEditMessage> relayed = ArgumentCaptor.forClass(DocEditMessage.class);
+        verify(messaging).convertAndSend(eq("/topic/doc/" + id), relayed.capture());
+        assertEquals("CRDT_UPDATE", relayed.getValue().type);
+        assertEquals("alice", relayed.getValue().sender);
+        verify(repo, never()).findById(any());
+    }
+
+    @Test
+    void crdtSync_notOwnerNorCollaborator_returns403() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of("alice"));
+
+        mvc.perform(get("/docs/" + id + "/crdt?replica=9").header("X-User", "mallory"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(crdtDocuments);
+    }
+
+    // ---------- Operation log ----------
+
+    @Test
+    void operations_listsLoggedEditsOldestFirst() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of("alice"));
+        DocumentOperation splice = new DocumentOperation(id, 8, DocumentOperation.SPLICE, "alice", Instant.now(), "[]");
+        DocumentOperation edit = new DocumentOperation(id, 9, DocumentOperation.EDIT, "owner", Instant.now(), "fresh");
+        when(operationLog.history(id, 7, 2)).thenReturn(List.of(splice, edit));
+        when(operationLog.spliceOps(splice)).thenReturn(List.of(new SpliceOp(0, 0, "x")));
+
+        mvc.perform(get("/docs/" + id + "/operations?after=7&limit=2").header("X-User", "alice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].seq").value(8))
+                .andExpect(jsonPath("$[0].ops[0].insert").value("x"))
+                .andExpect(jsonPath("$[1].type").value("EDIT"))
+                .andExpect(jsonPath("$[1].content").value("fresh"));
+    }
+
+    @Test
+    void contentAt_replaysToTheSeq_or410OnceCompacted() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findMetaById(id)).thenReturn(Optional.of(meta(id, "owner", 2, 11)));
+        when(repo.findCollaborators(id)).thenReturn(List.of());
+        when(operationLog.contentAt(id, 12)).thenReturn(Optional.of("hello"));
+        when(operationLog.contentAt(id, 3)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/docs/" + id + "/operations/12/content").header("X-User", "owner"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("hello"));
+        mvc.perform(get("/docs/" + id + "/operations/3/content").header("X-User", "owner"))
+                .andExpect(status().isGone());
+    }
+
     // ---------- List Mine ----------
 
     @Test
@@ -179,6 +397,9 @@ class DocControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.title").value("new"))
                 .andExpect(jsonPath("$.content").value("newcontent"));
+
+        // the document (content included) is read once, inside the write
+        verify(repo, times(1)).findById(id);
     }
 
     @Test
@@ -197,6 +418,238 @@ class DocControllerTest {
         verify(repo, never()).save(any());
     }
 
+    @Test
+    void update_matchingIfMatch_savesAndReturnsNewETag() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "old", "oldcontent");
+        existing.setRevision(3);
+        Document saved = doc(id, "owner", "new", "newcontent");
+        saved.setRevision(4);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        when(repo.save(any(Document.class))).thenReturn(saved);
+
+        mvc.perform(put("/docs/" + id)
+                        .header("X-User", "owner")
+                        .header("If-Match", "\"r3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"new\",\"content\":\"newcontent\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"r4\""));
+    }
+
+    @Test
+    void update_staleIfMatch_returns412_andDoesNotSave() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "old", "oldcontent");
+        existing.setRevision(5);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+
+        mvc.perform(put("/docs/" + id)
+                        .header("X-User", "owner")
+                        .header("If-Match", "\"r3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"new\",\"content\":\"newcontent\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void update_concurrentWriteAfterIfMatchCheck_returns412() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "old", "oldcontent");
+        existing.setRevision(3);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        when(repo.save(any(Document.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Document.class, id));
+
+        mvc.perform(put("/docs/" + id)
+                        .header("X-User", "owner")
+                        .header("If-Match", "\"r3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"new\",\"content\":\"newcontent\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void update_activeDocument_writesLiveEditsBackFirst_andIsNotOverwrittenByALaterFlush() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "hello");
+        existing.setRevision(1);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        stubContentWriteBack(existing);
+        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(operationLog.nextSeq(id)).thenReturn(1L, 2L);
+        activeDocuments.splice(id, "bob", List.of(new SpliceOp(5, 0, " world")));
+
+        // r2 is the revision once bob's splice is written back
+        mvc.perform(put("/docs/" + id)
+                        .header("X-User", "owner")
+                        .header("If-Match", "\"r2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"t\",\"content\":\"replaced\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("replaced"));
+
+        InOrder order = inOrder(repo);
+        order.verify(repo).updateContent(eq(id), eq("hello world"), any(), eq(1L));
+        ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        order.verify(repo).save(saved.capture());
+        assertEquals("replaced", saved.getValue().getContent());
+        assertEquals(2L, saved.getValue().getAppliedSeq());
+        assertTrue(activeDocuments.snapshot(id).isEmpty());
+
+        activeDocuments.flush();
+        verify(repo, times(1)).updateContent(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    void update_documentInCrdtMode_returns409_andDoesNotSave() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "t", "merged")));
+
+        activeDocuments.beginCrdtMode(id);
+        try {
+            mvc.perform(put("/docs/" + id)
+                            .header("X-User", "owner")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"title\":\"t\",\"content\":\"overwritten\"}"))
+                    .andExpect(status().isConflict());
+        } finally {
+            activeDocuments.endCrdtMode(id);
+        }
+
+        verify(repo, never()).save(any());
+    }
+
+    private void stubContentWriteBack(Document stored) {
+        when(repo.updateContent(any(), any(), any(), anyLong())).thenAnswer(inv -> {
+            stored.setContent(inv.getArgument(1));
+            stored.setAppliedSeq(inv.getArgument(3));
+            stored.setRevision(stored.getRevision() + 1);
+            return 1;
+        });
+    }
+
+    // ---------- Patch ----------
+
+    @Test
+    void patch_atCurrentRevision_appliesOpsAndReturnsMetadata() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "hello world");
+        existing.setRevision(4);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        when(repo.save(any(Document.class))).thenAnswer(inv -> {
+            Document d = inv.getArgument(0);
+            d.setRevision(d.getRevision() + 1);
+            return d;
+        });
+        when(operationLog.nextSeq(id)).thenReturn(12L);
+
+        mvc.perform(patch("/docs/" + id)
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"baseRevision\":4,\"ops\":[{\"offset\":6,\"deleteCount\":5,\"insert\":\"there\"}]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"r5\""))
+                .andExpect(jsonPath("$.contentLength").value(11))
+                .andExpect(jsonPath("$.content").doesNotExist());
+
+        ArgumentCaptor<Document> saved = ArgumentCaptor.forClass(Document.class);
+        verify(repo).save(saved.capture());
+        assertEquals("hello there", saved.getValue().getContent());
+        assertEquals(12L, saved.getValue().getAppliedSeq());
+        verify(operationLog).recordSplice(eq(id), eq(12L), eq("owner"), argThat(ops -> ops.size() == 1));
+    }
+
+    @Test
+    void patch_staleBaseRevision_returns412() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "hello world");
+        existing.setRevision(5);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+
+        mvc.perform(patch("/docs/" + id)
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"baseRevision\":4,\"ops\":[{\"offset\":0,\"deleteCount\":1,\"insert\":\"H\"}]}"))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void patch_ifMatchInsteadOfBaseRevision_isAccepted() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "abc");
+        existing.setRevision(2);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        mvc.perform(patch("/docs/" + id)
+                        .header("X-User", "owner")
+                        .header("If-Match", "\"r2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ops\":[{\"offset\":3,\"deleteCount\":0,\"insert\":\"!\"}]}"))
+                .andExpect(status().isOk());
+
+        assertEquals("abc!", existing.getContent());
+    }
+
+    @Test
+    void patch_withoutBase_returns428() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        mvc.perform(patch("/docs/" + id)
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ops\":[]}"))
+                .andExpect(status().isPreconditionRequired());
+
+        verify(repo, never()).findById(any());
+    }
+
+    @Test
+    void patch_activeDocument_appliesToTheWrittenBackText_andStaleBaseIsRejected() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "hello");
+        existing.setRevision(1);
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        stubContentWriteBack(existing);
+        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(operationLog.nextSeq(id)).thenReturn(1L, 2L, 3L);
+
+        // made against revision 1, before bob's live splice
+        activeDocuments.splice(id, "bob", List.of(new SpliceOp(5, 0, " world")));
+        mvc.perform(patch("/docs/" + id)
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"baseRevision\":1,\"ops\":[{\"offset\":5,\"deleteCount\":0,\"insert\":\"!\"}]}"))
+                .andExpect(status().isPreconditionFailed());
+        verify(repo, never()).save(any());
+
+        activeDocuments.splice(id, "bob", List.of(new SpliceOp(0, 1, "H")));
+        mvc.perform(patch("/docs/" + id)
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"baseRevision\":3,\"ops\":[{\"offset\":11,\"deleteCount\":0,\"insert\":\"!\"}]}"))
+                .andExpect(status().isOk());
+
+        assertEquals("Hello world!", existing.getContent());
+        assertEquals(3L, existing.getAppliedSeq());
+        assertTrue(activeDocuments.snapshot(id).isEmpty());
+        activeDocuments.flush();
+        verify(repo, times(2)).updateContent(any(), any(), any(), anyLong());
+    }
+
     // ---------- Share ----------
 
     @Test
@@ -270,6 +723,85 @@ class DocControllerTest {
 
     }
 
+    @Test
+    void share_existingUser_isCached_secondShareSkipsUserService() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "t", "c")));
+        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(restTemplate.getForEntity(contains("/users/exists/alice"), eq(Boolean.class)))
+                .thenReturn(new ResponseEntity<>(true, HttpStatus.OK));
+
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(post("/docs/" + id + "/share")
+                            .header("X-User", "owner")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"collaboratorUsername\":\"alice\"}"))
+                    .andExpect(status().isNoContent());
+        }
+
+        verify(restTemplate, times(1)).getForEntity(contains("/users/exists/alice"), eq(Boolean.class));
+    }
+
+    // ---------- Bulk Share ----------
+
+    @Test
+    void shareBulk_allUsersExist_addsAllWithOneLookup() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "c");
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(restTemplate.exchange(contains("/users/exists"), eq(HttpMethod.POST), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(Map.of("alice", true, "bob", true), HttpStatus.OK));
+
+        mvc.perform(post("/docs/" + id + "/share/bulk")
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"collaboratorUsernames\":[\"alice\",\"bob\"]}"))
+                .andExpect(status().isNoContent());
+
+        assertTrue(existing.getCollaborators().containsAll(List.of("alice", "bob")));
+        verify(repo).save(existing);
+        verify(restTemplate, times(1)).exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class));
+        verify(restTemplate, never()).getForEntity(anyString(), eq(Boolean.class));
+    }
+
+    @Test
+    void shareBulk_someUsersMissing_returns404_andSharesNothing() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document existing = doc(id, "owner", "t", "c");
+
+        when(repo.findById(id)).thenReturn(Optional.of(existing));
+        when(restTemplate.exchange(contains("/users/exists"), eq(HttpMethod.POST), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(Map.of("alice", true, "ghost", false), HttpStatus.OK));
+
+        mvc.perform(post("/docs/" + id + "/share/bulk")
+                        .header("X-User", "owner")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"collaboratorUsernames\":[\"alice\",\"ghost\"]}"))
+                .andExpect(status().isNotFound());
+
+        assertTrue(existing.getCollaborators().isEmpty());
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void shareBulk_notOwner_returns403() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "t", "c", "alice")));
+
+        mvc.perform(post("/docs/" + id + "/share/bulk")
+                        .header("X-User", "alice")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"collaboratorUsernames\":[\"bob\"]}"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(restTemplate);
+    }
+
     // ---------- Revoke Access ----------
 
     @Test
@@ -317,6 +849,32 @@ class DocControllerTest {
 
         verify(repo).delete(existing);
         verify(restTemplate).delete(contains("/api/versions/doc/" + id));
+        verify(operationLog).discard(id);
+        verify(snapshotPolicy).forget(id);
+    }
+
+    @Test
+    void deleteAllOwnedBy_dropsLiveStateAndHistoryOfEachDocument() throws Exception {
+        UUID live = UUID.randomUUID();
+        UUID idle = UUID.randomUUID();
+        Document liveDoc = doc(live, "gone", "t", "hello");
+        when(repo.findById(live)).thenReturn(Optional.of(liveDoc));
+        when(repo.findByOwnerUsername("gone")).thenReturn(List.of(liveDoc, doc(idle, "gone", "t", "c")));
+        activeDocuments.splice(live, "gone", List.of(new SpliceOp(5, 0, "!")));
+
+        mvc.perform(delete("/docs/internal/owner/gone").header("X-Internal-Secret", "INTERNAL_DELETE_SECRET_123"))
+                .andExpect(status().isNoContent());
+
+        for (UUID id : List.of(live, idle)) {
+            verify(crdtDocuments).discard(id);
+            verify(operationLog).discard(id);
+            verify(snapshotPolicy).forget(id);
+        }
+        // dropped, not written back over a deleted row
+        assertTrue(activeDocuments.snapshot(live).isEmpty());
+        activeDocuments.flush();
+        verify(repo, never()).updateContent(any(), any(), any(), anyLong());
+        verify(repo).deleteAll(argThat(docs -> ((List<?>) docs).size() == 2));
     }
 
     @Test
@@ -333,30 +891,69 @@ class DocControllerTest {
         verify(repo, never()).delete(any());
     }
 
+    // ---------- Search ----------
+
+    @Test
+    void search_returnsAPage_andWhetherMoreFollow() throws Exception {
+        UUID first = UUID.randomUUID();
+        when(search.search("alice", "bread", 2, 3)).thenReturn(List.of(
+                new DocSearchHit(first, "Recipes", "owner", "<mark>bread</mark>", 1.5),
+                new DocSearchHit(UUID.randomUUID(), "Notes", "alice", "", 1.0),
+                new DocSearchHit(UUID.randomUUID(), "More", "alice", "", 0.5)));
+
+        mvc.perform(get("/docs/search").param("q", " bread ").param("page", "1").param("size", "2")
+                        .header("X-User", "alice"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits.length()").value(2))
+                .andExpect(jsonPath("$.hits[0].id").value(first.toString()))
+                .andExpect(jsonPath("$.hits[0].snippet").value("<mark>bread</mark>"))
+                .andExpect(jsonPath("$.page").value(1))
+                .andExpect(jsonPath("$.hasMore").value(true));
+    }
+
+    @Test
+    void search_blankQueryOrBadPage_returns400() throws Exception {
+        mvc.perform(get("/docs/search").param("q", "  ").header("X-User", "alice"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/docs/search").param("q", "x").param("size", "0").header("X-User", "alice"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(search);
+    }
+
     // ---------- Version Service Endpoints ----------
 
+    // the proxy streams the raw versionservice body, so the downstream is mocked at the request-factory level
+    private void stubVersionService(String expectedPath, HttpStatus status, String body) throws Exception {
+        ClientHttpRequestFactory factory = mock(ClientHttpRequestFactory.class);
+        when(restTemplate.getRequestFactory()).thenReturn(factory);
+        when(factory.createRequest(any(URI.class), eq(HttpMethod.GET))).thenAnswer(inv -> {
+            URI uri = inv.getArgument(0);
+            assertTrue(uri.getPath().endsWith(expectedPath), "unexpected downstream path " + uri);
+            MockClientHttpResponse response = new MockClientHttpResponse(body.getBytes(), status);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, uri);
+            request.setResponse(response);
+            return request;
+        });
+    }
+
     @Test
     void versions_returnsListFromVersionService() throws Exception {
         UUID id = UUID.randomUUID();
         Document d = doc(id, "owner", "title", "content");
         when(repo.findById(id)).thenReturn(Optional.of(d));
 
-        VersionResponse v1 = new VersionResponse();
-        v1.id = 1L;
-        v1.content = "v1 content";
-
-        // Fix: Explicitly define the ResponseEntity to help Mockito with types
-        ResponseEntity<List<VersionResponse>> responseEntity = new ResponseEntity<>(List.of(v1), HttpStatus.OK);
+        stubVersionService("/api/versions/doc/" + id, HttpStatus.OK,
+                "[{\"id\":1,\"content\":\"v1 content\"}]");
 
-        when(restTemplate.exchange(
-                anyString(),
-                eq(HttpMethod.GET),
-                isNull(),
-                any(ParameterizedTypeReference.class)
-        )).thenReturn(responseEntity);
+        MvcResult result = mvc.perform(get("/docs/" + id + "/versions").header("X-User", "owner"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
-        mvc.perform(get("/docs/" + id + "/versions").header("X-User", "owner"))
+        mvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.length()").value(1))
                 .andExpect(jsonPath("$[0].content").value("v1 content"));
     }
@@ -367,19 +964,143 @@ class DocControllerTest {
         Document d = doc(id, "owner", "title", "content");
         when(repo.findById(id)).thenReturn(Optional.of(d));
 
-        VersionResponse v = new VersionResponse();
-        v.id = 100L;
-        v.content = "specific version";
+        stubVersionService("/api/versions/doc/" + id + "/100", HttpStatus.OK,
+                "{\"id\":100,\"content\":\"specific version\"}");
 
-        when(restTemplate.getForObject(contains("/api/versions/100"), eq(VersionResponse.class)))
-                .thenReturn(v);
+        MvcResult result = mvc.perform(get("/docs/" + id + "/versions/100").header("X-User", "owner"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
-        mvc.perform(get("/docs/" + id + "/versions/100").header("X-User", "owner"))
+        mvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(100))
                 .andExpect(jsonPath("$.content").value("specific version"));
     }
 
+    @Test
+    void versionById_versionOfAnotherDocument_returns404() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document d = doc(id, "owner", "title", "content");
+        when(repo.findById(id)).thenReturn(Optional.of(d));
+
+        stubVersionService("/api/versions/doc/" + id + "/100", HttpStatus.NOT_FOUND, "");
+
+        mvc.perform(get("/docs/" + id + "/versions/100").header("X-User", "owner"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void versionDiff_returnsPatchFromVersionService() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "title", "content", "alice")));
+
+        stubVersionService("/api/versions/doc/" + id + "/1/diff/2", HttpStatus.OK,
+                "{\"from\":1,\"to\":2,\"granularity\":\"word\",\"edits\":[{\"op\":\"=\",\"length\":7}]}");
+
+        MvcResult result = mvc.perform(get("/docs/" + id + "/versions/1/diff/2").param("granularity", "word")
+                        .header("X-User", "alice"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("word"))
+                .andExpect(jsonPath("$.edits[0].length").value(7));
+    }
+
+    @Test
+    void versionDiff_notAllowed_orBadGranularity_doesNotCallVersionService() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "title", "content")));
+
+        mvc.perform(get("/docs/" + id + "/versions/1/diff/2").header("X-User", "stranger"))
+                .andExpect(status().isForbidden());
+        mvc.perform(get("/docs/" + id + "/versions/1/diff/2").param("granularity", "char")
+                        .header("X-User", "owner"))
+                .andExpect(status().isBadRequest());
+
+        verify(restTemplate, never()).getRequestFactory();
+    }
+
+    @Test
+    void contributions_returnsTotalsFromVersionService() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "title", "content")));
+
+        stubVersionService("/api/versions/doc/" + id + "/contributions", HttpStatus.OK,
+                "[{\"authorUsername\":\"owner\",\"insertedChars\":120,\"deletedChars\":4,\"versions\":3}]");
+
+        MvcResult result = mvc.perform(get("/docs/" + id + "/versions/contributions").header("X-User", "owner"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].insertedChars").value(120));
+    }
+
+    @Test
+    void myContributions_asksForTheCallersOwnTotals() throws Exception {
+        stubVersionService("/api/versions/user/alice/contributions", HttpStatus.OK, "[]");
+
+        MvcResult result = mvc.perform(get("/docs/contributions/me").header("X-User", "alice"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void versions_versionServiceDown_returns503() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document d = doc(id, "owner", "title", "content");
+        when(repo.findById(id)).thenReturn(Optional.of(d));
+
+        ClientHttpRequestFactory factory = mock(ClientHttpRequestFactory.class);
+        when(restTemplate.getRequestFactory()).thenReturn(factory);
+        when(factory.createRequest(any(URI.class), eq(HttpMethod.GET))).thenThrow(new IOException("refused"));
+
+        mvc.perform(get("/docs/" + id + "/versions").header("X-User", "owner"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void versions_notAllowed_doesNotCallVersionService() throws Exception {
+        UUID id = UUID.randomUUID();
+        Document d = doc(id, "owner", "title", "content");
+        when(repo.findById(id)).thenReturn(Optional.of(d));
+
+        mvc.perform(get("/docs/" + id + "/versions").header("X-User", "stranger"))
+                .andExpect(status().isForbidden());
+
+        verify(restTemplate, never()).getRequestFactory();
+    }
+
+    // ---------- Internal ACL (used by the gateway) ----------
+
+    @Test
+    void acl_withSecret_returnsOwnerAndCollaborators() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(repo.findById(id)).thenReturn(Optional.of(doc(id, "owner", "t", "c", "alice")));
+
+        mvc.perform(get("/docs/internal/" + id + "/acl").header("X-Internal-Secret", "INTERNAL_DELETE_SECRET_123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ownerUsername").value("owner"))
+                .andExpect(jsonPath("$.collaborators[0]").value("alice"));
+    }
+
+    @Test
+    void acl_withoutSecret_returns403() throws Exception {
+        UUID id = UUID.randomUUID();
+
+        mvc.perform(get("/docs/internal/" + id + "/acl"))
+                .andExpect(status().isForbidden());
+
+        verify(repo, never()).findById(any());
+    }
+
     @Test
     void share_userServiceDown_returns503() throws Exception {
         UUID id = UUID.randomUUID();
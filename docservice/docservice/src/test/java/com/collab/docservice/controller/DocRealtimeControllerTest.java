@@ -1,11 +1,46 @@
 package com.collab.docservice.controller;
 
+import com.collab.docservice.client.VersionServiceClient;
+import com.collab.docservice.crdt.CrdtCodec;
+import com.collab.docservice.crdt.CrdtUpdate;
+import com.collab.docservice.crdt.RgaDocument;
 import com.collab.docservice.dto.DocEditMessage;
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.metrics.RealtimeMetrics;
 import com.collab.docservice.model.Document;
+import com.collab.docservice.model.DocumentCrdtState;
+import com.collab.docservice.model.DocumentOperation;
+import com.collab.docservice.repo.DocumentCheckpointRepository;
+import com.collab.docservice.repo.DocumentCrdtStateRepository;
+import com.collab.docservice.repo.DocumentOperationRepository;
 import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.service.ActiveDocumentRegistry;
+import com.collab.docservice.service.CrdtDocumentRegistry;
+import com.collab.docservice.service.OperationLog;
+import com.collab.docservice.service.SnapshotPolicy;
+import com.collab.docservice.trace.TraceContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.web.client.RestTemplate;
-
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,12 +49,42 @@ import static org.mockito.Mockito.*;
 
 class DocRealtimeControllerTest {
 
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DocumentCrdtStateRepository crdtStates = mock(DocumentCrdtStateRepository.class);
+    private final DocumentOperationRepository operations = mock(DocumentOperationRepository.class);
+    private final OperationLog operationLog = new OperationLog(operations, mock(DocumentCheckpointRepository.class),
+            new ObjectMapper(), 500, 100_000, 500, Duration.ofDays(30));
+    private final SimpMessageSendingOperations messaging = mock(SimpMessageSendingOperations.class);
+    private final VersionServiceClient versionService = mock(VersionServiceClient.class);
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    // the registries of the last controller(...)
+    private ActiveDocumentRegistry activeDocuments;
+    private CrdtDocumentRegistry crdtDocuments;
+    private SnapshotPolicy snapshotPolicy;
+
+    private DocRealtimeController controller(DocumentRepository repo, RestTemplate restTemplate) {
+        activeDocuments = new ActiveDocumentRegistry(repo, operationLog, 3, 1_000_000, idleTimeout);
+        crdtDocuments = new CrdtDocumentRegistry(repo, crdtStates, operationLog, activeDocuments,
+                Duration.ofDays(7), idleTimeout);
+        snapshotPolicy = new SnapshotPolicy(repo, activeDocuments, crdtDocuments, versionService,
+                2000, 500, Duration.ofMinutes(2), Duration.ofMinutes(5));
+        return new DocRealtimeController(repo, restTemplate, new RealtimeMetrics(meterRegistry),
+                activeDocuments, crdtDocuments, operationLog, snapshotPolicy, messaging);
+    }
+
+    private static Message<byte[]> stompFrame(StompCommand command, String sessionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
     @Test
     void join_returnsListOfUsersInContent() {
         DocumentRepository repo = mock(DocumentRepository.class);
         RestTemplate restTemplate = mock(RestTemplate.class);
 
-        DocRealtimeController controller = new DocRealtimeController(repo, restTemplate);
+        DocRealtimeController controller = controller(repo, restTemplate);
 
         UUID docId = UUID.randomUUID();
 
@@ -47,17 +112,9 @@ class DocRealtimeControllerTest {
         DocumentRepository repo = mock(DocumentRepository.class);
         RestTemplate restTemplate = mock(RestTemplate.class);
 
-        DocRealtimeController controller = new DocRealtimeController(repo, restTemplate);
+        DocRealtimeController controller = controller(repo, restTemplate);
 
         UUID docId = UUID.randomUUID();
-        Document d = new Document();
-        d.setId(docId);
-        d.setOwnerUsername("owner");
-        d.setTitle("t");
-        d.setContent("old");
-
-        when(repo.findById(docId)).thenReturn(Optional.of(d));
-        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
 
         DocEditMessage edit = new DocEditMessage();
         edit.type = "EDIT";
@@ -66,20 +123,324 @@ class DocRealtimeControllerTest {
 
         controller.streamEdit(docId, edit);
 
-        assertEquals("new content", d.getContent());
-        verify(repo).save(d);
+        // single UPDATE, no read-modify-write (so no optimistic-lock failures between sessions)
+        verify(repo).updateContent(eq(docId), eq("new content"), any(Instant.class), eq(1L));
+        verify(repo, never()).findById(any());
+        verify(repo, never()).save(any());
 
 
         verify(restTemplate, never()).postForEntity(anyString(), any(), eq(Object.class));
         verifyNoMoreInteractions(restTemplate);
     }
 
+    @Test
+    void splice_isAppliedInMemory_andWrittenBackWhenLastUserLeaves() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID docId = UUID.randomUUID();
+
+        Document d = new Document();
+        d.setId(docId);
+        d.setContent("hello world");
+        when(repo.findById(docId)).thenReturn(Optional.of(d));
+
+        DocEditMessage join = new DocEditMessage();
+        join.type = "JOIN";
+        join.sender = "alice";
+        controller.streamEdit(docId, join);
+
+        DocEditMessage splice = new DocEditMessage();
+        splice.type = "SPLICE";
+        splice.sender = "alice";
+        splice.ops = List.of(new SpliceOp(6, 5, "there"));
+        DocEditMessage out = controller.streamEdit(docId, splice);
+
+        // broadcast carries the ops, and nothing is written per keystroke
+        assertEquals(1, out.ops.size());
+        assertNull(out.content);
+        verify(repo, never()).updateContent(any(), any(), any(), anyLong());
+
+        DocEditMessage leave = new DocEditMessage();
+        leave.type = "LEAVE";
+        leave.sender = "alice";
+        controller.streamEdit(docId, leave);
+
+        verify(repo).updateContent(eq(docId), eq("hello there"), any(Instant.class), eq(1L));
+    }
+
+    @Test
+    void sync_returnsOnlyMissedSplices_orTheWholeTextWhenTooFarBehind() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID docId = UUID.randomUUID();
+
+        Document d = new Document();
+        d.setId(docId);
+        d.setContent("abc");
+        when(repo.findById(docId)).thenReturn(Optional.of(d));
+
+        DocEditMessage first = controller.sync(docId, null);
+        assertEquals("abc", first.content);
+
+        List<Long> seqs = new ArrayList<>();
+        for (String insert : List.of("1", "2", "3", "4")) {
+            DocEditMessage splice = new DocEditMessage();
+            splice.type = "SPLICE";
+            splice.sender = "bob";
+            splice.ops = List.of(new SpliceOp(0, 0, insert));
+            seqs.add(controller.streamEdit(docId, splice).seq);
+        }
+        assertEquals(first.seq + 4, seqs.get(3));
+
+        // saw the first two; the log (3 ops) still has the rest
+        DocEditMessage resumed = controller.sync(docId, seqs.get(1));
+        assertNull(resumed.content);
+        assertEquals(List.of(seqs.get(2), seqs.get(3)), resumed.missed.stream().map(m -> m.seq).toList());
+        assertEquals("4", resumed.missed.get(1).ops.get(0).insert);
+        assertEquals(seqs.get(3), resumed.seq);
+
+        // only saw the initial text: the first splice has been evicted from the log
+        DocEditMessage tooOld = controller.sync(docId, first.seq);
+        assertEquals("4321abc", tooOld.content);
+        assertTrue(tooOld.missed.isEmpty());
+
+        // a full EDIT is not in the log; anyone behind it gets the text
+        DocEditMessage edit = new DocEditMessage();
+        edit.type = "EDIT";
+        edit.sender = "bob";
+        edit.content = "fresh";
+        long editSeq = controller.streamEdit(docId, edit).seq;
+        assertEquals("fresh", controller.sync(docId, seqs.get(3)).content);
+        assertTrue(controller.sync(docId, editSeq).missed.isEmpty());
+
+        verify(repo, times(1)).findById(docId);
+    }
+
+    @Test
+    void load_replaysLoggedEditsNewerThanTheWrittenBackContent() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID docId = UUID.randomUUID();
+
+        // content was last written back at seq 7; seq 8 was logged before the node went down
+        Document d = new Document();
+        d.setId(docId);
+        d.setContent("hello");
+        d.setAppliedSeq(7);
+        when(repo.findById(docId)).thenReturn(Optional.of(d));
+        when(operations.findMaxSeq(docId)).thenReturn(8L);
+        when(operations.findByDocumentIdAndSeqGreaterThanOrderBySeq(docId, 7L)).thenReturn(List.of(
+                new DocumentOperation(docId, 8, DocumentOperation.SPLICE, "alice", Instant.now(),
+                        "[{\"offset\":5,\"deleteCount\":0,\"insert\":\" world\"}]")));
+
+        DocEditMessage sync = controller.sync(docId, null);
+        assertEquals("hello world", sync.content);
+        assertEquals(8L, sync.seq);
+
+        DocEditMessage splice = new DocEditMessage();
+        splice.type = "SPLICE";
+        splice.sender = "bob";
+        splice.ops = List.of(new SpliceOp(11, 0, "!"));
+        assertEquals(9L, controller.streamEdit(docId, splice).seq);
+
+        DocEditMessage join = new DocEditMessage();
+        join.type = "JOIN";
+        join.sender = "bob";
+        controller.streamEdit(docId, join);
+        DocEditMessage leave = new DocEditMessage();
+        leave.type = "LEAVE";
+        leave.sender = "bob";
+        controller.streamEdit(docId, leave);
+
+        verify(repo).updateContent(eq(docId), eq("hello world!"), any(Instant.class), eq(9L));
+    }
+
+    @Test
+    void edit_countsTheReplacedSpan_towardsTheSnapshotVolume() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID live = UUID.randomUUID();
+        UUID stored = UUID.randomUUID();
+        String longText = "x".repeat(1500);
+
+        // live: the EDIT replaces the in-memory text; stored: it is written through
+        Document d = new Document();
+        d.setId(live);
+        d.setContent(longText);
+        when(repo.findById(live)).thenReturn(Optional.of(d));
+        controller.sync(live, null);
+        when(repo.findContentById(stored)).thenReturn(Optional.of(longText));
+        Document written = new Document();
+        written.setId(stored);
+        written.setContent("written");
+        when(repo.findById(stored)).thenReturn(Optional.of(written));
+
+        for (UUID docId : List.of(live, stored)) {
+            DocEditMessage edit = new DocEditMessage();
+            edit.type = "EDIT";
+            edit.sender = "alice";
+            edit.content = "";
+            controller.streamEdit(docId, edit);
+            // 1500 characters changed each time, below volume-chars (2000)
+            snapshotPolicy.runDueChecks();
+            verify(versionService, never()).saveSnapshotInBackground(eq(docId), any(), any());
+
+            edit.content = longText + longText;
+            controller.streamEdit(docId, edit);
+            snapshotPolicy.runDueChecks();
+        }
+        verify(versionService).saveSnapshotInBackground(live, "alice", longText + longText);
+        verify(versionService).saveSnapshotInBackground(stored, "alice", "written");
+    }
+
+    @Test
+    void disconnect_leavesForTheSession_andReleasesOnceNoSessionHoldsTheDocument() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID docId = UUID.randomUUID();
+
+        Document d = new Document();
+        d.setId(docId);
+        d.setContent("hello");
+        when(repo.findById(docId)).thenReturn(Optional.of(d));
+
+        // s1 only syncs, which loads the document; s2 joins and edits, then both drop without a LEAVE
+        controller.onSubscribe(new SessionSubscribeEvent(this,
+                stompFrame(StompCommand.SUBSCRIBE, "s1", "/app/sync/" + docId)));
+        controller.sync(docId, null);
+        controller.onSubscribe(new SessionSubscribeEvent(this,
+                stompFrame(StompCommand.SUBSCRIBE, "s2", "/topic/doc/" + docId)));
+        DocEditMessage join = new DocEditMessage();
+        join.type = "JOIN";
+        join.sender = "bob";
+        controller.streamEdit(docId, join, "s2");
+        DocEditMessage splice = new DocEditMessage();
+        splice.type = "SPLICE";
+        splice.sender = "bob";
+        splice.ops = List.of(new SpliceOp(5, 0, "!"));
+        long seq = controller.streamEdit(docId, splice, "s2").seq;
+
+        controller.onDisconnect(new SessionDisconnectEvent(this,
+                stompFrame(StompCommand.DISCONNECT, "s2", null), "s2", CloseStatus.GOING_AWAY));
+        ArgumentCaptor<DocEditMessage> leave = ArgumentCaptor.forClass(DocEditMessage.class);
+        verify(messaging).convertAndSend(eq("/topic/doc/" + docId), leave.capture());
+        assertEquals("LEAVE", leave.getValue().type);
+        assertEquals("bob", leave.getValue().sender);
+        assertEquals("", leave.getValue().content);
+        // s1 still has the document
+        verify(repo, never()).updateContent(any(), any(), any(), anyLong());
+
+        controller.onDisconnect(new SessionDisconnectEvent(this,
+                stompFrame(StompCommand.DISCONNECT, "s1", null), "s1", CloseStatus.GOING_AWAY));
+        verify(repo).updateContent(eq(docId), eq("hello!"), any(Instant.class), eq(seq));
+        verifyNoMoreInteractions(messaging);
+    }
+
+    @Test
+    void crdtUpdates_mergeConcurrentEdits_andAreWrittenBackWhenLastUserLeaves() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID docId = UUID.randomUUID();
+
+        Document d = new Document();
+        d.setId(docId);
+        d.setContent("hello");
+        when(repo.findById(docId)).thenReturn(Optional.of(d));
+        when(crdtStates.findById(docId)).thenReturn(Optional.empty());
+
+        // two replicas that edited the same text while apart
+        RgaDocument alice = RgaDocument.of("hello");
+        RgaDocument bob = RgaDocument.of("hello");
+        CrdtUpdate fromAlice = alice.insert(1, 5, " world");
+        CrdtUpdate fromBob = bob.insert(2, 0, ">");
+
+        DocEditMessage join = new DocEditMessage();
+        join.type = "JOIN";
+        join.sender = "alice";
+        controller.streamEdit(docId, join);
+
+        DocEditMessage sync = controller.syncCrdt(docId, 1,
+                Base64.getEncoder().encodeToString(CrdtCodec.encodeStateVector(alice.stateVector())));
+        assertEquals("CRDT_SYNC", sync.type);
+        assertEquals(CrdtCodec.KIND_STATE, CrdtCodec.kind(sync.update)); // first contact gets the full state
+
+        for (CrdtUpdate update : List.of(fromBob, fromAlice)) {
+            DocEditMessage msg = new DocEditMessage();
+            msg.type = "CRDT_UPDATE";
+            msg.sender = "alice";
+            msg.update = CrdtCodec.encodeUpdate(update);
+            DocEditMessage out = controller.streamEdit(docId, msg);
+            assertArrayEquals(msg.update, out.update);
+        }
+
+        DocEditMessage ack = new DocEditMessage();
+        ack.type = "CRDT_ACK";
+        ack.replica = 1;
+        ack.stateVector = CrdtCodec.encodeStateVector(alice.stateVector());
+        assertNull(controller.streamEdit(docId, ack));
+
+        verify(repo, never()).updateContent(any(), any(), any(), anyLong());
+
+        DocEditMessage leave = new DocEditMessage();
+        leave.type = "LEAVE";
+        leave.sender = "alice";
+        controller.streamEdit(docId, leave);
+
+        verify(repo).updateContent(eq(docId), eq(">hello world"), any(Instant.class), anyLong());
+        verify(crdtStates).save(any(DocumentCrdtState.class));
+    }
+
+    @Test
+    void crdtMode_refusesPlainEdits_andEndsWhenIdle() {
+        idleTimeout = Duration.ZERO;
+        DocumentRepository repo = mock(DocumentRepository.class);
+        DocRealtimeController controller = controller(repo, mock(RestTemplate.class));
+        UUID docId = UUID.randomUUID();
+
+        Document d = new Document();
+        d.setId(docId);
+        d.setContent("hello");
+        when(repo.findById(docId)).thenReturn(Optional.of(d));
+        when(crdtStates.findById(docId)).thenReturn(Optional.empty());
+
+        // an offline replica syncing, with no JOIN and so no LEAVE
+        controller.syncCrdt(docId, 1, null);
+
+        DocEditMessage edit = new DocEditMessage();
+        edit.type = "EDIT";
+        edit.sender = "bob";
+        edit.content = "overwritten";
+        assertEquals(HttpStatus.CONFLICT,
+                assertThrows(ResponseStatusException.class, () -> controller.streamEdit(docId, edit)).getStatusCode());
+
+        DocEditMessage splice = new DocEditMessage();
+        splice.type = "SPLICE";
+        splice.sender = "bob";
+        splice.ops = List.of(new SpliceOp(5, 0, "!"));
+        assertEquals(HttpStatus.CONFLICT,
+                assertThrows(ResponseStatusException.class, () -> controller.streamEdit(docId, splice)).getStatusCode());
+        verify(repo, never()).updateContent(any(), any(), any(), anyLong());
+
+        crdtDocuments.evictIdle();
+        verify(repo).updateContent(eq(docId), eq("hello"), any(Instant.class), anyLong());
+        assertTrue(crdtDocuments.text(docId).isEmpty());
+
+        // back to plain mode; now CRDT sync waits for the live rope to go
+        assertNotNull(controller.streamEdit(docId, splice).seq);
+        assertEquals(HttpStatus.CONFLICT,
+                assertThrows(ResponseStatusException.class, () -> controller.syncCrdt(docId, 1, null)).getStatusCode());
+
+        activeDocuments.evictIdle();
+        assertTrue(activeDocuments.snapshot(docId).isEmpty());
+        verify(repo).updateContent(eq(docId), eq("hello!"), any(Instant.class), anyLong());
+    }
+
     @Test
     void cursor_doesNotSaveToDatabase_orVersionService() {
         DocumentRepository repo = mock(DocumentRepository.class);
         RestTemplate restTemplate = mock(RestTemplate.class);
 
-        DocRealtimeController controller = new DocRealtimeController(repo, restTemplate);
+        DocRealtimeController controller = controller(repo, restTemplate);
 
         UUID docId = UUID.randomUUID();
 
@@ -98,7 +459,7 @@ class DocRealtimeControllerTest {
     void leave_removesUserFromActiveList() {
         DocumentRepository repo = mock(DocumentRepository.class);
         RestTemplate restTemplate = mock(RestTemplate.class);
-        DocRealtimeController controller = new DocRealtimeController(repo, restTemplate);
+        DocRealtimeController controller = controller(repo, restTemplate);
         UUID docId = UUID.randomUUID();
 
         // 1. Join
@@ -125,14 +486,9 @@ class DocRealtimeControllerTest {
     void edit_handlesNullContentBySavingEmptyString() {
         DocumentRepository repo = mock(DocumentRepository.class);
         RestTemplate restTemplate = mock(RestTemplate.class);
-        DocRealtimeController controller = new DocRealtimeController(repo, restTemplate);
+        DocRealtimeController controller = controller(repo, restTemplate);
 
         UUID docId = UUID.randomUUID();
-        Document d = new Document();
-        d.setContent("previous");
-
-        when(repo.findById(docId)).thenReturn(Optional.of(d));
-        when(repo.save(any(Document.class))).thenAnswer(inv -> inv.getArgument(0));
 
         DocEditMessage edit = new DocEditMessage();
         edit.type = "EDIT";
@@ -141,10 +497,58 @@ class DocRealtimeControllerTest {
 
         controller.streamEdit(docId, edit);
 
-        assertEquals("", d.getContent());
-        verify(repo).save(d);
+        verify(repo).updateContent(eq(docId), eq(""), any(Instant.class), anyLong());
 
 
         verifyNoInteractions(restTemplate);
     }
+
+    @Test
+    void streamEdit_recordsPerTypeCountersTimersAndContentSize() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        RestTemplate restTemplate = mock(RestTemplate.class);
+        DocRealtimeController controller = controller(repo, restTemplate);
+        UUID docId = UUID.randomUUID();
+
+        DocEditMessage join = new DocEditMessage();
+        join.type = "JOIN";
+        join.sender = "alice";
+        controller.streamEdit(docId, join);
+
+        DocEditMessage edit = new DocEditMessage();
+        edit.type = "EDIT";
+        edit.sender = "alice";
+        edit.content = "hello";
+        controller.streamEdit(docId, edit);
+
+        assertEquals(1.0, meterRegistry.get("docservice.realtime.messages").tag("type", "JOIN").counter().count());
+        assertEquals(1L, meterRegistry.get("docservice.realtime.handle").tag("type", "EDIT").timer().count());
+        assertEquals(5.0, meterRegistry.get("docservice.realtime.content.size").summary().totalAmount());
+        assertEquals(1.0, meterRegistry.get("docservice.realtime.documents.active").gauge().value());
+    }
+
+    @Test
+    void streamEdit_stampsTraceIdAndServerTimestamps() {
+        DocRealtimeController controller = controller(mock(DocumentRepository.class), mock(RestTemplate.class));
+
+        long receivedAt = System.currentTimeMillis() - 5;
+        TraceContext.open(TraceContext.fromHeader("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01", receivedAt));
+        try {
+            DocEditMessage cursor = new DocEditMessage();
+            cursor.type = "CURSOR";
+            cursor.sender = "alice";
+            cursor.clientSentAt = receivedAt - 10;
+
+            DocEditMessage out = controller.streamEdit(UUID.randomUUID(), cursor);
+
+            assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", out.traceId);
+            assertEquals(receivedAt, out.serverReceivedAt);
+            assertTrue(out.serverBroadcastAt >= out.serverReceivedAt);
+            assertEquals(receivedAt - 10, out.clientSentAt);
+        } finally {
+            TraceContext.close();
+        }
+
+        assertEquals(1L, meterRegistry.get("docservice.realtime.server.latency").timer().count());
+    }
 }
@@ -0,0 +1,146 @@
+package com.collab.docservice.crdt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RgaDocumentTest {
+
+    @Test
+    void concurrentInsertsAtSamePosition_convergeWhateverTheDeliveryOrder() {
+        RgaDocument a = RgaDocument.of("ac");
+        RgaDocument b = RgaDocument.of("ac");
+
+        CrdtUpdate fromA = a.insert(1, 1, "X");
+        CrdtUpdate fromB = b.insert(2, 1, "Y");
+        a.apply(fromB);
+        b.apply(fromA);
+
+        assertEquals(a.toString(), b.toString());
+        assertEquals(4, a.length());
+        assertTrue(a.toString().startsWith("a") && a.toString().endsWith("c"));
+    }
+
+    @Test
+    void randomConcurrentEdits_convergeOnEveryReplica() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 50; round++) {
+            RgaDocument[] replicas = new RgaDocument[3];
+            List<List<CrdtUpdate>> logs = new ArrayList<>();
+            for (int r = 0; r < replicas.length; r++) {
+                replicas[r] = RgaDocument.of("hello world");
+                List<CrdtUpdate> log = new ArrayList<>();
+                for (int i = 0; i < 30; i++) {
+                    RgaDocument doc = replicas[r];
+                    if (doc.length() > 0 && random.nextBoolean()) {
+                        int offset = random.nextInt(doc.length());
+                        log.add(doc.delete(r + 1, offset, 1 + random.nextInt(Math.min(3, doc.length() - offset))));
+                    } else {
+                        log.add(doc.insert(r + 1, random.nextInt(doc.length() + 1), "r" + r + "i" + i));
+                    }
+                }
+                logs.add(log);
+            }
+
+            for (int r = 0; r < replicas.length; r++) {
+                List<CrdtUpdate> incoming = new ArrayList<>();
+                for (int other = 0; other < replicas.length; other++) {
+                    if (other != r) {
+                        incoming.addAll(logs.get(other));
+                    }
+                }
+                // out of order, and through the wire format
+                Collections.shuffle(incoming, random);
+                for (CrdtUpdate update : incoming) {
+                    replicas[r].apply(CrdtCodec.decodeUpdate(CrdtCodec.encodeUpdate(update)));
+                }
+            }
+
+            assertEquals(replicas[0].toString(), replicas[1].toString());
+            assertEquals(replicas[0].toString(), replicas[2].toString());
+            assertFalse(replicas[0].hasPending());
+        }
+    }
+
+    @Test
+    void diff_bringsAReplicaUpToDateFromItsStateVector() {
+        RgaDocument server = RgaDocument.of("hello");
+        RgaDocument offline = RgaDocument.of("hello");
+
+        server.insert(1, 5, " world");
+        server.delete(1, 0, 1);
+        offline.insert(2, 0, ">");
+
+        CrdtUpdate missing = server.diff(offline.stateVector());
+        offline.apply(missing);
+        server.apply(offline.diff(server.stateVector()));
+
+        assertEquals(server.toString(), offline.toString());
+        assertEquals(">ello world", server.toString());
+        assertTrue(server.diff(server.stateVector()).inserts().isEmpty());
+    }
+
+    @Test
+    void collectGarbage_dropsTombstonesOnceEveryPeerHasSeenTheDelete() {
+        RgaDocument server = RgaDocument.of("hello world");
+        RgaDocument client = RgaDocument.of("hello world");
+        CrdtUpdate delete = client.delete(1, 0, 6);
+        server.apply(delete);
+
+        server.acknowledge(1, client.stateVector());
+        server.acknowledge(2, Map.of());
+        assertEquals(0, server.collectGarbage());
+
+        server.acknowledge(2, client.stateVector());
+        assertEquals(6, server.collectGarbage());
+        assertEquals(0, server.tombstones());
+        assertEquals("world", server.toString());
+
+        // late duplicates of collected items and deletes change nothing
+        server.apply(RgaDocument.of("hello world").diff(Map.of()));
+        server.apply(delete);
+        assertEquals("world", server.toString());
+        assertFalse(server.hasPending());
+    }
+
+    @Test
+    void state_roundTripsThroughCodec() {
+        RgaDocument doc = RgaDocument.of("hello world");
+        doc.insert(3, 5, ",");
+        doc.delete(4, 0, 1);
+        doc.acknowledge(3, doc.stateVector());
+
+        RgaDocument copy = CrdtCodec.decodeState(CrdtCodec.encodeState(doc));
+
+        assertEquals("ello, world", copy.toString());
+        assertEquals(doc.stateVector(), copy.stateVector());
+        assertEquals(Set.of(3), copy.peers());
+        assertEquals(1, copy.tombstones());
+        // keeps merging like the original
+        CrdtUpdate next = doc.insert(3, 0, "H");
+        copy.apply(next);
+        assertEquals(doc.toString(), copy.toString());
+    }
+
+    @Test
+    void encoding_isAboutOneBytePerAsciiCharacter() {
+        RgaDocument doc = new RgaDocument();
+        for (int i = 0; i < 10_000; i++) {
+            doc.insert(1, doc.length(), "a");
+        }
+
+        assertTrue(CrdtCodec.encodeState(doc).length < 10_100);
+        assertTrue(CrdtCodec.encodeUpdate(doc.diff(Map.of())).length < 10_100);
+    }
+
+    @Test
+    void decode_rejectsTruncatedInput() {
+        byte[] bytes = CrdtCodec.encodeUpdate(RgaDocument.of("hello").diff(Map.of()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> CrdtCodec.decodeUpdate(Arrays.copyOf(bytes, bytes.length - 2)));
+    }
+}
@@ -0,0 +1,79 @@
+package com.collab.docservice.search;
+
+import com.collab.docservice.dto.DocSearchHit;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.repo.DocumentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LuceneDocumentSearchTest {
+
+    private final DocumentRepository repo = mock(DocumentRepository.class);
+
+    private static Document doc(String title, String content) {
+        Document d = new Document();
+        d.setId(UUID.randomUUID());
+        d.setOwnerUsername("owner");
+        d.setTitle(title);
+        d.setContent(content);
+        return d;
+    }
+
+    @Test
+    void findsOnlyVisibleDocuments_bestMatchFirst_withEscapedHighlights() throws Exception {
+        Document recipes = doc("Recipes", "Bake the <b>bread</b> for forty minutes, then let the bread cool.");
+        Document notes = doc("Meeting notes", "We talked about bread once.");
+        Document secret = doc("Bread plans", "Nobody else may read about the bread.");
+        when(repo.findByUpdatedAtGreaterThanEqual(any())).thenReturn(List.of(recipes, notes, secret));
+        when(repo.findVisibleDocumentIds("alice")).thenReturn(List.of(recipes.getId(), notes.getId()));
+
+        List<DocSearchHit> hits = new LuceneDocumentSearch(repo).search("alice", "bread", 0, 10);
+
+        assertEquals(List.of(recipes.getId(), notes.getId()), hits.stream().map(h -> h.id).toList());
+        assertTrue(hits.get(0).snippet.contains("&lt;b&gt;<mark>bread</mark>&lt;/b&gt;"), hits.get(0).snippet);
+        assertEquals("owner", hits.get(0).ownerUsername);
+    }
+
+    @Test
+    void changedDocuments_areReindexed_onTheNextPass() throws Exception {
+        Document d = doc("Draft", "first words");
+        when(repo.findVisibleDocumentIds("owner")).thenReturn(List.of(d.getId()));
+        when(repo.findByUpdatedAtGreaterThanEqual(any())).thenReturn(List.of(d));
+        LuceneDocumentSearch search = new LuceneDocumentSearch(repo);
+        assertEquals(1, search.search("owner", "first", 0, 10).size());
+
+        Document edited = doc("Draft", "second words");
+        edited.setId(d.getId());
+        when(repo.findByUpdatedAtGreaterThanEqual(any())).thenReturn(List.of(edited));
+
+        assertTrue(search.search("owner", "first", 0, 10).isEmpty());
+        assertEquals(1, search.search("owner", "second", 0, 10).size());
+    }
+
+    @Test
+    void pages_skipEarlierHits() throws Exception {
+        List<Document> docs = List.of(doc("a", "apple"), doc("b", "apple apple"), doc("c", "apple apple apple"));
+        when(repo.findByUpdatedAtGreaterThanEqual(any())).thenReturn(docs);
+        when(repo.findVisibleDocumentIds("owner")).thenReturn(docs.stream().map(Document::getId).toList());
+        LuceneDocumentSearch search = new LuceneDocumentSearch(repo);
+
+        List<DocSearchHit> first = search.search("owner", "apple", 0, 2);
+        List<DocSearchHit> second = search.search("owner", "apple", 2, 2);
+
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertFalse(first.stream().anyMatch(h -> h.id.equals(second.get(0).id)));
+    }
+
+    @Test
+    void highlight_escapesTextAndMarksMatches() {
+        assertEquals("a &amp; <mark>b</mark>", DocumentSearch.highlight("a & " + DocumentSearch.MATCH_START + "b"
+                + DocumentSearch.MATCH_END));
+    }
+}
@@ -0,0 +1,126 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.DocContentResponse;
+import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.repo.DocumentRepository.ContentSlice;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DocumentContentReaderTest {
+
+    private final UUID id = UUID.randomUUID();
+
+    // answers findContentSlice the way Postgres SUBSTRING(content, start, length) and LENGTH would: in code points
+    private DocumentRepository repoWith(String content) {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        int codePoints = content.codePointCount(0, content.length());
+        when(repo.findContentSlice(eq(id), anyInt(), anyInt())).thenAnswer(inv -> {
+            int start = inv.getArgument(1);
+            int length = inv.getArgument(2);
+            int from = content.offsetByCodePoints(0, Math.min(start - 1, codePoints));
+            int to = content.offsetByCodePoints(from, Math.min(length, content.codePointCount(from, content.length())));
+            return Optional.of(slice(3, codePoints, content.substring(from, to)));
+        });
+        return repo;
+    }
+
+    private static ContentSlice slice(long revision, int contentLength, String content) {
+        return new ContentSlice() {
+            public long getRevision() { return revision; }
+            public int getContentLength() { return contentLength; }
+            public String getContent() { return content; }
+        };
+    }
+
+    @Test
+    void readChars_returnsRequestedSliceAndTotals() {
+        DocumentContentReader reader = new DocumentContentReader(repoWith("hello world"), 1000, 4);
+
+        DocContentResponse r = reader.readChars(id, 6, 5);
+
+        assertEquals("world", r.content);
+        assertEquals(6, r.offset);
+        assertEquals(11, r.totalLength);
+        assertEquals(3, r.revision);
+    }
+
+    @Test
+    void readChars_lengthIsCappedAtMaxSlice() {
+        DocumentRepository repo = repoWith("abcdefghij");
+        DocumentContentReader reader = new DocumentContentReader(repo, 3, 4);
+
+        assertEquals("abc", reader.readChars(id, 0, null).content);
+        verify(repo).findContentSlice(id, 1, 3);
+    }
+
+    @Test
+    void readLines_spanningChunks_stopsAfterLastRequestedLine() {
+        DocumentRepository repo = repoWith("one\ntwo\nthree\nfour\nfive\n");
+        // 4-char chunks force the scan across several queries
+        DocumentContentReader reader = new DocumentContentReader(repo, 1000, 4);
+
+        DocContentResponse r = reader.readLines(id, 2, 2);
+
+        assertEquals("two\nthree\n", r.content);
+        assertEquals(4, r.offset);
+        // "five" is never fetched
+        verify(repo, never()).findContentSlice(eq(id), eq(21), anyInt());
+    }
+
+    @Test
+    void readLines_withCharactersOutsideTheBmp_countsCodePoints_andSkipsNothing() {
+        // each emoji is one code point but two UTF-16 units
+        String content = "\uD83D\uDE00\uD83D\uDE00a\nb\uD83C\uDF89\nc\n";
+        DocumentRepository repo = repoWith(content);
+        DocumentContentReader reader = new DocumentContentReader(repo, 1000, 2);
+
+        DocContentResponse r = reader.readLines(id, 2, 2);
+
+        assertEquals("b\uD83C\uDF89\nc\n", r.content);
+        assertEquals(4, r.offset);
+        assertEquals(9, r.totalLength);
+        assertEquals(r.content, reader.readChars(id, r.offset, 5).content);
+    }
+
+    @Test
+    void readLines_pastEnd_returnsEmpty() {
+        DocumentContentReader reader = new DocumentContentReader(repoWith("a\nb"), 1000, 4);
+
+        DocContentResponse r = reader.readLines(id, 5, 1);
+
+        assertEquals("", r.content);
+        assertEquals(3, r.offset);
+    }
+
+    @Test
+    void readLines_lastLineWithoutNewline_isIncluded() {
+        DocumentContentReader reader = new DocumentContentReader(repoWith("a\nb"), 1000, 4);
+
+        assertEquals("b", reader.readLines(id, 2, 10).content);
+    }
+
+    @Test
+    void unknownDocument_returns404() {
+        DocumentRepository repo = mock(DocumentRepository.class);
+        when(repo.findContentSlice(eq(id), anyInt(), anyInt())).thenReturn(Optional.empty());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> new DocumentContentReader(repo, 1000, 4).readChars(id, 0, 10));
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+
+    @Test
+    void negativeOffset_returns400() {
+        DocumentContentReader reader = new DocumentContentReader(repoWith(""), 1000, 4);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> reader.readChars(id, -1, 10));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+}
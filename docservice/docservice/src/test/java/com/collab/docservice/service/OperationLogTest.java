@@ -0,0 +1,187 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.model.DocumentCheckpoint;
+import com.collab.docservice.model.DocumentOperation;
+import com.collab.docservice.repo.DocumentCheckpointRepository;
+import com.collab.docservice.repo.DocumentOperationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OperationLogTest {
+
+    private final UUID id = UUID.randomUUID();
+    private final DocumentOperationRepository operations = mock(DocumentOperationRepository.class);
+    private final DocumentCheckpointRepository checkpoints = mock(DocumentCheckpointRepository.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private OperationLog log(int batchSize) {
+        return log(batchSize, 100_000);
+    }
+
+    private OperationLog log(int batchSize, int maxPending) {
+        return new OperationLog(operations, checkpoints, objectMapper, batchSize, maxPending, 500, Duration.ofDays(30));
+    }
+
+    private DocumentOperation splice(long seq, int offset, int deleteCount, String insert) throws Exception {
+        return new DocumentOperation(id, seq, DocumentOperation.SPLICE, "alice", Instant.now(),
+                objectMapper.writeValueAsString(List.of(new SpliceOp(offset, deleteCount, insert))));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void records_areWrittenInOneBatchPerFlush_inSeqOrder() {
+        OperationLog log = log(500);
+
+        for (int i = 0; i < 3; i++) {
+            log.recordSplice(id, log.nextSeq(id), "alice", List.of(new SpliceOp(i, 0, "x")));
+        }
+        verify(operations, never()).saveAll(any());
+
+        log.flush();
+
+        ArgumentCaptor<List<DocumentOperation>> batch = ArgumentCaptor.forClass(List.class);
+        verify(operations).saveAll(batch.capture());
+        assertEquals(List.of(1L, 2L, 3L), batch.getValue().stream().map(DocumentOperation::getSeq).toList());
+        assertTrue(batch.getValue().get(0).isNew());
+    }
+
+    @Test
+    void recording_neverWrites_theFlushWritesFullBatches() {
+        OperationLog log = log(2);
+
+        for (String content : List.of("a", "b", "c")) {
+            log.recordEdit(id, log.nextSeq(id), "alice", content);
+        }
+        // the recording thread may hold a document lock
+        verify(operations, never()).saveAll(any());
+
+        log.flush();
+
+        verify(operations).saveAll(argThat(ops -> ((List<?>) ops).size() == 2));
+        verify(operations).saveAll(argThat(ops -> ((List<?>) ops).size() == 1));
+    }
+
+    @Test
+    void failedBatch_isRequeued_whileTheDatabaseIsDown() {
+        OperationLog log = log(500);
+        when(operations.saveAll(any())).thenThrow(new IllegalStateException("db down")).thenReturn(List.of());
+        when(operations.save(any())).thenThrow(new IllegalStateException("db down"));
+
+        log.recordEdit(id, log.nextSeq(id), "alice", "a");
+        log.recordEdit(id, log.nextSeq(id), "alice", "b");
+        log.flush();
+        log.flush();
+
+        verify(operations, times(2)).saveAll(argThat(ops -> ((List<?>) ops).size() == 2));
+        assertEquals(0, log.deadLettered());
+    }
+
+    @Test
+    void rejectedRow_isDeadLettered_andDoesNotHoldBackTheRest() {
+        OperationLog log = log(500);
+        when(operations.saveAll(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(operations.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(operations.save(argThat(op -> op.getSeq() == 2))).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        for (String content : List.of("a", "b", "c")) {
+            log.recordEdit(id, log.nextSeq(id), "alice", content);
+        }
+        log.flush();
+        log.flush();
+
+        verify(operations, times(1)).saveAll(any());
+        verify(operations).save(argThat(op -> op.getSeq() == 1 && op.isNew()));
+        verify(operations).save(argThat(op -> op.getSeq() == 3 && op.isNew()));
+        assertEquals(1, log.deadLettered());
+    }
+
+    @Test
+    void nextSeq_refusesEdits_whileTooManyRecordsWait() {
+        OperationLog log = log(500, 2);
+
+        log.recordEdit(id, log.nextSeq(id), "alice", "a");
+        log.recordEdit(id, log.nextSeq(id), "alice", "b");
+        ResponseStatusException full = assertThrows(ResponseStatusException.class, () -> log.nextSeq(id));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, full.getStatusCode());
+
+        log.flush();
+        assertEquals(3, log.nextSeq(id));
+    }
+
+    @Test
+    void nextSeq_continuesAfterLoggedAndCompactedHistory() {
+        when(operations.findMaxSeq(id)).thenReturn(0L);
+        when(checkpoints.findFirstByDocumentIdOrderBySeqDesc(id))
+                .thenReturn(Optional.of(new DocumentCheckpoint(id, 41, "text", Instant.now())));
+
+        assertEquals(42, log(500).nextSeq(id));
+    }
+
+    @Test
+    void contentAt_replaysFromTheNearestCheckpoint() throws Exception {
+        when(checkpoints.findFirstByDocumentIdAndSeqLessThanEqualOrderBySeqDesc(id, 13))
+                .thenReturn(Optional.of(new DocumentCheckpoint(id, 10, "hello", Instant.now())));
+        when(operations.findByDocumentIdAndSeqBetweenOrderBySeq(id, 11, 13)).thenReturn(List.of(
+                splice(11, 5, 0, " world"),
+                splice(12, 0, 1, "H"),
+                splice(13, 11, 0, "!")));
+
+        assertEquals(Optional.of("Hello world!"), log(500).contentAt(id, 13));
+    }
+
+    @Test
+    void contentAt_withoutACheckpoint_startsFromTheFirstEdit_orIsEmpty() throws Exception {
+        when(operations.findByDocumentIdAndSeqBetweenOrderBySeq(id, 1, 3)).thenReturn(List.of(
+                splice(1, 0, 0, "lost base "),
+                new DocumentOperation(id, 2, DocumentOperation.EDIT, "bob", Instant.now(), "fresh"),
+                splice(3, 5, 0, " text")));
+        when(operations.findByDocumentIdAndSeqBetweenOrderBySeq(id, 1, 1)).thenReturn(List.of(
+                splice(1, 0, 0, "lost base ")));
+
+        OperationLog log = log(500);
+        assertEquals(Optional.of("fresh text"), log.contentAt(id, 3));
+        assertEquals(Optional.empty(), log.contentAt(id, 1));
+    }
+
+    @Test
+    void ensureBase_checkpointsTheCurrentTextOnce_whenThereIsNoHistory() {
+        OperationLog log = log(500);
+
+        log.ensureBase(id, 0, "start");
+        log.ensureBase(id, 0, "start");
+
+        verify(checkpoints, times(1)).save(argThat(c -> c.getSeq() == 0 && c.getContent().equals("start")));
+    }
+
+    @Test
+    void compact_foldsExpiredOperationsIntoACheckpoint() throws Exception {
+        when(operations.findDocumentsWithOperationsBefore(any())).thenReturn(List.of(id));
+        when(operations.findLastSeqBefore(eq(id), any())).thenReturn(Optional.of(2L));
+        when(checkpoints.findFirstByDocumentIdAndSeqLessThanEqualOrderBySeqDesc(id, 2))
+                .thenReturn(Optional.of(new DocumentCheckpoint(id, 0, "ab", Instant.now())));
+        when(operations.findByDocumentIdAndSeqBetweenOrderBySeq(id, 1, 2)).thenReturn(List.of(
+                splice(1, 2, 0, "c"),
+                splice(2, 0, 1, "")));
+
+        log(500).compact();
+
+        verify(checkpoints).save(argThat(c -> c.getSeq() == 2 && c.getContent().equals("bc")));
+        verify(operations).deleteThrough(id, 2);
+        verify(checkpoints).deleteBefore(id, 2);
+    }
+}
@@ -0,0 +1,128 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.client.VersionServiceClient;
+import com.collab.docservice.dto.SpliceOp;
+import com.collab.docservice.model.Document;
+import com.collab.docservice.repo.DocumentRepository;
+import com.collab.docservice.text.Rope;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class SnapshotPolicyTest {
+
+    private final UUID id = UUID.randomUUID();
+    private final DocumentRepository repo = mock(DocumentRepository.class);
+    private final ActiveDocumentRegistry activeDocuments = mock(ActiveDocumentRegistry.class);
+    private final CrdtDocumentRegistry crdtDocuments = mock(CrdtDocumentRegistry.class);
+    private final VersionServiceClient versionService = mock(VersionServiceClient.class);
+
+    // 100 chars or 10 ops, 2 minutes idle, at most one every 5 minutes
+    private SnapshotPolicy policy() {
+        when(activeDocuments.snapshot(id)).thenReturn(Optional.of(Rope.of("live text")));
+        return new SnapshotPolicy(repo, activeDocuments, crdtDocuments, versionService,
+                100, 10, Duration.ofMinutes(2), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void changedChars_countsDeletedAndInsertedCharacters() {
+        assertEquals(7, SnapshotPolicy.changedChars(List.of(new SpliceOp(0, 3, "abc"), new SpliceOp(9, 1, ""))));
+    }
+
+    @Test
+    void changedChars_ofAReplacement_countsOnlyTheSpanThatDiffers() {
+        assertEquals(6, SnapshotPolicy.changedChars("hello world", "hello brave world"));
+        assertEquals(4, SnapshotPolicy.changedChars("abcdef", "abXYef"));
+        assertEquals(1, SnapshotPolicy.changedChars("aaa", "aa")); // prefix and suffix may not overlap
+        assertEquals(2, SnapshotPolicy.changedChars(null, "xy"));
+        assertEquals(0, SnapshotPolicy.changedChars("same", "same"));
+    }
+
+    @Test
+    void editVolume_triggersOnTheNextRun_notOnTheEditPath() {
+        SnapshotPolicy policy = policy();
+
+        policy.recordEdit(id, "alice", 60);
+        policy.recordEdit(id, "bob", 60);
+        verifyNoInteractions(versionService);
+
+        policy.runDueChecks(Instant.now());
+        verify(versionService).saveSnapshotInBackground(id, "bob", "live text");
+    }
+
+    @Test
+    void opCount_triggersEvenWhenNoCharactersAreKnown() {
+        SnapshotPolicy policy = policy();
+
+        for (int i = 0; i < 10; i++) {
+            policy.recordEdit(id, "alice", 0);
+        }
+        policy.runDueChecks(Instant.now());
+
+        verify(versionService).saveSnapshotInBackground(id, "alice", "live text");
+    }
+
+    @Test
+    void idleAfterABurst_triggersOnceTheDocumentHasBeenQuiet() {
+        SnapshotPolicy policy = policy();
+        Instant start = Instant.now();
+
+        policy.recordEdit(id, "alice", 5);
+        policy.runDueChecks(start.plus(Duration.ofMinutes(1)));
+        verifyNoInteractions(versionService);
+
+        policy.runDueChecks(start.plus(Duration.ofMinutes(3)));
+        verify(versionService).saveSnapshotInBackground(id, "alice", "live text");
+
+        // nothing changed since
+        policy.runDueChecks(start.plus(Duration.ofHours(1)));
+        verify(versionService, times(1)).saveSnapshotInBackground(any(), any(), any());
+    }
+
+    @Test
+    void sessionEnd_waitsForTheMinimumInterval() {
+        SnapshotPolicy policy = policy();
+        Instant start = Instant.now();
+
+        policy.snapshotTaken(id);
+        policy.recordEdit(id, "alice", 5);
+        policy.sessionEnded(id);
+
+        policy.runDueChecks(start.plus(Duration.ofMinutes(1)));
+        verifyNoInteractions(versionService);
+
+        policy.runDueChecks(start.plus(Duration.ofMinutes(6)));
+        verify(versionService).saveSnapshotInBackground(id, "alice", "live text");
+    }
+
+    @Test
+    void sessionEnd_withoutEdits_takesNoSnapshot() {
+        SnapshotPolicy policy = policy();
+
+        policy.sessionEnded(id);
+        policy.runDueChecks(Instant.now().plus(Duration.ofHours(1)));
+
+        verifyNoInteractions(versionService);
+    }
+
+    @Test
+    void documentNoLongerLive_isReadFromTheDatabase() {
+        SnapshotPolicy policy = new SnapshotPolicy(repo, activeDocuments, crdtDocuments, versionService,
+                100, 10, Duration.ofMinutes(2), Duration.ofMinutes(5));
+        Document d = new Document();
+        d.setContent("saved text");
+        when(repo.findById(id)).thenReturn(Optional.of(d));
+
+        policy.recordEdit(id, "alice", 500);
+        policy.runDueChecks(Instant.now());
+
+        verify(versionService).saveSnapshotInBackground(id, "alice", "saved text");
+    }
+}
@@ -0,0 +1,52 @@
+package com.collab.docservice.service;
+
+import com.collab.docservice.dto.SpliceOp;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextSplicerTest {
+
+    @Test
+    void appliesOpsAgainstBaseOffsets_inAnyOrder() {
+        String result = TextSplicer.apply("hello world", List.of(
+                new SpliceOp(6, 5, "there"),
+                new SpliceOp(0, 1, "H")
+        ));
+
+        assertEquals("Hello there", result);
+    }
+
+    @Test
+    void insertsAtSameOffset_keepRequestOrder() {
+        String result = TextSplicer.apply("ac", List.of(
+                new SpliceOp(1, 0, "b"),
+                new SpliceOp(1, 0, "B")
+        ));
+
+        assertEquals("abBc", result);
+    }
+
+    @Test
+    void appendAtEnd_isAllowed() {
+        assertEquals("abc!", TextSplicer.apply("abc", List.of(new SpliceOp(3, 0, "!"))));
+    }
+
+    @Test
+    void overlappingOps_areRejected() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> TextSplicer.apply("abcdef",
+                List.of(new SpliceOp(0, 3, ""), new SpliceOp(2, 1, "x"))));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    @Test
+    void opPastEnd_isRejected() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> TextSplicer.apply("abc", List.of(new SpliceOp(2, Integer.MAX_VALUE, ""))));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+}
@@ -0,0 +1,75 @@
+package com.collab.docservice.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RopeTest {
+
+    @Test
+    void of_roundTripsLargeText() {
+        String text = "abcdefghij".repeat(10_000);
+
+        Rope rope = Rope.of(text);
+
+        assertEquals(text.length(), rope.length());
+        assertEquals(text, rope.toString());
+        assertEquals('e', rope.charAt(50_004));
+        assertEquals(text.substring(1020, 2050), rope.substring(1020, 2050));
+    }
+
+    @Test
+    void edits_leaveEarlierSnapshotsUnchanged() {
+        Rope base = Rope.of("hello world");
+
+        Rope edited = base.splice(6, 5, "there").insert(0, ">> ");
+
+        assertEquals(">> hello there", edited.toString());
+        assertEquals("hello world", base.toString());
+    }
+
+    @Test
+    void randomEdits_matchStringBuilder_andStayBalanced() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder("x".repeat(50_000));
+        Rope rope = Rope.of(expected.toString());
+
+        for (int i = 0; i < 20_000; i++) {
+            int offset = random.nextInt(expected.length() + 1);
+            if (random.nextInt(3) == 0 && expected.length() > 0) {
+                int count = Math.min(random.nextInt(4), expected.length() - offset);
+                expected.delete(offset, offset + count);
+                rope = rope.delete(offset, count);
+            } else {
+                String s = Character.toString('a' + random.nextInt(26)).repeat(1 + random.nextInt(3));
+                expected.insert(offset, s);
+                rope = rope.insert(offset, s);
+            }
+        }
+
+        assertEquals(expected.toString(), rope.toString());
+        // AVL height bound, 1.44 log2(leaves + 2), with leaves <= length
+        assertTrue(rope.height() <= 1.45 * (Math.log(rope.length() + 2) / Math.log(2)),
+                "height " + rope.height() + " for length " + rope.length());
+    }
+
+    @Test
+    void deleteEverything_givesEmptyRope() {
+        Rope rope = Rope.of("abc".repeat(1000)).delete(0, 3000);
+
+        assertEquals(0, rope.length());
+        assertEquals("", rope.toString());
+        assertEquals("x", rope.insert(0, "x").toString());
+    }
+
+    @Test
+    void outOfRange_throws() {
+        Rope rope = Rope.of("abc");
+
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.delete(2, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.insert(4, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.charAt(3));
+    }
+}
@@ -0,0 +1,133 @@
+package com.collab.docservice.transport;
+
+import com.collab.docservice.config.WebSocketProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SlowConsumerMonitorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MessageChannel outbound = mock(MessageChannel.class);
+
+    private SlowConsumerMonitor monitor(SlowConsumerMonitor.Policy policy, int maxPending) {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getSlowConsumer().setPolicy(policy);
+        properties.getSlowConsumer().setMaxPendingMessages(maxPending);
+        return new SlowConsumerMonitor(properties, meterRegistry, new ObjectMapper(), outbound);
+    }
+
+    // connects a session through the decorated handler and returns what the STOMP handler would see
+    private static WebSocketSession connect(SlowConsumerMonitor monitor, WebSocketSession raw) throws Exception {
+        WebSocketHandler delegate = mock(WebSocketHandler.class);
+        monitor.decorate(delegate).afterConnectionEstablished(raw);
+        ArgumentCaptor<WebSocketSession> tracked = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(delegate).afterConnectionEstablished(tracked.capture());
+        return tracked.getValue();
+    }
+
+    private static WebSocketSession rawSession(String id) {
+        WebSocketSession raw = mock(WebSocketSession.class);
+        when(raw.getId()).thenReturn(id);
+        return raw;
+    }
+
+    private static Message<byte[]> broadcast(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/doc/1");
+        return MessageBuilder.createMessage("{}".getBytes(), accessor.getMessageHeaders());
+    }
+
+    private static TextMessage messageFrame() {
+        return new TextMessage("MESSAGE\ndestination:/topic/doc/1\n\n{}\u0000".getBytes());
+    }
+
+    private double actions(String action) {
+        return meterRegistry.get("docservice.stomp.slow_consumer.actions").tag("action", action).counter().count();
+    }
+
+    @Test
+    void framesBelowLimit_passThrough() throws Exception {
+        SlowConsumerMonitor monitor = monitor(SlowConsumerMonitor.Policy.RESYNC, 2);
+        connect(monitor, rawSession("s1"));
+
+        assertNotNull(monitor.preSend(broadcast("s1"), outbound));
+        assertNotNull(monitor.preSend(broadcast("s1"), outbound));
+        assertEquals(2.0, meterRegistry.get("docservice.stomp.outbound.pending").gauge().value());
+    }
+
+    @Test
+    void resync_dropsWhileLagging_thenSendsResyncOnceDrained() throws Exception {
+        SlowConsumerMonitor monitor = monitor(SlowConsumerMonitor.Policy.RESYNC, 2);
+        WebSocketSession session = connect(monitor, rawSession("s1"));
+
+        monitor.preSend(broadcast("s1"), outbound);
+        monitor.preSend(broadcast("s1"), outbound);
+        assertNull(monitor.preSend(broadcast("s1"), outbound));
+        assertEquals(1.0, actions("dropped"));
+        assertEquals(1.0, meterRegistry.get("docservice.stomp.sessions.lagging").gauge().value());
+
+        // first write drains to 1 == maxPending / 2
+        session.sendMessage(messageFrame());
+
+        ArgumentCaptor<Message<?>> sent = ArgumentCaptor.forClass(Message.class);
+        verify(outbound).send(sent.capture());
+        assertEquals("sub-0", SimpMessageHeaderAccessor.getSubscriptionId(sent.getValue().getHeaders()));
+        assertTrue(new String((byte[]) sent.getValue().getPayload()).contains("\"type\":\"RESYNC\""));
+        assertEquals(1.0, actions("resync"));
+
+        // the resync frame itself is never dropped
+        assertNotNull(monitor.preSend(sent.getValue(), outbound));
+    }
+
+    @Test
+    void drop_doesNotResync() throws Exception {
+        SlowConsumerMonitor monitor = monitor(SlowConsumerMonitor.Policy.DROP, 1);
+        WebSocketSession session = connect(monitor, rawSession("s1"));
+
+        monitor.preSend(broadcast("s1"), outbound);
+        assertNull(monitor.preSend(broadcast("s1"), outbound));
+        session.sendMessage(messageFrame());
+
+        verifyNoInteractions(outbound);
+        assertEquals(1.0, actions("dropped"));
+    }
+
+    @Test
+    void disconnect_closesLaggingSession() throws Exception {
+        SlowConsumerMonitor monitor = monitor(SlowConsumerMonitor.Policy.DISCONNECT, 1);
+        WebSocketSession raw = rawSession("s1");
+        connect(monitor, raw);
+
+        monitor.preSend(broadcast("s1"), outbound);
+        assertNull(monitor.preSend(broadcast("s1"), outbound));
+
+        verify(raw).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1.0, actions("disconnect"));
+    }
+
+    @Test
+    void unknownSession_isIgnored() {
+        SlowConsumerMonitor monitor = monitor(SlowConsumerMonitor.Policy.RESYNC, 1);
+        Message<byte[]> message = broadcast("other");
+
+        assertSame(message, monitor.preSend(message, outbound));
+        assertSame(message, monitor.preSend(message, outbound));
+    }
+}
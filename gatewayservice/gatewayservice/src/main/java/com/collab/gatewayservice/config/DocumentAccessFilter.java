@@ -0,0 +1,88 @@
+package com.collab.gatewayservice.config;
+
+import com.collab.gatewayservice.security.DocumentAclClient;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Lets a request through only if X-User (set by ModifyHeaderFilter, which must run first)
+ * is the owner or a collaborator of the document named by the route's {docId} path variable.
+ * Mirrors the permission check in docservice's DocController: 404 for unknown documents,
+ * 403 for everyone else, 503 if docservice cannot be asked.
+ */
+@Component
+public class DocumentAccessFilter extends AbstractGatewayFilterFactory<DocumentAccessFilter.Config> {
+
+    private final DocumentAclClient aclClient;
+
+    public DocumentAccessFilter(DocumentAclClient aclClient) {
+        super(Config.class);
+        this.aclClient = aclClient;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("variable");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            String username = exchange.getRequest().getHeaders().getFirst("X-User");
+            String docId = ServerWebExchangeUtils.getUriTemplateVariables(exchange).get(config.getVariable());
+
+            if (username == null || username.isBlank()) {
+                return complete(exchange, HttpStatus.UNAUTHORIZED);
+            }
+            if (!isUuid(docId)) {
+                return complete(exchange, HttpStatus.BAD_REQUEST);
+            }
+
+            return aclClient.find(docId)
+                    .map(acl -> acl.allows(username) ? HttpStatus.OK : HttpStatus.FORBIDDEN)
+                    .defaultIfEmpty(HttpStatus.NOT_FOUND)
+                    .onErrorReturn(HttpStatus.SERVICE_UNAVAILABLE)
+                    .flatMap(status -> status == HttpStatus.OK
+                            ? chain.filter(exchange)
+                            : complete(exchange, status));
+        };
+    }
+
+    private static Mono<Void> complete(ServerWebExchange exchange, HttpStatus status) {
+        exchange.getResponse().setStatusCode(status);
+        return exchange.getResponse().setComplete();
+    }
+
+    private static boolean isUuid(String value) {
+        if (value == null) {
+            return false;
+        }
+        try {
+            UUID.fromString(value);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public static class Config {
+        // name of the route's path variable holding the document id
+        private String variable = "docId";
+
+        public String getVariable() {
+            return variable;
+        }
+
+        public void setVariable(String variable) {
+            this.variable = variable;
+        }
+    }
+}
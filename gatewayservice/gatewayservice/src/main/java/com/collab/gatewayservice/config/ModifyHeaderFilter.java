@@ -7,10 +7,18 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
 
 @Component
 public class ModifyHeaderFilter extends AbstractGatewayFilterFactory<ModifyHeaderFilter.Config> {
 
+    // W3C trace context, see https://www.w3.org/TR/trace-context/
+    static final String TRACEPARENT = "traceparent";
+    private static final Pattern TRACEPARENT_FORMAT = Pattern.compile("00-[0-9a-f]{32}-[0-9a-f]{16}-[0-9a-f]{2}");
+
     private final JwtUtils jwtUtils;
 
     public ModifyHeaderFilter(JwtUtils jwtUtils) {
@@ -20,7 +28,9 @@ public class ModifyHeaderFilter extends AbstractGatewayFilterFactory<ModifyHeade
 
     @Override
     public GatewayFilter apply(Config config) {
-        return (exchange, chain) -> {
+        return (incoming, chain) -> {
+            // 0. Every request leaving the gateway carries a trace context
+            ServerWebExchange exchange = withTraceContext(incoming);
             String path = exchange.getRequest().getURI().getPath();
 
             // 1. Skip validation for open endpoints
@@ -60,5 +70,33 @@ public class ModifyHeaderFilter extends AbstractGatewayFilterFactory<ModifyHeade
             return exchange.getResponse().setComplete();
         };
     }
+
+    /**
+     * Keeps a valid incoming traceparent (e.g. set by the browser) and otherwise starts a new trace.
+     * The trace id is echoed back as X-Trace-Id so clients can correlate with server logs.
+     */
+    private static ServerWebExchange withTraceContext(ServerWebExchange exchange) {
+        String traceparent = exchange.getRequest().getHeaders().getFirst(TRACEPARENT);
+        if (traceparent == null || !TRACEPARENT_FORMAT.matcher(traceparent).matches()) {
+            traceparent = "00-" + randomHex(32) + "-" + randomHex(16) + "-01";
+        }
+
+        exchange.getResponse().getHeaders().set("X-Trace-Id", traceparent.substring(3, 35));
+
+        ServerHttpRequest request = exchange.getRequest().mutate()
+                .header(TRACEPARENT, traceparent)
+                .build();
+        return exchange.mutate().request(request).build();
+    }
+
+    private static String randomHex(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return sb.toString();
+    }
+
     public static class Config {}
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+package com.collab.gatewayservice.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory cache for immutable version bodies.
+ * Only 200 responses that versionservice marks "Cache-Control: ... immutable" are kept, so
+ * history lists (which grow) always go downstream. Entries are keyed by X-User and path, and the
+ * filter must run after DocumentAccessFilter so every hit is still authorized against the current ACL.
+ * A hit whose ETag matches If-None-Match is answered with 304 and no body.
+ */
+@Component
+public class VersionResponseCacheFilter extends AbstractGatewayFilterFactory<VersionResponseCacheFilter.Config> {
+
+    record CachedResponse(MediaType contentType, String etag, String cacheControl, byte[] body) {}
+
+    private final boolean enabled;
+    private final long maxEntryBytes;
+    private final Cache<String, CachedResponse> cache;
+
+    public VersionResponseCacheFilter(@Value("${gateway.version-cache.enabled:true}") boolean enabled,
+                                      @Value("${gateway.version-cache.max-size:32MB}") DataSize maxSize,
+                                      @Value("${gateway.version-cache.max-entry-size:1MB}") DataSize maxEntrySize,
+                                      @Value("${gateway.version-cache.ttl:10m}") Duration ttl) {
+        super(Config.class);
+        this.enabled = enabled;
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, CachedResponse r) -> r.body().length + key.length())
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        return (exchange, chain) -> {
+            if (!enabled) {
+                return chain.filter(exchange);
+            }
+
+            String key = exchange.getRequest().getHeaders().getFirst("X-User")
+                    + " " + exchange.getRequest().getURI().getRawPath();
+
+            CachedResponse hit = cache.getIfPresent(key);
+            if (hit != null) {
+                return write(exchange, hit);
+            }
+
+            ServerHttpResponse capturing = new ServerHttpResponseDecorator(exchange.getResponse()) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                    if (!isCacheable(getDelegate())) {
+                        return super.writeWith(body);
+                    }
+                    // the body is passed through as it arrives and copied aside until it exceeds max-entry-size
+                    HttpHeaders headers = getDelegate().getHeaders();
+                    MediaType contentType = headers.getContentType();
+                    String etag = headers.getETag();
+                    String cacheControl = headers.getCacheControl();
+
+                    ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                    AtomicBoolean overflowed = new AtomicBoolean();
+                    Flux<DataBuffer> tee = Flux.from(body).map(buffer -> {
+                        byte[] chunk = new byte[buffer.readableByteCount()];
+                        buffer.read(chunk);
+                        DataBufferUtils.release(buffer);
+                        if (!overflowed.get() && copy.size() + chunk.length <= maxEntryBytes) {
+                            copy.writeBytes(chunk);
+                        } else if (overflowed.compareAndSet(false, true)) {
+                            copy.reset();
+                        }
+                        return bufferFactory().wrap(chunk);
+                    }).doOnComplete(() -> {
+                        if (!overflowed.get()) {
+                            cache.put(key, new CachedResponse(contentType, etag, cacheControl, copy.toByteArray()));
+                        }
+                    });
+                    return super.writeWith(tee);
+                }
+            };
+
+            return chain.filter(exchange.mutate().response(capturing).build());
+        };
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static boolean isCacheable(ServerHttpResponse response) {
+        String cacheControl = response.getHeaders().getCacheControl();
+        return response.getStatusCode() != null && response.getStatusCode().value() == HttpStatus.OK.value()
+                && cacheControl != null && cacheControl.contains("immutable");
+    }
+
+    private static Mono<Void> write(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        if (cached.etag() != null) {
+            headers.setETag(cached.etag());
+        }
+        if (cached.cacheControl() != null) {
+            headers.setCacheControl(cached.cacheControl());
+        }
+
+        if (cached.etag() != null
+                && exchange.getRequest().getHeaders().getIfNoneMatch().contains(cached.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        if (cached.contentType() != null) {
+            headers.setContentType(cached.contentType());
+        }
+        headers.setContentLength(cached.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    public static class Config {}
+}
@@ -0,0 +1,75 @@
+package com.collab.gatewayservice.security;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Document access lists fetched from docservice's internal ACL endpoint, cached per document.
+ * The cache is keyed by document rather than by user, so one fetch serves every collaborator.
+ * Sharing changes are not pushed to the gateway; the TTL bounds how long a removed
+ * collaborator can keep reading versions.
+ * Unknown documents are not cached. Failures to reach docservice are returned as errors.
+ */
+@Component
+public class DocumentAclClient {
+
+    public record DocumentAcl(String ownerUsername, Set<String> collaborators) {
+        public boolean allows(String username) {
+            return ownerUsername.equals(username) || collaborators.contains(username);
+        }
+    }
+
+    // wire format of docservice's DocAclResponse
+    record AclResponse(String ownerUsername, List<String> collaborators) {}
+
+    private final AsyncLoadingCache<String, DocumentAcl> cache;
+
+    public DocumentAclClient(WebClient.Builder webClientBuilder,
+                             @Value("${services.docservice.baseUrl:http://localhost:8082}") String docserviceBaseUrl,
+                             @Value("${internal.secret}") String internalSecret,
+                             @Value("${gateway.document-acl.ttl:5s}") Duration ttl) {
+        WebClient webClient = webClientBuilder
+                .baseUrl(docserviceBaseUrl)
+                .defaultHeader("X-Internal-Secret", internalSecret)
+                .build();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(ttl)
+                .buildAsync((docId, executor) -> webClient.get()
+                        .uri("/docs/internal/{id}/acl", docId)
+                        .exchangeToMono(response -> {
+                            if (response.statusCode().is2xxSuccessful()) {
+                                return response.bodyToMono(AclResponse.class);
+                            }
+                            if (response.statusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                                return response.releaseBody().then(Mono.<AclResponse>empty());
+                            }
+                            return response.<AclResponse>createError();
+                        })
+                        .map(DocumentAclClient::toAcl)
+                        // a null value completes the load without caching it
+                        .toFuture());
+    }
+
+    /**
+     * Emits the document's ACL, or completes empty if the document does not exist.
+     */
+    public Mono<DocumentAcl> find(String docId) {
+        return Mono.fromFuture(() -> cache.get(docId));
+    }
+
+    private static DocumentAcl toAcl(AclResponse response) {
+        List<String> collaborators = response.collaborators() == null ? List.of() : response.collaborators();
+        return new DocumentAcl(response.ownerUsername(), Set.copyOf(collaborators));
+    }
+}
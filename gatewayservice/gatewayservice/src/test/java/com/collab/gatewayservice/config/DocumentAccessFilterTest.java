@@ -0,0 +1,99 @@
+package com.collab.gatewayservice.config;
+
+import com.collab.gatewayservice.security.DocumentAclClient;
+import com.collab.gatewayservice.security.DocumentAclClient.DocumentAcl;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DocumentAccessFilterTest {
+
+    private final String docId = UUID.randomUUID().toString();
+
+    private MockServerWebExchange exchange(String user) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/docs/" + docId + "/versions");
+        if (user != null) {
+            request.header("X-User", user);
+        }
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        ServerWebExchangeUtils.putUriTemplateVariables(exchange, Map.of("docId", docId));
+        return exchange;
+    }
+
+    private static GatewayFilter filter(DocumentAclClient aclClient) {
+        return new DocumentAccessFilter(aclClient).apply(new DocumentAccessFilter.Config());
+    }
+
+    @Test
+    void collaborator_isRoutedDownstream() {
+        DocumentAclClient aclClient = mock(DocumentAclClient.class);
+        when(aclClient.find(docId)).thenReturn(Mono.just(new DocumentAcl("owner", Set.of("alice"))));
+
+        AtomicBoolean routed = new AtomicBoolean();
+        GatewayFilterChain chain = ex -> {
+            routed.set(true);
+            return Mono.empty();
+        };
+
+        filter(aclClient).filter(exchange("alice"), chain).block();
+
+        assertTrue(routed.get());
+    }
+
+    @Test
+    void stranger_returns403() {
+        DocumentAclClient aclClient = mock(DocumentAclClient.class);
+        when(aclClient.find(docId)).thenReturn(Mono.just(new DocumentAcl("owner", Set.of("alice"))));
+
+        MockServerWebExchange exchange = exchange("mallory");
+        filter(aclClient).filter(exchange, ex -> fail("Chain should not be called for a stranger")).block();
+
+        assertEquals(HttpStatus.FORBIDDEN, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void unknownDocument_returns404() {
+        DocumentAclClient aclClient = mock(DocumentAclClient.class);
+        when(aclClient.find(docId)).thenReturn(Mono.empty());
+
+        MockServerWebExchange exchange = exchange("owner");
+        filter(aclClient).filter(exchange, ex -> fail("Chain should not be called")).block();
+
+        assertEquals(HttpStatus.NOT_FOUND, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void docserviceDown_returns503() {
+        DocumentAclClient aclClient = mock(DocumentAclClient.class);
+        when(aclClient.find(docId)).thenReturn(Mono.error(new RuntimeException("connection refused")));
+
+        MockServerWebExchange exchange = exchange("owner");
+        filter(aclClient).filter(exchange, ex -> fail("Chain should not be called")).block();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void missingUser_returns401WithoutLookup() {
+        DocumentAclClient aclClient = mock(DocumentAclClient.class);
+
+        MockServerWebExchange exchange = exchange(null);
+        filter(aclClient).filter(exchange, ex -> fail("Chain should not be called")).block();
+
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+        verify(aclClient, never()).find(anyString());
+    }
+}
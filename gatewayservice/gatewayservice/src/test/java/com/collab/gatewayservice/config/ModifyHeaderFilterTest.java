@@ -124,4 +124,45 @@ class ModifyHeaderFilterTest {
 
         filter.filter(exchange, chain).block();
     }
+
+    @Test
+    void requestWithoutTraceparent_getsNewTraceContext() {
+        JwtUtils jwtUtils = mock(JwtUtils.class);
+        when(jwtUtils.validateAndGetUsername("GOODTOKEN")).thenReturn("zohreh");
+
+        GatewayFilter filter = new ModifyHeaderFilter(jwtUtils).apply(new ModifyHeaderFilter.Config());
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.get("/docs/123")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer GOODTOKEN")
+        );
+
+        GatewayFilterChain chain = ex -> {
+            String traceparent = ex.getRequest().getHeaders().getFirst("traceparent");
+            assertNotNull(traceparent);
+            assertTrue(traceparent.matches("00-[0-9a-f]{32}-[0-9a-f]{16}-01"));
+            assertEquals(traceparent.substring(3, 35), ex.getResponse().getHeaders().getFirst("X-Trace-Id"));
+            return Mono.empty();
+        };
+
+        filter.filter(exchange, chain).block();
+    }
+
+    @Test
+    void validIncomingTraceparent_isPropagatedUnchanged() {
+        String incoming = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+        GatewayFilter filter = new ModifyHeaderFilter(mock(JwtUtils.class)).apply(new ModifyHeaderFilter.Config());
+
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+                MockServerHttpRequest.post("/users/login")
+                        .header("traceparent", incoming)
+        );
+
+        GatewayFilterChain chain = ex -> {
+            assertEquals(incoming, ex.getRequest().getHeaders().getFirst("traceparent"));
+            return Mono.empty();
+        };
+
+        filter.filter(exchange, chain).block();
+    }
 }
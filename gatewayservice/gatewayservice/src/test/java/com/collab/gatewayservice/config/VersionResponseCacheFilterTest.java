@@ -0,0 +1,120 @@
+package com.collab.gatewayservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionResponseCacheFilterTest {
+
+    private static final String PATH = "/docs/3f1c/versions/10";
+
+    private static VersionResponseCacheFilter factory(DataSize maxEntrySize) {
+        return new VersionResponseCacheFilter(true, DataSize.ofMegabytes(1), maxEntrySize, Duration.ofMinutes(1));
+    }
+
+    private static MockServerWebExchange exchange(String user, String ifNoneMatch) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get(PATH).header("X-User", user);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return MockServerWebExchange.from(request);
+    }
+
+    // stands in for versionservice
+    private static GatewayFilterChain downstream(AtomicInteger calls, String cacheControl, String body) {
+        return ex -> {
+            calls.incrementAndGet();
+            ServerHttpResponse response = ex.getResponse();
+            response.setStatusCode(HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            response.getHeaders().setETag("\"v10\"");
+            response.getHeaders().setCacheControl(cacheControl);
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(body.getBytes(StandardCharsets.UTF_8))));
+        };
+    }
+
+    @Test
+    void immutableResponse_isServedFromMemoryOnSecondRead() {
+        GatewayFilter filter = factory(DataSize.ofKilobytes(64)).apply(new VersionResponseCacheFilter.Config());
+        AtomicInteger calls = new AtomicInteger();
+        GatewayFilterChain chain = downstream(calls, "max-age=31536000, private, immutable", "{\"id\":10}");
+
+        filter.filter(exchange("alice", null), chain).block();
+
+        MockServerWebExchange second = exchange("alice", null);
+        filter.filter(second, chain).block();
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.OK, second.getResponse().getStatusCode());
+        assertEquals("\"v10\"", second.getResponse().getHeaders().getETag());
+        assertEquals("{\"id\":10}", second.getResponse().getBodyAsString().block());
+    }
+
+    @Test
+    void cachedResponse_matchingIfNoneMatch_returns304() {
+        GatewayFilter filter = factory(DataSize.ofKilobytes(64)).apply(new VersionResponseCacheFilter.Config());
+        AtomicInteger calls = new AtomicInteger();
+        GatewayFilterChain chain = downstream(calls, "max-age=31536000, private, immutable", "{\"id\":10}");
+
+        filter.filter(exchange("alice", null), chain).block();
+
+        MockServerWebExchange revalidation = exchange("alice", "\"v10\"");
+        filter.filter(revalidation, chain).block();
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidation.getResponse().getStatusCode());
+    }
+
+    @Test
+    void entriesAreKeyedPerUser() {
+        GatewayFilter filter = factory(DataSize.ofKilobytes(64)).apply(new VersionResponseCacheFilter.Config());
+        AtomicInteger calls = new AtomicInteger();
+        GatewayFilterChain chain = downstream(calls, "max-age=31536000, private, immutable", "{\"id\":10}");
+
+        filter.filter(exchange("alice", null), chain).block();
+        filter.filter(exchange("bob", null), chain).block();
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void mutableResponse_isNotCached() {
+        VersionResponseCacheFilter factory = factory(DataSize.ofKilobytes(64));
+        GatewayFilter filter = factory.apply(new VersionResponseCacheFilter.Config());
+        AtomicInteger calls = new AtomicInteger();
+        GatewayFilterChain chain = downstream(calls, "no-cache", "[]");
+
+        filter.filter(exchange("alice", null), chain).block();
+        filter.filter(exchange("alice", null), chain).block();
+
+        assertEquals(2, calls.get());
+        assertEquals(0, factory.size());
+    }
+
+    @Test
+    void bodyLargerThanMaxEntrySize_isPassedThroughButNotCached() {
+        VersionResponseCacheFilter factory = factory(DataSize.ofBytes(4));
+        GatewayFilter filter = factory.apply(new VersionResponseCacheFilter.Config());
+        AtomicInteger calls = new AtomicInteger();
+        GatewayFilterChain chain = downstream(calls, "max-age=31536000, private, immutable", "{\"id\":10}");
+
+        MockServerWebExchange first = exchange("alice", null);
+        filter.filter(first, chain).block();
+
+        assertEquals("{\"id\":10}", first.getResponse().getBodyAsString().block());
+        assertEquals(0, factory.size());
+    }
+}
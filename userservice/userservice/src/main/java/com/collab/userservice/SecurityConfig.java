@@ -1,14 +1,19 @@
 package com.collab.userservice;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 
 @Configuration
 public class SecurityConfig {
 
+    @Value("${internal.secret}")
+    private String internalSecret;
+
     @Bean
     SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         return http
@@ -18,7 +23,14 @@ public class SecurityConfig {
                         .requestMatchers("/users/me", "/users/me/password").permitAll()
 
                         // ADD THIS LINE:
-                        .requestMatchers("/users/exists/**").permitAll()
+                        .requestMatchers("/users/exists", "/users/exists/**").permitAll()
+
+                        // actuator is only reachable on the service port, the gateway does not route it
+                        .requestMatchers("/actuator/health", "/actuator/info").permitAll()
+                        // metrics (user and cache counts) only for internal callers, like docservice's internal endpoints
+                        .requestMatchers("/actuator/metrics", "/actuator/metrics/**").access((authentication, context) ->
+                                new AuthorizationDecision(internalSecret.equals(
+                                        context.getRequest().getHeader("X-Internal-Secret"))))
 
                         .anyRequest().authenticated()
                 )
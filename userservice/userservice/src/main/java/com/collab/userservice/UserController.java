@@ -15,11 +15,14 @@ import org.springframework.web.client.RestTemplate;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
 
+    private static final int MAX_EXISTS_BATCH = 500;
+
     private final UserService users;
     private final JwtUtils jwtUtils; // 1. Added JwtUtils field
 
@@ -88,6 +91,14 @@ public class UserController {
         return users.exists(username);
     }
 
+    @PostMapping("/exists")
+    public Map<String, Boolean> usersExist(@RequestBody List<String> usernames) {
+        if (usernames.size() > MAX_EXISTS_BATCH) {
+            throw new IllegalArgumentException("at most " + MAX_EXISTS_BATCH + " usernames per request");
+        }
+        return users.existsAll(usernames);
+    }
+
     @DeleteMapping("/me")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteMe(@RequestHeader("X-User") String username) {
@@ -0,0 +1,24 @@
+package com.collab.userservice.config;
+
+import com.collab.userservice.service.UserCache;
+import com.collab.userservice.service.UsernameExistsCache;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Publishes hit/miss/eviction counts of the in-process caches
+ * as cache.* meters (see /actuator/metrics/cache.gets?tag=cache:users).
+ */
+@Configuration
+public class CacheMetricsConfig {
+
+    @Bean
+    public MeterBinder userCacheMetrics(UserCache userCache, UsernameExistsCache existsCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, userCache.nativeCache(), "users");
+            CaffeineCacheMetrics.monitor(registry, existsCache.nativeCache(), "usernameExists");
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.collab.userservice.service;
+
+import com.collab.userservice.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of User rows keyed by username, for profile reads only.
+ * Writers (UserService) put the saved entity back after every successful save, so this instance
+ * reads its own writes; other instances may serve an older profile for up to user-ttl. That is why
+ * login and authentication never use it and read the password hash from the database.
+ * Cached instances are shared between threads and must not be mutated;
+ * load a fresh copy from the repository before changing a user.
+ */
+@Component
+public class UserCache {
+
+    private final Cache<String, User> cache;
+
+    public UserCache(@Value("${users.cache.user-max-size:10000}") long maxSize,
+                     @Value("${users.cache.user-ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached user or calls the loader. A null from the loader (unknown user)
+     * is returned as-is and not cached.
+     */
+    public User get(String username, Function<String, User> loader) {
+        return cache.get(username, loader);
+    }
+
+    public void put(User user) {
+        cache.put(user.getUsername(), user);
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    public Cache<String, User> nativeCache() {
+        return cache;
+    }
+}
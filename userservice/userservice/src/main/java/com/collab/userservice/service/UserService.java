@@ -6,15 +6,22 @@ import com.collab.userservice.repo.UserRepository;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.*;
+
 @Service
 public class UserService {
 
     private final UserRepository repo;
     private final PasswordEncoder encoder;
+    private final UsernameExistsCache existsCache;
+    private final UserCache userCache;
 
-    public UserService(UserRepository repo, PasswordEncoder encoder) {
+    public UserService(UserRepository repo, PasswordEncoder encoder,
+                       UsernameExistsCache existsCache, UserCache userCache) {
         this.repo = repo;
         this.encoder = encoder;
+        this.existsCache = existsCache;
+        this.userCache = userCache;
     }
 
     public User register(RegisterRequest req) {
@@ -29,12 +36,17 @@ public class UserService {
         u.setUsername(req.username);
         u.setEmail(req.email);
         u.setPasswordHash(encoder.encode(req.password));
-        return repo.save(u);
+        User saved = repo.save(u);
+        existsCache.invalidate(saved.getUsername());
+        return saved;
     }
 
+    // always against the database: another instance may have changed the password or deleted the user
     public User login(String username, String password) {
-        User u = repo.findByUsername(username)
-                .orElseThrow(() -> new UnauthorizedException("invalid credentials"));
+        User u = repo.findByUsername(username).orElse(null);
+        if (u == null) {
+            throw new UnauthorizedException("invalid credentials");
+        }
 
         if (!encoder.matches(password, u.getPasswordHash())) {
             throw new UnauthorizedException("invalid credentials");
@@ -42,13 +54,19 @@ public class UserService {
         return u;
     }
 
+    /**
+     * Read-only lookup, served from the user cache. Do not modify the returned instance.
+     */
     public com.collab.userservice.model.User getByUsername(String username) {
-        return repo.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("user not found"));
+        User u = findCached(username);
+        if (u == null) {
+            throw new IllegalArgumentException("user not found");
+        }
+        return u;
     }
 
     public com.collab.userservice.model.User updateEmail(String username, String newEmail) {
-        var u = getByUsername(username);
+        var u = loadForUpdate(username);
 
         repo.findByEmail(newEmail).ifPresent(existing -> {
             if (!existing.getId().equals(u.getId())) {
@@ -57,11 +75,13 @@ public class UserService {
         });
 
         u.setEmail(newEmail);
-        return repo.save(u);
+        User saved = repo.save(u);
+        userCache.put(saved);
+        return saved;
     }
 
     public void changePassword(String username, String currentPassword, String newPassword) {
-        var u = getByUsername(username);
+        var u = loadForUpdate(username);
 
         if (!encoder.matches(currentPassword, u.getPasswordHash())) {
             throw new UnauthorizedException("current password is incorrect");
@@ -69,19 +89,44 @@ public class UserService {
 
         u.setPasswordHash(encoder.encode(newPassword));
         repo.save(u);
+        userCache.put(u);
     }
 
     public boolean exists(String username) {
         // Use 'repo' (the instance), not 'UserRepository' (the class)
-        return repo.existsByUsername(username);
+        return existsCache.get(username, repo::existsByUsername);
+    }
+
+    /**
+     * Batch version of exists(): one query for all usernames that are not cached yet.
+     */
+    public Map<String, Boolean> existsAll(Collection<String> usernames) {
+        return existsCache.getAll(usernames, missing -> {
+            Set<String> found = new HashSet<>(repo.findExistingUsernames(missing));
+
+            Map<String, Boolean> loaded = new HashMap<>();
+            for (String username : missing) {
+                loaded.put(username, found.contains(username));
+            }
+            return loaded;
+        });
     }
 
     public void deleteByUsername(String username) {
         User u = repo.findByUsername(username)
                 .orElseThrow(() -> new IllegalArgumentException("user not found"));
         repo.delete(u);
+        userCache.invalidate(username);
+        existsCache.invalidate(username);
     }
 
+    private User findCached(String username) {
+        return userCache.get(username, name -> repo.findByUsername(name).orElse(null));
+    }
 
-
+    // Writers work on their own copy so a failed save never leaves a half-updated user in the cache.
+    private User loadForUpdate(String username) {
+        return repo.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("user not found"));
+    }
 }
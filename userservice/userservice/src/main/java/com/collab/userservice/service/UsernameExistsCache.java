@@ -0,0 +1,62 @@
+package com.collab.userservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Short-lived cache of "does this username exist" answers.
+ * Both positive and negative answers are cached; entries are invalidated
+ * by UserService on register and delete, so the TTL only bounds staleness
+ * for changes made outside this service.
+ */
+@Component
+public class UsernameExistsCache {
+
+    private final Cache<String, Boolean> cache;
+
+    public UsernameExistsCache(@Value("${users.cache.exists-ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    public boolean get(String username, Predicate<String> loader) {
+        return cache.get(username, loader::test);
+    }
+
+    /**
+     * Resolves all usernames, calling the loader once for the ones that are not cached.
+     * The loader must return an answer for every username it is given.
+     */
+    public Map<String, Boolean> getAll(Collection<String> usernames,
+                                       Function<Set<String>, Map<String, Boolean>> loader) {
+        Map<String, Boolean> result = new LinkedHashMap<>(cache.getAllPresent(usernames));
+
+        Set<String> missing = new LinkedHashSet<>(usernames);
+        missing.removeAll(result.keySet());
+
+        if (!missing.isEmpty()) {
+            Map<String, Boolean> loaded = loader.apply(missing);
+            cache.putAll(loaded);
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    public Cache<String, Boolean> nativeCache() {
+        return cache;
+    }
+}
@@ -17,6 +17,9 @@ import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -183,6 +186,18 @@ class UserControllerTest {
                 .andExpect(content().string("true"));
     }
 
+    @Test
+    void existsBatch_returnsMapOfUsernames() throws Exception {
+        when(users.existsAll(List.of("a", "b"))).thenReturn(Map.of("a", true, "b", false));
+
+        mvc.perform(post("/users/exists")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"a\",\"b\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.a").value(true))
+                .andExpect(jsonPath("$.b").value(false));
+    }
+
     // ---------- ME ----------
 
     @Test
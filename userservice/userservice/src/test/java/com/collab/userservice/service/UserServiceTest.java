@@ -7,6 +7,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,7 +25,9 @@ class UserServiceTest {
     void setup() {
         repo = mock(UserRepository.class);
         encoder = mock(PasswordEncoder.class);
-        service = new UserService(repo, encoder);
+        service = new UserService(repo, encoder,
+                new UsernameExistsCache(Duration.ofSeconds(30)),
+                new UserCache(100, Duration.ofMinutes(10)));
     }
 
     @Test
@@ -152,6 +157,44 @@ class UserServiceTest {
         verify(repo).existsByUsername("ali");
     }
 
+    @Test
+    void exists_secondCallIsServedFromCache() {
+        when(repo.existsByUsername("ali")).thenReturn(true);
+
+        assertTrue(service.exists("ali"));
+        assertTrue(service.exists("ali"));
+
+        verify(repo, times(1)).existsByUsername("ali");
+    }
+
+    @Test
+    void existsAll_queriesOnlyUncachedUsernamesInOneCall() {
+        when(repo.existsByUsername("ali")).thenReturn(true);
+        service.exists("ali");
+
+        when(repo.findExistingUsernames(anyCollection())).thenReturn(List.of("bob"));
+
+        Map<String, Boolean> out = service.existsAll(List.of("ali", "bob", "carol"));
+
+        assertEquals(Map.of("ali", true, "bob", true, "carol", false), out);
+        verify(repo).findExistingUsernames(argThat(c -> c.size() == 2 && !c.contains("ali")));
+    }
+
+    @Test
+    void deleteByUsername_invalidatesExistsCache() {
+        User u = new User();
+        u.setUsername("ali");
+
+        when(repo.existsByUsername("ali")).thenReturn(true, false);
+        when(repo.findByUsername("ali")).thenReturn(Optional.of(u));
+
+        assertTrue(service.exists("ali"));
+        service.deleteByUsername("ali");
+        assertFalse(service.exists("ali"));
+
+        verify(repo).delete(u);
+    }
+
     // Add these to your existing UserServiceTest class:
 
     @Test
@@ -170,6 +213,72 @@ class UserServiceTest {
         assertThrows(RuntimeException.class, () -> service.getByUsername("missing"));
     }
 
+    @Test
+    void getByUsername_secondCallIsServedFromCache() {
+        User u = new User();
+        u.setUsername("ali");
+        when(repo.findByUsername("ali")).thenReturn(Optional.of(u));
+
+        service.getByUsername("ali");
+        service.getByUsername("ali");
+
+        verify(repo, times(1)).findByUsername("ali");
+    }
+
+    @Test
+    void updateEmail_writesThroughToCache() {
+        User cached = new User();
+        cached.setUsername("ali");
+        cached.setEmail("old@x.com");
+
+        User fresh = new User();
+        fresh.setUsername("ali");
+        fresh.setEmail("old@x.com");
+
+        when(repo.findByUsername("ali")).thenReturn(Optional.of(cached), Optional.of(fresh));
+        when(repo.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.getByUsername("ali"); // warms the cache
+        service.updateEmail("ali", "new@x.com");
+
+        assertEquals("old@x.com", cached.getEmail(), "cached instance must not be mutated");
+        assertEquals("new@x.com", service.getByUsername("ali").getEmail());
+        verify(repo, times(2)).findByUsername("ali");
+    }
+
+    @Test
+    void login_checksThePasswordInTheDatabase_notACachedProfile() {
+        User cached = new User();
+        cached.setUsername("u");
+        cached.setPasswordHash("OLD");
+        // changed on another instance after this one cached the profile
+        User changed = new User();
+        changed.setUsername("u");
+        changed.setPasswordHash("NEW_HASH");
+
+        when(repo.findByUsername("u")).thenReturn(Optional.of(cached), Optional.of(changed), Optional.empty());
+        when(encoder.matches("new", "NEW_HASH")).thenReturn(true);
+
+        service.getByUsername("u"); // warms the cache
+        assertEquals("u", service.login("u", "new").getUsername());
+        verify(encoder, never()).matches("new", "OLD");
+
+        // deleted on another instance: the cached profile does not let it in
+        assertThrows(UnauthorizedException.class, () -> service.login("u", "new"));
+    }
+
+    @Test
+    void deleteByUsername_evictsUserCache() {
+        User u = new User();
+        u.setUsername("ali");
+        when(repo.findByUsername("ali")).thenReturn(Optional.of(u), Optional.of(u), Optional.empty());
+
+        service.getByUsername("ali");
+        service.deleteByUsername("ali");
+
+        assertThrows(IllegalArgumentException.class, () -> service.getByUsername("ali"));
+    }
+
     @Test
     void updateEmail_success_savesNewUser() {
         User u = new User();
@@ -0,0 +1,84 @@
+package com.collab.versionservice.archive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Segments as files in one local directory. A segment is written to a temporary file, forced to disk
+ * and renamed into place, so a crash never leaves a partial segment under its real name.
+ *
+ * Reads map the segment file read-only once and slice the requested range out of the mapping: the
+ * page cache holds whatever is hot, nothing is copied onto the heap until it is inflated, and a segment
+ * that is never read costs nothing. Segments never change, so mappings are kept for the process lifetime.
+ */
+@Component
+public class FileSegmentStore implements SegmentStore {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private final Path directory;
+    private final Map<String, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+
+    public FileSegmentStore(@Value("${versionservice.archive.directory:version-archive}") Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void put(String name, byte[] bytes) throws IOException {
+        Path target = pathOf(name);
+        if (Files.exists(target)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        Files.createDirectories(directory);
+        Path tmp = directory.resolve(name + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public ByteBuffer read(String name, long offset, int length) throws IOException {
+        MappedByteBuffer segment;
+        try {
+            segment = mapped.computeIfAbsent(name, this::map);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (offset < 0 || length < 0 || offset + length > segment.capacity()) {
+            throw new IOException("Range " + offset + "+" + length + " is outside segment " + name);
+        }
+        return segment.slice((int) offset, length).asReadOnlyBuffer();
+    }
+
+    private MappedByteBuffer map(String name) {
+        try (FileChannel channel = FileChannel.open(pathOf(name), StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path pathOf(String name) throws IOException {
+        if (!NAME.matcher(name).matches()) {
+            throw new IOException("Invalid segment name: " + name);
+        }
+        return directory.resolve(name);
+    }
+}
@@ -0,0 +1,18 @@
+package com.collab.versionservice.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Storage for archive segments: named blobs that are written once, whole, and afterwards only read
+ * in ranges. That is all an object store offers too (put object, ranged get), so a bucket can stand in
+ * for FileSegmentStore without VersionArchiveService noticing.
+ */
+public interface SegmentStore {
+
+    /** Stores a finished segment. A segment that already exists under name is never overwritten. */
+    void put(String name, byte[] bytes) throws IOException;
+
+    /** length bytes of segment name starting at offset, as a read-only buffer. */
+    ByteBuffer read(String name, long offset, int length) throws IOException;
+}
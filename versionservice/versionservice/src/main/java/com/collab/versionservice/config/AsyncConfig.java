@@ -0,0 +1,13 @@
+package com.collab.versionservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * @Async work (ContributionService.record) runs on Boot's applicationTaskExecutor: a thread pool by
+ * default, a virtual thread per task when spring.threads.virtual.enabled is on (Java 21).
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+}
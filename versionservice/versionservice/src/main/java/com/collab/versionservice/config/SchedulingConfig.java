@@ -0,0 +1,12 @@
+package com.collab.versionservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background jobs (VersionRetentionService, VersionArchiveService) run on Boot's taskScheduler.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,9 +1,21 @@
 package com.collab.versionservice.controller;
 
+import com.collab.versionservice.diff.Granularity;
+import com.collab.versionservice.diff.VersionDiff;
+import com.collab.versionservice.model.Contribution;
 import com.collab.versionservice.model.Version;
 import com.collab.versionservice.repo.VersionRepository;
+import com.collab.versionservice.service.ContributionService;
+import com.collab.versionservice.service.VersionArchiveService;
+import com.collab.versionservice.service.VersionDiffService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -12,25 +24,133 @@ import java.util.UUID;
 @RequestMapping("/api/versions")
 public class VersionController {
 
+    // A version is never modified after it is written, so its id is a strong validator for its body.
+    // private: the body is only readable by the document's users, shared caches must not keep it.
+    static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
     @Autowired
     private VersionRepository repository;
 
+    @Autowired
+    private VersionArchiveService archive;
+
+    @Autowired
+    private VersionDiffService diffs;
+
+    @Autowired
+    private ContributionService contributions;
+
     @PostMapping
     public Version save(@RequestBody Version v) {
         if (v.getContent() == null) v.setContent(""); // Prevent null content
         v.setCreatedAt(LocalDateTime.now());
-        return repository.save(v);
+        Version saved = repository.save(v);
+        // @Async: docservice waits for this response, the diff behind the totals need not hold it up
+        contributions.record(saved);
+        return saved;
     }
     // Operation 2: Get History
     @GetMapping("/doc/{docId}")
     public List<Version> history(@PathVariable UUID docId) {
-        return repository.findByDocumentIdOrderByCreatedAtDesc(docId);
+        return repository.findByDocumentIdOrderByCreatedAtDesc(docId).stream().map(this::withContent).toList();
+    }
+
+    // Operation 2b: Get one version of a given document (404 if it belongs to another document)
+    @GetMapping("/doc/{docId}/{id}")
+    public ResponseEntity<Version> getOneOfDocument(@PathVariable UUID docId, @PathVariable Long id,
+                                                    WebRequest request) {
+        // a version is deleted with its document's history: check it is still there (by id, not its content)
+        // before answering 304, or a client holding the ETag would never see the 404
+        if (repository.existsByIdAndDocumentId(id, docId) && request.checkNotModified(etagOf(id))) {
+            return null;
+        }
+        Version v = repository.findByIdAndDocumentId(id, docId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Version not found"));
+        return immutable(withContent(v));
     }
 
     // Operation 3: Get specific version (Revert)
     @GetMapping("/{id}")
-    public Version getOne(@PathVariable Long id) {
-        return repository.findById(id).orElseThrow();
+    public ResponseEntity<Version> getOne(@PathVariable Long id, WebRequest request) {
+        if (repository.existsById(id) && request.checkNotModified(etagOf(id))) {
+            return null;
+        }
+        Version v = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Version not found"));
+        return immutable(withContent(v));
+    }
+
+    // Operation 5: What changed between two versions, so clients don't fetch and diff both bodies
+    @GetMapping("/{from}/diff/{to}")
+    public ResponseEntity<VersionDiff> diff(@PathVariable Long from, @PathVariable Long to,
+                                            @RequestParam(defaultValue = "line") String granularity,
+                                            WebRequest request) {
+        Granularity g = granularityOf(granularity);
+        if (repository.existsById(from) && repository.existsById(to)
+                && request.checkNotModified(diffEtagOf(from, to, g))) {
+            return null;
+        }
+        VersionDiff d = diffs.diff(from, to, g)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Version not found"));
+        return immutable(diffEtagOf(from, to, g), d);
+    }
+
+    // Operation 5b: Same, scoped to a document (404 if either version belongs to another document)
+    @GetMapping("/doc/{docId}/{from}/diff/{to}")
+    public ResponseEntity<VersionDiff> diffOfDocument(@PathVariable UUID docId, @PathVariable Long from,
+                                                      @PathVariable Long to,
+                                                      @RequestParam(defaultValue = "line") String granularity,
+                                                      WebRequest request) {
+        Granularity g = granularityOf(granularity);
+        if (repository.existsByIdAndDocumentId(from, docId) && repository.existsByIdAndDocumentId(to, docId)
+                && request.checkNotModified(diffEtagOf(from, to, g))) {
+            return null;
+        }
+        VersionDiff d = diffs.diff(from, to, g)
+                .filter(found -> found.documentId().equals(docId))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Version not found"));
+        return immutable(diffEtagOf(from, to, g), d);
+    }
+
+    // Operation 6: Who changed how much, per document and per user (totals kept as versions are saved)
+    @GetMapping("/doc/{docId}/contributions")
+    public List<Contribution> contributionsToDocument(@PathVariable UUID docId) {
+        return contributions.ofDocument(docId);
+    }
+
+    @GetMapping("/user/{username}/contributions")
+    public List<Contribution> contributionsOf(@PathVariable String username) {
+        return contributions.ofAuthor(username);
+    }
+
+    private static Granularity granularityOf(String value) {
+        return Granularity.parse(value)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "granularity must be line or word"));
+    }
+
+    // archived versions keep their content in a cold-tier segment
+    private Version withContent(Version v) {
+        return v.isArchived() ? archive.restore(v) : v;
+    }
+
+    static String etagOf(Long versionId) {
+        return "\"v" + versionId + "\"";
+    }
+
+    // two versions never change, so neither does the diff between them
+    static String diffEtagOf(Long from, Long to, Granularity granularity) {
+        return "\"d" + from + "-" + to + "-" + granularity.value() + "\"";
+    }
+
+    private static ResponseEntity<Version> immutable(Version v) {
+        return immutable(etagOf(v.getId()), v);
+    }
+
+    private static <T> ResponseEntity<T> immutable(String etag, T body) {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(IMMUTABLE)
+                .body(body);
     }
 
     // Operation 4: Cleanup history when a document is deleted
@@ -38,6 +158,8 @@ public class VersionController {
     @jakarta.transaction.Transactional
     public void deleteHistory(@PathVariable UUID docId) {
         repository.deleteByDocumentId(docId);
+        diffs.evictDocument(docId);
+        contributions.forgetDocument(docId);
     }
 
 
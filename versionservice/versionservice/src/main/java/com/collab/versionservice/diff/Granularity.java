@@ -0,0 +1,22 @@
+package com.collab.versionservice.diff;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/** What a diff treats as one unit: whole lines, or words with the whitespace and punctuation between them. */
+public enum Granularity {
+    LINE,
+    WORD;
+
+    public static Optional<Granularity> parse(String value) {
+        try {
+            return Optional.of(valueOf(value.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public String value() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,272 @@
+package com.collab.versionservice.diff;
+
+import com.collab.versionservice.diff.VersionDiff.Edit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Myers' O(ND) difference algorithm in its linear-space form: each step finds the middle snake of
+ * the shortest edit script by running the search from both ends at once, then recurses on the two
+ * halves, so memory stays O(N + M) however different the texts are.
+ *
+ * Texts are cut into tokens (lines or words) and each distinct token gets an int id first, so the
+ * search compares ints. Common prefixes and suffixes are stripped before every search, which makes
+ * the usual case, a few edits in a long document, close to a linear scan. Myers' time grows with
+ * N * D, so a search still running at the deadline gives up on its range and reports it as deleted
+ * and reinserted: the patch is then larger than minimal but still correct.
+ */
+public final class TextDiff {
+
+    // word tokens: character classes
+    private static final int WORD = 0;
+    private static final int SPACE = 1;
+    private static final int PUNCTUATION = 2;
+
+    private final int[] a;
+    private final int[] b;
+    private final String[] aTokens;
+    private final String[] bTokens;
+    private final long deadline;
+    private final Patch patch = new Patch();
+
+    private TextDiff(List<String> aTokens, List<String> bTokens, long deadline) {
+        Map<String, Integer> ids = new HashMap<>();
+        this.aTokens = aTokens.toArray(String[]::new);
+        this.bTokens = bTokens.toArray(String[]::new);
+        this.a = idsOf(this.aTokens, ids);
+        this.b = idsOf(this.bTokens, ids);
+        this.deadline = deadline;
+    }
+
+    /** Edits turning from into to; the search stops refining once deadline (System.nanoTime()) passes. */
+    public static List<Edit> diff(String from, String to, Granularity granularity, long deadline) {
+        TextDiff diff = new TextDiff(tokens(from, granularity), tokens(to, granularity), deadline);
+        diff.compare(0, diff.a.length, 0, diff.b.length);
+        return diff.patch.finish();
+    }
+
+    static List<String> tokens(String text, Granularity granularity) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (granularity == Granularity.LINE) {
+                if (text.charAt(i) == '\n') {
+                    tokens.add(text.substring(start, i + 1));
+                    start = i + 1;
+                }
+            } else if (i + 1 == text.length() || classOf(text.charAt(i + 1)) != classOf(text.charAt(i))
+                    || classOf(text.charAt(i)) == PUNCTUATION) {
+                // runs of letters/digits and runs of whitespace stay together, punctuation stands alone
+                tokens.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            tokens.add(text.substring(start));
+        }
+        return tokens;
+    }
+
+    private static int classOf(char c) {
+        if (Character.isLetterOrDigit(c) || Character.isSurrogate(c) || c == '_') {
+            return WORD;
+        }
+        return Character.isWhitespace(c) ? SPACE : PUNCTUATION;
+    }
+
+    private static int[] idsOf(String[] tokens, Map<String, Integer> ids) {
+        int[] out = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            out[i] = ids.computeIfAbsent(tokens[i], t -> ids.size());
+        }
+        return out;
+    }
+
+    // a[aLo, aHi) against b[bLo, bHi); emits the edits for the range in order
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        int prefix = 0;
+        while (aLo + prefix < aHi && bLo + prefix < bHi && a[aLo + prefix] == b[bLo + prefix]) {
+            prefix++;
+        }
+        keep(aLo, aLo + prefix);
+        aLo += prefix;
+        bLo += prefix;
+
+        int suffix = 0;
+        while (aLo < aHi - suffix && bLo < bHi - suffix && a[aHi - suffix - 1] == b[bHi - suffix - 1]) {
+            suffix++;
+        }
+        aHi -= suffix;
+        bHi -= suffix;
+
+        if (aLo == aHi) {
+            insert(bLo, bHi);
+        } else if (bLo == bHi) {
+            delete(aLo, aHi);
+        } else {
+            int[] split = middleSnake(aLo, aHi, bLo, bHi);
+            if (split == null || (split[0] == aLo && split[1] == bLo) || (split[0] == aHi && split[1] == bHi)) {
+                delete(aLo, aHi);
+                insert(bLo, bHi);
+            } else {
+                compare(aLo, split[0], bLo, split[1]);
+                compare(split[0], aHi, split[1], bHi);
+            }
+        }
+        keep(aHi, aHi + suffix);
+    }
+
+    /**
+     * Where the forward search from the start and the reverse search from the end of the ranges first
+     * overlap: a point on some shortest edit script, strictly inside both ranges. Null if there is no
+     * common token at all, or the deadline passed.
+     */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        // furthest x reached on each diagonal k = x - y, forward and (in reverse coordinates) backward
+        int[] forward = new int[length];
+        int[] reverse = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(reverse, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+        int delta = n - m;
+        // with an odd delta the forward search is the one that can meet the reverse paths first
+        boolean front = (delta & 1) != 0;
+        // diagonals that ran off the edge of the grid are not extended any further
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            if (System.nanoTime() - deadline > 0) {
+                return null;
+            }
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1 = k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])
+                        ? forward[k1Offset + 1]
+                        : forward[k1Offset - 1] + 1;
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1End += 2;
+                } else if (y1 > m) {
+                    k1Start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && reverse[k2Offset] != -1 && x1 >= n - reverse[k2Offset]) {
+                        return new int[]{aLo + x1, bLo + y1};
+                    }
+                }
+            }
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2 = k2 == -d || (k2 != d && reverse[k2Offset - 1] < reverse[k2Offset + 1])
+                        ? reverse[k2Offset + 1]
+                        : reverse[k2Offset - 1] + 1;
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                reverse[k2Offset] = x2;
+                if (x2 > n) {
+                    k2End += 2;
+                } else if (y2 > m) {
+                    k2Start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return new int[]{aLo + x1, bLo + y1};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void keep(int aFrom, int aTo) {
+        for (int i = aFrom; i < aTo; i++) {
+            patch.keep(aTokens[i].length());
+        }
+    }
+
+    private void delete(int aFrom, int aTo) {
+        for (int i = aFrom; i < aTo; i++) {
+            patch.delete(aTokens[i].length());
+        }
+    }
+
+    private void insert(int bFrom, int bTo) {
+        for (int i = bFrom; i < bTo; i++) {
+            patch.insert(bTokens[i]);
+        }
+    }
+
+    // merges runs, and puts the deletions of a changed stretch before its insertions
+    private static final class Patch {
+        private final List<Edit> edits = new ArrayList<>();
+        private int kept;
+        private int deleted;
+        private final StringBuilder inserted = new StringBuilder();
+
+        void keep(int length) {
+            if (deleted > 0 || !inserted.isEmpty()) {
+                flushChange();
+            }
+            kept += length;
+        }
+
+        void delete(int length) {
+            flushKept();
+            deleted += length;
+        }
+
+        void insert(String text) {
+            flushKept();
+            inserted.append(text);
+        }
+
+        List<Edit> finish() {
+            flushKept();
+            flushChange();
+            return edits;
+        }
+
+        private void flushKept() {
+            if (kept > 0) {
+                edits.add(Edit.keep(kept));
+                kept = 0;
+            }
+        }
+
+        private void flushChange() {
+            if (deleted > 0) {
+                edits.add(Edit.delete(deleted));
+                deleted = 0;
+            }
+            if (!inserted.isEmpty()) {
+                edits.add(Edit.insert(inserted.toString()));
+                inserted.setLength(0);
+            }
+        }
+    }
+}
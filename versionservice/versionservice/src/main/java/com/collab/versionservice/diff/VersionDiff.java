@@ -0,0 +1,36 @@
+package com.collab.versionservice.diff;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The change from version from to version to as a patch over from's content: edits are applied in
+ * order, "=" keeps length characters, "-" drops length characters and "+" inserts text. Lengths
+ * count UTF-16 code units, like String.length() here and in the browser. inserted and deleted are
+ * character totals.
+ */
+public record VersionDiff(UUID documentId, Long from, Long to, String granularity,
+                          long inserted, long deleted, List<Edit> edits) {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Edit(String op, Integer length, String text) {
+
+        public static final String KEEP = "=";
+        public static final String DELETE = "-";
+        public static final String INSERT = "+";
+
+        static Edit keep(int length) {
+            return new Edit(KEEP, length, null);
+        }
+
+        static Edit delete(int length) {
+            return new Edit(DELETE, length, null);
+        }
+
+        static Edit insert(String text) {
+            return new Edit(INSERT, null, text);
+        }
+    }
+}
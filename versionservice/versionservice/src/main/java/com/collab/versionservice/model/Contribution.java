@@ -0,0 +1,89 @@
+package com.collab.versionservice.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// What one author changed in one document, summed over their versions as they are saved (ContributionService)
+@Entity
+@Table(name = "document_contributions",
+        indexes = @Index(name = "idx_document_contributions_author", columnList = "authorUsername"))
+@IdClass(Contribution.Key.class)
+@Data
+@NoArgsConstructor
+public class Contribution implements Persistable<Contribution.Key> {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private UUID documentId;
+        private String authorUsername;
+    }
+
+    @Id
+    private UUID documentId;
+
+    @Id
+    private String authorUsername;
+
+    @Column(nullable = false)
+    private long insertedChars;
+
+    @Column(nullable = false)
+    private long deletedChars;
+
+    @Column(nullable = false)
+    private long versions;
+
+    private LocalDateTime lastContributionAt;
+
+    // ids are assigned, so tell Spring Data a new row is an INSERT: a row another save created first
+    // then fails with a duplicate key instead of being merged over
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+
+    public Contribution(UUID documentId, String authorUsername, long insertedChars, long deletedChars,
+                        long versions, LocalDateTime lastContributionAt) {
+        this.documentId = documentId;
+        this.authorUsername = authorUsername;
+        this.insertedChars = insertedChars;
+        this.deletedChars = deletedChars;
+        this.versions = versions;
+        this.lastContributionAt = lastContributionAt;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    @Override
+    @JsonIgnore
+    public Key getId() {
+        return new Key(documentId, authorUsername);
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return !persisted;
+    }
+}
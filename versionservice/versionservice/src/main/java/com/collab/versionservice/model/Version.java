@@ -1,5 +1,6 @@
 package com.collab.versionservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -11,7 +12,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "document_versions")
+// history reads and the retention scan walk one document's versions in time order
+@Table(name = "document_versions",
+        indexes = @Index(name = "idx_document_versions_doc_created", columnList = "documentId, createdAt"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -37,4 +40,20 @@ public class Version {
     private String content;
 
     private LocalDateTime createdAt;
-}
\ No newline at end of file
+
+    // Where the content lives once VersionArchiveService has moved it to a cold-tier segment; the content
+    // column is then empty. All null while the content is still in the table.
+    @JsonIgnore
+    private String archiveSegment;
+
+    @JsonIgnore
+    private Long archiveOffset;
+
+    @JsonIgnore
+    private Integer archiveLength;
+
+    @JsonIgnore
+    public boolean isArchived() {
+        return archiveSegment != null;
+    }
+}
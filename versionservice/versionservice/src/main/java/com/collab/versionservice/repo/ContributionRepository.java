@@ -0,0 +1,28 @@
+package com.collab.versionservice.repo;
+
+import com.collab.versionservice.model.Contribution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface ContributionRepository extends JpaRepository<Contribution, Contribution.Key> {
+    List<Contribution> findByDocumentIdOrderByInsertedCharsDesc(UUID documentId);
+    List<Contribution> findByAuthorUsernameOrderByLastContributionAtDesc(String authorUsername);
+
+    // Adds one version's counts to the author's row in place; 0 if the author has no row for the document yet.
+    @Modifying
+    @Query("UPDATE Contribution c SET c.insertedChars = c.insertedChars + :inserted, " +
+            "c.deletedChars = c.deletedChars + :deleted, c.versions = c.versions + 1, c.lastContributionAt = :at " +
+            "WHERE c.documentId = :documentId AND c.authorUsername = :author")
+    int addTo(@Param("documentId") UUID documentId, @Param("author") String author,
+              @Param("inserted") long inserted, @Param("deleted") long deleted, @Param("at") LocalDateTime at);
+
+    @Modifying
+    @Query("DELETE FROM Contribution c WHERE c.documentId = :documentId")
+    void deleteByDocumentId(@Param("documentId") UUID documentId);
+}
@@ -1,11 +1,65 @@
 package com.collab.versionservice.repo;
 
 import com.collab.versionservice.model.Version;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface VersionRepository extends JpaRepository<Version, Long> {
     List<Version> findByDocumentIdOrderByCreatedAtDesc(UUID documentId);
+    Optional<Version> findByIdAndDocumentId(Long id, UUID documentId);
+    // primary key lookup only: lets a conditional GET answer 304 without loading the content
+    boolean existsByIdAndDocumentId(Long id, UUID documentId);
     void deleteByDocumentId(java.util.UUID documentId);
-}
\ No newline at end of file
+    // the version a newly saved one follows
+    Optional<Version> findFirstByDocumentIdAndIdLessThanOrderByIdDesc(UUID documentId, Long id);
+
+    // Retention scan: versions older than the cutoff in (documentId, createdAt, id) order, without their content.
+    // Pages continue after the last row of the previous one (keyset), so every page is an index range read.
+    // size is what the version occupies: its content, or its compressed record once archived (content is then '').
+    interface VersionStub {
+        Long getId();
+        UUID getDocumentId();
+        LocalDateTime getCreatedAt();
+        Long getSize();
+    }
+
+    @Query("SELECT v.id AS id, v.documentId AS documentId, v.createdAt AS createdAt, " +
+            "CASE WHEN v.archiveSegment IS NOT NULL THEN v.archiveLength ELSE octet_length(v.content) END AS size " +
+            "FROM Version v " +
+            "WHERE v.createdAt < :cutoff ORDER BY v.documentId, v.createdAt, v.id")
+    List<VersionStub> findRetentionPage(@Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    @Query("SELECT v.id AS id, v.documentId AS documentId, v.createdAt AS createdAt, " +
+            "CASE WHEN v.archiveSegment IS NOT NULL THEN v.archiveLength ELSE octet_length(v.content) END AS size " +
+            "FROM Version v " +
+            "WHERE v.createdAt < :cutoff AND (v.documentId > :afterDoc OR (v.documentId = :afterDoc " +
+            "AND (v.createdAt > :afterAt OR (v.createdAt = :afterAt AND v.id > :afterId)))) " +
+            "ORDER BY v.documentId, v.createdAt, v.id")
+    List<VersionStub> findRetentionPageAfter(@Param("cutoff") LocalDateTime cutoff,
+                                             @Param("afterDoc") UUID afterDoc,
+                                             @Param("afterAt") LocalDateTime afterAt,
+                                             @Param("afterId") Long afterId,
+                                             Limit limit);
+
+    // Archive scan: versions older than the cutoff whose content is still in the table, in id order
+    // (ids grow with createdAt, so the old rows come first); pages continue after the last id.
+    @Query("SELECT v FROM Version v WHERE v.archiveSegment IS NULL AND v.createdAt < :cutoff " +
+            "AND v.id > :afterId ORDER BY v.id")
+    List<Version> findArchiveCandidates(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") Long afterId,
+                                        Limit limit);
+
+    // Points the row at its archived copy and empties the content column; a row archived meanwhile is left alone.
+    @Modifying
+    @Query("UPDATE Version v SET v.content = '', v.archiveSegment = :segment, v.archiveOffset = :offset, " +
+            "v.archiveLength = :length WHERE v.id = :id AND v.archiveSegment IS NULL")
+    int markArchived(@Param("id") Long id, @Param("segment") String segment, @Param("offset") long offset,
+                     @Param("length") int length);
+}
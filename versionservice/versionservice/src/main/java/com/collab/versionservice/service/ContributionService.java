@@ -0,0 +1,106 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.diff.Granularity;
+import com.collab.versionservice.diff.TextDiff;
+import com.collab.versionservice.diff.VersionDiff.Edit;
+import com.collab.versionservice.model.Contribution;
+import com.collab.versionservice.model.Version;
+import com.collab.versionservice.repo.ContributionRepository;
+import com.collab.versionservice.repo.VersionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Per-author totals of what changed in each document (document_contributions).
+ *
+ * When a version is saved it is diffed once, word by word, against the version before it, and the
+ * inserted and deleted characters go to its author's row; the first version of a document counts
+ * as inserted. That runs in the background after the save has answered (the diff can take up to
+ * diff-timeout, plus reading an archived predecessor), so totals may trail the newest version
+ * briefly. Reading the totals never touches version content, and thinning or archiving history
+ * later does not change them.
+ */
+@Service
+public class ContributionService {
+
+    private final VersionRepository versions;
+    private final ContributionRepository contributions;
+    private final VersionArchiveService archive;
+    private final TransactionTemplate transactions;
+    private final Duration diffTimeout;
+
+    public ContributionService(VersionRepository versions, ContributionRepository contributions,
+                               VersionArchiveService archive, TransactionTemplate transactions,
+                               @Value("${versionservice.contributions.diff-timeout:2s}") Duration diffTimeout) {
+        this.versions = versions;
+        this.contributions = contributions;
+        this.archive = archive;
+        this.transactions = transactions;
+        this.diffTimeout = diffTimeout;
+    }
+
+    /** Adds what saved changed to its author's totals. Failures are logged; the version stays saved. */
+    @Async
+    public void record(Version saved) {
+        try {
+            String before = versions.findFirstByDocumentIdAndIdLessThanOrderByIdDesc(saved.getDocumentId(), saved.getId())
+                    .map(archive::restore)
+                    .map(Version::getContent)
+                    .orElse("");
+            String after = saved.getContent() == null ? "" : saved.getContent();
+
+            long inserted = 0;
+            long deleted = 0;
+            for (Edit e : TextDiff.diff(before == null ? "" : before, after, Granularity.WORD,
+                    System.nanoTime() + diffTimeout.toNanos())) {
+                if (Edit.INSERT.equals(e.op())) {
+                    inserted += e.text().length();
+                } else if (Edit.DELETE.equals(e.op())) {
+                    deleted += e.length();
+                }
+            }
+            add(saved, inserted, deleted);
+        } catch (RuntimeException e) {
+            System.err.println("Recording contribution of version " + saved.getId() + " failed: " + e.getMessage());
+        }
+    }
+
+    public List<Contribution> ofDocument(UUID docId) {
+        return contributions.findByDocumentIdOrderByInsertedCharsDesc(docId);
+    }
+
+    public List<Contribution> ofAuthor(String username) {
+        return contributions.findByAuthorUsernameOrderByLastContributionAtDesc(username);
+    }
+
+    public void forgetDocument(UUID docId) {
+        transactions.executeWithoutResult(status -> contributions.deleteByDocumentId(docId));
+    }
+
+    // an in-place increment, or the author's first row for the document
+    private void add(Version v, long inserted, long deleted) {
+        if (increment(v, inserted, deleted)) {
+            return;
+        }
+        try {
+            contributions.save(new Contribution(v.getDocumentId(), v.getAuthorUsername(), inserted, deleted, 1,
+                    v.getCreatedAt()));
+        } catch (DataIntegrityViolationException e) {
+            // another version of the same author created the row first (save inserts, it never merges)
+            increment(v, inserted, deleted);
+        }
+    }
+
+    private boolean increment(Version v, long inserted, long deleted) {
+        Integer rows = transactions.execute(status -> contributions.addTo(v.getDocumentId(), v.getAuthorUsername(),
+                inserted, deleted, v.getCreatedAt()));
+        return rows != null && rows > 0;
+    }
+}
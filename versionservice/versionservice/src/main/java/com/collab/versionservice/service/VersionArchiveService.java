@@ -0,0 +1,198 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.archive.SegmentStore;
+import com.collab.versionservice.model.Version;
+import com.collab.versionservice.repo.VersionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold tier for history: versions older than archive-after are moved out of the content column into
+ * compressed segments in a SegmentStore, and their row keeps only where the content went.
+ *
+ * Each pass packs the versions it finds, batch-size rows at a time, into segments of about
+ * segment-size, every version compressed on its own so it can be read back without touching its
+ * neighbours. A segment is stored before any row points at it and the rows of a segment are updated
+ * in one transaction, so a failure at worst leaves a segment nothing refers to.
+ *
+ * Archived versions read the same as others through restore(). Segments are never rewritten: the
+ * bytes of an archived version that retention deletes later stay in its segment.
+ */
+@Service
+public class VersionArchiveService {
+
+    public record ArchiveReport(long archived, int segments, long rawBytes, long storedBytes, Duration took) {}
+
+    private record Entry(Long versionId, long offset, int length) {}
+
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final VersionRepository repository;
+    private final SegmentStore store;
+    private final TransactionTemplate transactions;
+    private final Duration archiveAfter;
+    private final int batchSize;
+    private final long segmentSize;
+    private final Duration pauseBetweenBatches;
+
+    public VersionArchiveService(VersionRepository repository, SegmentStore store, TransactionTemplate transactions,
+                                 @Value("${versionservice.archive.archive-after:90d}") Duration archiveAfter,
+                                 @Value("${versionservice.archive.batch-size:200}") int batchSize,
+                                 @Value("${versionservice.archive.segment-size:64MB}") DataSize segmentSize,
+                                 @Value("${versionservice.archive.pause-between-batches:200ms}") Duration pauseBetweenBatches) {
+        this.repository = repository;
+        this.store = store;
+        this.transactions = transactions;
+        this.archiveAfter = archiveAfter;
+        this.batchSize = batchSize;
+        this.segmentSize = segmentSize.toBytes();
+        this.pauseBetweenBatches = pauseBetweenBatches;
+    }
+
+    @Scheduled(initialDelayString = "${versionservice.archive.initial-delay:15m}",
+            fixedDelayString = "${versionservice.archive.interval:6h}")
+    public void archiveOldVersions() {
+        try {
+            ArchiveReport report = run(LocalDateTime.now());
+            System.out.println("Version archive: moved " + report.archived() + " versions into " + report.segments()
+                    + " segments, " + report.rawBytes() + " bytes stored as " + report.storedBytes()
+                    + " in " + report.took().toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Version archive failed: " + e.getMessage());
+        }
+    }
+
+    /** The version with its content, read back from its segment if it has been archived. */
+    public Version restore(Version v) {
+        if (!v.isArchived()) {
+            return v;
+        }
+        String content;
+        try {
+            content = inflate(store.read(v.getArchiveSegment(), v.getArchiveOffset(), v.getArchiveLength()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read archived version " + v.getId(), e);
+        }
+        // a copy, so the managed entity never looks modified
+        Version restored = new Version();
+        restored.setId(v.getId());
+        restored.setDocumentId(v.getDocumentId());
+        restored.setAuthorUsername(v.getAuthorUsername());
+        restored.setCreatedAt(v.getCreatedAt());
+        restored.setContent(content);
+        return restored;
+    }
+
+    ArchiveReport run(LocalDateTime now) throws InterruptedException, IOException {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = now.minus(archiveAfter);
+        long archived = 0;
+        int segments = 0;
+        long rawBytes = 0;
+
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        List<Entry> entries = new ArrayList<>();
+        long storedBytes = 0;
+
+        List<Version> page = repository.findArchiveCandidates(cutoff, 0L, Limit.of(batchSize));
+        while (!page.isEmpty()) {
+            for (Version v : page) {
+                byte[] raw = (v.getContent() == null ? "" : v.getContent()).getBytes(StandardCharsets.UTF_8);
+                byte[] compressed = deflate(raw);
+                entries.add(new Entry(v.getId(), segment.size(), compressed.length));
+                segment.write(compressed);
+                rawBytes += raw.length;
+                if (segment.size() >= segmentSize) {
+                    archived += seal(now, segment, entries);
+                    storedBytes += segment.size();
+                    segments++;
+                    segment.reset();
+                    entries.clear();
+                }
+            }
+            if (page.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(pauseBetweenBatches.toMillis());
+            page = repository.findArchiveCandidates(cutoff, page.get(page.size() - 1).getId(), Limit.of(batchSize));
+        }
+        if (!entries.isEmpty()) {
+            archived += seal(now, segment, entries);
+            storedBytes += segment.size();
+            segments++;
+        }
+        return new ArchiveReport(archived, segments, rawBytes, storedBytes, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    // stores the segment, then points its rows at it; returns how many rows now do
+    private long seal(LocalDateTime now, ByteArrayOutputStream segment, List<Entry> entries) throws IOException {
+        // version ids are never archived twice, so the first one makes the name unique
+        String name = "versions-" + SEGMENT_TIME.format(now) + "-" + entries.get(0).versionId() + ".seg";
+        store.put(name, segment.toByteArray());
+        Long updated = transactions.execute(status -> {
+            long rows = 0;
+            for (Entry e : entries) {
+                rows += repository.markArchived(e.versionId(), name, e.offset(), e.length());
+            }
+            return rows;
+        });
+        return updated == null ? 0 : updated;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String inflate(ByteBuffer compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.remaining() * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated archive record");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive record", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
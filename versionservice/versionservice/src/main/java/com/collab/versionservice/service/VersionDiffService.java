@@ -0,0 +1,99 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.diff.Granularity;
+import com.collab.versionservice.diff.TextDiff;
+import com.collab.versionservice.diff.VersionDiff;
+import com.collab.versionservice.diff.VersionDiff.Edit;
+import com.collab.versionservice.model.Version;
+import com.collab.versionservice.repo.VersionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Diffs between two versions of a document (TextDiff). Versions never change, so a diff is computed
+ * once per (from, to, granularity) and kept in a cache bounded by the size of the patches, which are
+ * far smaller than the two contents they replace.
+ */
+@Service
+public class VersionDiffService {
+
+    private record Key(Long from, Long to, Granularity granularity) {}
+
+    private final VersionRepository repository;
+    private final VersionArchiveService archive;
+    private final Duration timeout;
+    private final Cache<Key, VersionDiff> diffs;
+
+    public VersionDiffService(VersionRepository repository, VersionArchiveService archive,
+                              @Value("${versionservice.diff.timeout:2s}") Duration timeout,
+                              @Value("${versionservice.diff.cache-size:32MB}") DataSize cacheSize,
+                              @Value("${versionservice.diff.cache-ttl:1h}") Duration cacheTtl) {
+        this.repository = repository;
+        this.archive = archive;
+        this.timeout = timeout;
+        this.diffs = Caffeine.newBuilder()
+                .maximumWeight(cacheSize.toBytes())
+                .weigher((Key key, VersionDiff diff) -> weightOf(diff))
+                .expireAfterAccess(cacheTtl)
+                .build();
+    }
+
+    /** Empty if either version does not exist, or they are versions of different documents. */
+    public Optional<VersionDiff> diff(Long from, Long to, Granularity granularity) {
+        Key key = new Key(from, to, granularity);
+        VersionDiff cached = diffs.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<Version> a = repository.findById(from);
+        Optional<Version> b = a.isPresent() ? repository.findById(to) : Optional.empty();
+        if (b.isEmpty() || !a.get().getDocumentId().equals(b.get().getDocumentId())) {
+            return Optional.empty();
+        }
+
+        VersionDiff diff = compute(archive.restore(a.get()), archive.restore(b.get()), granularity);
+        diffs.put(key, diff);
+        return Optional.of(diff);
+    }
+
+    /** The document's history is gone; so are the diffs between its versions. */
+    public void evictDocument(UUID docId) {
+        diffs.asMap().values().removeIf(diff -> docId.equals(diff.documentId()));
+    }
+
+    private VersionDiff compute(Version a, Version b, Granularity granularity) {
+        List<Edit> edits = TextDiff.diff(contentOf(a), contentOf(b), granularity, System.nanoTime() + timeout.toNanos());
+        long inserted = 0;
+        long deleted = 0;
+        for (Edit e : edits) {
+            if (Edit.INSERT.equals(e.op())) {
+                inserted += e.text().length();
+            } else if (Edit.DELETE.equals(e.op())) {
+                deleted += e.length();
+            }
+        }
+        return new VersionDiff(a.getDocumentId(), a.getId(), b.getId(), granularity.value(), inserted, deleted, edits);
+    }
+
+    private static String contentOf(Version v) {
+        return v.getContent() == null ? "" : v.getContent();
+    }
+
+    // roughly the heap a cached diff holds
+    private static int weightOf(VersionDiff diff) {
+        long weight = 64;
+        for (Edit e : diff.edits()) {
+            weight += 32 + (e.text() == null ? 0 : 2L * e.text().length());
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,123 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.repo.VersionRepository;
+import com.collab.versionservice.repo.VersionRepository.VersionStub;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thins old history in the background with a tiered policy: every version younger than
+ * keep-all-for is kept, then one per hour until hourly-until, then one per day. The kept version
+ * of an hour or day is its newest, so a document's latest version always survives. Buckets are
+ * aligned to the clock, so running again never removes more than the policy says.
+ *
+ * Each pass walks versions older than keep-all-for in (documentId, createdAt) order, batch-size rows
+ * at a time without their content, deletes the superseded ones of each page in one statement and
+ * sleeps pause-between-batches before the next page, so foreground queries keep the database.
+ */
+@Service
+public class VersionRetentionService {
+
+    // reclaimedBytes counts archived versions by their compressed record, which stays in its segment as dead space
+    public record RetentionReport(long scanned, long deleted, long reclaimedBytes, Duration took) {}
+
+    private record Tier(Duration olderThan, Duration keepOnePer) {}
+
+    // the index-th keepOnePer-long slot since the epoch
+    private record Bucket(Duration keepOnePer, long index) {}
+
+    private final VersionRepository repository;
+    private final Duration keepAllFor;
+    private final List<Tier> tiers;
+    private final int batchSize;
+    private final Duration pauseBetweenBatches;
+
+    public VersionRetentionService(VersionRepository repository,
+                                   @Value("${versionservice.retention.keep-all-for:24h}") Duration keepAllFor,
+                                   @Value("${versionservice.retention.hourly-until:30d}") Duration hourlyUntil,
+                                   @Value("${versionservice.retention.batch-size:500}") int batchSize,
+                                   @Value("${versionservice.retention.pause-between-batches:200ms}") Duration pauseBetweenBatches) {
+        this.repository = repository;
+        this.keepAllFor = keepAllFor;
+        // oldest first, so the first tier a version is old enough for wins
+        this.tiers = List.of(new Tier(hourlyUntil, Duration.ofDays(1)), new Tier(keepAllFor, Duration.ofHours(1)));
+        this.batchSize = batchSize;
+        this.pauseBetweenBatches = pauseBetweenBatches;
+    }
+
+    @Scheduled(initialDelayString = "${versionservice.retention.initial-delay:5m}",
+            fixedDelayString = "${versionservice.retention.interval:1h}")
+    public void thinHistory() {
+        try {
+            RetentionReport report = run(LocalDateTime.now());
+            System.out.println("Version retention: scanned " + report.scanned() + ", deleted " + report.deleted()
+                    + ", reclaimed " + report.reclaimedBytes() + " bytes in " + report.took().toMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            System.err.println("Version retention failed: " + e.getMessage());
+        }
+    }
+
+    RetentionReport run(LocalDateTime now) throws InterruptedException {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = now.minus(keepAllFor);
+        long scanned = 0;
+        long deleted = 0;
+        long reclaimed = 0;
+
+        // the newest row seen so far; it is superseded if the next row falls in the same bucket
+        VersionStub previous = null;
+        Bucket previousBucket = null;
+
+        List<VersionStub> page = repository.findRetentionPage(cutoff, Limit.of(batchSize));
+        while (!page.isEmpty()) {
+            List<Long> superseded = new ArrayList<>();
+            for (VersionStub v : page) {
+                Bucket bucket = bucketOf(v.getCreatedAt(), now);
+                if (previous != null && previous.getDocumentId().equals(v.getDocumentId())
+                        && bucket != null && bucket.equals(previousBucket)) {
+                    superseded.add(previous.getId());
+                    reclaimed += previous.getSize() == null ? 0 : previous.getSize();
+                }
+                previous = v;
+                previousBucket = bucket;
+            }
+            scanned += page.size();
+
+            if (!superseded.isEmpty()) {
+                repository.deleteAllByIdInBatch(superseded);
+                deleted += superseded.size();
+            }
+            if (page.size() < batchSize) {
+                break;
+            }
+            Thread.sleep(pauseBetweenBatches.toMillis());
+
+            VersionStub last = page.get(page.size() - 1);
+            page = repository.findRetentionPageAfter(cutoff, last.getDocumentId(), last.getCreatedAt(), last.getId(),
+                    Limit.of(batchSize));
+        }
+        return new RetentionReport(scanned, deleted, reclaimed, Duration.ofNanos(System.nanoTime() - started));
+    }
+
+    // clock-aligned bucket of the tier the version's age falls in, null if it is young enough to keep anyway
+    private Bucket bucketOf(LocalDateTime createdAt, LocalDateTime now) {
+        Duration age = Duration.between(createdAt, now);
+        for (Tier tier : tiers) {
+            if (age.compareTo(tier.olderThan()) >= 0) {
+                long size = tier.keepOnePer().toSeconds();
+                return new Bucket(tier.keepOnePer(), Math.floorDiv(createdAt.toEpochSecond(ZoneOffset.UTC), size));
+            }
+        }
+        return null;
+    }
+}
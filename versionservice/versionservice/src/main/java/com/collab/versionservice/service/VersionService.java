@@ -14,6 +14,9 @@ public class VersionService {
     @Autowired
     private VersionRepository repository;
 
+    @Autowired
+    private VersionArchiveService archive;
+
     /**
      * Operation 1: Maintain History
      * Saves a full snapshot of the document content.
@@ -28,7 +31,9 @@ public class VersionService {
      * Retrieves all versions linked to a specific Document UUID.
      */
     public List<Version> getHistory(UUID docId) { // Changed from Long to UUID
-        return repository.findByDocumentIdOrderByCreatedAtDesc(docId);
+        return repository.findByDocumentIdOrderByCreatedAtDesc(docId).stream()
+                .map(v -> v.isArchived() ? archive.restore(v) : v)
+                .toList();
     }
 
     /**
@@ -37,6 +42,7 @@ public class VersionService {
      */
     public Version getVersion(Long id) {
         return repository.findById(id)
+                .map(v -> v.isArchived() ? archive.restore(v) : v)
                 .orElseThrow(() -> new RuntimeException("Version history not found for ID: " + id));
     }
 }
\ No newline at end of file
@@ -1,7 +1,13 @@
 package com.collab.versionservice.controller;
 
+import com.collab.versionservice.diff.Granularity;
+import com.collab.versionservice.diff.VersionDiff;
+import com.collab.versionservice.model.Contribution;
 import com.collab.versionservice.model.Version;
 import com.collab.versionservice.repo.VersionRepository;
+import com.collab.versionservice.service.ContributionService;
+import com.collab.versionservice.service.VersionArchiveService;
+import com.collab.versionservice.service.VersionDiffService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -13,6 +19,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.time.LocalDateTime;
 import java.util.*;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -28,6 +35,15 @@ class VersionControllerTest {
     @MockBean
     VersionRepository repo;
 
+    @MockBean
+    VersionArchiveService archive;
+
+    @MockBean
+    VersionDiffService diffs;
+
+    @MockBean
+    ContributionService contributions;
+
     @Test
     void save_setsCreatedAt_andConvertsNullContentToEmptyString() throws Exception {
         UUID docId = UUID.randomUUID();
@@ -51,6 +67,7 @@ class VersionControllerTest {
                 .andExpect(jsonPath("$.content").value(""));
 
         verify(repo).save(any(Version.class));
+        verify(contributions).record(saved);
     }
 
     @Test
@@ -87,11 +104,105 @@ class VersionControllerTest {
         when(repo.findById(10L)).thenReturn(Optional.of(v));
 
         mvc.perform(get("/api/versions/10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v10\""))
+                .andExpect(header().string("Cache-Control", containsString("immutable")))
+                .andExpect(jsonPath("$.id").value(10))
+                .andExpect(jsonPath("$.content").value("hello"));
+    }
+
+    @Test
+    void getOne_archivedVersion_readsContentFromTheArchive() throws Exception {
+        Version v = new Version();
+        v.setId(10L);
+        v.setDocumentId(UUID.randomUUID());
+        v.setContent("");
+        v.setArchiveSegment("versions-20260101-000000-10.seg");
+        v.setArchiveOffset(0L);
+        v.setArchiveLength(12);
+
+        Version restored = new Version();
+        restored.setId(10L);
+        restored.setDocumentId(v.getDocumentId());
+        restored.setContent("from archive");
+
+        when(repo.findById(10L)).thenReturn(Optional.of(v));
+        when(archive.restore(v)).thenReturn(restored);
+
+        mvc.perform(get("/api/versions/10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("from archive"))
+                .andExpect(jsonPath("$.archiveSegment").doesNotExist());
+    }
+
+    @Test
+    void getOne_matchingIfNoneMatch_returns304WithoutReadingTheVersion() throws Exception {
+        when(repo.existsById(10L)).thenReturn(true);
+
+        mvc.perform(get("/api/versions/10").header("If-None-Match", "\"v10\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        verify(repo, never()).findById(anyLong());
+    }
+
+    @Test
+    void getOne_deletedVersion_matchingIfNoneMatch_returns404() throws Exception {
+        when(repo.existsById(10L)).thenReturn(false);
+        when(repo.findById(10L)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/api/versions/10").header("If-None-Match", "\"v10\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getOneOfDocument_returnsVersion() throws Exception {
+        UUID docId = UUID.randomUUID();
+
+        Version v = new Version();
+        v.setId(10L);
+        v.setDocumentId(docId);
+        v.setContent("hello");
+        v.setCreatedAt(LocalDateTime.now());
+
+        when(repo.findByIdAndDocumentId(10L, docId)).thenReturn(Optional.of(v));
+
+        mvc.perform(get("/api/versions/doc/" + docId + "/10"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(10))
                 .andExpect(jsonPath("$.content").value("hello"));
     }
 
+    @Test
+    void getOneOfDocument_matchingIfNoneMatch_returns304WithoutReadingTheVersion() throws Exception {
+        UUID docId = UUID.randomUUID();
+        when(repo.existsByIdAndDocumentId(10L, docId)).thenReturn(true);
+
+        mvc.perform(get("/api/versions/doc/" + docId + "/10").header("If-None-Match", "\"v10\""))
+                .andExpect(status().isNotModified());
+
+        verify(repo, never()).findByIdAndDocumentId(anyLong(), any());
+    }
+
+    @Test
+    void getOneOfDocument_otherDocument_matchingIfNoneMatch_returns404() throws Exception {
+        UUID docId = UUID.randomUUID();
+        when(repo.existsByIdAndDocumentId(10L, docId)).thenReturn(false);
+        when(repo.findByIdAndDocumentId(10L, docId)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/api/versions/doc/" + docId + "/10").header("If-None-Match", "\"v10\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getOneOfDocument_otherDocument_returns404() throws Exception {
+        UUID docId = UUID.randomUUID();
+        when(repo.findByIdAndDocumentId(10L, docId)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/api/versions/doc/" + docId + "/10"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void deleteHistory_callsRepoDelete() throws Exception {
         UUID docId = UUID.randomUUID();
@@ -101,5 +212,79 @@ class VersionControllerTest {
                 .andExpect(status().isOk());
 
         verify(repo).deleteByDocumentId(docId);
+        verify(diffs).evictDocument(docId);
+        verify(contributions).forgetDocument(docId);
+    }
+
+    @Test
+    void diff_returnsCompactPatch_cachedAsImmutable() throws Exception {
+        UUID docId = UUID.randomUUID();
+        when(diffs.diff(1L, 2L, Granularity.WORD)).thenReturn(Optional.of(new VersionDiff(docId, 1L, 2L, "word", 3, 5,
+                List.of(new VersionDiff.Edit("=", 10, null), new VersionDiff.Edit("-", 5, null),
+                        new VersionDiff.Edit("+", null, "red")))));
+
+        mvc.perform(get("/api/versions/doc/" + docId + "/1/diff/2").param("granularity", "word"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"d1-2-word\""))
+                .andExpect(header().string("Cache-Control", containsString("immutable")))
+                .andExpect(jsonPath("$.inserted").value(3))
+                .andExpect(jsonPath("$.edits[0].op").value("="))
+                .andExpect(jsonPath("$.edits[0].text").doesNotExist())
+                .andExpect(jsonPath("$.edits[2].text").value("red"));
+    }
+
+    @Test
+    void diff_versionOfAnotherDocument_returns404() throws Exception {
+        when(diffs.diff(1L, 2L, Granularity.LINE)).thenReturn(Optional.of(
+                new VersionDiff(UUID.randomUUID(), 1L, 2L, "line", 0, 0, List.of())));
+
+        mvc.perform(get("/api/versions/doc/" + UUID.randomUUID() + "/1/diff/2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void diff_matchingIfNoneMatch_returns304WithoutDiffing() throws Exception {
+        when(repo.existsById(1L)).thenReturn(true);
+        when(repo.existsById(2L)).thenReturn(true);
+
+        mvc.perform(get("/api/versions/1/diff/2").header("If-None-Match", "\"d1-2-line\""))
+                .andExpect(status().isNotModified());
+
+        verify(diffs, never()).diff(any(), any(), any());
+    }
+
+    @Test
+    void diff_deletedVersion_matchingIfNoneMatch_returns404() throws Exception {
+        when(repo.existsById(1L)).thenReturn(true);
+        when(repo.existsById(2L)).thenReturn(false);
+        when(diffs.diff(1L, 2L, Granularity.LINE)).thenReturn(Optional.empty());
+
+        mvc.perform(get("/api/versions/1/diff/2").header("If-None-Match", "\"d1-2-line\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void diff_unknownGranularity_returns400() throws Exception {
+        mvc.perform(get("/api/versions/1/diff/2").param("granularity", "char"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void contributions_perDocumentAndPerUser() throws Exception {
+        UUID docId = UUID.randomUUID();
+        Contribution c = new Contribution(docId, "alice", 120, 4, 3, LocalDateTime.now());
+        when(contributions.ofDocument(docId)).thenReturn(List.of(c));
+        when(contributions.ofAuthor("alice")).thenReturn(List.of(c));
+
+        mvc.perform(get("/api/versions/doc/" + docId + "/contributions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].authorUsername").value("alice"))
+                .andExpect(jsonPath("$[0].insertedChars").value(120))
+                .andExpect(jsonPath("$[0].deletedChars").value(4));
+
+        mvc.perform(get("/api/versions/user/alice/contributions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].documentId").value(docId.toString()))
+                .andExpect(jsonPath("$[0].versions").value(3));
     }
 }
@@ -0,0 +1,103 @@
+package com.collab.versionservice.diff;
+
+import com.collab.versionservice.diff.VersionDiff.Edit;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDiffTest {
+
+    private static final long NO_DEADLINE = System.nanoTime() + 3_600_000_000_000L;
+
+    private static String apply(String from, List<Edit> edits) {
+        StringBuilder out = new StringBuilder();
+        int at = 0;
+        for (Edit e : edits) {
+            switch (e.op()) {
+                case Edit.KEEP -> {
+                    out.append(from, at, at + e.length());
+                    at += e.length();
+                }
+                case Edit.DELETE -> at += e.length();
+                default -> out.append(e.text());
+            }
+        }
+        assertEquals(from.length(), at);
+        return out.toString();
+    }
+
+    @Test
+    void lineDiff_keepsUnchangedLines_andReplacesChangedOnes() {
+        List<Edit> edits = TextDiff.diff("one\ntwo\nthree\n", "one\n2\nthree\nfour", Granularity.LINE, NO_DEADLINE);
+
+        assertEquals(List.of(
+                new Edit("=", 4, null),
+                new Edit("-", 4, null),
+                new Edit("+", null, "2\n"),
+                new Edit("=", 6, null),
+                new Edit("+", null, "four")), edits);
+    }
+
+    @Test
+    void wordDiff_changesOnlyTheWordsThatDiffer() {
+        List<Edit> edits = TextDiff.diff("The quick brown fox.", "The quick red fox!", Granularity.WORD, NO_DEADLINE);
+
+        assertEquals(List.of(
+                new Edit("=", 10, null),
+                new Edit("-", 5, null),
+                new Edit("+", null, "red"),
+                new Edit("=", 4, null),
+                new Edit("-", 1, null),
+                new Edit("+", null, "!")), edits);
+    }
+
+    @Test
+    void randomTexts_patchReproducesTheTarget_withAShortestScript() {
+        Random random = new Random(7);
+        for (int round = 0; round < 2_000; round++) {
+            String a = randomLines(random);
+            String b = randomLines(random);
+
+            List<Edit> edits = TextDiff.diff(a, b, Granularity.LINE, NO_DEADLINE);
+
+            assertEquals(b, apply(a, edits));
+            long changedLines = edits.stream()
+                    .mapToLong(e -> e.op().equals(Edit.DELETE) ? e.length() : e.op().equals(Edit.INSERT) ? e.text().length() : 0)
+                    .sum() / 2;
+            assertEquals(a.length() / 2 + b.length() / 2 - 2L * lcs(a, b), changedLines);
+        }
+    }
+
+    @Test
+    void pastTheDeadline_stillProducesACorrectPatch() {
+        String a = "a\nb\nc\nd\n";
+        String b = "b\nx\nd\ny\n";
+
+        assertEquals(b, apply(a, TextDiff.diff(a, b, Granularity.LINE, System.nanoTime() - 1)));
+    }
+
+    // lines of one character each, so every line is two chars long
+    private static String randomLines(Random random) {
+        StringBuilder text = new StringBuilder();
+        int lines = random.nextInt(20);
+        for (int i = 0; i < lines; i++) {
+            text.append((char) ('a' + random.nextInt(3))).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static int lcs(String a, String b) {
+        int[][] lengths = new int[a.length() / 2 + 1][b.length() / 2 + 1];
+        for (int i = 1; i < lengths.length; i++) {
+            for (int j = 1; j < lengths[0].length; j++) {
+                lengths[i][j] = a.charAt(2 * (i - 1)) == b.charAt(2 * (j - 1))
+                        ? lengths[i - 1][j - 1] + 1
+                        : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.length() / 2][b.length() / 2];
+    }
+}
@@ -0,0 +1,83 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.model.Contribution;
+import com.collab.versionservice.model.Version;
+import com.collab.versionservice.repo.ContributionRepository;
+import com.collab.versionservice.repo.VersionRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ContributionServiceTest {
+
+    private final VersionRepository versions = mock(VersionRepository.class);
+    private final ContributionRepository contributions = mock(ContributionRepository.class);
+    private final VersionArchiveService archive = mock(VersionArchiveService.class);
+    private final UUID docId = UUID.randomUUID();
+
+    private final ContributionService service = new ContributionService(versions, contributions, archive,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)), Duration.ofSeconds(2));
+
+    private Version version(long id, String author, String content) {
+        Version v = new Version();
+        v.setId(id);
+        v.setDocumentId(docId);
+        v.setAuthorUsername(author);
+        v.setContent(content);
+        v.setCreatedAt(LocalDateTime.now());
+        return v;
+    }
+
+    @Test
+    void savedVersion_addsWhatChangedSinceThePreviousOne_toItsAuthor() {
+        Version previous = version(1, "alice", "The quick brown fox.");
+        Version saved = version(2, "bob", "The quick red fox jumps.");
+        when(versions.findFirstByDocumentIdAndIdLessThanOrderByIdDesc(docId, 2L)).thenReturn(Optional.of(previous));
+        when(archive.restore(previous)).thenReturn(previous);
+        when(contributions.addTo(any(), any(), anyLong(), anyLong(), any())).thenReturn(1);
+
+        service.record(saved);
+
+        // "brown" -> "red", " jumps" added
+        verify(contributions).addTo(docId, "bob", 9, 5, saved.getCreatedAt());
+        verify(contributions, never()).save(any());
+    }
+
+    @Test
+    void firstVersion_countsAsInserted_andStartsTheAuthorsRow() {
+        Version saved = version(1, "alice", "hello");
+        when(versions.findFirstByDocumentIdAndIdLessThanOrderByIdDesc(docId, 1L)).thenReturn(Optional.empty());
+        when(contributions.addTo(any(), any(), anyLong(), anyLong(), any())).thenReturn(0);
+
+        service.record(saved);
+
+        ArgumentCaptor<Contribution> row = ArgumentCaptor.forClass(Contribution.class);
+        verify(contributions).save(row.capture());
+        assertEquals(new Contribution(docId, "alice", 5, 0, 1, saved.getCreatedAt()), row.getValue());
+        // inserted, never merged over a row another save created meanwhile
+        assertTrue(row.getValue().isNew());
+    }
+
+    @Test
+    void rowCreatedConcurrently_isIncrementedInstead() {
+        Version saved = version(1, "alice", "hello");
+        when(versions.findFirstByDocumentIdAndIdLessThanOrderByIdDesc(docId, 1L)).thenReturn(Optional.empty());
+        when(contributions.addTo(any(), any(), anyLong(), anyLong(), any())).thenReturn(0).thenReturn(1);
+        when(contributions.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        service.record(saved);
+
+        verify(contributions, times(2)).addTo(docId, "alice", 5, 0, saved.getCreatedAt());
+    }
+}
@@ -0,0 +1,102 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.archive.FileSegmentStore;
+import com.collab.versionservice.model.Version;
+import com.collab.versionservice.repo.VersionRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VersionArchiveServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 19, 12, 0);
+
+    @TempDir
+    Path dir;
+
+    private final VersionRepository repo = mock(VersionRepository.class);
+    private final UUID docId = UUID.randomUUID();
+
+    private VersionArchiveService service(DataSize segmentSize) {
+        return new VersionArchiveService(repo, new FileSegmentStore(dir),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                Duration.ofDays(90), 500, segmentSize, Duration.ZERO);
+    }
+
+    private Version version(long id, String content) {
+        Version v = new Version();
+        v.setId(id);
+        v.setDocumentId(docId);
+        v.setAuthorUsername("alice");
+        v.setContent(content);
+        v.setCreatedAt(NOW.minusDays(100));
+        return v;
+    }
+
+    @Test
+    void archivedVersions_pointAtTheirSegment_andReadBackUnchanged() throws Exception {
+        Version first = version(1, "hello ".repeat(1000));
+        Version second = version(2, "second version, ünïcode too");
+        when(repo.findArchiveCandidates(eq(NOW.minusDays(90)), eq(0L), any())).thenReturn(List.of(first, second));
+        when(repo.markArchived(anyLong(), anyString(), anyLong(), anyInt())).thenReturn(1);
+
+        VersionArchiveService service = service(DataSize.ofMegabytes(64));
+        VersionArchiveService.ArchiveReport report = service.run(NOW);
+
+        assertEquals(2, report.archived());
+        assertEquals(1, report.segments());
+        assertTrue(report.storedBytes() < report.rawBytes());
+
+        ArgumentCaptor<Long> offset = ArgumentCaptor.forClass(Long.class);
+        ArgumentCaptor<Integer> length = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<String> segment = ArgumentCaptor.forClass(String.class);
+        verify(repo, times(2)).markArchived(anyLong(), segment.capture(), offset.capture(), length.capture());
+        assertTrue(Files.exists(dir.resolve(segment.getValue())));
+
+        for (int i = 0; i < 2; i++) {
+            Version archived = version(i + 1, "");
+            archived.setArchiveSegment(segment.getAllValues().get(i));
+            archived.setArchiveOffset(offset.getAllValues().get(i));
+            archived.setArchiveLength(length.getAllValues().get(i));
+
+            Version restored = service.restore(archived);
+            assertEquals(List.of(first, second).get(i).getContent(), restored.getContent());
+            assertEquals("alice", restored.getAuthorUsername());
+            assertEquals("", archived.getContent());
+        }
+    }
+
+    @Test
+    void fullSegments_areSealedAsTheyFill() throws Exception {
+        when(repo.findArchiveCandidates(any(), eq(0L), any())).thenReturn(List.of(
+                version(1, "a"), version(2, "b"), version(3, "c")));
+        when(repo.markArchived(anyLong(), anyString(), anyLong(), anyInt())).thenReturn(1);
+
+        VersionArchiveService.ArchiveReport report = service(DataSize.ofBytes(1)).run(NOW);
+
+        assertEquals(3, report.segments());
+        verify(repo).markArchived(eq(1L), eq("versions-20261019-120000-1.seg"), eq(0L), anyInt());
+        verify(repo).markArchived(eq(3L), eq("versions-20261019-120000-3.seg"), eq(0L), anyInt());
+    }
+
+    @Test
+    void notArchived_isReturnedAsIs() {
+        Version v = version(1, "hot");
+        assertSame(v, service(DataSize.ofMegabytes(64)).restore(v));
+        verifyNoInteractions(repo);
+    }
+}
@@ -0,0 +1,85 @@
+package com.collab.versionservice.service;
+
+import com.collab.versionservice.repo.VersionRepository;
+import com.collab.versionservice.repo.VersionRepository.VersionStub;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VersionRetentionServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 19, 12, 0);
+
+    private final VersionRepository repo = mock(VersionRepository.class);
+    private final UUID docA = new UUID(0, 1);
+    private final UUID docB = new UUID(0, 2);
+
+    private VersionRetentionService service(int batchSize) {
+        return new VersionRetentionService(repo, Duration.ofHours(24), Duration.ofDays(30), batchSize, Duration.ZERO);
+    }
+
+    private static VersionStub stub(long id, UUID docId, LocalDateTime createdAt, long size) {
+        return new VersionStub() {
+            public Long getId() { return id; }
+            public UUID getDocumentId() { return docId; }
+            public LocalDateTime getCreatedAt() { return createdAt; }
+            public Long getSize() { return size; }
+        };
+    }
+
+    @Test
+    void keepsTheNewestVersionPerHour_thenPerDay_perDocument() throws Exception {
+        LocalDateTime threeDaysAgo = NOW.minusDays(3).withHour(10);
+        LocalDateTime fortyDaysAgo = NOW.minusDays(40);
+        when(repo.findRetentionPage(eq(NOW.minusHours(24)), any())).thenReturn(List.of(
+                stub(1, docA, fortyDaysAgo.withHour(8), 100),
+                stub(2, docA, fortyDaysAgo.withHour(20), 100),
+                stub(3, docA, threeDaysAgo.withMinute(5), 10),
+                stub(4, docA, threeDaysAgo.withMinute(20), 20),
+                stub(5, docA, threeDaysAgo.withMinute(50), 30),
+                stub(6, docA, threeDaysAgo.withHour(11), 40),
+                stub(7, docB, threeDaysAgo.withMinute(30), 50)));
+
+        VersionRetentionService.RetentionReport report = service(500).run(NOW);
+
+        verify(repo).deleteAllByIdInBatch(List.of(1L, 3L, 4L));
+        assertEquals(7, report.scanned());
+        assertEquals(3, report.deleted());
+        assertEquals(130, report.reclaimedBytes());
+        verify(repo, never()).findRetentionPageAfter(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void continuesAfterTheLastRowOfEachPage_andThinsAcrossPages() throws Exception {
+        LocalDateTime hour = NOW.minusDays(2).withMinute(0);
+        when(repo.findRetentionPage(any(), any())).thenReturn(List.of(
+                stub(1, docA, hour.withMinute(1), 10),
+                stub(2, docA, hour.withMinute(2), 10)));
+        when(repo.findRetentionPageAfter(any(), eq(docA), eq(hour.withMinute(2)), eq(2L), any())).thenReturn(List.of(
+                stub(3, docA, hour.withMinute(3), 10)));
+
+        VersionRetentionService.RetentionReport report = service(2).run(NOW);
+
+        verify(repo).deleteAllByIdInBatch(List.of(1L));
+        verify(repo).deleteAllByIdInBatch(List.of(2L));
+        assertEquals(3, report.scanned());
+        assertEquals(20, report.reclaimedBytes());
+    }
+
+    @Test
+    void nothingOldEnough_deletesNothing() throws Exception {
+        when(repo.findRetentionPage(any(), any())).thenReturn(List.of());
+
+        VersionRetentionService.RetentionReport report = service(500).run(NOW);
+
+        assertEquals(0, report.scanned());
+        verify(repo, never()).deleteAllByIdInBatch(any());
+    }
+}